@@ -16,6 +16,7 @@
 package org.guvnor.asset.management.service;
 
 import java.util.List;
+import java.util.Map;
 
 import org.guvnor.asset.management.model.RepositoryStructureModel;
 import org.guvnor.common.services.project.model.GAV;
@@ -55,6 +56,10 @@ public interface RepositoryStructureService {
                                    final String branch,
                                    final boolean includeModules );
 
+    Map<String, Project> loadModules( final Repository repository,
+                                      final String branch,
+                                      final List<String> moduleNames );
+
     void save( final Path pathToPomXML,
                final RepositoryStructureModel model,
                final String comment );
@@ -21,9 +21,14 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import javax.inject.Inject;
 
 import org.guvnor.asset.management.model.RepositoryStructureModel;
+import org.guvnor.common.services.backend.exceptions.ExceptionUtilities;
+import org.guvnor.common.services.backend.executor.ParallelExecutor;
 import org.guvnor.common.services.project.model.POM;
 import org.guvnor.common.services.project.model.Project;
 import org.guvnor.common.services.project.service.POMService;
@@ -49,6 +54,9 @@ public class RepositoryStructureModelLoader {
     @Inject
     private MetadataService metadataService;
 
+    @Inject
+    private ParallelExecutor projectLoader;
+
     public RepositoryStructureModel load( final Repository repository,
                                           final String branch,
                                           final boolean includeModules ) {
@@ -69,6 +77,32 @@ public class RepositoryStructureModelLoader {
         }
     }
 
+    /**
+     * Load the Projects of (some of) the modules of the Repository's parent Project. The module names are available
+     * from a model loaded without modules; hence the Projects can be loaded on demand, for example one page at a time.
+     * @param repository Repository containing the parent Project
+     * @param branch Branch of the Repository
+     * @param moduleNames Names of the modules to load. Names that are not modules of the parent Project are ignored.
+     * @return The Projects keyed by module name
+     */
+    public Map<String, Project> loadModules( final Repository repository,
+                                             final String branch,
+                                             final Collection<String> moduleNames ) {
+        if ( repository == null || moduleNames == null ) {
+            return new HashMap<>();
+        }
+
+        final Project project = projectService.resolveToParentProject( repository.getBranchRoot( branch ) );
+        if ( project == null || project.getModules() == null ) {
+            return new HashMap<>();
+        }
+
+        final Collection<String> modules = new ArrayList<>( moduleNames );
+        modules.retainAll( project.getModules() );
+        return getModuleProjects( project.getRootPath(),
+                                  modules );
+    }
+
     private RepositoryStructureModel getModel( final Repository repository,
                                                final String branch ) {
 
@@ -99,11 +133,17 @@ public class RepositoryStructureModelLoader {
         }
 
         model.setOrphanProjects( new ArrayList<>( repositoryProjects ) );
-        for ( Project orphanProject : repositoryProjects ) {
-            final POM pom = pomService.load( orphanProject.getPomXMLPath() );
-            model.getOrphanProjectsPOM().put( orphanProject.getIdentifier(),
-                                              pom );
+        final Map<String, Callable<POM>> loaders = new HashMap<>();
+        for ( final Project orphanProject : repositoryProjects ) {
+            loaders.put( orphanProject.getIdentifier(),
+                         new Callable<POM>() {
+                             @Override
+                             public POM call() {
+                                 return pomService.load( orphanProject.getPomXMLPath() );
+                             }
+                         } );
         }
+        model.getOrphanProjectsPOM().putAll( loadAll( loaders ) );
 
         return model;
     }
@@ -146,16 +186,69 @@ public class RepositoryStructureModelLoader {
 
     private Map<String, Project> getModuleProjects( final Path projectRootPath,
                                                     final Collection<String> moduleNames ) {
-        final Map<String, Project> result = new HashMap<>();
-
         final org.uberfire.java.nio.file.Path parentPath = Paths.convert( projectRootPath );
 
+        final Map<String, Callable<Project>> loaders = new HashMap<>();
         for ( final String moduleName : moduleNames ) {
-            result.put( moduleName,
-                        projectService.resolveProject( Paths.convert( parentPath.resolve( moduleName ) ) ) );
+            loaders.put( moduleName,
+                         new Callable<Project>() {
+                             @Override
+                             public Project call() {
+                                 return projectService.resolveProject( Paths.convert( parentPath.resolve( moduleName ) ) );
+                             }
+                         } );
         }
 
-        return result;
+        return loadAll( loaders );
+    }
+
+    //Run the loaders in parallel, or on the calling thread when there is no more than one
+    private <T> Map<String, T> loadAll( final Map<String, Callable<T>> loaders ) {
+        final Map<String, T> result = new HashMap<>();
+        if ( loaders.size() <= 1 ) {
+            for ( Map.Entry<String, Callable<T>> e : loaders.entrySet() ) {
+                try {
+                    result.put( e.getKey(),
+                                e.getValue().call() );
+                } catch ( RuntimeException re ) {
+                    throw re;
+                } catch ( Exception ex ) {
+                    throw ExceptionUtilities.handleException( ex );
+                }
+            }
+            return result;
+        }
+
+        final Map<String, FutureTask<T>> futures = new HashMap<>();
+        for ( Map.Entry<String, Callable<T>> e : loaders.entrySet() ) {
+            final FutureTask<T> future = new FutureTask<>( e.getValue() );
+            futures.put( e.getKey(),
+                         future );
+            projectLoader.execute( future );
+        }
+
+        try {
+            for ( Map.Entry<String, FutureTask<T>> e : futures.entrySet() ) {
+                result.put( e.getKey(),
+                            e.getValue().get() );
+            }
+            return result;
+
+        } catch ( InterruptedException ie ) {
+            Thread.currentThread().interrupt();
+            throw ExceptionUtilities.handleException( ie );
+
+        } catch ( ExecutionException ee ) {
+            if ( ee.getCause() instanceof RuntimeException ) {
+                throw (RuntimeException) ee.getCause();
+            }
+            throw ExceptionUtilities.handleException( ee );
+
+        } finally {
+            for ( FutureTask<T> future : futures.values() ) {
+                future.cancel( true );
+            }
+        }
     }
 
     private ManagedStatus getManagedStatus( final Repository repository ) {
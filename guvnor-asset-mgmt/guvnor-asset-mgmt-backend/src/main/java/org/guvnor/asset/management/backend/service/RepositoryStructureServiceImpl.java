@@ -17,6 +17,7 @@ package org.guvnor.asset.management.backend.service;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
@@ -246,6 +247,15 @@ public class RepositoryStructureServiceImpl
 
     }
 
+    @Override
+    public Map<String, Project> loadModules( final Repository repository,
+                                             final String branch,
+                                             final List<String> moduleNames ) {
+        return modelLoader.loadModules( repository,
+                                        branch,
+                                        moduleNames );
+    }
+
     @Override
     @SuppressWarnings("unused")
     public void save( final Path pathToPomXML,
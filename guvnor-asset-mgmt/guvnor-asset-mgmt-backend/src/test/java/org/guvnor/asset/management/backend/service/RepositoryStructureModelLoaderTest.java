@@ -17,10 +17,17 @@
 package org.guvnor.asset.management.backend.service;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import javax.inject.Inject;
 
 import org.guvnor.asset.management.model.RepositoryStructureModel;
+import org.guvnor.common.services.backend.executor.ParallelExecutor;
+import org.guvnor.common.services.backend.executor.ParallelExecutorManager;
 import org.guvnor.common.services.project.model.POM;
 import org.guvnor.common.services.project.model.Project;
 import org.guvnor.common.services.project.service.POMService;
@@ -38,6 +45,7 @@ import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.uberfire.backend.vfs.Path;
 
 import static org.junit.Assert.*;
@@ -61,6 +69,11 @@ public class RepositoryStructureModelLoaderTest {
     @Mock
     private MetadataService metadataService;
 
+    private ExecutorService executorService = Executors.newCachedThreadPool();
+
+    @Spy
+    private ParallelExecutor projectLoader = new ParallelExecutor( executorManager( executorService ) );
+
     @Inject
     private TestTempFileSystem testFileSystem;
 
@@ -82,6 +95,7 @@ public class RepositoryStructureModelLoaderTest {
 
     @After
     public void tearDown() throws Exception {
+        executorService.shutdownNow();
         testFileSystem.tearDown();
     }
 
@@ -143,6 +157,53 @@ public class RepositoryStructureModelLoaderTest {
         assertEquals( 2, model.getModulesProject().size() );
     }
 
+    @Test
+    public void testLoadModules() throws Exception {
+
+        addMyProjectToRepositoryRoot( new POM(),
+                                      new Metadata(),
+                                      "module1",
+                                      "module2",
+                                      "module3" );
+
+        final Map<String, Project> modules = loader.loadModules( repository,
+                                                                 "master",
+                                                                 Arrays.asList( "module1",
+                                                                                "module3",
+                                                                                "notAModule" ) );
+
+        assertEquals( 2, modules.size() );
+        assertTrue( modules.containsKey( "module1" ) );
+        assertTrue( modules.containsKey( "module3" ) );
+        verify( projectService, times( 2 ) ).resolveProject( any( Path.class ) );
+    }
+
+    @Test
+    public void testLoadModulesIgnoresNamesThatAreNotModules() throws Exception {
+
+        addMyProjectToRepositoryRoot( new POM(),
+                                      new Metadata(),
+                                      "module1" );
+
+        final Map<String, Project> modules = loader.loadModules( repository,
+                                                                 "master",
+                                                                 Arrays.asList( "notAModule",
+                                                                                "myproject" ) );
+
+        assertTrue( modules.isEmpty() );
+        verify( projectService, never() ).resolveProject( any( Path.class ) );
+    }
+
+    @Test
+    public void testLoadModulesWithoutParentProject() throws Exception {
+        final Map<String, Project> modules = loader.loadModules( repository,
+                                                                 "master",
+                                                                 Collections.singletonList( "module1" ) );
+
+        assertTrue( modules.isEmpty() );
+        verify( projectService, never() ).resolveProject( any( Path.class ) );
+    }
+
     @Test
     public void testLoadManaged() throws Exception {
 
@@ -220,6 +281,12 @@ public class RepositoryStructureModelLoaderTest {
 
     }
 
+    private static ParallelExecutorManager executorManager( final ExecutorService executorService ) {
+        final ParallelExecutorManager executorManager = new ParallelExecutorManager();
+        executorManager.setExecutorService( executorService );
+        return executorManager;
+    }
+
     private void makeManaged( final Repository repository ) {
         final HashMap<String, Object> map = new HashMap<>();
         map.put( EnvironmentParameters.MANAGED, Boolean.TRUE );
@@ -17,26 +17,47 @@ package org.guvnor.inbox.backend.server;
 
 import com.thoughtworks.xstream.XStream;
 import org.guvnor.inbox.backend.server.security.InboxEntrySecurity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.uberfire.backend.server.UserServicesBackendImpl;
+import org.uberfire.commons.async.DescriptiveThreadFactory;
 import org.uberfire.io.IOService;
 import org.uberfire.java.nio.file.FileSystem;
 import org.uberfire.java.nio.file.Path;
 import org.uberfire.workbench.events.ResourceOpenedEvent;
 import org.uberfire.workbench.events.ResourceUpdatedEvent;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.event.Observes;
 import javax.inject.Inject;
 import javax.inject.Named;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import static org.uberfire.commons.validation.PortablePreconditions.checkNotNull;
 
+/**
+ * Inboxes are held in memory once read. Changes are coalesced and written to the config repository
+ * periodically, all in one batch, rather than once per event. The number of inboxes held in memory is bounded;
+ * inboxes with unwritten changes are kept until they have been written. Only the changes made on this node are
+ * written, on top of the inbox as last written, so changes made by other nodes of a cluster are not lost.
+ */
 @ApplicationScoped
 public class InboxBackendImpl implements InboxBackend {
 
+    private static final Logger log = LoggerFactory.getLogger( InboxBackendImpl.class );
+
     static final int MAX_RECENT_EDITED = 200;
 
     private static final String RECENT_EDITED_ID = "recentEdited";
@@ -44,12 +65,47 @@ public class InboxBackendImpl implements InboxBackend {
     private static final String INCOMING_ID = "incoming";
     private static final String INBOX = "inbox";
 
+    private static final long FLUSH_INTERVAL = Long.getLong( "org.guvnor.inbox.flush-interval",
+                                                             5000 );
+    private static final int MAX_CACHED_INBOXES = Math.max( 1,
+                                                            Integer.getInteger( "org.guvnor.inbox.max-cached",
+                                                                                1000 ) );
+
     private IOService ioService;
     private FileSystem bootstrapFS;
     private UserServicesBackendImpl userServicesBackend;
     private MailboxService mailboxService;
     private InboxEntrySecurity inboxEntrySecurity;
 
+    private final XStream xStream = createXStream();
+
+    //Inboxes recently used, keyed by user and box name
+    private final Map<String, Inbox> inboxes = new LinkedHashMap<String, Inbox>( 16,
+                                                                                 0.75f,
+                                                                                 true ) {
+        @Override
+        protected boolean removeEldestEntry( final Map.Entry<String, Inbox> eldest ) {
+            if ( size() <= MAX_CACHED_INBOXES ) {
+                return false;
+            }
+            //An inbox no longer held must not be changed, as it is read afresh by whoever needs it again; unless it
+            //has unwritten changes, in which case it remains the latest version until it has been written
+            final Inbox inbox = eldest.getValue();
+            synchronized ( inbox ) {
+                if ( !dirtyInboxes.containsKey( inbox.key ) ) {
+                    inbox.retired = true;
+                }
+            }
+            return true;
+        }
+    };
+
+    //Inboxes with changes not yet written
+    private final Map<String, Inbox> dirtyInboxes = new ConcurrentHashMap<String, Inbox>();
+
+    private final Object flushLock = new Object();
+    private ScheduledExecutorService flushScheduler;
+
     //Proxyable
     public InboxBackendImpl() {
     }
@@ -67,6 +123,33 @@ public class InboxBackendImpl implements InboxBackend {
         this.inboxEntrySecurity = inboxEntrySecurity;
     }
 
+    @PostConstruct
+    public void startFlushing() {
+        flushScheduler = Executors.newSingleThreadScheduledExecutor( new DescriptiveThreadFactory() );
+        flushScheduler.scheduleWithFixedDelay( new Runnable() {
+                                                   @Override
+                                                   public void run() {
+                                                       try {
+                                                           flush();
+                                                       } catch ( Exception e ) {
+                                                           log.error( "Unable to write inboxes.",
+                                                                      e );
+                                                       }
+                                                   }
+                                               },
+                                               FLUSH_INTERVAL,
+                                               FLUSH_INTERVAL,
+                                               TimeUnit.MILLISECONDS );
+    }
+
+    @PreDestroy
+    public void stopFlushing() {
+        if ( flushScheduler != null ) {
+            flushScheduler.shutdown();
+        }
+        flush();
+    }
+
     @Override
     public List<InboxEntry> loadRecentEdited( String userName ) {
         return readEntries( userName, RECENT_EDITED_ID );
@@ -80,24 +163,25 @@ public class InboxBackendImpl implements InboxBackend {
     @Override
     public List<InboxEntry> readEntries( String userName,
                                          String boxName ) {
-        final Path path = userServicesBackend.buildPath( userName, INBOX, boxName );
-
-        if ( ioService.exists( path ) ) {
-            final String xml = ioService.readAllString( path );
-            if ( !( xml == null || xml.equals( "" ) ) ) {
-                final List<InboxEntry> inboxEntries = getInboxEntries( xml );
-
-                return inboxEntrySecurity.secure( inboxEntries );
-            } else {
-                return new ArrayList<InboxEntry>();
+        List<InboxEntry> inboxEntries = null;
+        while ( inboxEntries == null ) {
+            final Inbox inbox = getInbox( userName,
+                                          boxName );
+            synchronized ( inbox ) {
+                if ( !inbox.retired ) {
+                    inboxEntries = new ArrayList<InboxEntry>( inbox.entries.values() );
+                }
             }
         }
+        if ( inboxEntries.isEmpty() ) {
+            return inboxEntries;
+        }
 
-        return new ArrayList<InboxEntry>();
+        return inboxEntrySecurity.secure( inboxEntries );
     }
 
     List<InboxEntry> getInboxEntries( String xml ) {
-        return ( List<InboxEntry> ) getXStream().fromXML( xml );
+        return ( List<InboxEntry> ) xStream.fromXML( xml );
     }
 
     @Override
@@ -115,25 +199,128 @@ public class InboxBackendImpl implements InboxBackend {
     public void recordOpeningEvent( @Observes final ResourceOpenedEvent event ) {
         checkNotNull( "event", event );
         final org.uberfire.backend.vfs.Path resourcePath = event.getPath();
-        try {
-            ioService.startBatch( bootstrapFS.getRootDirectories().iterator().next().getFileSystem() );
-            recordOpeningEvent( resourcePath.toURI(), resourcePath.getFileName().toString(),
-                                event.getSessionInfo().getIdentity().getIdentifier() );
-        } finally {
-            ioService.endBatch();
-        }
+        recordOpeningEvent( resourcePath.toURI(), resourcePath.getFileName().toString(),
+                            event.getSessionInfo().getIdentity().getIdentifier() );
     }
 
     public void recordUserEditEvent( @Observes final ResourceUpdatedEvent event ) {
         checkNotNull( "event", event );
+        recordUserEditEvent( event.getPath().toURI(), event.getPath().getFileName(),
+                             event.getSessionInfo().getIdentity().getIdentifier() );
+    }
+
+    /**
+     * Write all inboxes with changes to the config repository, in a single batch.
+     */
+    public void flush() {
+        synchronized ( flushLock ) {
+            if ( dirtyInboxes.isEmpty() ) {
+                return;
+            }
+            try {
+                ioService.startBatch( bootstrapFS.getRootDirectories().iterator().next().getFileSystem() );
+                for ( Inbox inbox : new ArrayList<Inbox>( dirtyInboxes.values() ) ) {
+                    try {
+                        write( inbox );
+                    } catch ( RuntimeException re ) {
+                        log.error( "Unable to write inbox '" + inbox.key + "'. It will be written again later.",
+                                   re );
+                    }
+                }
+            } finally {
+                ioService.endBatch();
+            }
+        }
+    }
 
+    /**
+     * Apply the changes made to an inbox on this node to the inbox as last written, possibly by another node.
+     * The inbox remains dirty until the changes have been written.
+     */
+    private void write( final Inbox inbox ) {
+        final Map<String, InboxEntry> addedEntries;
+        final Set<String> removedEntries;
+        synchronized ( inbox ) {
+            addedEntries = new LinkedHashMap<String, InboxEntry>( inbox.addedEntries );
+            removedEntries = new HashSet<String>( inbox.removedEntries );
+            inbox.addedEntries.clear();
+            inbox.removedEntries.clear();
+        }
         try {
-            ioService.startBatch( bootstrapFS.getRootDirectories().iterator().next().getFileSystem() );
-            recordUserEditEvent( event.getPath().toURI(), event.getPath().getFileName(),
-                                 event.getSessionInfo().getIdentity().getIdentifier() );
-        } finally {
-            ioService.endBatch();
+            final LinkedHashMap<String, InboxEntry> entries = new LinkedHashMap<String, InboxEntry>();
+            for ( InboxEntry entry : loadEntries( inbox.userName,
+                                                  inbox.boxName ) ) {
+                entries.put( entry.getItemPath(),
+                             entry );
+            }
+            applyChanges( entries,
+                          addedEntries,
+                          removedEntries );
+            ioService.write( userServicesBackend.buildPath( inbox.userName, INBOX, inbox.boxName ),
+                             xStream.toXML( new ArrayList<InboxEntry>( entries.values() ) ) );
+
+            synchronized ( inboxes ) {
+                synchronized ( inbox ) {
+                    //Changes made whilst writing are kept for the next flush
+                    applyChanges( entries,
+                                  inbox.addedEntries,
+                                  inbox.removedEntries );
+                    inbox.entries.clear();
+                    inbox.entries.putAll( entries );
+                    if ( inbox.addedEntries.isEmpty() && inbox.removedEntries.isEmpty() ) {
+                        dirtyInboxes.remove( inbox.key );
+                        inbox.retired = !inboxes.containsKey( inbox.key );
+                    }
+                }
+            }
+
+        } catch ( RuntimeException re ) {
+            //Keep the changes, so they are written next time. Changes made whilst writing take precedence.
+            synchronized ( inbox ) {
+                final Map<String, InboxEntry> newerEntries = new LinkedHashMap<String, InboxEntry>( inbox.addedEntries );
+                inbox.addedEntries.clear();
+                for ( Map.Entry<String, InboxEntry> e : addedEntries.entrySet() ) {
+                    if ( !newerEntries.containsKey( e.getKey() ) && !inbox.removedEntries.contains( e.getKey() ) ) {
+                        inbox.addedEntries.put( e.getKey(),
+                                                e.getValue() );
+                    }
+                }
+                inbox.addedEntries.putAll( newerEntries );
+                for ( String itemPath : removedEntries ) {
+                    if ( !newerEntries.containsKey( itemPath ) ) {
+                        inbox.removedEntries.add( itemPath );
+                    }
+                }
+            }
+            throw re;
+        }
+    }
+
+    private void applyChanges( final LinkedHashMap<String, InboxEntry> entries,
+                               final Map<String, InboxEntry> addedEntries,
+                               final Set<String> removedEntries ) {
+        for ( String itemPath : removedEntries ) {
+            entries.remove( itemPath );
+        }
+        for ( InboxEntry entry : addedEntries.values() ) {
+            putEntry( entries,
+                      entry );
+        }
+    }
+
+    /**
+     * Any existing entry for the item is replaced, and the new entry becomes the most recent
+     */
+    private void putEntry( final LinkedHashMap<String, InboxEntry> entries,
+                           final InboxEntry entry ) {
+        entries.remove( entry.getItemPath() );
+        if ( entries.size() >= MAX_RECENT_EDITED ) {
+            final Iterator<InboxEntry> oldest = entries.values().iterator();
+            oldest.next();
+            oldest.remove();
         }
+        entries.put( entry.getItemPath(),
+                     entry );
     }
 
     /**
@@ -144,9 +331,20 @@ public class InboxBackendImpl implements InboxBackend {
                                      final String itemName,
                                      final String userName ) {
         addToRecentOpened( itemPath, itemName, userName );
-        List<InboxEntry> unreadIncoming = removeAnyExisting( itemPath,
-                                                             loadIncoming( userName ) );
-        writeEntries( userName, INCOMING_ID, unreadIncoming );
+        while ( true ) {
+            final Inbox incoming = getInbox( userName, INCOMING_ID );
+            synchronized ( incoming ) {
+                if ( incoming.retired ) {
+                    continue;
+                }
+                if ( incoming.entries.remove( itemPath ) != null ) {
+                    incoming.addedEntries.remove( itemPath );
+                    incoming.removedEntries.add( itemPath );
+                    dirtyInboxes.put( incoming.key, incoming );
+                }
+                return;
+            }
+        }
     }
 
     /**
@@ -194,51 +392,102 @@ public class InboxBackendImpl implements InboxBackend {
                              String userName ) {
         assert boxName.equals( RECENT_EDITED_ID ) || boxName.equals( RECENT_VIEWED_ID ) || boxName
                 .equals( INCOMING_ID );
-        List<InboxEntry> entries = removeAnyExisting( itemPath,
-                                                      readEntries( userName, boxName ) );
+        final InboxEntry entry = new InboxEntry( itemPath,
+                                                 note,
+                                                 userFrom );
+        while ( true ) {
+            final Inbox inbox = getInbox( userName, boxName );
+            synchronized ( inbox ) {
+                if ( inbox.retired ) {
+                    continue;
+                }
+                putEntry( inbox.entries,
+                          entry );
+                putEntry( inbox.addedEntries,
+                          entry );
+                inbox.removedEntries.remove( itemPath );
+                dirtyInboxes.put( inbox.key, inbox );
+                return;
+            }
+        }
+    }
 
-        if ( entries.size() >= MAX_RECENT_EDITED ) {
-            entries.remove( 0 );
-            entries.add( new InboxEntry( itemPath,
-                                         note,
-                                         userFrom ) );
-        } else {
-            entries.add( new InboxEntry( itemPath,
-                                         note,
-                                         userFrom ) );
-        }
-
-        writeEntries( userName, boxName, entries );
-    }
-
-    private List<InboxEntry> removeAnyExisting( final String itemPath,
-                                                final List<InboxEntry> inboxEntries ) {
-        Iterator<InboxEntry> it = inboxEntries.iterator();
-        while ( it.hasNext() ) {
-            InboxEntry e = it.next();
-            if ( e.getItemPath().equals( itemPath ) ) {
-                it.remove();
-                return inboxEntries;
+    private Inbox getInbox( final String userName,
+                            final String boxName ) {
+        final String key = userName + ":" + boxName;
+        Inbox inbox;
+        synchronized ( inboxes ) {
+            inbox = inboxes.get( key );
+            if ( inbox == null ) {
+                //An inbox evicted from memory before its changes were written is still the latest version
+                inbox = dirtyInboxes.get( key );
+                if ( inbox == null ) {
+                    inbox = new Inbox( key,
+                                       userName,
+                                       boxName );
+                }
+                inboxes.put( key,
+                             inbox );
             }
         }
-        return inboxEntries;
+        synchronized ( inbox ) {
+            if ( !inbox.loaded ) {
+                for ( InboxEntry entry : loadEntries( userName,
+                                                      boxName ) ) {
+                    inbox.entries.put( entry.getItemPath(),
+                                       entry );
+                }
+                inbox.loaded = true;
+            }
+        }
+        return inbox;
     }
 
-    private void writeEntries( final String userName,
-                               final String boxName,
-                               final List<InboxEntry> entries ) {
+    private List<InboxEntry> loadEntries( final String userName,
+                                          final String boxName ) {
         final Path path = userServicesBackend.buildPath( userName, INBOX, boxName );
 
-        String entry = getXStream().toXML( entries );
+        if ( ioService.exists( path ) ) {
+            final String xml = ioService.readAllString( path );
+            if ( !( xml == null || xml.equals( "" ) ) ) {
+                return getInboxEntries( xml );
+            }
+        }
 
-        ioService.write( path, entry );
+        return new ArrayList<InboxEntry>();
     }
 
-    private XStream getXStream() {
+    private static XStream createXStream() {
         XStream xs = new XStream();
         xs.alias( "inbox-entries", List.class );
         xs.alias( "entry", InboxEntry.class );
         return xs;
     }
 
+    private static class Inbox {
+
+        private final String key;
+        private final String userName;
+        private final String boxName;
+
+        //Entries keyed by item path, oldest first
+        private final LinkedHashMap<String, InboxEntry> entries = new LinkedHashMap<String, InboxEntry>();
+        private boolean loaded = false;
+
+        //Changes not yet written: the entries added, oldest first, and the item paths of the entries removed
+        private final LinkedHashMap<String, InboxEntry> addedEntries = new LinkedHashMap<String, InboxEntry>();
+        private final Set<String> removedEntries = new HashSet<String>();
+
+        //Set once the inbox is no longer held; it is then read afresh by whoever needs it
+        private boolean retired = false;
+
+        private Inbox( final String key,
+                       final String userName,
+                       final String boxName ) {
+            this.key = key;
+            this.userName = userName;
+            this.boxName = boxName;
+        }
+    }
+
 }
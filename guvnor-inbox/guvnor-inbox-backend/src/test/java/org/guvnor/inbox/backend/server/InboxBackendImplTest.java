@@ -20,6 +20,8 @@ import org.guvnor.inbox.backend.server.security.InboxEntrySecurity;
 import org.jboss.errai.security.shared.api.identity.User;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.uberfire.backend.server.UserServicesBackendImpl;
 import org.uberfire.backend.vfs.Path;
 import org.uberfire.io.IOService;
@@ -32,8 +34,11 @@ import org.uberfire.workbench.events.ResourceUpdatedEvent;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
 public class InboxBackendImplTest {
@@ -89,16 +94,39 @@ public class InboxBackendImplTest {
 
         inboxBackend.recordOpeningEvent( new ResourceOpenedEvent( resourcePath, sessionInfo ) );
 
+        inboxBackend.recordUserEditEvent( new ResourceUpdatedEvent( resourcePath, "message", sessionInfo ) );
+
+        //Changes are only written when flushed
+        verify( ioService, never() ).startBatch( mockedFSId );
+
+        inboxBackend.flush();
+
         verify( ioService, times( 1 ) ).startBatch( mockedFSId );
 
+        verify( ioService, times( 3 ) ).write( any( org.uberfire.java.nio.file.Path.class ), anyString() );
+
         verify( ioService, times( 1 ) ).endBatch();
 
-        inboxBackend.recordUserEditEvent( new ResourceUpdatedEvent( resourcePath, "message", sessionInfo ) );
+        inboxBackend.flush();
 
-        verify( ioService, times( 2 ) ).startBatch( mockedFSId );
+        verify( ioService, times( 1 ) ).startBatch( mockedFSId );
+    }
 
-        verify( ioService, times( 2 ) ).endBatch();
+    @Test
+    public void inboxesAreOnlyReadOnce() {
+        final org.uberfire.java.nio.file.Path path = mock( org.uberfire.java.nio.file.Path.class );
+        when( userServicesBackend.buildPath( "user1", "inbox", "recentViewed" ) ).thenReturn( path );
 
+        inboxBackend = new InboxBackendImpl( ioService, systemFS, userServicesBackend, mailboxService, securitySpy );
+
+        inboxBackend.recordOpeningEvent( new ResourceOpenedEvent( resourcePath, sessionInfo ) );
+        inboxBackend.recordOpeningEvent( new ResourceOpenedEvent( resourcePath, sessionInfo ) );
+
+        final List<InboxEntry> entries = inboxBackend.readEntries( "user1", "recentViewed" );
+
+        assertEquals( 1, entries.size() );
+        assertEquals( "jgit://repo/my-file.txt", entries.get( 0 ).getItemPath() );
+        verify( ioService, times( 1 ) ).exists( path );
     }
 
     @Test
@@ -123,4 +151,84 @@ public class InboxBackendImplTest {
 
         verify( securitySpy ).secure( entries );
     }
+
+    @Test
+    public void changesOfOtherNodesAreKept() {
+        final Map<org.uberfire.java.nio.file.Path, String> files = sharedFiles();
+        final org.uberfire.java.nio.file.Path path = mock( org.uberfire.java.nio.file.Path.class );
+        when( userServicesBackend.buildPath( "user1", "inbox", "incoming" ) ).thenReturn( path );
+
+        final InboxBackendImpl node1 = new InboxBackendImpl( ioService, systemFS, userServicesBackend, mailboxService, securitySpy );
+        final InboxBackendImpl node2 = new InboxBackendImpl( ioService, systemFS, userServicesBackend, mailboxService, securitySpy );
+
+        node1.addToIncoming( "path1", "note1", "user2", "user1" );
+        node2.addToIncoming( "path2", "note2", "user3", "user1" );
+        node1.flush();
+        node2.flush();
+
+        final List<InboxEntry> entries = node1.getInboxEntries( files.get( path ) );
+        assertEquals( 2, entries.size() );
+        assertEquals( "path1", entries.get( 0 ).getItemPath() );
+        assertEquals( "path2", entries.get( 1 ).getItemPath() );
+        assertEquals( 2, node2.loadIncoming( "user1" ).size() );
+    }
+
+    @Test
+    public void failedWritesAreRetried() {
+        final Map<org.uberfire.java.nio.file.Path, String> files = sharedFiles();
+        final org.uberfire.java.nio.file.Path path1 = mock( org.uberfire.java.nio.file.Path.class );
+        final org.uberfire.java.nio.file.Path path2 = mock( org.uberfire.java.nio.file.Path.class );
+        when( userServicesBackend.buildPath( "user1", "inbox", "incoming" ) ).thenReturn( path1 );
+        when( userServicesBackend.buildPath( "user2", "inbox", "incoming" ) ).thenReturn( path2 );
+        doThrow( new RuntimeException( "failure" ) ).doAnswer( store( files ) ).when( ioService ).write( eq( path1 ), anyString() );
+
+        inboxBackend = new InboxBackendImpl( ioService, systemFS, userServicesBackend, mailboxService, securitySpy );
+
+        inboxBackend.addToIncoming( "path1", "note1", "user3", "user1" );
+        inboxBackend.addToIncoming( "path2", "note2", "user3", "user2" );
+        inboxBackend.flush();
+
+        //The other inboxes are still written
+        assertFalse( files.containsKey( path1 ) );
+        assertEquals( 1, inboxBackend.getInboxEntries( files.get( path2 ) ).size() );
+
+        inboxBackend.addToIncoming( "path3", "note3", "user3", "user1" );
+        inboxBackend.flush();
+
+        final List<InboxEntry> entries = inboxBackend.getInboxEntries( files.get( path1 ) );
+        assertEquals( 2, entries.size() );
+        assertEquals( "path1", entries.get( 0 ).getItemPath() );
+        assertEquals( "path3", entries.get( 1 ).getItemPath() );
+    }
+
+    //Files shared by all nodes of a cluster
+    private Map<org.uberfire.java.nio.file.Path, String> sharedFiles() {
+        final Map<org.uberfire.java.nio.file.Path, String> files = new HashMap<org.uberfire.java.nio.file.Path, String>();
+        when( ioService.exists( any( org.uberfire.java.nio.file.Path.class ) ) ).thenAnswer( new Answer<Boolean>() {
+            @Override
+            public Boolean answer( final InvocationOnMock invocation ) {
+                return files.containsKey( invocation.getArguments()[ 0 ] );
+            }
+        } );
+        when( ioService.readAllString( any( org.uberfire.java.nio.file.Path.class ) ) ).thenAnswer( new Answer<String>() {
+            @Override
+            public String answer( final InvocationOnMock invocation ) {
+                return files.get( invocation.getArguments()[ 0 ] );
+            }
+        } );
+        when( ioService.write( any( org.uberfire.java.nio.file.Path.class ), anyString() ) ).thenAnswer( store( files ) );
+        return files;
+    }
+
+    private Answer<org.uberfire.java.nio.file.Path> store( final Map<org.uberfire.java.nio.file.Path, String> files ) {
+        return new Answer<org.uberfire.java.nio.file.Path>() {
+            @Override
+            public org.uberfire.java.nio.file.Path answer( final InvocationOnMock invocation ) {
+                final org.uberfire.java.nio.file.Path path = (org.uberfire.java.nio.file.Path) invocation.getArguments()[ 0 ];
+                files.put( path,
+                           (String) invocation.getArguments()[ 1 ] );
+                return path;
+            }
+        };
+    }
 }
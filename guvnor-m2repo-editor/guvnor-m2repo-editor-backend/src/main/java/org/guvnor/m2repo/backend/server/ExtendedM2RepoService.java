@@ -33,6 +33,15 @@ public interface ExtendedM2RepoService extends M2RepoService {
     void deployJar( InputStream is,
                     GAV gav );
 
+    /**
+     * Deploy JAR, written to a file, to all repositories. See {@link #deployJar(InputStream, GAV)}.
+     * The JAR is finished, but the file is not deleted.
+     * @param jar JAR written to a file
+     * @param gav GAV representing the JAR
+     */
+    void deployJar( StreamedJar jar,
+                    GAV gav );
+
     /**
      * Convenience method for unit tests - to avoid deploying to additional (possibly external) repositories
      * @param is InputStream holding JAR
@@ -31,14 +31,19 @@ import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Enumeration;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 
 import org.apache.commons.io.FileUtils;
@@ -54,7 +59,6 @@ import org.apache.maven.project.MavenProject;
 import org.apache.maven.project.ProjectBuildingException;
 import org.apache.maven.settings.Server;
 import org.apache.maven.settings.Settings;
-import org.codehaus.plexus.util.IOUtil;
 import org.drools.core.io.impl.ReaderInputStream;
 import org.eclipse.aether.artifact.Artifact;
 import org.eclipse.aether.artifact.DefaultArtifact;
@@ -77,6 +81,7 @@ import org.kie.scanner.embedder.MavenProjectLoader;
 import org.kie.scanner.embedder.MavenSettings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.uberfire.commons.async.DescriptiveThreadFactory;
 
 import static org.guvnor.m2repo.utils.FileNameUtilities.*;
 
@@ -90,11 +95,30 @@ public class GuvnorM2Repository {
 
     private static final int BUFFER_SIZE = 1024;
 
+    //Interval, in milliseconds, between scans for artifacts added to or removed from the repository other than by deployment
+    private static final long INDEX_RECONCILE_INTERVAL = Long.getLong( "org.guvnor.m2repo.index.reconcile-interval",
+                                                                       300000 );
+
+    //Built by the scheduler's thread when first used; null until then
+    private volatile M2ArtifactIndex artifactIndex;
+    private ScheduledExecutorService indexScheduler;
+
     @PostConstruct
     public void init() {
         setM2Repos();
     }
 
+    @PreDestroy
+    public synchronized void destroy() {
+        if ( indexScheduler != null ) {
+            indexScheduler.shutdown();
+        }
+        final M2ArtifactIndex index = artifactIndex;
+        if ( index != null ) {
+            index.save();
+        }
+    }
+
     private void setM2Repos() {
         final String meReposDir = System.getProperty( "org.guvnor.m2repo.dir" );
 
@@ -131,61 +155,65 @@ public class GuvnorM2Repository {
     public void deployArtifact( final InputStream jarStream,
                                 final GAV gav,
                                 final boolean includeAdditionalRepositories ) {
-        //Write JAR to temporary file for deployment
-        File jarFile = new File( System.getProperty( "java.io.tmpdir" ),
-                                 toFileName( gav,
-                                             "jar" ) );
+        //Write JAR to temporary file for deployment, reading its pom.xml and pom.properties as it is written
+        final File jarFile = new File( System.getProperty( "java.io.tmpdir" ),
+                                       toFileName( gav,
+                                                   "jar" ) );
 
         try {
 
+            final StreamedJar jar;
             try {
-                if ( !jarFile.exists() ) {
-                    jarFile.getParentFile().mkdirs();
-                    jarFile.createNewFile();
-                }
-                FileOutputStream fos = new FileOutputStream( jarFile );
-
-                final byte[] buf = new byte[ BUFFER_SIZE ];
-                int byteRead = 0;
-                while ( ( byteRead = jarStream.read( buf ) ) != -1 ) {
-                    fos.write( buf, 0, byteRead );
-                }
-                fos.flush();
-                fos.close();
+                jarFile.getParentFile().mkdirs();
+                jar = StreamedJar.write( jarStream,
+                                         jarFile );
             } catch ( IOException e ) {
                 throw new RuntimeException( e );
             }
 
-            //Write pom.xml to JAR if it doesn't already exist
-            String pomXML = loadPomFromJar( new File( jarFile.getPath() ) );
+            deployArtifact( jar,
+                            gav,
+                            includeAdditionalRepositories );
+
+        } finally {
+            deleteTemporaryFile( jarFile );
+        }
+    }
+
+    /**
+     * Deploy a JAR that has been written to a file. The JAR is finished, adding pom.xml and pom.properties
+     * if they are missing, but the file is not deleted.
+     * @param jar The JAR
+     * @param gav GAV representing the JAR
+     * @param includeAdditionalRepositories true to also deploy to repositories configured by the JAR's distribution management
+     */
+    public void deployArtifact( final StreamedJar jar,
+                                final GAV gav,
+                                final boolean includeAdditionalRepositories ) {
+        //Write pom.xml and pom.properties to the end of the JAR if they don't already exist
+        String pomXML = jar.getPomXML();
+        try {
+            final Map<String, String> missingEntries = new LinkedHashMap<String, String>();
             if ( pomXML == null ) {
                 pomXML = generatePOM( gav );
-                jarFile = appendPOMToJar( pomXML,
-                                          jarFile.getPath(),
-                                          gav );
+                missingEntries.put( getPomXmlPath( gav ),
+                                    pomXML );
             }
-
-            //Write pom.properties to JAR if it doesn't already exist
-            String pomProperties = loadGAVFromJarInternal( new File( jarFile.getPath() ) );
-            if ( pomProperties == null ) {
-                pomProperties = generatePomProperties( gav );
-                jarFile = appendPomPropertiesToJar( pomProperties,
-                                                    jarFile.getPath(),
-                                                    gav );
+            if ( jar.getPomProperties() == null ) {
+                missingEntries.put( getPomPropertiesPath( gav ),
+                                    generatePomProperties( gav ) );
             }
+            jar.finish( missingEntries );
+        } catch ( IOException e ) {
+            throw new RuntimeException( e );
+        }
 
-            deployArtifact( gav,
-                            pomXML,
-                            jarFile,
-                            includeAdditionalRepositories );
+        deployArtifact( gav,
+                        pomXML,
+                        jar,
+                        includeAdditionalRepositories );
 
-        } finally {
-            try {
-                jarFile.delete();
-            } catch ( Exception e ) {
-                log.warn( "Unable to remove temporary file '" + jarFile.getAbsolutePath() + "'" );
-            }
-        }
+        updateArtifactIndex( gav );
     }
 
     public void deployPom( final InputStream pomStream,
@@ -218,6 +246,8 @@ public class GuvnorM2Repository {
             deployPom( gav,
                        pomFile );
 
+            updateArtifactIndex( gav );
+
         } finally {
             try {
                 pomFile.delete();
@@ -284,6 +314,8 @@ public class GuvnorM2Repository {
                 throw new RuntimeException( e );
             }
 
+            updateArtifactIndex( gav );
+
         } finally {
             try {
                 pomXMLFile.delete();
@@ -295,7 +327,7 @@ public class GuvnorM2Repository {
 
     private void deployArtifact( final GAV gav,
                                  final String pomXML,
-                                 final File jarFile,
+                                 final StreamedJar jar,
                                  final boolean includeAdditionalRepositories ) {
         //Write pom.xml to temporary file for deployment
         final File pomXMLFile = new File( System.getProperty( "java.io.tmpdir" ),
@@ -325,7 +357,7 @@ public class GuvnorM2Repository {
                                                         gav.getArtifactId(),
                                                         "jar",
                                                         gav.getVersion() );
-            jarArtifact = jarArtifact.setFile( jarFile );
+            jarArtifact = jarArtifact.setFile( jar.getFile() );
 
             //pom.xml Artifact
             Artifact pomXMLArtifact = new SubArtifact( jarArtifact,
@@ -346,19 +378,22 @@ public class GuvnorM2Repository {
                 throw new RuntimeException( e );
             }
 
-            //Deploy into Workbench's default remote repository
-            try {
-                final DeployRequest deployRequest = new DeployRequest();
-                deployRequest
-                        .addArtifact( jarArtifact )
-                        .addArtifact( pomXMLArtifact )
-                        .setRepository( getGuvnorM2Repository() );
+            //Deploy into Workbench's default remote repository, unless the same release is already there
+            if ( !isDeployed( gav,
+                              jar.getSha1() ) ) {
+                try {
+                    final DeployRequest deployRequest = new DeployRequest();
+                    deployRequest
+                            .addArtifact( jarArtifact )
+                            .addArtifact( pomXMLArtifact )
+                            .setRepository( getGuvnorM2Repository() );
 
-                Aether.getAether().getSystem().deploy( Aether.getAether().getSession(),
-                                                       deployRequest );
+                    Aether.getAether().getSystem().deploy( Aether.getAether().getSession(),
+                                                           deployRequest );
 
-            } catch ( DeploymentException e ) {
-                throw new RuntimeException( e );
+                } catch ( DeploymentException e ) {
+                    throw new RuntimeException( e );
+                }
             }
 
             //Only deploy to additional repositories if required. This flag is principally for Unit Tests
@@ -450,6 +485,32 @@ public class GuvnorM2Repository {
         }
     }
 
+    //Releases are immutable, so a release JAR need not be deployed again if its checksum is unchanged
+    private boolean isDeployed( final GAV gav,
+                                final String sha1 ) {
+        if ( gav.getVersion().endsWith( "-SNAPSHOT" ) ) {
+            return false;
+        }
+        final File checksumFile = new File( M2_REPO_DIR,
+                                            gav.getGroupId().replace( '.',
+                                                                      File.separatorChar ) + File.separator + gav.getArtifactId() + File.separator + gav.getVersion() + File.separator + gav.getArtifactId() + "-" + gav.getVersion() + ".jar.sha1" );
+        if ( !checksumFile.isFile() ) {
+            return false;
+        }
+        try {
+            return FileUtils.readFileToString( checksumFile,
+                                               "UTF-8" ).trim().toLowerCase().startsWith( sha1 );
+        } catch ( IOException e ) {
+            return false;
+        }
+    }
+
+    private void deleteTemporaryFile( final File file ) {
+        if ( file.exists() && !file.delete() ) {
+            log.warn( "Unable to remove temporary file '" + file.getAbsolutePath() + "'" );
+        }
+    }
+
     private DistributionManagement getDistributionManagement( final String pomXML,
                                                               final MavenEmbedder embedder ) {
         final InputStream is = new ByteArrayInputStream( pomXML.getBytes( Charset.forName( "UTF-8" ) ) );
@@ -581,9 +642,126 @@ public class GuvnorM2Repository {
                                     DirectoryFileFilter.DIRECTORY );
     }
 
+    /**
+     * Finds a page of artifacts within the repository, using the artifact index rather than walking the repository.
+     * @param filters filter to apply to the artifact file names, as {@link #listFiles(String, List)}.
+     * @param fileFormats file formats of the artifacts. Null for jar, kjar and pom. See {@link M2ArtifactIndex#isIndexed(Collection)}.
+     * @param sortColumn one of the JarListPageRequest column names.
+     * @param ascending sort order.
+     * @param startIndex index of the first matching artifact to return.
+     * @param pageSize maximum number of artifacts to return. Null for all.
+     * @return the page of artifacts and the total number of matching artifacts, or null if the index is not built yet
+     */
+    public M2ArtifactIndex.Page listArtifacts( final String filters,
+                                               final List<String> fileFormats,
+                                               final String sortColumn,
+                                               final boolean ascending,
+                                               final int startIndex,
+                                               final Integer pageSize ) {
+        final M2ArtifactIndex index = getArtifactIndex();
+        if ( index == null ) {
+            return null;
+        }
+        return index.query( filters,
+                            fileFormats,
+                            sortColumn,
+                            ascending,
+                            startIndex,
+                            pageSize );
+    }
+
+    /**
+     * Updates the artifact index with a file written to the repository other than by deployment.
+     * @param file the file within the repository
+     */
+    public void updateArtifactIndex( final File file ) {
+        final M2ArtifactIndex index = artifactIndex;
+        if ( index == null ) {
+            return;
+        }
+        index.reconcileFile( file );
+        saveArtifactIndex( index );
+    }
+
+    /**
+     * @return the artifact index, or null until it has been built. The index is built by the scheduler's thread,
+     * the first time it is requested, so callers are not blocked by a scan of the whole repository.
+     */
+    M2ArtifactIndex getArtifactIndex() {
+        final M2ArtifactIndex index = artifactIndex;
+        if ( index == null ) {
+            scheduleArtifactIndex();
+        }
+        return index;
+    }
+
+    private synchronized void scheduleArtifactIndex() {
+        if ( indexScheduler != null ) {
+            return;
+        }
+        final M2ArtifactIndex index = new M2ArtifactIndex( new File( M2_REPO_DIR ) );
+        indexScheduler = Executors.newSingleThreadScheduledExecutor( new DescriptiveThreadFactory() );
+        indexScheduler.scheduleWithFixedDelay( new Runnable() {
+                                                   @Override
+                                                   public void run() {
+                                                       try {
+                                                           if ( artifactIndex == null ) {
+                                                               index.load();
+                                                               artifactIndex = index;
+                                                           }
+                                                           //A saved index may be out of date, and artifacts deployed while the
+                                                           //index was built are not in it, so the repository is scanned once published
+                                                           index.reconcile( new File( M2_REPO_DIR ) );
+                                                           index.save();
+                                                       } catch ( Exception e ) {
+                                                           log.error( "Unable to update the artifact index.",
+                                                                      e );
+                                                       }
+                                                   }
+                                               },
+                                               0,
+                                               INDEX_RECONCILE_INTERVAL,
+                                               TimeUnit.MILLISECONDS );
+    }
+
+    private void updateArtifactIndex( final GAV gav ) {
+        //Until the index is built deployments are found by the scan made once it is published
+        final M2ArtifactIndex index = artifactIndex;
+        if ( index == null ) {
+            return;
+        }
+        //Re-scan the version's folder, as SNAPSHOT artifacts are deployed with time-stamped file names
+        index.reconcile( new File( M2_REPO_DIR,
+                                   gav.getGroupId().replace( '.',
+                                                             File.separatorChar ) + File.separator + gav.getArtifactId() + File.separator + gav.getVersion() ) );
+        saveArtifactIndex( index );
+    }
+
+    private synchronized void saveArtifactIndex( final M2ArtifactIndex index ) {
+        if ( indexScheduler == null || indexScheduler.isShutdown() ) {
+            return;
+        }
+        //Saves are made by the scheduler's thread; a save finding the index unchanged does nothing
+        indexScheduler.execute( new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    index.save();
+                } catch ( Exception e ) {
+                    log.error( "Unable to save the artifact index.",
+                               e );
+                }
+            }
+        } );
+    }
+
     public static String getPomText( final String path ) {
-        final File file = new File( M2_REPO_DIR,
-                                    path );
+        return loadPomText( new File( M2_REPO_DIR,
+                                      path ) );
+    }
+
+    static String loadPomText( final File file ) {
+        final String path = file.getName();
         if ( isJar( path ) || isKJar( path ) ) {
             return loadPomFromJar( file );
 
@@ -785,90 +963,6 @@ public class GuvnorM2Repository {
         throw new FileNotFoundException( "Could not find '" + prefix + "/*/" + suffix + "' in the jar." );
     }
 
-    private File appendPOMToJar( final String pom,
-                                 final String jarPath,
-                                 final GAV gav ) {
-        File originalJarFile = new File( jarPath );
-        File appendedJarFile = new File( jarPath + ".tmp" );
-
-        try {
-            ZipFile war = new ZipFile( originalJarFile );
-
-            ZipOutputStream append = new ZipOutputStream( new FileOutputStream( appendedJarFile ) );
-
-            // first, copy contents from existing war
-            Enumeration<? extends ZipEntry> entries = war.entries();
-            while ( entries.hasMoreElements() ) {
-                ZipEntry e = entries.nextElement();
-                append.putNextEntry( e );
-                if ( !e.isDirectory() ) {
-                    IOUtil.copy( war.getInputStream( e ),
-                                 append );
-                }
-                append.closeEntry();
-            }
-
-            // append pom.xml
-            ZipEntry e = new ZipEntry( getPomXmlPath( gav ) );
-            append.putNextEntry( e );
-            append.write( pom.getBytes() );
-            append.closeEntry();
-
-            // close
-            war.close();
-            append.close();
-        } catch ( ZipException e ) {
-            log.error( e.getMessage() );
-        } catch ( IOException e ) {
-            log.error( e.getMessage() );
-        }
-
-        return appendedJarFile;
-    }
-
-    private File appendPomPropertiesToJar( final String pomProperties,
-                                           final String jarPath,
-                                           final GAV gav ) {
-        File originalJarFile = new File( jarPath );
-        File appendedJarFile = new File( jarPath + ".tmp" );
-
-        try {
-            ZipFile war = new ZipFile( originalJarFile );
-
-            ZipOutputStream append = new ZipOutputStream( new FileOutputStream( appendedJarFile ) );
-
-            // first, copy contents from existing war
-            Enumeration<? extends ZipEntry> entries = war.entries();
-            while ( entries.hasMoreElements() ) {
-                ZipEntry e = entries.nextElement();
-                append.putNextEntry( e );
-                if ( !e.isDirectory() ) {
-                    IOUtil.copy( war.getInputStream( e ),
-                                 append );
-                }
-                append.closeEntry();
-            }
-
-            // append pom.properties
-            ZipEntry e = new ZipEntry( getPomPropertiesPath( gav ) );
-            append.putNextEntry( e );
-            append.write( pomProperties.getBytes() );
-            append.closeEntry();
-
-            // close
-            war.close();
-            append.close();
-        } catch ( ZipException e ) {
-            log.error( e.getMessage() );
-        } catch ( IOException e ) {
-            log.error( e.getMessage() );
-        }
-
-        //originalJarFile.delete();
-        //appendedJarFile.renameTo(originalJarFile);
-        return appendedJarFile;
-    }
-
     protected String toFileName( final GAV gav,
                                  final String fileName ) {
         return gav.getGroupId() + "-" + gav.getArtifactId() + "-" + gav.getVersion() + "-" + Math.random() + "." + fileName;
@@ -0,0 +1,571 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.m2repo.backend.server;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOCase;
+import org.drools.compiler.kproject.xml.MinimalPomParser;
+import org.drools.compiler.kproject.xml.PomModel;
+import org.guvnor.common.services.project.model.GAV;
+import org.guvnor.m2repo.model.JarListPageRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent index of the artifacts (jar, kjar and pom files) held in the Guvnor M2 repository, so artifacts
+ * can be listed without walking the repository and opening every artifact to read its GAV. Each entry holds
+ * the artifact's path, relative to the repository root, its GAV, size and last modified time.
+ * Folders are re-scanned when artifacts are deployed to them, and the whole repository is reconciled in the
+ * background; only files whose size or last modified time has changed are opened again. The index is saved
+ * to a file in the repository root whenever it has changed.
+ */
+public class M2ArtifactIndex {
+
+    private static final Logger log = LoggerFactory.getLogger( M2ArtifactIndex.class );
+
+    public static final String INDEX_FILE_NAME = ".artifact-index";
+
+    //File formats held in the index; queries for any other format cannot be answered from the index
+    public static final Set<String> INDEXED_FORMATS = Collections.unmodifiableSet( new HashSet<String>( Arrays.asList( "jar",
+                                                                                                                       "kjar",
+                                                                                                                       "pom" ) ) );
+
+    private static final String INDEX_HEADER = "#guvnor-m2-artifact-index:1";
+    private static final Charset UTF8 = Charset.forName( "UTF-8" );
+
+    private static final Map<String, Comparator<IndexedArtifact>> COMPARATORS = new ConcurrentHashMap<String, Comparator<IndexedArtifact>>();
+
+    static {
+        COMPARATORS.put( JarListPageRequest.COLUMN_NAME,
+                         new Comparator<IndexedArtifact>() {
+                             @Override
+                             public int compare( final IndexedArtifact o1,
+                                                 final IndexedArtifact o2 ) {
+                                 return o1.getName().compareTo( o2.getName() );
+                             }
+                         } );
+        COMPARATORS.put( JarListPageRequest.COLUMN_PATH,
+                         new Comparator<IndexedArtifact>() {
+                             @Override
+                             public int compare( final IndexedArtifact o1,
+                                                 final IndexedArtifact o2 ) {
+                                 return o1.getPath().compareTo( o2.getPath() );
+                             }
+                         } );
+        COMPARATORS.put( JarListPageRequest.COLUMN_GAV,
+                         new Comparator<IndexedArtifact>() {
+                             @Override
+                             public int compare( final IndexedArtifact o1,
+                                                 final IndexedArtifact o2 ) {
+                                 return o1.getGav().toString().compareToIgnoreCase( o2.getGav().toString() );
+                             }
+                         } );
+        COMPARATORS.put( JarListPageRequest.COLUMN_LAST_MODIFIED,
+                         new Comparator<IndexedArtifact>() {
+                             @Override
+                             public int compare( final IndexedArtifact o1,
+                                                 final IndexedArtifact o2 ) {
+                                 return Long.valueOf( o1.getLastModified() ).compareTo( o2.getLastModified() );
+                             }
+                         } );
+    }
+
+    private final File root;
+    private final File indexFile;
+
+    //Artifacts keyed by their path relative to the repository root
+    private final ConcurrentMap<String, IndexedArtifact> artifacts = new ConcurrentHashMap<String, IndexedArtifact>();
+    private final AtomicLong modCount = new AtomicLong();
+    private final AtomicBoolean dirty = new AtomicBoolean( false );
+    private volatile Snapshot snapshot;
+    private volatile boolean loaded = false;
+
+    public M2ArtifactIndex( final File root ) {
+        this.root = root;
+        this.indexFile = new File( root,
+                                   INDEX_FILE_NAME );
+    }
+
+    /**
+     * Load the saved index. If there is none the whole repository is scanned.
+     * @return true if a saved index was loaded
+     */
+    public synchronized boolean load() {
+        if ( loaded ) {
+            return true;
+        }
+        boolean restored = false;
+        if ( indexFile.isFile() ) {
+            try {
+                restored = read();
+            } catch ( IOException e ) {
+                log.warn( "Unable to read artifact index '" + indexFile.getAbsolutePath() + "'. The repository will be scanned.",
+                          e );
+                artifacts.clear();
+            }
+        }
+        if ( !restored ) {
+            reconcile( root );
+            save();
+        }
+        loaded = true;
+        modCount.incrementAndGet();
+        return restored;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Bring the index up to date with a folder of the repository and its sub-folders.
+     * Only files that are new, or whose size or last modified time has changed, are opened to read their GAV.
+     * @param folder The folder
+     */
+    public void reconcile( final File folder ) {
+        if ( !folder.isDirectory() ) {
+            remove( toPath( folder ) );
+            return;
+        }
+        final Set<String> found = new HashSet<String>();
+        try {
+            Files.walkFileTree( folder.toPath(),
+                                new SimpleFileVisitor<Path>() {
+                                    @Override
+                                    public FileVisitResult visitFile( final Path file,
+                                                                      final BasicFileAttributes attrs ) {
+                                        if ( attrs.isRegularFile() && isArtifact( file.getFileName().toString() ) ) {
+                                            final String path = toPath( file.toFile() );
+                                            found.add( path );
+                                            update( path,
+                                                    file.toFile(),
+                                                    attrs.size(),
+                                                    attrs.lastModifiedTime().toMillis() );
+                                        }
+                                        return FileVisitResult.CONTINUE;
+                                    }
+
+                                    @Override
+                                    public FileVisitResult visitFileFailed( final Path file,
+                                                                            final IOException e ) {
+                                        //Files can be deleted whilst the repository is being scanned
+                                        return FileVisitResult.CONTINUE;
+                                    }
+                                } );
+        } catch ( IOException e ) {
+            log.warn( "Unable to scan '" + folder.getAbsolutePath() + "' for artifacts.",
+                      e );
+            return;
+        }
+
+        //Remove artifacts that no longer exist. Files deployed whilst the folder was being scanned are kept.
+        final String prefix = toPath( folder );
+        for ( String path : artifacts.keySet() ) {
+            if ( isWithin( path,
+                           prefix ) && !found.contains( path ) && !new File( root,
+                                                                               path ).isFile() ) {
+                if ( artifacts.remove( path ) != null ) {
+                    changed();
+                }
+            }
+        }
+    }
+
+    /**
+     * Bring the index up to date with a single file of the repository
+     * @param file The file
+     */
+    public void reconcileFile( final File file ) {
+        if ( !isArtifact( file.getName() ) ) {
+            return;
+        }
+        final String path = toPath( file );
+        if ( !file.isFile() ) {
+            if ( artifacts.remove( path ) != null ) {
+                changed();
+            }
+            return;
+        }
+        update( path,
+                file,
+                file.length(),
+                file.lastModified() );
+    }
+
+    /**
+     * A page of the indexed artifacts
+     * @param filters Text the artifact file names must contain, with "*" matching any characters. Can be null.
+     * @param fileFormats File formats of the artifacts, e.g. "jar". Null for all indexed formats.
+     * @param sortColumn One of the JarListPageRequest column names. Null to sort by path.
+     * @param ascending Sort order
+     * @param startIndex Index of the first matching artifact to return
+     * @param pageSize Maximum number of artifacts to return. Null for all.
+     * @return The page, and the total number of matching artifacts
+     */
+    public Page query( final String filters,
+                       final Collection<String> fileFormats,
+                       final String sortColumn,
+                       final boolean ascending,
+                       final int startIndex,
+                       final Integer pageSize ) {
+        final List<String> wildcards = new ArrayList<String>();
+        final String wildcardPrefix = filters == null ? "" : "*" + filters;
+        for ( String fileFormat : fileFormats == null ? INDEXED_FORMATS : fileFormats ) {
+            wildcards.add( wildcardPrefix + "*." + fileFormat );
+        }
+
+        final List<IndexedArtifact> sorted = getSnapshot().getSorted( sortColumn );
+        final int endIndex = pageSize == null ? Integer.MAX_VALUE : startIndex + pageSize;
+        final List<IndexedArtifact> page = new ArrayList<IndexedArtifact>();
+        int total = 0;
+        final int size = sorted.size();
+        for ( int i = 0; i < size; i++ ) {
+            final IndexedArtifact artifact = sorted.get( ascending ? i : size - 1 - i );
+            if ( !matches( artifact.getName(),
+                           wildcards ) ) {
+                continue;
+            }
+            if ( total >= startIndex && total < endIndex ) {
+                page.add( artifact );
+            }
+            total++;
+        }
+        return new Page( page,
+                         total );
+    }
+
+    /**
+     * @param fileFormats File formats, e.g. "jar". Null for all indexed formats.
+     * @return true if artifacts of the file formats can be queried from the index
+     */
+    public static boolean isIndexed( final Collection<String> fileFormats ) {
+        if ( fileFormats == null ) {
+            return true;
+        }
+        for ( String fileFormat : fileFormats ) {
+            if ( fileFormat == null || !INDEXED_FORMATS.contains( fileFormat.toLowerCase( Locale.ENGLISH ) ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int size() {
+        return artifacts.size();
+    }
+
+    /**
+     * Save the index, if it has changed since it was last saved
+     */
+    public synchronized void save() {
+        if ( !dirty.getAndSet( false ) ) {
+            return;
+        }
+        final File tempFile = new File( root,
+                                        INDEX_FILE_NAME + ".tmp" );
+        try {
+            final BufferedWriter writer = Files.newBufferedWriter( tempFile.toPath(),
+                                                                   UTF8 );
+            try {
+                writer.write( INDEX_HEADER );
+                writer.newLine();
+                for ( IndexedArtifact artifact : artifacts.values() ) {
+                    writer.write( artifact.getPath() );
+                    writer.write( '\t' );
+                    writer.write( Long.toString( artifact.getSize() ) );
+                    writer.write( '\t' );
+                    writer.write( Long.toString( artifact.getLastModified() ) );
+                    writer.write( '\t' );
+                    writer.write( toField( artifact.getGav().getGroupId() ) );
+                    writer.write( '\t' );
+                    writer.write( toField( artifact.getGav().getArtifactId() ) );
+                    writer.write( '\t' );
+                    writer.write( toField( artifact.getGav().getVersion() ) );
+                    writer.newLine();
+                }
+            } finally {
+                writer.close();
+            }
+            Files.move( tempFile.toPath(),
+                        indexFile.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING );
+        } catch ( IOException e ) {
+            dirty.set( true );
+            log.warn( "Unable to save artifact index '" + indexFile.getAbsolutePath() + "'.",
+                      e );
+        }
+    }
+
+    private boolean read() throws IOException {
+        final BufferedReader reader = Files.newBufferedReader( indexFile.toPath(),
+                                                               UTF8 );
+        try {
+            if ( !INDEX_HEADER.equals( reader.readLine() ) ) {
+                return false;
+            }
+            String line;
+            while ( ( line = reader.readLine() ) != null ) {
+                final String[] fields = line.split( "\t",
+                                                    -1 );
+                if ( fields.length != 6 ) {
+                    continue;
+                }
+                try {
+                    artifacts.put( fields[ 0 ],
+                                   new IndexedArtifact( fields[ 0 ],
+                                                        new GAV( fromField( fields[ 3 ] ),
+                                                                 fromField( fields[ 4 ] ),
+                                                                 fromField( fields[ 5 ] ) ),
+                                                        Long.parseLong( fields[ 1 ] ),
+                                                        Long.parseLong( fields[ 2 ] ) ) );
+                } catch ( NumberFormatException e ) {
+                    //Skip the entry; it is re-created by the next reconciliation
+                }
+            }
+            return true;
+        } finally {
+            reader.close();
+        }
+    }
+
+    //A POM may not declare all of its GAV, e.g. when inherited from its parent; missing values are saved as empty
+    private static String toField( final String value ) {
+        return value == null ? "" : value;
+    }
+
+    private static String fromField( final String field ) {
+        return field.isEmpty() ? null : field;
+    }
+
+    private void update( final String path,
+                         final File file,
+                         final long size,
+                         final long lastModified ) {
+        final IndexedArtifact existing = artifacts.get( path );
+        if ( existing != null && existing.getSize() == size && existing.getLastModified() == lastModified ) {
+            return;
+        }
+        artifacts.put( path,
+                       new IndexedArtifact( path,
+                                            readGAV( path,
+                                                     file ),
+                                            size,
+                                            lastModified ) );
+        changed();
+    }
+
+    private void remove( final String prefix ) {
+        for ( String path : artifacts.keySet() ) {
+            if ( isWithin( path,
+                           prefix ) && artifacts.remove( path ) != null ) {
+                changed();
+            }
+        }
+    }
+
+    private void changed() {
+        dirty.set( true );
+        modCount.incrementAndGet();
+    }
+
+    private Snapshot getSnapshot() {
+        final long currentModCount = modCount.get();
+        Snapshot current = snapshot;
+        if ( current == null || current.modCount != currentModCount ) {
+            current = new Snapshot( currentModCount,
+                                    new ArrayList<IndexedArtifact>( artifacts.values() ) );
+            snapshot = current;
+        }
+        return current;
+    }
+
+    private String toPath( final File file ) {
+        final String path = root.toPath().toAbsolutePath().normalize().relativize( file.toPath().toAbsolutePath().normalize() ).toString();
+        return path.replace( File.separatorChar,
+                             '/' );
+    }
+
+    private static boolean isWithin( final String path,
+                                     final String prefix ) {
+        return prefix.isEmpty() || path.equals( prefix ) || path.startsWith( prefix + "/" );
+    }
+
+    private static boolean isArtifact( final String fileName ) {
+        if ( fileName.startsWith( "." ) ) {
+            return false;
+        }
+        final int index = fileName.lastIndexOf( '.' );
+        return index >= 0 && INDEXED_FORMATS.contains( fileName.substring( index + 1 ).toLowerCase( Locale.ENGLISH ) );
+    }
+
+    private static boolean matches( final String fileName,
+                                    final List<String> wildcards ) {
+        for ( String wildcard : wildcards ) {
+            if ( FilenameUtils.wildcardMatch( fileName,
+                                              wildcard,
+                                              IOCase.INSENSITIVE ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static GAV readGAV( final String path,
+                                final File file ) {
+        try {
+            final String pom = GuvnorM2Repository.loadPomText( file );
+            final PomModel model = MinimalPomParser.parse( path,
+                                                           new ByteArrayInputStream( pom.getBytes( UTF8 ) ) );
+            return new GAV( model.getReleaseId().getGroupId(),
+                            model.getReleaseId().getArtifactId(),
+                            model.getReleaseId().getVersion() );
+        } catch ( RuntimeException rte ) {
+            //RuntimeException is thrown by MinimalPomParser for any Exception..
+            return new GAV( "<undetermined>",
+                            "<undetermined>",
+                            "<undetermined>" );
+        }
+    }
+
+    /**
+     * An indexed artifact
+     */
+    public static class IndexedArtifact {
+
+        private final String path;
+        private final String name;
+        private final GAV gav;
+        private final long size;
+        private final long lastModified;
+
+        IndexedArtifact( final String path,
+                         final GAV gav,
+                         final long size,
+                         final long lastModified ) {
+            this.path = path;
+            this.name = path.substring( path.lastIndexOf( '/' ) + 1 );
+            this.gav = gav;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * @return Path relative to the repository root, with "/" separators
+         */
+        public String getPath() {
+            return path;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public GAV getGav() {
+            return gav;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+
+    /**
+     * A page of artifacts returned by a query
+     */
+    public static class Page {
+
+        private final List<IndexedArtifact> artifacts;
+        private final int totalSize;
+
+        public Page( final List<IndexedArtifact> artifacts,
+                     final int totalSize ) {
+            this.artifacts = artifacts;
+            this.totalSize = totalSize;
+        }
+
+        public List<IndexedArtifact> getArtifacts() {
+            return artifacts;
+        }
+
+        /**
+         * @return Total number of artifacts matching the query
+         */
+        public int getTotalSize() {
+            return totalSize;
+        }
+    }
+
+    /**
+     * The artifacts at a point in time, sorted by each column the first time they are queried in that order
+     */
+    private static class Snapshot {
+
+        private final long modCount;
+        private final List<IndexedArtifact> artifacts;
+        private final Map<String, List<IndexedArtifact>> sorted = new ConcurrentHashMap<String, List<IndexedArtifact>>();
+
+        private Snapshot( final long modCount,
+                          final List<IndexedArtifact> artifacts ) {
+            this.modCount = modCount;
+            this.artifacts = artifacts;
+        }
+
+        private List<IndexedArtifact> getSorted( final String sortColumn ) {
+            final String column = sortColumn == null || !COMPARATORS.containsKey( sortColumn ) ? JarListPageRequest.COLUMN_PATH : sortColumn;
+            List<IndexedArtifact> result = sorted.get( column );
+            if ( result == null ) {
+                result = new ArrayList<IndexedArtifact>( artifacts );
+                Collections.sort( result,
+                                  COMPARATORS.get( column ) );
+                sorted.put( column,
+                            result );
+            }
+            return result;
+        }
+    }
+
+}
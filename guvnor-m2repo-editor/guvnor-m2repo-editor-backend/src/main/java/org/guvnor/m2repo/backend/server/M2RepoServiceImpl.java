@@ -57,6 +57,14 @@ public class M2RepoServiceImpl implements M2RepoService,
                                    true );
     }
 
+    @Override
+    public void deployJar( final StreamedJar jar,
+                           final GAV gav ) {
+        repository.deployArtifact( jar,
+                                   gav,
+                                   true );
+    }
+
     @Override
     public void deployJarInternal( final InputStream is,
                                    final GAV gav ) {
@@ -85,6 +93,45 @@ public class M2RepoServiceImpl implements M2RepoService,
 
     @Override
     public PageResponse<JarListPageRow> listArtifacts( final JarListPageRequest pageRequest ) {
+        if ( M2ArtifactIndex.isIndexed( pageRequest.getFileFormats() ) ) {
+            //Only the requested "page" of entries is read from the index
+            final M2ArtifactIndex.Page page = repository.listArtifacts( pageRequest.getFilters(),
+                                                                        pageRequest.getFileFormats(),
+                                                                        pageRequest.getDataSourceName(),
+                                                                        pageRequest.isAscending(),
+                                                                        pageRequest.getStartRowIndex(),
+                                                                        pageRequest.getPageSize() );
+            //The repository is walked until the index has been built
+            if ( page != null ) {
+                return listIndexedArtifacts( pageRequest,
+                                             page );
+            }
+        }
+        return listFiles( pageRequest );
+    }
+
+    private PageResponse<JarListPageRow> listIndexedArtifacts( final JarListPageRequest pageRequest,
+                                                               final M2ArtifactIndex.Page page ) {
+        final List<JarListPageRow> responsePageRowList = new ArrayList<JarListPageRow>();
+        for ( M2ArtifactIndex.IndexedArtifact artifact : page.getArtifacts() ) {
+            JarListPageRow jarListPageRow = new JarListPageRow();
+            jarListPageRow.setName( artifact.getName() );
+            jarListPageRow.setPath( artifact.getPath() );
+            jarListPageRow.setGav( artifact.getGav() );
+            jarListPageRow.setLastModified( new Date( artifact.getLastModified() ) );
+            responsePageRowList.add( jarListPageRow );
+        }
+
+        final PageResponse<JarListPageRow> response = new PageResponse<JarListPageRow>();
+        response.setPageRowList( responsePageRowList );
+        response.setStartRowIndex( pageRequest.getStartRowIndex() );
+        response.setTotalRowSize( page.getTotalSize() );
+        response.setTotalRowSizeExact( true );
+
+        return response;
+    }
+
+    private PageResponse<JarListPageRow> listFiles( final JarListPageRequest pageRequest ) {
         //Get unsorted files matching filter
         final String filters = pageRequest.getFilters();
         final List<String> fileFormats = pageRequest.getFileFormats();
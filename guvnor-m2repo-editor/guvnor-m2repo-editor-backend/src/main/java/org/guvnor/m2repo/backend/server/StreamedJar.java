@@ -0,0 +1,330 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.m2repo.backend.server;
+
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Calendar;
+import java.util.Enumeration;
+import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.TeeInputStream;
+import org.apache.commons.io.output.NullOutputStream;
+
+/**
+ * A JAR written to a file from a stream. The bytes of the JAR are copied to the file unchanged as they are received,
+ * while its Maven metadata (pom.xml and pom.properties) is read from the same bytes, so the JAR is only read once and
+ * the SHA-1 and MD5 checksums of the file are those of the JAR. The JAR is only rewritten when it is finished with
+ * entries that are missing from it.
+ */
+public class StreamedJar {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final Charset UTF8 = Charset.forName( "UTF-8" );
+
+    //Time of entries added to a JAR without any entry with a time; the earliest time a JAR entry can hold
+    private static final long DEFAULT_ENTRY_TIME = new GregorianCalendar( 1980,
+                                                                          Calendar.JANUARY,
+                                                                          1 ).getTimeInMillis();
+
+    private final File file;
+    private int entryCount = 0;
+    private long entryTime = -1;
+    private boolean finished = false;
+    private String pomXML;
+    private String pomProperties;
+    private String sha1;
+    private String md5;
+
+    private StreamedJar( final File file ) {
+        this.file = file;
+    }
+
+    /**
+     * Write a JAR to a file. The JAR must be finished once it is known whether entries need to be added.
+     * @param jarStream The JAR. The stream is not closed.
+     * @param file The file to write
+     * @return The JAR written
+     * @throws IOException if the JAR is not valid, in which case the file is deleted, or the file cannot be written
+     */
+    public static StreamedJar write( final InputStream jarStream,
+                                     final File file ) throws IOException {
+        final StreamedJar jar = new StreamedJar( file );
+        final MessageDigest sha1Digest = newMessageDigest( "SHA-1" );
+        final MessageDigest md5Digest = newMessageDigest( "MD5" );
+        final OutputStream output = newOutputStream( file,
+                                                     sha1Digest,
+                                                     md5Digest );
+        try {
+            final InputStream tee = new TeeInputStream( jarStream,
+                                                        output );
+            jar.read( new ZipInputStream( tee ) );
+
+            //Copy the remainder of the JAR, the central directory, which ZipInputStream does not read
+            IOUtils.copy( tee,
+                          new NullOutputStream() );
+            output.close();
+            jar.verify();
+
+        } catch ( IOException e ) {
+            IOUtils.closeQuietly( output );
+            file.delete();
+            throw e;
+        }
+        jar.sha1 = toHex( sha1Digest.digest() );
+        jar.md5 = toHex( md5Digest.digest() );
+        return jar;
+    }
+
+    /**
+     * Finish the JAR, adding entries to its end. The JAR is only rewritten if there are entries to add; added entries
+     * have the time of the latest entry of the JAR, so the same JAR is always written to the same bytes.
+     * @param entries The content of the entries to add, keyed by entry name
+     * @throws IOException if the file cannot be written
+     */
+    public void finish( final Map<String, String> entries ) throws IOException {
+        if ( finished ) {
+            throw new IllegalStateException( "JAR '" + file.getAbsolutePath() + "' has already been finished." );
+        }
+        finished = true;
+        if ( !entries.isEmpty() ) {
+            append( entries );
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return The content of the JAR's pom.xml, or null if the JAR does not contain one
+     */
+    public String getPomXML() {
+        return pomXML;
+    }
+
+    /**
+     * @return The content of the JAR's pom.properties, or null if the JAR does not contain one
+     */
+    public String getPomProperties() {
+        return pomProperties;
+    }
+
+    /**
+     * @return The SHA-1 checksum of the file, as lower case hexadecimal
+     */
+    public String getSha1() {
+        return sha1;
+    }
+
+    /**
+     * @return The MD5 checksum of the file, as lower case hexadecimal
+     */
+    public String getMd5() {
+        return md5;
+    }
+
+    private void read( final ZipInputStream zis ) throws IOException {
+        final Set<String> names = new HashSet<String>();
+        try {
+            ZipEntry entry;
+            while ( ( entry = zis.getNextEntry() ) != null ) {
+                final String name = entry.getName();
+                if ( !names.add( name ) ) {
+                    throw new ZipException( "duplicate entry: " + name );
+                }
+                if ( entry.getTime() != -1 ) {
+                    entryTime = Math.max( entryTime,
+                                          entry.getTime() );
+                }
+                //The content of other entries is skipped, and so only copied to the file, by the next getNextEntry
+                if ( pomXML == null && isPomXML( name ) ) {
+                    pomXML = new String( IOUtils.toByteArray( zis ),
+                                         UTF8 );
+                } else if ( pomProperties == null && isPomProperties( name ) ) {
+                    pomProperties = new String( IOUtils.toByteArray( zis ),
+                                                UTF8 );
+                }
+            }
+        } catch ( ZipException | EOFException e ) {
+            throw invalid( e.getMessage(),
+                           e );
+        }
+        if ( names.isEmpty() ) {
+            throw invalid( "it has no entries",
+                           null );
+        }
+        entryCount = names.size();
+    }
+
+    //The entries have been read from the local headers; the central directory, read by ZipFile, must list the same
+    private void verify() throws IOException {
+        final ZipFile zipFile;
+        try {
+            zipFile = new ZipFile( file );
+        } catch ( ZipException e ) {
+            throw invalid( e.getMessage(),
+                           e );
+        }
+        try {
+            if ( zipFile.size() != entryCount ) {
+                throw invalid( "its central directory lists " + zipFile.size() + " entries, " + entryCount + " were read",
+                               null );
+            }
+        } finally {
+            zipFile.close();
+        }
+    }
+
+    private void append( final Map<String, String> entries ) throws IOException {
+        final File appended = File.createTempFile( file.getName(),
+                                                   ".tmp",
+                                                   file.getAbsoluteFile().getParentFile() );
+        final MessageDigest sha1Digest = newMessageDigest( "SHA-1" );
+        final MessageDigest md5Digest = newMessageDigest( "MD5" );
+        try {
+            final ZipFile zipFile = new ZipFile( file );
+            try {
+                final ZipOutputStream output = new ZipOutputStream( newOutputStream( appended,
+                                                                                     sha1Digest,
+                                                                                     md5Digest ) );
+                try {
+                    final Enumeration<? extends ZipEntry> existing = zipFile.entries();
+                    while ( existing.hasMoreElements() ) {
+                        final ZipEntry entry = existing.nextElement();
+                        output.putNextEntry( copyOf( entry ) );
+                        final InputStream is = zipFile.getInputStream( entry );
+                        try {
+                            IOUtils.copy( is,
+                                          output );
+                        } finally {
+                            is.close();
+                        }
+                        output.closeEntry();
+                    }
+
+                    for ( Map.Entry<String, String> entry : entries.entrySet() ) {
+                        final ZipEntry zipEntry = new ZipEntry( entry.getKey() );
+                        zipEntry.setTime( entryTime == -1 ? DEFAULT_ENTRY_TIME : entryTime );
+                        output.putNextEntry( zipEntry );
+                        output.write( entry.getValue().getBytes( UTF8 ) );
+                        output.closeEntry();
+                        if ( isPomXML( entry.getKey() ) && pomXML == null ) {
+                            pomXML = entry.getValue();
+                        } else if ( isPomProperties( entry.getKey() ) && pomProperties == null ) {
+                            pomProperties = entry.getValue();
+                        }
+                    }
+                    output.setComment( zipFile.getComment() );
+                } finally {
+                    output.close();
+                }
+            } finally {
+                zipFile.close();
+            }
+
+            Files.move( appended.toPath(),
+                        file.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING );
+
+        } finally {
+            appended.delete();
+        }
+        sha1 = toHex( sha1Digest.digest() );
+        md5 = toHex( md5Digest.digest() );
+    }
+
+    //A copy of an entry that keeps its compression method, time, comment and extra fields
+    private static ZipEntry copyOf( final ZipEntry entry ) {
+        final ZipEntry copy = new ZipEntry( entry.getName() );
+        copy.setMethod( entry.getMethod() );
+        if ( entry.getMethod() == ZipEntry.STORED ) {
+            copy.setSize( entry.getSize() );
+            copy.setCompressedSize( entry.getCompressedSize() );
+            copy.setCrc( entry.getCrc() );
+        }
+        if ( entry.getTime() != -1 ) {
+            copy.setTime( entry.getTime() );
+        }
+        copy.setComment( entry.getComment() );
+        copy.setExtra( entry.getExtra() );
+        return copy;
+    }
+
+    private IOException invalid( final String reason,
+                                 final Exception cause ) {
+        return new IOException( "'" + file.getName() + "' is not a valid JAR: " + reason,
+                                cause );
+    }
+
+    private static OutputStream newOutputStream( final File file,
+                                                 final MessageDigest sha1Digest,
+                                                 final MessageDigest md5Digest ) throws IOException {
+        return new DigestOutputStream( new DigestOutputStream( new BufferedOutputStream( new FileOutputStream( file ),
+                                                                                         BUFFER_SIZE ),
+                                                               sha1Digest ),
+                                       md5Digest );
+    }
+
+    private static boolean isPomXML( final String name ) {
+        return name.startsWith( "META-INF/maven" ) && name.endsWith( "pom.xml" );
+    }
+
+    private static boolean isPomProperties( final String name ) {
+        return name.startsWith( "META-INF/maven" ) && name.endsWith( "pom.properties" );
+    }
+
+    private static MessageDigest newMessageDigest( final String algorithm ) {
+        try {
+            return MessageDigest.getInstance( algorithm );
+        } catch ( NoSuchAlgorithmException e ) {
+            //Every Java platform is required to support SHA-1 and MD5
+            throw new IllegalStateException( e );
+        }
+    }
+
+    private static String toHex( final byte[] bytes ) {
+        final StringBuilder sb = new StringBuilder( bytes.length * 2 );
+        for ( byte b : bytes ) {
+            sb.append( Character.forDigit( ( b >> 4 ) & 0xF,
+                                           16 ) );
+            sb.append( Character.forDigit( b & 0xF,
+                                           16 ) );
+        }
+        return sb.toString();
+    }
+
+}
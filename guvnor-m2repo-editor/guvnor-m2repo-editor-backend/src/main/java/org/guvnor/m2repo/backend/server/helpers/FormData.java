@@ -18,9 +18,12 @@ package org.guvnor.m2repo.backend.server.helpers;
 
 import org.apache.commons.fileupload.FileItem;
 import org.guvnor.common.services.project.model.GAV;
+import org.guvnor.m2repo.backend.server.StreamedJar;
 
 public class FormData {
     private FileItem file;
+    private StreamedJar jar;
+    private String fileName;
     private GAV gav;
 
     public FileItem getFile() {
@@ -31,7 +34,38 @@ public class FormData {
         this.file = file;
     }
 
+    /**
+     * @return A JAR written to a temporary file as it was uploaded, or null
+     */
+    public StreamedJar getJar() {
+        return jar;
+    }
+
+    public void setJar(StreamedJar jar) {
+        this.jar = jar;
+    }
+
+    public String getFileName() {
+        if ( fileName == null && file != null ) {
+            return file.getName();
+        }
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    /**
+     * Delete any temporary files holding the upload
+     */
     public void closeFile() {
+        if ( file != null ) {
+            file.delete();
+        }
+        if ( jar != null ) {
+            jar.getFile().delete();
+        }
     }
 
     public GAV getGav() {
@@ -16,11 +16,17 @@
 
 package org.guvnor.m2repo.backend.server.helpers;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -31,6 +37,9 @@ import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.guvnor.common.services.backend.cache.ConcurrentLRUCache;
 import org.guvnor.m2repo.backend.server.GuvnorM2Repository;
 import org.guvnor.m2repo.service.M2RepoService;
 
@@ -40,12 +49,26 @@ public class HttpGetHelper {
     private static final long DEFAULT_EXPIRE_TIME = 604800000L; //1 week.
     private static final String MULTIPART_BOUNDARY = "MULTIPART_BYTERANGES";
 
+    //Maximum total size, in bytes, of the compressed text artifacts cached
+    private static final long DEFAULT_GZIP_CACHE_SIZE = 16L * 1024 * 1024;
+
+    //Text artifacts larger than this, in bytes, are compressed as they are sent rather than cached
+    private static final long MAX_CACHED_GZIP_FILE_SIZE = 1024 * 1024;
+
+    private static final int CHECKSUM_CACHE_SIZE = 10000;
+
     @Inject
     private M2RepoService m2RepoService;
 
     @Inject
     private GuvnorM2Repository repository;
 
+    //Compressed text artifacts, keyed by the file's path, length and last modified time
+    private final ConcurrentLRUCache<String, byte[]> gzipCache = newGzipCache();
+
+    //SHA-1 checksums of artifacts, keyed by the checksum file's path and last modified time. Empty if the checksum file is invalid.
+    private final ConcurrentLRUCache<String, String> checksumCache = new ConcurrentLRUCache<String, String>( CHECKSUM_CACHE_SIZE );
+
     public void handle( final HttpServletRequest request,
                         final HttpServletResponse response,
                         final ServletContext context ) throws IOException {
@@ -78,11 +101,37 @@ public class HttpGetHelper {
             return;
         }
 
-        // Process the ETag
         String fileName = file.getName();
         long length = file.length();
         long lastModified = file.lastModified();
-        String eTag = fileName + "_" + length + "_" + lastModified;
+
+        String contentType = context.getMimeType( fileName );
+        boolean acceptsGzip = false;
+        String disposition = "inline";
+
+        if ( contentType == null ) {
+            contentType = "application/octet-stream";
+        }
+
+        if ( contentType.startsWith( "text" ) ) {
+            String acceptEncoding = request.getHeader( "Accept-Encoding" );
+            acceptsGzip = acceptEncoding != null
+                    && accepts( acceptEncoding,
+                                "gzip" );
+            contentType += ";charset=UTF-8";
+        } else if ( !contentType.startsWith( "image" ) ) {
+            String accept = request.getHeader( "Accept" );
+            disposition = accept != null && accepts( accept,
+                                                     contentType ) ? "inline" : "attachment";
+        }
+
+        // Process the ETag. Compressed and uncompressed content are different representations, so have different ETags
+        String eTag = getETag( file,
+                               length,
+                               lastModified );
+        if ( acceptsGzip ) {
+            eTag = toGzipETag( eTag );
+        }
 
         String ifNoneMatch = request.getHeader( "If-None-Match" );
         if ( ifNoneMatch != null && matches( ifNoneMatch, eTag ) ) {
@@ -110,29 +159,6 @@ public class HttpGetHelper {
             return;
         }
 
-        Range full = new Range( 0, length - 1, length );
-        List<Range> ranges = new ArrayList<Range>();
-
-        String contentType = context.getMimeType( fileName );
-        boolean acceptsGzip = false;
-        String disposition = "inline";
-
-        if ( contentType == null ) {
-            contentType = "application/octet-stream";
-        }
-
-        if ( contentType.startsWith( "text" ) ) {
-            String acceptEncoding = request.getHeader( "Accept-Encoding" );
-            acceptsGzip = acceptEncoding != null
-                    && accepts( acceptEncoding,
-                                "gzip" );
-            contentType += ";charset=UTF-8";
-        } else if ( !contentType.startsWith( "image" ) ) {
-            String accept = request.getHeader( "Accept" );
-            disposition = accept != null && accepts( accept,
-                                                     contentType ) ? "inline" : "attachment";
-        }
-
         //Response.
         response.reset();
         response.setBufferSize( DEFAULT_BUFFER_SIZE );
@@ -150,6 +176,9 @@ public class HttpGetHelper {
         response.setDateHeader( "Expires",
                                 System.currentTimeMillis() + DEFAULT_EXPIRE_TIME );
 
+        Range full = new Range( 0, length - 1, length );
+        List<Range> ranges = new ArrayList<Range>();
+
         RandomAccessFile input = null;
         OutputStream output = null;
 
@@ -164,7 +193,18 @@ public class HttpGetHelper {
                 response.setHeader( "Content-Range",
                                     "bytes " + r.start + "-" + r.end + "/" + r.total );
 
-                if ( acceptsGzip ) {
+                if ( acceptsGzip && length <= MAX_CACHED_GZIP_FILE_SIZE ) {
+                    final byte[] gzipped = getGzipped( file,
+                                                       length,
+                                                       lastModified );
+                    response.setHeader( "Content-Encoding",
+                                        "gzip" );
+                    response.setHeader( "Content-Length",
+                                        String.valueOf( gzipped.length ) );
+                    output.write( gzipped );
+                    return;
+
+                } else if ( acceptsGzip ) {
                     response.setHeader( "Content-Encoding",
                                         "gzip" );
                     output = new GZIPOutputStream( output,
@@ -247,28 +287,103 @@ public class HttpGetHelper {
                                    final OutputStream output,
                                    final long start,
                                    final long length ) throws IOException {
-        byte[] buffer = new byte[ DEFAULT_BUFFER_SIZE ];
-        int read;
+        //The channel is not closed, as that would close the response's output stream
+        final FileChannel inputChannel = input.getChannel();
+        final WritableByteChannel outputChannel = Channels.newChannel( output );
+        long position = start;
+        long toTransfer = length;
+
+        while ( toTransfer > 0 ) {
+            final long transferred = inputChannel.transferTo( position,
+                                                              toTransfer,
+                                                              outputChannel );
+            if ( transferred <= 0 ) {
+                break;
+            }
+            position += transferred;
+            toTransfer -= transferred;
+        }
+    }
 
-        if ( input.length() == length ) {
-            // Write full range.
-            while ( ( read = input.read( buffer ) ) > 0 ) {
-                output.write( buffer, 0, read );
+    String getETag( final File file,
+                    final long length,
+                    final long lastModified ) {
+        //Use the checksum deployed with the artifact, unless it was written before the artifact was last changed
+        final File checksumFile = new File( file.getPath() + ".sha1" );
+        final long checksumLastModified = checksumFile.lastModified();
+        if ( checksumLastModified != 0 && checksumLastModified >= lastModified ) {
+            final String key = checksumFile.getPath() + "_" + checksumLastModified;
+            String checksum = checksumCache.getEntry( key );
+            if ( checksum == null ) {
+                checksum = readChecksum( checksumFile );
+                checksumCache.setEntry( key,
+                                        checksum );
             }
-        } else {
-            // Write partial range.
-            input.seek( start );
-            long toRead = length;
-
-            while ( ( read = input.read( buffer ) ) > 0 ) {
-                if ( ( toRead -= read ) > 0 ) {
-                    output.write( buffer, 0, read );
-                } else {
-                    output.write( buffer, 0, (int) toRead + read );
-                    break;
-                }
+            if ( !checksum.isEmpty() ) {
+                return "\"" + checksum + "\"";
             }
         }
+        return file.getName() + "_" + length + "_" + lastModified;
+    }
+
+    private static String toGzipETag( final String eTag ) {
+        if ( eTag.endsWith( "\"" ) ) {
+            return eTag.substring( 0,
+                                   eTag.length() - 1 ) + "-gzip\"";
+        }
+        return eTag + "_gzip";
+    }
+
+    private static String readChecksum( final File checksumFile ) {
+        try {
+            //Checksum files can contain the file name after the checksum
+            final String[] content = FileUtils.readFileToString( checksumFile,
+                                                                 "UTF-8" ).trim().split( "\\s+" );
+            final String checksum = content[ 0 ].toLowerCase();
+            if ( checksum.matches( "[0-9a-f]{40}" ) ) {
+                return checksum;
+            }
+        } catch ( IOException e ) {
+            //Fall back to an ETag based on the file's length and last modified time
+        }
+        return "";
+    }
+
+    private byte[] getGzipped( final File file,
+                               final long length,
+                               final long lastModified ) throws IOException {
+        final String key = file.getPath() + "_" + length + "_" + lastModified;
+        byte[] gzipped = gzipCache.getEntry( key );
+        if ( gzipped == null ) {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream( (int) length / 2 + 64 );
+            final InputStream input = new FileInputStream( file );
+            try {
+                final GZIPOutputStream output = new GZIPOutputStream( bytes,
+                                                                      DEFAULT_BUFFER_SIZE );
+                IOUtils.copy( input,
+                              output );
+                output.close();
+            } finally {
+                input.close();
+            }
+            gzipped = bytes.toByteArray();
+            gzipCache.setEntry( key,
+                                gzipped );
+        }
+        return gzipped;
+    }
+
+    private static ConcurrentLRUCache<String, byte[]> newGzipCache() {
+        return new ConcurrentLRUCache<String, byte[]>( Long.getLong( "org.guvnor.m2repo.gzip-cache.max-size",
+                                                                     DEFAULT_GZIP_CACHE_SIZE ),
+                                                       new ConcurrentLRUCache.Weigher<String, byte[]>() {
+                                                           @Override
+                                                           public int weigh( final String key,
+                                                                             final byte[] value ) {
+                                                               return value.length + key.length();
+                                                           }
+                                                       },
+                                                       0 );
     }
 
     protected class Range {
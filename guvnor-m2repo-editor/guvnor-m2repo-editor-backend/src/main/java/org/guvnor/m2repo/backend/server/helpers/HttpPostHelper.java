@@ -17,25 +17,27 @@
 package org.guvnor.m2repo.backend.server.helpers;
 
 import java.io.BufferedInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Iterator;
-import java.util.List;
 import javax.inject.Inject;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.fileupload.FileItem;
-import org.apache.commons.fileupload.FileItemFactory;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
 import org.apache.commons.fileupload.FileUploadException;
 import org.apache.commons.fileupload.disk.DiskFileItemFactory;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
+import org.apache.commons.fileupload.util.Streams;
 import org.apache.maven.project.ProjectBuildingException;
 import org.drools.compiler.kproject.xml.PomModel;
 import org.guvnor.common.services.backend.exceptions.ExceptionUtilities;
 import org.guvnor.common.services.project.model.GAV;
 import org.guvnor.m2repo.backend.server.ExtendedM2RepoService;
+import org.guvnor.m2repo.backend.server.StreamedJar;
 import org.guvnor.m2repo.model.HTMLFileManagerFields;
 import org.kie.scanner.embedder.MavenEmbedderException;
 import org.slf4j.Logger;
@@ -48,6 +50,12 @@ public class HttpPostHelper {
 
     private static final Logger log = LoggerFactory.getLogger( HttpPostHelper.class );
 
+    //Maximum size, in bytes, of an uploaded file and of a whole upload request; -1 for no limit
+    private final long maxFileSize = Long.getLong( "org.guvnor.m2repo.upload.max-file-size",
+                                                   -1 );
+    private final long maxRequestSize = Long.getLong( "org.guvnor.m2repo.upload.max-request-size",
+                                                      -1 );
+
     @Inject
     private ExtendedM2RepoService m2RepoService;
 
@@ -59,33 +67,41 @@ public class HttpPostHelper {
                         final HttpServletResponse response ) throws ServletException, IOException {
         response.setContentType( "text/html" );
         final FormData formData = extractFormData( request );
-        final String result = upload( formData );
-        response.getWriter().write( result );
+        try {
+            final String result = upload( formData );
+            response.getWriter().write( result );
+        } finally {
+            formData.closeFile();
+        }
     }
 
-    @SuppressWarnings("rawtypes")
     private FormData extractFormData( final HttpServletRequest request ) throws IOException {
-        FileItemFactory factory = new DiskFileItemFactory();
-        ServletFileUpload upload = new ServletFileUpload( factory );
+        final ServletFileUpload upload = new ServletFileUpload();
         upload.setHeaderEncoding( "UTF-8" );
+        upload.setFileSizeMax( maxFileSize );
+        upload.setSizeMax( maxRequestSize );
 
         FormData data = new FormData();
         GAV emptyGAV = new GAV();
         try {
-            List items = upload.parseRequest( request );
-            Iterator it = items.iterator();
+            //The request is streamed, rather than each item being buffered before any is read
+            final FileItemIterator it = upload.getItemIterator( request );
             while ( it.hasNext() ) {
-                FileItem item = (FileItem) it.next();
+                final FileItemStream item = it.next();
                 if ( !item.isFormField() ) {
-                    data.setFile( item );
-                }
-
-                if ( item.isFormField() && item.getFieldName().equals( HTMLFileManagerFields.GROUP_ID ) ) {
-                    emptyGAV.setGroupId( item.getString() );
-                } else if ( item.isFormField() && item.getFieldName().equals( HTMLFileManagerFields.ARTIFACT_ID ) ) {
-                    emptyGAV.setArtifactId( item.getString() );
-                } else if ( item.isFormField() && item.getFieldName().equals( HTMLFileManagerFields.VERSION_ID ) ) {
-                    emptyGAV.setVersion( item.getString() );
+                    if ( data.getFile() == null && data.getJar() == null ) {
+                        extractFile( item,
+                                     data );
+                    }
+                } else if ( item.getFieldName().equals( HTMLFileManagerFields.GROUP_ID ) ) {
+                    emptyGAV.setGroupId( Streams.asString( item.openStream(),
+                                                           "UTF-8" ) );
+                } else if ( item.getFieldName().equals( HTMLFileManagerFields.ARTIFACT_ID ) ) {
+                    emptyGAV.setArtifactId( Streams.asString( item.openStream(),
+                                                              "UTF-8" ) );
+                } else if ( item.getFieldName().equals( HTMLFileManagerFields.VERSION_ID ) ) {
+                    emptyGAV.setVersion( Streams.asString( item.openStream(),
+                                                           "UTF-8" ) );
                 }
             }
 
@@ -100,20 +116,58 @@ public class HttpPostHelper {
             return data;
 
         } catch ( FileUploadException e ) {
+            data.closeFile();
             log.error( e.getMessage(),
                        e );
+            throw new IOException( e.getMessage() );
+        } catch ( IOException e ) {
+            data.closeFile();
+            throw e;
         }
+    }
+
+    private void extractFile( final FileItemStream item,
+                              final FormData data ) throws IOException {
+        final String fileName = item.getName();
+        data.setFileName( fileName );
+
+        if ( isJar( fileName ) || isKJar( fileName ) ) {
+            //JARs are written, once, to the file from which they are deployed as they are received; missing
+            //metadata is added to the end of the file once the GAV is known
+            data.setJar( writeJar( item.openStream() ) );
 
-        return null;
+        } else {
+            final FileItem file = new DiskFileItemFactory().createItem( item.getFieldName(),
+                                                                        item.getContentType(),
+                                                                        false,
+                                                                        fileName );
+            data.setFile( file );
+            Streams.copy( item.openStream(),
+                          file.getOutputStream(),
+                          true );
+        }
+    }
+
+    private StreamedJar writeJar( final InputStream jarStream ) throws IOException {
+        final File jarFile = File.createTempFile( "guvnor-m2repo-upload",
+                                                  ".jar" );
+        try {
+            return StreamedJar.write( jarStream,
+                                      jarFile );
+        } catch ( IOException ioe ) {
+            jarFile.delete();
+            throw ioe;
+        } finally {
+            jarStream.close();
+        }
     }
 
     private String upload( final FormData formData ) throws IOException {
         //Validate upload
-        final FileItem fileItem = formData.getFile();
-        if ( fileItem == null ) {
+        if ( formData.getFile() == null && formData.getJar() == null ) {
             throw new IOException( "No file selected." );
         }
-        final String fileName = fileItem.getName();
+        final String fileName = formData.getFileName();
         if ( isNullOrEmpty( fileName ) ) {
             throw new IOException( "No file selected." );
         }
@@ -131,19 +185,17 @@ public class HttpPostHelper {
 
     private String uploadJar( final FormData formData ) throws IOException {
         GAV gav = formData.getGav();
-        InputStream jarStream = null;
 
-        try {
-            jarStream = formData.getFile().getInputStream();
-            if ( gav == null ) {
-                if ( !jarStream.markSupported() ) {
-                    jarStream = new BufferedInputStream( jarStream );
-                }
+        //An invalid JAR fails the upload as it does when the JAR is streamed
+        if ( formData.getJar() == null ) {
+            formData.setJar( writeJar( formData.getFile().getInputStream() ) );
+        }
 
-                // is available() safe?
-                jarStream.mark( jarStream.available() );
+        try {
+            final StreamedJar jar = formData.getJar();
 
-                PomModel pomModel = PomModelResolver.resolveFromJar( jarStream );
+            if ( gav == null ) {
+                PomModel pomModel = PomModelResolver.resolveFromJar( jar );
 
                 //If we were able to get a POM model we can get the GAV
                 if ( pomModel != null ) {
@@ -162,10 +214,9 @@ public class HttpPostHelper {
                 } else {
                     return UPLOAD_MISSING_POM;
                 }
-                jarStream.reset();
             }
 
-            m2RepoService.deployJar( jarStream,
+            m2RepoService.deployJar( jar,
                                      gav );
 
             return UPLOAD_OK;
@@ -176,8 +227,8 @@ public class HttpPostHelper {
             throw ExceptionUtilities.handleException( ioe );
 
         } finally {
-            if ( jarStream != null ) {
-                jarStream.close();
+            if ( formData.getJar() != null ) {
+                formData.getJar().getFile().delete();
             }
 
         }
@@ -88,6 +88,11 @@ public class HttpPutHelper {
             //Copy input
             IOUtil.copy( inputStream,
                          outputStream );
+            outputStream.close();
+            outputStream = null;
+
+            //Make the new artifact visible to listings
+            m2RepoService.updateArtifactIndex( file );
 
             response.setStatus( status );
 
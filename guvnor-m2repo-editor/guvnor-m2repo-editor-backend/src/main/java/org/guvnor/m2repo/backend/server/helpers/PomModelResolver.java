@@ -21,6 +21,7 @@ import org.apache.maven.project.ProjectBuildingException;
 import org.drools.compiler.kproject.ReleaseIdImpl;
 import org.drools.compiler.kproject.xml.PomModel;
 import org.guvnor.m2repo.backend.server.GuvnorM2Repository;
+import org.guvnor.m2repo.backend.server.StreamedJar;
 import org.kie.api.builder.ReleaseId;
 import org.kie.scanner.embedder.MavenEmbedderException;
 import org.slf4j.Logger;
@@ -67,6 +68,42 @@ public class PomModelResolver {
         return pomModel;
     }
 
+    /**
+     * Construct a PomModel from a JAR written to a file, using the pom.xml or pom.properties
+     * read whilst the JAR was written.
+     * @param jar The JAR
+     * @return a populated PomModel or null if neither pom.xml or pom.properties existed in the JAR
+     */
+    public static PomModel resolveFromJar( final StreamedJar jar ) {
+        //Attempt to load JAR's POM information from it's pom.xml file
+        PomModel pomModel = null;
+        try {
+            final String pomXML = jar.getPomXML();
+            if ( pomXML != null ) {
+                pomModel = PomModel.Parser.parse( "pom.xml",
+                                                  new ByteArrayInputStream( pomXML.getBytes() ) );
+            }
+        } catch ( Exception e ) {
+            log.info( "Failed to parse pom.xml for GAV information. Falling back to pom.properties.",
+                      e );
+        }
+
+        //Attempt to load JAR's POM information from it's pom.properties file
+        if ( pomModel == null ) {
+            try {
+                final String pomProperties = jar.getPomProperties();
+                if ( pomProperties != null ) {
+                    final ReleaseId releaseId = ReleaseIdImpl.fromPropertiesString( pomProperties );
+                    pomModel = new PomModel.InternalModel();
+                    ( (PomModel.InternalModel) pomModel ).setReleaseId( releaseId );
+                }
+            } catch ( Exception e ) {
+                log.info( "Failed to parse pom.properties for GAV information." );
+            }
+        }
+        return pomModel;
+    }
+
     /**
      * Construct a PomModel from a pom.xml file
      * @param pomStream InputStream to the pom.xml file
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.m2repo.backend.server;
+
+import java.io.File;
+import java.util.Collections;
+
+import org.apache.commons.io.FileUtils;
+import org.guvnor.common.services.project.model.GAV;
+import org.guvnor.m2repo.model.JarListPageRequest;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+public class M2ArtifactIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File root;
+
+    @Before
+    public void setup() throws Exception {
+        root = folder.getRoot();
+        writePom( new GAV( "org.guvnor",
+                           "artifact-a",
+                           "1.0" ) );
+        writePom( new GAV( "org.guvnor",
+                           "artifact-b",
+                           "1.0" ) );
+        writePom( new GAV( "org.guvnor",
+                           "artifact-c",
+                           "1.0" ) );
+    }
+
+    @Test
+    public void testQueryPage() {
+        final M2ArtifactIndex index = new M2ArtifactIndex( root );
+        index.load();
+
+        final M2ArtifactIndex.Page page = index.query( null,
+                                                       null,
+                                                       JarListPageRequest.COLUMN_NAME,
+                                                       false,
+                                                       1,
+                                                       1 );
+        assertEquals( 3,
+                      page.getTotalSize() );
+        assertEquals( 1,
+                      page.getArtifacts().size() );
+        assertEquals( "artifact-b-1.0.pom",
+                      page.getArtifacts().get( 0 ).getName() );
+        assertEquals( "org/guvnor/artifact-b/1.0/artifact-b-1.0.pom",
+                      page.getArtifacts().get( 0 ).getPath() );
+        assertEquals( new GAV( "org.guvnor",
+                               "artifact-b",
+                               "1.0" ),
+                      page.getArtifacts().get( 0 ).getGav() );
+    }
+
+    @Test
+    public void testQueryFilters() {
+        final M2ArtifactIndex index = new M2ArtifactIndex( root );
+        index.load();
+
+        assertEquals( 1,
+                      index.query( "ARTIFACT-C",
+                                   null,
+                                   null,
+                                   true,
+                                   0,
+                                   null ).getTotalSize() );
+        assertEquals( 0,
+                      index.query( null,
+                                   Collections.singletonList( "jar" ),
+                                   null,
+                                   true,
+                                   0,
+                                   null ).getTotalSize() );
+    }
+
+    @Test
+    public void testReconcile() throws Exception {
+        final M2ArtifactIndex index = new M2ArtifactIndex( root );
+        index.load();
+
+        FileUtils.deleteDirectory( new File( root,
+                                             "org/guvnor/artifact-a" ) );
+        writePom( new GAV( "org.guvnor",
+                           "artifact-d",
+                           "1.0" ) );
+        index.reconcile( new File( root,
+                                   "org/guvnor" ) );
+
+        final M2ArtifactIndex.Page page = index.query( null,
+                                                       null,
+                                                       JarListPageRequest.COLUMN_PATH,
+                                                       true,
+                                                       0,
+                                                       null );
+        assertEquals( 3,
+                      page.getTotalSize() );
+        assertEquals( "artifact-b-1.0.pom",
+                      page.getArtifacts().get( 0 ).getName() );
+        assertEquals( "artifact-d-1.0.pom",
+                      page.getArtifacts().get( 2 ).getName() );
+    }
+
+    @Test
+    public void testSavedIndexIsLoaded() throws Exception {
+        final M2ArtifactIndex index = new M2ArtifactIndex( root );
+        assertFalse( index.load() );
+
+        //Artifacts added since the index was saved are only found by reconciliation
+        writePom( new GAV( "org.guvnor",
+                           "artifact-d",
+                           "1.0" ) );
+
+        final M2ArtifactIndex restored = new M2ArtifactIndex( root );
+        assertTrue( restored.load() );
+        assertEquals( 3,
+                      restored.size() );
+
+        restored.reconcile( root );
+        assertEquals( 4,
+                      restored.size() );
+    }
+
+    @Test
+    public void testArtifactWithoutGAVIsSaved() throws Exception {
+        //A POM inheriting its groupId and version from its parent
+        FileUtils.writeStringToFile( new File( root,
+                                               "org/guvnor/artifact-d/1.0/artifact-d-1.0.pom" ),
+                                     "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                                             + "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n"
+                                             + "  <modelVersion>4.0.0</modelVersion>\n"
+                                             + "  <artifactId>artifact-d</artifactId>\n"
+                                             + "</project>\n" );
+        final M2ArtifactIndex index = new M2ArtifactIndex( root );
+        assertFalse( index.load() );
+
+        final M2ArtifactIndex restored = new M2ArtifactIndex( root );
+        assertTrue( restored.load() );
+        assertEquals( 4,
+                      restored.size() );
+        assertEquals( gav( index,
+                           "artifact-d-1.0.pom" ),
+                      gav( restored,
+                           "artifact-d-1.0.pom" ) );
+    }
+
+    private static GAV gav( final M2ArtifactIndex index,
+                            final String name ) {
+        final M2ArtifactIndex.Page page = index.query( name,
+                                                       null,
+                                                       JarListPageRequest.COLUMN_NAME,
+                                                       true,
+                                                       0,
+                                                       null );
+        assertEquals( 1,
+                      page.getTotalSize() );
+        return page.getArtifacts().get( 0 ).getGav();
+    }
+
+    private void writePom( final GAV gav ) throws Exception {
+        final File pom = new File( root,
+                                   gav.getGroupId().replace( '.',
+                                                             '/' ) + "/" + gav.getArtifactId() + "/" + gav.getVersion() + "/" + gav.getArtifactId() + "-" + gav.getVersion() + ".pom" );
+        FileUtils.writeStringToFile( pom,
+                                     "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                                             + "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n"
+                                             + "  <modelVersion>4.0.0</modelVersion>\n"
+                                             + "  <groupId>" + gav.getGroupId() + "</groupId>\n"
+                                             + "  <artifactId>" + gav.getArtifactId() + "</artifactId>\n"
+                                             + "  <version>" + gav.getVersion() + "</version>\n"
+                                             + "</project>\n" );
+    }
+
+}
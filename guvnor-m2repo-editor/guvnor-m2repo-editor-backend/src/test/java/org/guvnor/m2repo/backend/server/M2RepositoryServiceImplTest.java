@@ -23,6 +23,7 @@ import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.jar.JarEntry;
@@ -35,6 +36,7 @@ import org.guvnor.m2repo.backend.server.helpers.FormData;
 import org.guvnor.m2repo.backend.server.helpers.HttpPostHelper;
 import org.guvnor.m2repo.model.JarListPageRequest;
 import org.guvnor.m2repo.model.JarListPageRow;
+import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.Before;
@@ -110,6 +112,11 @@ public class M2RepositoryServiceImplTest {
         m2RepoServiceField.set( helper, service );
     }
 
+    @After
+    public void destroyRepository() {
+        repo.destroy();
+    }
+
     @AfterClass
     public static void tearDown() throws Exception {
         log.info( "Deleting all Repository instances.." );
@@ -324,6 +331,97 @@ public class M2RepositoryServiceImplTest {
      */
     @Test
     public void testListArtifacts() throws Exception {
+        List<M2ArtifactIndex.IndexedArtifact> artifacts = new ArrayList<M2ArtifactIndex.IndexedArtifact>();
+        final int TOTAL = 5;
+        final int PAGE_START = 1;
+        final int PAGE_SIZE = 2;
+        for ( int i = PAGE_START; i < PAGE_START + PAGE_SIZE; i++ ) {
+            artifacts.add( new M2ArtifactIndex.IndexedArtifact( "path/x" + i,
+                                                                gavBackend,
+                                                                0,
+                                                                0 ) );
+        }
+        // Create a mock repository to make the test independent on any project deployment
+        GuvnorM2Repository mockRepo = Mockito.mock( GuvnorM2Repository.class );
+        Mockito.when( mockRepo.listArtifacts( Mockito.anyString(),
+                                              Matchers.<List<String>>any(),
+                                              Mockito.anyString(),
+                                              Mockito.anyBoolean(),
+                                              Mockito.eq( PAGE_START ),
+                                              Mockito.eq( PAGE_SIZE ) ) )
+                .thenReturn( new M2ArtifactIndex.Page( artifacts,
+                                                       TOTAL ) );
+
+        // Create a shell M2RepoService with injected mock M2Repository
+        M2RepoServiceImpl m2service = new M2RepoServiceImpl();
+        java.lang.reflect.Field repositoryField = M2RepoServiceImpl.class.getDeclaredField( "repository" );
+        repositoryField.setAccessible( true );
+        repositoryField.set( m2service,
+                             mockRepo );
+
+        // Verify PageResponse
+        JarListPageRequest request = new JarListPageRequest( PAGE_START, PAGE_SIZE, null, null, null, false );
+        PageResponse<JarListPageRow> response = m2service.listArtifacts( request );
+        assertEquals( PAGE_SIZE, response.getPageRowList().size() );
+        assertEquals( TOTAL, response.getTotalRowSize() );
+        int i = PAGE_START;
+        for ( JarListPageRow row : response.getPageRowList() ) {
+            assertEquals( "x" + i, row.getName() );
+            assertEquals( "path/x" + i, row.getPath() );
+            assertEquals( gavBackend, row.getGav() );
+            i += 1;
+        }
+    }
+
+    @Test
+    public void testListArtifactsBeforeIndexIsBuilt() throws Exception {
+        List<File> artifacts = new ArrayList<File>();
+        final int TOTAL = 5;
+        for ( int i = 0; i < TOTAL; i++ ) {
+            artifacts.add( new File( GuvnorM2Repository.M2_REPO_DIR, "path/x" + i ) );
+        }
+        // The mock repository has no index, so the repository is walked
+        GuvnorM2Repository mockRepo = Mockito.mock( GuvnorM2Repository.class );
+        Mockito.when( mockRepo.listFiles( Mockito.anyString(), Matchers.<List<String>>any() ) )
+                .thenReturn( artifacts );
+
+        // Create a shell M2RepoService with injected mock M2Repository
+        M2RepoServiceImpl m2service = new M2RepoServiceImpl();
+        java.lang.reflect.Field repositoryField = M2RepoServiceImpl.class.getDeclaredField( "repository" );
+        repositoryField.setAccessible( true );
+        repositoryField.set( m2service,
+                             mockRepo );
+
+        JarListPageRequest request = new JarListPageRequest( 0, null, null, null, null, false );
+        PageResponse<JarListPageRow> response = m2service.listArtifacts( request );
+        assertEquals( TOTAL, response.getPageRowList().size() );
+        assertEquals( TOTAL, response.getTotalRowSize() );
+    }
+
+    @Test
+    public void testArtifactIndexIsBuiltInBackground() throws Exception {
+        deployArtifact( gavBackend );
+
+        //The repository is walked while the index is built
+        assertFilesCount( null, null, null, false, 2 );
+
+        M2ArtifactIndex index = repo.getArtifactIndex();
+        final long timeout = System.currentTimeMillis() + 10000;
+        while ( index == null && System.currentTimeMillis() < timeout ) {
+            Thread.sleep( 10 );
+            index = repo.getArtifactIndex();
+        }
+        assertNotNull( index );
+        assertEquals( 2, index.size() );
+
+        //Once built, deployments update the index
+        deployArtifact( gavBackend1 );
+        assertEquals( 4, index.size() );
+        assertFilesCount( null, null, null, false, 4 );
+    }
+
+    @Test
+    public void testListArtifactsOfUnindexedFormat() throws Exception {
         List<File> artifacts = new ArrayList<File>();
         final int TOTAL = 5;
         final int PAGE_START = 1;
@@ -344,7 +442,7 @@ public class M2RepositoryServiceImplTest {
                              mockRepo );
 
         // Verify PageResponse
-        JarListPageRequest request = new JarListPageRequest( PAGE_START, PAGE_SIZE, null, null, null, false );
+        JarListPageRequest request = new JarListPageRequest( PAGE_START, PAGE_SIZE, null, Collections.singletonList( "war" ), null, false );
         PageResponse<JarListPageRow> response = m2service.listArtifacts( request );
         assertEquals( PAGE_SIZE, response.getPageRowList().size() );
         assertEquals( TOTAL, response.getTotalRowSize() );
@@ -0,0 +1,266 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.m2repo.backend.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+public class StreamedJarTest {
+
+    private static final String POM_XML_PATH = "META-INF/maven/org.guvnor/test/pom.xml";
+    private static final String POM_PROPERTIES_PATH = "META-INF/maven/org.guvnor/test/pom.properties";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testWriteReadsMetadata() throws Exception {
+        final byte[] content = jar( POM_XML_PATH,
+                                    "<project/>",
+                                    POM_PROPERTIES_PATH,
+                                    "groupId=org.guvnor" );
+        final File file = new File( folder.getRoot(),
+                                    "test.jar" );
+
+        final StreamedJar jar = StreamedJar.write( new ByteArrayInputStream( content ),
+                                                   file );
+
+        assertEquals( "<project/>",
+                      jar.getPomXML() );
+        assertEquals( "groupId=org.guvnor",
+                      jar.getPomProperties() );
+
+        jar.finish( Collections.<String, String>emptyMap() );
+
+        //The JAR is written unchanged, so its checksums are those of the uploaded JAR
+        assertArrayEquals( content,
+                           FileUtils.readFileToByteArray( file ) );
+        assertEquals( checksum( "SHA-1",
+                                content ),
+                      jar.getSha1() );
+        assertEquals( checksum( "MD5",
+                                content ),
+                      jar.getMd5() );
+    }
+
+    @Test
+    public void testFinishAddsMissingMetadata() throws Exception {
+        final byte[] content = jar( "org/guvnor/Test.class",
+                                    "class" );
+        final File file = new File( folder.getRoot(),
+                                    "test.jar" );
+        final StreamedJar jar = StreamedJar.write( new ByteArrayInputStream( content ),
+                                                   file );
+        assertNull( jar.getPomXML() );
+        assertNull( jar.getPomProperties() );
+
+        jar.finish( Collections.singletonMap( POM_XML_PATH,
+                                              "<project/>" ) );
+
+        assertEquals( "<project/>",
+                      jar.getPomXML() );
+        assertEquals( checksum( "SHA-1",
+                                FileUtils.readFileToByteArray( file ) ),
+                      jar.getSha1() );
+        assertEquals( "class",
+                      entry( file,
+                             "org/guvnor/Test.class" ) );
+        assertEquals( "<project/>",
+                      entry( file,
+                             POM_XML_PATH ) );
+    }
+
+    @Test
+    public void testSameJarIsWrittenToSameBytes() throws Exception {
+        final byte[] content = jar( "org/guvnor/Test.class",
+                                    "class" );
+
+        final StreamedJar jar1 = StreamedJar.write( new ByteArrayInputStream( content ),
+                                                    new File( folder.getRoot(),
+                                                              "test1.jar" ) );
+        jar1.finish( Collections.singletonMap( POM_XML_PATH,
+                                               "<project/>" ) );
+        //Entries added later must not have a later time
+        Thread.sleep( 2000 );
+        final StreamedJar jar2 = StreamedJar.write( new ByteArrayInputStream( content ),
+                                                    new File( folder.getRoot(),
+                                                              "test2.jar" ) );
+        jar2.finish( Collections.singletonMap( POM_XML_PATH,
+                                               "<project/>" ) );
+
+        assertEquals( jar1.getSha1(),
+                      jar2.getSha1() );
+    }
+
+    @Test
+    public void testFinishKeepsStoredEntries() throws Exception {
+        final byte[] content = "class".getBytes( "UTF-8" );
+        final CRC32 crc = new CRC32();
+        crc.update( content );
+        final ZipEntry stored = new ZipEntry( "org/guvnor/Test.class" );
+        stored.setMethod( ZipEntry.STORED );
+        stored.setSize( content.length );
+        stored.setCrc( crc.getValue() );
+        stored.setComment( "comment" );
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ZipOutputStream zos = new ZipOutputStream( bytes );
+        zos.putNextEntry( stored );
+        zos.write( content );
+        zos.closeEntry();
+        zos.close();
+
+        final File file = new File( folder.getRoot(),
+                                    "test.jar" );
+        final StreamedJar jar = StreamedJar.write( new ByteArrayInputStream( bytes.toByteArray() ),
+                                                   file );
+        jar.finish( Collections.singletonMap( POM_XML_PATH,
+                                              "<project/>" ) );
+
+        final ZipFile zip = new ZipFile( file );
+        try {
+            final ZipEntry entry = zip.getEntry( "org/guvnor/Test.class" );
+            assertEquals( ZipEntry.STORED,
+                          entry.getMethod() );
+            assertEquals( "comment",
+                          entry.getComment() );
+        } finally {
+            zip.close();
+        }
+    }
+
+    @Test
+    public void testTruncatedJarIsRejected() throws Exception {
+        final byte[] content = jar( "org/guvnor/Test.class",
+                                    "class",
+                                    POM_XML_PATH,
+                                    "<project/>" );
+        assertRejected( Arrays.copyOf( content,
+                                       content.length / 2 ) );
+        //Only the central directory is missing
+        assertRejected( Arrays.copyOf( content,
+                                       content.length - 30 ) );
+    }
+
+    @Test
+    public void testFileThatIsNotAJarIsRejected() throws Exception {
+        assertRejected( "not a JAR".getBytes( "UTF-8" ) );
+    }
+
+    @Test
+    public void testJarWithDuplicateEntryIsRejected() throws Exception {
+        //ZipOutputStream does not write duplicate entries, so the local header of an entry is repeated
+        final byte[] content = jar( "org/guvnor/Test.class",
+                                    "class" );
+        final int centralDirectory = indexOf( content,
+                                              new byte[]{ 0x50, 0x4b, 0x01, 0x02 } );
+        final ByteArrayOutputStream duplicated = new ByteArrayOutputStream();
+        duplicated.write( content,
+                          0,
+                          centralDirectory );
+        duplicated.write( content );
+
+        assertRejected( duplicated.toByteArray() );
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testJarCanOnlyBeFinishedOnce() throws Exception {
+        final StreamedJar jar = StreamedJar.write( new ByteArrayInputStream( jar( "org/guvnor/Test.class",
+                                                                                  "class" ) ),
+                                                   new File( folder.getRoot(),
+                                                             "test.jar" ) );
+        jar.finish( Collections.<String, String>emptyMap() );
+        jar.finish( Collections.<String, String>emptyMap() );
+    }
+
+    private void assertRejected( final byte[] content ) throws Exception {
+        final File file = new File( folder.getRoot(),
+                                    "rejected.jar" );
+        try {
+            StreamedJar.write( new ByteArrayInputStream( content ),
+                               file );
+            fail( "The JAR is not valid" );
+        } catch ( IOException e ) {
+            //Expected
+        }
+        assertFalse( file.exists() );
+    }
+
+    private static int indexOf( final byte[] content,
+                                final byte[] signature ) {
+        for ( int i = 0; i <= content.length - signature.length; i++ ) {
+            if ( Arrays.equals( signature,
+                                Arrays.copyOfRange( content,
+                                                    i,
+                                                    i + signature.length ) ) ) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException( "Signature not found" );
+    }
+
+    private static String entry( final File file,
+                                 final String name ) throws Exception {
+        final ZipFile zip = new ZipFile( file );
+        try {
+            final ZipEntry entry = zip.getEntry( name );
+            assertNotNull( entry );
+            return IOUtils.toString( zip.getInputStream( entry ),
+                                     "UTF-8" );
+        } finally {
+            zip.close();
+        }
+    }
+
+    private static byte[] jar( final String... entries ) throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ZipOutputStream zos = new ZipOutputStream( bytes );
+        for ( int i = 0; i < entries.length; i += 2 ) {
+            zos.putNextEntry( new ZipEntry( entries[ i ] ) );
+            zos.write( entries[ i + 1 ].getBytes( "UTF-8" ) );
+            zos.closeEntry();
+        }
+        zos.close();
+        return bytes.toByteArray();
+    }
+
+    private static String checksum( final String algorithm,
+                                    final byte[] content ) throws Exception {
+        final byte[] digest = MessageDigest.getInstance( algorithm ).digest( content );
+        return String.format( "%0" + ( digest.length * 2 ) + "x",
+                              new BigInteger( 1,
+                                              digest ) );
+    }
+
+}
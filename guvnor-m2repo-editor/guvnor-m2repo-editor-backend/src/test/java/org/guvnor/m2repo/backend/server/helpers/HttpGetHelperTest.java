@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.m2repo.backend.server.helpers;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+public class HttpGetHelperTest {
+
+    private static final String CHECKSUM = "2fd4e1c67a2d28fced849ee1bb76e7391b93eb12";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpGetHelper helper;
+    private File artifact;
+
+    @Before
+    public void setup() throws Exception {
+        helper = new HttpGetHelper();
+        artifact = folder.newFile( "artifact-1.0.jar" );
+        FileUtils.writeStringToFile( artifact,
+                                     "content" );
+        artifact.setLastModified( 10000 );
+    }
+
+    @Test
+    public void testETagWithoutChecksum() {
+        assertEquals( "artifact-1.0.jar_7_10000",
+                      helper.getETag( artifact,
+                                      7,
+                                      10000 ) );
+    }
+
+    @Test
+    public void testETagFromChecksum() throws Exception {
+        final File checksum = new File( folder.getRoot(),
+                                        "artifact-1.0.jar.sha1" );
+        FileUtils.writeStringToFile( checksum,
+                                     CHECKSUM.toUpperCase() + "  artifact-1.0.jar\n" );
+        checksum.setLastModified( 20000 );
+
+        assertEquals( "\"" + CHECKSUM + "\"",
+                      helper.getETag( artifact,
+                                      7,
+                                      10000 ) );
+    }
+
+    @Test
+    public void testETagIgnoresOutOfDateChecksum() throws Exception {
+        final File checksum = new File( folder.getRoot(),
+                                        "artifact-1.0.jar.sha1" );
+        FileUtils.writeStringToFile( checksum,
+                                     CHECKSUM );
+        checksum.setLastModified( 5000 );
+
+        assertEquals( "artifact-1.0.jar_7_10000",
+                      helper.getETag( artifact,
+                                      7,
+                                      10000 ) );
+    }
+
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.m2repo.backend.server.helpers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.guvnor.common.services.project.model.GAV;
+import org.guvnor.m2repo.backend.server.ExtendedM2RepoService;
+import org.guvnor.m2repo.backend.server.StreamedJar;
+import org.guvnor.m2repo.model.HTMLFileManagerFields;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class HttpPostHelperTest {
+
+    private static final String BOUNDARY = "----boundary";
+
+    private static final GAV UPLOADED_GAV = new GAV( "org.guvnor",
+                                                     "test",
+                                                     "1.0" );
+
+    @Mock
+    private ExtendedM2RepoService m2RepoService;
+
+    @InjectMocks
+    private HttpPostHelper helper;
+
+    private HttpServletResponse response;
+    private StringWriter responseContent;
+
+    @Before
+    public void setup() throws Exception {
+        responseContent = new StringWriter();
+        response = mock( HttpServletResponse.class );
+        when( response.getWriter() ).thenReturn( new PrintWriter( responseContent ) );
+    }
+
+    @Test
+    public void testFieldsBeforeFile() throws Exception {
+        final ArgumentCaptor<StreamedJar> jar = captureDeployedJar();
+
+        helper.handle( request( gavFields(),
+                                file( "test.jar",
+                                      jar() ) ),
+                       response );
+
+        assertEquals( HTMLFileManagerFields.UPLOAD_OK,
+                      responseContent.toString() );
+        verify( m2RepoService ).deployJar( any( StreamedJar.class ),
+                                           eq( UPLOADED_GAV ) );
+        assertFalse( jar.getValue().getFile().exists() );
+    }
+
+    @Test
+    public void testFieldsAfterFile() throws Exception {
+        final ArgumentCaptor<StreamedJar> jar = captureDeployedJar();
+
+        helper.handle( request( file( "test.jar",
+                                      jar() ),
+                                gavFields() ),
+                       response );
+
+        assertEquals( HTMLFileManagerFields.UPLOAD_OK,
+                      responseContent.toString() );
+        verify( m2RepoService ).deployJar( any( StreamedJar.class ),
+                                           eq( UPLOADED_GAV ) );
+        assertFalse( jar.getValue().getFile().exists() );
+    }
+
+    @Test
+    public void testFileSizeLimitExceeded() throws Exception {
+        final String[] temporaryFiles = temporaryFiles();
+        final HttpPostHelper limitedHelper;
+        System.setProperty( "org.guvnor.m2repo.upload.max-file-size",
+                            "100" );
+        try {
+            limitedHelper = new HttpPostHelper();
+        } finally {
+            System.clearProperty( "org.guvnor.m2repo.upload.max-file-size" );
+        }
+
+        try {
+            limitedHelper.handle( request( gavFields(),
+                                           file( "test.jar",
+                                                 jar() ) ),
+                                  response );
+            fail( "The file is larger than allowed" );
+        } catch ( IOException e ) {
+            //Expected
+        }
+
+        assertArrayEquals( temporaryFiles,
+                           temporaryFiles() );
+    }
+
+    @Test
+    public void testTemporaryFileRemovedOnFailure() throws Exception {
+        final ArgumentCaptor<StreamedJar> jar = ArgumentCaptor.forClass( StreamedJar.class );
+        doThrow( new RuntimeException( "Deployment failed" ) ).when( m2RepoService ).deployJar( jar.capture(),
+                                                                                               any( GAV.class ) );
+
+        try {
+            helper.handle( request( file( "test.jar",
+                                          jar() ),
+                                    gavFields() ),
+                           response );
+            fail( "Deployment failed" );
+        } catch ( RuntimeException e ) {
+            //Expected
+        }
+
+        assertFalse( jar.getValue().getFile().exists() );
+    }
+
+    @Test
+    public void testTruncatedJarIsRejected() throws Exception {
+        final String[] temporaryFiles = temporaryFiles();
+        final byte[] jar = jar();
+
+        try {
+            helper.handle( request( gavFields(),
+                                    file( "test.jar",
+                                          Arrays.copyOf( jar,
+                                                         jar.length / 2 ) ) ),
+                           response );
+            fail( "The JAR is truncated" );
+        } catch ( IOException e ) {
+            //Expected
+        }
+
+        assertEquals( "",
+                      responseContent.toString() );
+        verify( m2RepoService,
+                never() ).deployJar( any( StreamedJar.class ),
+                                     any( GAV.class ) );
+        assertArrayEquals( temporaryFiles,
+                           temporaryFiles() );
+    }
+
+    private ArgumentCaptor<StreamedJar> captureDeployedJar() {
+        final ArgumentCaptor<StreamedJar> jar = ArgumentCaptor.forClass( StreamedJar.class );
+        doAnswer( new Answer<Void>() {
+            @Override
+            public Void answer( final InvocationOnMock invocation ) throws Throwable {
+                final StreamedJar deployed = (StreamedJar) invocation.getArguments()[ 0 ];
+                deployed.finish( Collections.<String, String>emptyMap() );
+                //The JAR is deployed from the file it was written to
+                assertTrue( deployed.getFile().length() > 0 );
+                return null;
+            }
+        } ).when( m2RepoService ).deployJar( jar.capture(),
+                                             any( GAV.class ) );
+        return jar;
+    }
+
+    private static String[] temporaryFiles() {
+        final String[] names = new File( System.getProperty( "java.io.tmpdir" ) ).list();
+        Arrays.sort( names );
+        return names;
+    }
+
+    private static byte[] jar() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ZipOutputStream zos = new ZipOutputStream( bytes );
+        zos.putNextEntry( new ZipEntry( "org/guvnor/Test.class" ) );
+        //Content that cannot be compressed, so the JAR is larger than it
+        final byte[] content = new byte[ 1000 ];
+        new Random( 0 ).nextBytes( content );
+        zos.write( content );
+        zos.closeEntry();
+        zos.close();
+        return bytes.toByteArray();
+    }
+
+    private static byte[] gavFields() throws IOException {
+        final ByteArrayOutputStream fields = new ByteArrayOutputStream();
+        fields.write( field( HTMLFileManagerFields.GROUP_ID,
+                             UPLOADED_GAV.getGroupId() ) );
+        fields.write( field( HTMLFileManagerFields.ARTIFACT_ID,
+                             UPLOADED_GAV.getArtifactId() ) );
+        fields.write( field( HTMLFileManagerFields.VERSION_ID,
+                             UPLOADED_GAV.getVersion() ) );
+        return fields.toByteArray();
+    }
+
+    private static byte[] field( final String name,
+                                 final String value ) throws IOException {
+        return part( "name=\"" + name + "\"",
+                     value.getBytes( "UTF-8" ) );
+    }
+
+    private static byte[] file( final String fileName,
+                                final byte[] content ) throws IOException {
+        return part( "name=\"" + HTMLFileManagerFields.UPLOAD_FIELD_NAME_ATTACH + "\"; filename=\"" + fileName + "\"\r\nContent-Type: application/java-archive",
+                     content );
+    }
+
+    private static byte[] part( final String disposition,
+                                final byte[] content ) throws IOException {
+        final ByteArrayOutputStream part = new ByteArrayOutputStream();
+        part.write( ( "--" + BOUNDARY + "\r\nContent-Disposition: form-data; " + disposition + "\r\n\r\n" ).getBytes( "UTF-8" ) );
+        part.write( content );
+        part.write( "\r\n".getBytes( "UTF-8" ) );
+        return part.toByteArray();
+    }
+
+    private static HttpServletRequest request( final byte[]... parts ) throws IOException {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for ( byte[] part : parts ) {
+            body.write( part );
+        }
+        body.write( ( "--" + BOUNDARY + "--\r\n" ).getBytes( "UTF-8" ) );
+        final ByteArrayInputStream input = new ByteArrayInputStream( body.toByteArray() );
+
+        final HttpServletRequest request = mock( HttpServletRequest.class );
+        when( request.getMethod() ).thenReturn( "POST" );
+        when( request.getContentType() ).thenReturn( "multipart/form-data; boundary=" + BOUNDARY );
+        when( request.getContentLength() ).thenReturn( body.size() );
+        when( request.getInputStream() ).thenReturn( new ServletInputStream() {
+            @Override
+            public int read() throws IOException {
+                return input.read();
+            }
+
+            @Override
+            public int read( final byte[] b,
+                             final int off,
+                             final int len ) throws IOException {
+                return input.read( b,
+                                   off,
+                                   len );
+            }
+
+            @Override
+            public boolean isFinished() {
+                return input.available() == 0;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setReadListener( final ReadListener readListener ) {
+            }
+        } );
+        return request;
+    }
+
+}
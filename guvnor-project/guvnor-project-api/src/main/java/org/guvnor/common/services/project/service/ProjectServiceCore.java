@@ -15,6 +15,7 @@
  */
 package org.guvnor.common.services.project.service;
 
+import java.util.List;
 import java.util.Set;
 
 import org.guvnor.common.services.project.model.POM;
@@ -46,6 +47,23 @@ public interface ProjectServiceCore<T> {
     Set<Project> getProjects( final Repository repository,
                               final String branch );
 
+    /**
+     * Gets a page of the projects, ordered by name, in a given repository whose name contains a pattern. Security checks are omitted.
+     * @param repository
+     * @param branch the branch where we are looking for the projects
+     * @param namePattern the text the name of the project has to contain
+     * @param caseSensitive whether the case of the name has to match the pattern
+     * @param offset the number of matching projects to skip
+     * @param pageSize the maximum number of projects to return; zero or negative if unlimited
+     * @return
+     */
+    List<Project> getAllProjectsByName( final Repository repository,
+                                        final String branch,
+                                        final String namePattern,
+                                        final boolean caseSensitive,
+                                        final int offset,
+                                        final int pageSize );
+
     /**
      * Creates a new project to the given path.
      * @param repositoryRoot
@@ -17,10 +17,12 @@
 package org.guvnor.common.services.project.backend.server;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import javax.enterprise.event.Event;
+import javax.inject.Inject;
 
 import org.guvnor.common.services.backend.config.SafeSessionInfo;
 import org.guvnor.common.services.backend.exceptions.ExceptionUtilities;
@@ -29,8 +31,12 @@ import org.guvnor.common.services.project.builder.events.InvalidateDMOProjectCac
 import org.guvnor.common.services.project.events.NewPackageEvent;
 import org.guvnor.common.services.project.events.NewProjectEvent;
 import org.guvnor.common.services.project.events.RenameProjectEvent;
+import org.guvnor.common.services.project.model.Build;
+import org.guvnor.common.services.project.model.Dependency;
+import org.guvnor.common.services.project.model.GAV;
 import org.guvnor.common.services.project.model.POM;
 import org.guvnor.common.services.project.model.Package;
+import org.guvnor.common.services.project.model.Plugin;
 import org.guvnor.common.services.project.model.Project;
 import org.guvnor.common.services.project.project.ProjectFactory;
 import org.guvnor.common.services.project.service.POMService;
@@ -81,6 +87,8 @@ public abstract class AbstractProjectService<T extends Project>
 
     protected SessionInfo sessionInfo;
 
+    protected ProjectCatalogue projectCatalogue;
+
     protected AbstractProjectService() {
     }
 
@@ -112,6 +120,11 @@ public abstract class AbstractProjectService<T extends Project>
         this.sessionInfo = new SafeSessionInfo( sessionInfo );
     }
 
+    @Inject
+    public void setProjectCatalogue( final ProjectCatalogue projectCatalogue ) {
+        this.projectCatalogue = projectCatalogue;
+    }
+
     @Override
     public WorkingSetSettings loadWorkingSetConfig( final Path project ) {
         //TODO {porcelli}
@@ -129,33 +142,202 @@ public abstract class AbstractProjectService<T extends Project>
     }
 
     public Set<Project> getProjects( final Repository repository, String branch, boolean secure ) {
-        final Set<Project> authorizedProjects = new HashSet<Project>();
         if ( repository == null ) {
-            return authorizedProjects;
+            return new HashSet<Project>();
         }
-        final Path repositoryRoot = repository.getBranchRoot( branch );
-        final DirectoryStream<org.uberfire.java.nio.file.Path> nioRepositoryPaths = ioService.newDirectoryStream( Paths.convert( repositoryRoot ) );
-        try {
-            for ( org.uberfire.java.nio.file.Path nioRepositoryPath : nioRepositoryPaths ) {
-                if ( Files.isDirectory( nioRepositoryPath ) ) {
-                    final org.uberfire.backend.vfs.Path projectPath = Paths.convert( nioRepositoryPath );
-                    final Project project = resourceResolver.resolveProject( projectPath );
-
-                    if ( project != null ) {
-                        if ( !secure || authorizationManager.authorize( project, sessionInfo.getIdentity() ) ) {
-                            POM projectPom = pomService.load( project.getPomXMLPath() );
-                            project.setPom( projectPom );
-                            authorizedProjects.add( project );
-                        }
-                    }
+        final org.uberfire.java.nio.file.Path branchRoot = Paths.convert( repository.getBranchRoot( branch ) );
+        if ( projectCatalogue == null ) {
+            return loadProjects( branchRoot,
+                                 secure );
+        }
+        if ( !secure ) {
+            return new HashSet<Project>( projectCatalogue.getProjects( branchRoot,
+                                                                       projectLoader ) );
+        }
+        return new HashSet<Project>( projectCatalogue.getProjects( branchRoot,
+                                                                   projectLoader,
+                                                                   authorizationFilter,
+                                                                   0,
+                                                                   0 ) );
+    }
+
+    @Override
+    public List<Project> getAllProjectsByName( final Repository repository,
+                                               final String branch,
+                                               final String namePattern,
+                                               final boolean caseSensitive,
+                                               final int offset,
+                                               final int pageSize ) {
+        final String pattern = caseSensitive ? namePattern : namePattern.toLowerCase();
+        return getProjects( repository,
+                            branch,
+                            false,
+                            new ProjectCatalogue.ProjectFilter() {
+                                @Override
+                                public boolean accept( final Project project ) {
+                                    final String name = project.getProjectName();
+                                    return ( caseSensitive ? name : name.toLowerCase() ).contains( pattern );
+                                }
+                            },
+                            offset,
+                            pageSize );
+    }
+
+    /**
+     * A page of the Projects of a branch, ordered by name. Authorization is only checked for as many Projects as
+     * are needed to fill the page.
+     * @param repository The repository
+     * @param branch The branch
+     * @param secure Whether to only return Projects the current user is authorized to access
+     * @param filter Selects the Projects to return. Can be null.
+     * @param offset Number of selected Projects to skip
+     * @param pageSize Maximum number of Projects to return. Zero or negative if unlimited.
+     * @return The Projects
+     */
+    public List<Project> getProjects( final Repository repository,
+                                      final String branch,
+                                      final boolean secure,
+                                      final ProjectCatalogue.ProjectFilter filter,
+                                      final int offset,
+                                      final int pageSize ) {
+        if ( repository == null ) {
+            return new ArrayList<Project>();
+        }
+        final ProjectCatalogue.ProjectFilter pageFilter = new ProjectCatalogue.ProjectFilter() {
+            @Override
+            public boolean accept( final Project project ) {
+                return ( filter == null || filter.accept( project ) ) && ( !secure || authorizationFilter.accept( project ) );
+            }
+        };
+        //Without a catalogue every Project has to be loaded anyway; so select from all of them
+        final ProjectCatalogue catalogue = projectCatalogue == null ? new ProjectCatalogue() : projectCatalogue;
+        return catalogue.getProjects( Paths.convert( repository.getBranchRoot( branch ) ),
+                                      projectLoader,
+                                      pageFilter,
+                                      offset,
+                                      pageSize );
+    }
+
+    private Set<Project> loadProjects( final org.uberfire.java.nio.file.Path branchRoot,
+                                       final boolean secure ) {
+        final Set<Project> authorizedProjects = new HashSet<Project>();
+        for ( org.uberfire.java.nio.file.Path projectFolder : projectLoader.listProjectFolders( branchRoot ) ) {
+            final Project project = resourceResolver.resolveProject( Paths.convert( projectFolder ) );
+
+            if ( project != null ) {
+                if ( !secure || authorizationManager.authorize( project, sessionInfo.getIdentity() ) ) {
+                    POM projectPom = pomService.load( project.getPomXMLPath() );
+                    project.setPom( projectPom );
+                    authorizedProjects.add( project );
                 }
             }
-        } finally {
-            nioRepositoryPaths.close();
         }
         return authorizedProjects;
     }
 
+    private final ProjectCatalogue.ProjectFilter authorizationFilter = new ProjectCatalogue.ProjectFilter() {
+        @Override
+        public boolean accept( final Project project ) {
+            return authorizationManager.authorize( project,
+                                                   sessionInfo.getIdentity() );
+        }
+    };
+
+    private final ProjectCatalogue.ProjectLoader projectLoader = new ProjectCatalogue.ProjectLoader() {
+        @Override
+        public Collection<org.uberfire.java.nio.file.Path> listProjectFolders( final org.uberfire.java.nio.file.Path branchRoot ) {
+            final List<org.uberfire.java.nio.file.Path> projectFolders = new ArrayList<org.uberfire.java.nio.file.Path>();
+            final DirectoryStream<org.uberfire.java.nio.file.Path> nioRepositoryPaths = ioService.newDirectoryStream( branchRoot );
+            try {
+                for ( org.uberfire.java.nio.file.Path nioRepositoryPath : nioRepositoryPaths ) {
+                    if ( Files.isDirectory( nioRepositoryPath ) ) {
+                        projectFolders.add( nioRepositoryPath );
+                    }
+                }
+            } finally {
+                nioRepositoryPaths.close();
+            }
+            return projectFolders;
+        }
+
+        @Override
+        public Project loadProject( final org.uberfire.java.nio.file.Path projectFolder ) {
+            if ( !Files.isDirectory( projectFolder ) ) {
+                return null;
+            }
+            final Project project = resourceResolver.resolveProject( Paths.convert( projectFolder ) );
+            if ( project == null ) {
+                return null;
+            }
+            project.setPom( pomService.load( project.getPomXMLPath() ) );
+            return project;
+        }
+
+        @Override
+        public Project copyProject( final Project project ) {
+            final Project copy = resourceResolver.simpleProjectInstance( Paths.convert( project.getRootPath() ) );
+            copy.getGroups().addAll( project.getGroups() );
+            if ( project.getPom() != null ) {
+                copy.setPom( copyPom( project.getPom() ) );
+            }
+            return copy;
+        }
+    };
+
+    private POM copyPom( final POM pom ) {
+        final POM copy = new POM( pom.getName(),
+                                  pom.getDescription(),
+                                  copyGav( pom.getGav() ) );
+        copy.setPackaging( pom.getPackaging() );
+        copy.setParent( copyGav( pom.getParent() ) );
+        copy.setDependencies( copyDependencies( pom.getDependencies() ) );
+        if ( pom.getModules() != null ) {
+            copy.setModules( new ArrayList<String>( pom.getModules() ) );
+        }
+        for ( org.guvnor.common.services.project.model.Repository repository : pom.getRepositories() ) {
+            final org.guvnor.common.services.project.model.Repository repositoryCopy = new org.guvnor.common.services.project.model.Repository();
+            repositoryCopy.setId( repository.getId() );
+            repositoryCopy.setName( repository.getName() );
+            repositoryCopy.setUrl( repository.getUrl() );
+            copy.addRepository( repositoryCopy );
+        }
+        if ( pom.getBuild() != null ) {
+            final Build build = new Build();
+            for ( Plugin plugin : pom.getBuild().getPlugins() ) {
+                final Plugin pluginCopy = new Plugin();
+                pluginCopy.setGroupId( plugin.getGroupId() );
+                pluginCopy.setArtifactId( plugin.getArtifactId() );
+                pluginCopy.setVersion( plugin.getVersion() );
+                pluginCopy.setExtensions( plugin.isExtensions() );
+                pluginCopy.setDependencies( copyDependencies( plugin.getDependencies() ) );
+                build.getPlugins().add( pluginCopy );
+            }
+            copy.setBuild( build );
+        }
+        return copy;
+    }
+
+    private GAV copyGav( final GAV gav ) {
+        if ( gav == null ) {
+            return null;
+        }
+        return new GAV( gav.getGroupId(),
+                        gav.getArtifactId(),
+                        gav.getVersion() );
+    }
+
+    private List<Dependency> copyDependencies( final List<Dependency> dependencies ) {
+        final List<Dependency> copies = new ArrayList<Dependency>();
+        if ( dependencies != null ) {
+            for ( Dependency dependency : dependencies ) {
+                final Dependency copy = new Dependency( dependency );
+                copy.setScope( dependency.getScope() );
+                copies.add( copy );
+            }
+        }
+        return copies;
+    }
+
     @Override
     public Package newPackage( final Package parentPackage,
                                final String packageName ) {
@@ -196,6 +378,7 @@ public abstract class AbstractProjectService<T extends Project>
             groups.getValue().add( group );
 
             configurationService.updateConfiguration( thisProjectConfig );
+            invalidateProjectCatalogue( project );
 
         } else {
             throw new IllegalArgumentException( "Project " + project.getProjectName() + " not found" );
@@ -213,12 +396,19 @@ public abstract class AbstractProjectService<T extends Project>
             groups.getValue().remove( group );
 
             configurationService.updateConfiguration( thisProjectConfig );
+            invalidateProjectCatalogue( project );
 
         } else {
             throw new IllegalArgumentException( "Project " + project.getProjectName() + " not found" );
         }
     }
 
+    private void invalidateProjectCatalogue( final Project project ) {
+        if ( projectCatalogue != null ) {
+            projectCatalogue.invalidate( Paths.convert( project.getRootPath() ) );
+        }
+    }
+
     @Override
     public Path rename( final Path pathToPomXML,
                         final String newName,
@@ -25,6 +25,8 @@ import org.guvnor.common.services.project.model.GAV;
 
 public class MavenLocalRepositoryUtils {
 
+    private static java.nio.file.Path scratchRepositoryPath;
+
     /**
      * Get a Path pointing to a transient M2 Local Repository
      * @param gav GAV (helper to name temporary folder)
@@ -36,6 +38,19 @@ public class MavenLocalRepositoryUtils {
         return tempLocalRepositoryBasePath;
     }
 
+    /**
+     * Get a Path pointing to a M2 Local Repository shared by all {@link TransientLocalRepositoryManager}s.
+     * The folder is re-created should it have been removed.
+     * @return
+     * @throws IOException
+     */
+    public static synchronized java.nio.file.Path getScratchRepositoryPath() throws IOException {
+        if ( scratchRepositoryPath == null || !Files.isDirectory( scratchRepositoryPath ) ) {
+            scratchRepositoryPath = java.nio.file.Files.createTempDirectory( "m2-scratch" );
+        }
+        return scratchRepositoryPath;
+    }
+
     private static String toFileName( final GAV gav ) {
         final StringBuilder sb = new StringBuilder();
         sb.append( "m2-" ).append( gav.getGroupId() + "-" + gav.getArtifactId() + "-" + gav.getVersion() );
@@ -44,13 +44,13 @@ import org.uberfire.commons.validation.PortablePreconditions;
  */
 public class MavenRepositorySystemSessionWrapper implements RepositorySystemSession {
 
-    private final String tempLocalRepositoryBaseDir;
+    private final LocalRepositoryManager localRepositoryManager;
     private final RepositorySystemSession delegate;
 
-    public MavenRepositorySystemSessionWrapper( final String tempLocalRepositoryBaseDir,
+    public MavenRepositorySystemSessionWrapper( final LocalRepositoryManager localRepositoryManager,
                                                 final RepositorySystemSession delegate ) {
-        this.tempLocalRepositoryBaseDir = PortablePreconditions.checkNotNull( "tempLocalRepositoryBaseDir",
-                                                                              tempLocalRepositoryBaseDir );
+        this.localRepositoryManager = PortablePreconditions.checkNotNull( "localRepositoryManager",
+                                                                          localRepositoryManager );
         this.delegate = PortablePreconditions.checkNotNull( "delegate",
                                                             delegate );
     }
@@ -87,13 +87,12 @@ public class MavenRepositorySystemSessionWrapper implements RepositorySystemSess
 
     @Override
     public LocalRepository getLocalRepository() {
-        return delegate.getLocalRepository();
+        return localRepositoryManager.getRepository();
     }
 
     @Override
     public LocalRepositoryManager getLocalRepositoryManager() {
-        return new MavenLocalRepositoryManagerWrapper( tempLocalRepositoryBaseDir,
-                                                       delegate.getLocalRepositoryManager() );
+        return localRepositoryManager;
     }
 
     @Override
@@ -20,7 +20,9 @@ import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import javax.inject.Named;
 
+import org.apache.maven.model.Model;
 import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+import org.guvnor.common.services.backend.cache.ConcurrentLRUCache;
 import org.guvnor.common.services.backend.exceptions.ExceptionUtilities;
 import org.guvnor.common.services.backend.util.CommentedOptionFactory;
 import org.guvnor.common.services.project.backend.server.utils.POMContentHandler;
@@ -42,6 +44,11 @@ import org.uberfire.java.nio.file.FileSystem;
 public class POMServiceImpl
         implements POMService {
 
+    //Maximum total length, in characters, of the pom.xml files whose parsed model is cached
+    private static final long DEFAULT_POM_CACHE_SIZE = 8 * 1024 * 1024;
+
+    private final ConcurrentLRUCache<String, CachedPOM> pomCache = newPOMCache();
+
     private IOService ioService;
     private POMContentHandler pomContentHandler;
     private M2RepoService m2RepoService;
@@ -81,6 +88,7 @@ public class POMServiceImpl
             }
             ioService.write( pathToPOMXML,
                              pomContentHandler.toString( pomModel ) );
+            pomCache.invalidateCache( Paths.convert( pathToPOMXML ).toURI() );
 
             //Don't raise a NewResourceAdded event as this is handled at the Project level in ProjectServices
 
@@ -102,7 +110,19 @@ public class POMServiceImpl
     @Override
     public POM load( final Path path ) {
         try {
-            return pomContentHandler.toModel( loadPomXMLString( path ) );
+            //The pom.xml is parsed again only if its content has changed. Each caller gets its own POM instance.
+            final String key = path.toURI();
+            final String content = loadPomXMLString( path );
+            final CachedPOM cachedPOM = pomCache.getEntry( key );
+            if ( cachedPOM != null && cachedPOM.content.equals( content ) ) {
+                return pomContentHandler.toModel( cachedPOM.model );
+            }
+
+            final Model model = pomContentHandler.toMavenModel( content );
+            pomCache.setEntry( key,
+                               new CachedPOM( content,
+                                              model ) );
+            return pomContentHandler.toModel( model );
 
         } catch ( Exception e ) {
             throw ExceptionUtilities.handleException( e );
@@ -185,6 +205,7 @@ public class POMServiceImpl
     private Path save( final Path path,
                        final POM content,
                        final Metadata metadata ) throws IOException, XmlPullParserException {
+        pomCache.invalidateCache( path.toURI() );
         if ( metadata == null ) {
             save( path,
                   content );
@@ -201,9 +222,35 @@ public class POMServiceImpl
 
     private void save( final Path path,
                        final POM content ) throws IOException, XmlPullParserException {
+        pomCache.invalidateCache( path.toURI() );
         ioService.write( Paths.convert( path ),
                          pomContentHandler.toString( content,
                                                      loadPomXMLString( path ) ) );
     }
 
+    private static ConcurrentLRUCache<String, CachedPOM> newPOMCache() {
+        return new ConcurrentLRUCache<String, CachedPOM>( Long.getLong( "org.guvnor.project.pom-cache.max-size",
+                                                                        DEFAULT_POM_CACHE_SIZE ),
+                                                          new ConcurrentLRUCache.Weigher<String, CachedPOM>() {
+                                                              @Override
+                                                              public int weigh( final String key,
+                                                                                final CachedPOM value ) {
+                                                                  return value.content.length();
+                                                              }
+                                                          },
+                                                          0 );
+    }
+
+    private static class CachedPOM {
+
+        private final String content;
+        private final Model model;
+
+        private CachedPOM( final String content,
+                           final Model model ) {
+            this.content = content;
+            this.model = model;
+        }
+    }
+
 }
@@ -0,0 +1,357 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.project.backend.server;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.enterprise.inject.Default;
+
+import org.guvnor.common.services.project.model.Project;
+import org.guvnor.structure.backend.config.ConfigGroupsChangedEvent;
+import org.guvnor.structure.server.config.ConfigGroup;
+import org.guvnor.structure.server.config.ConfigType;
+import org.uberfire.backend.server.util.Paths;
+import org.uberfire.java.nio.file.Path;
+import org.uberfire.workbench.events.ResourceAddedEvent;
+import org.uberfire.workbench.events.ResourceBatchChangesEvent;
+import org.uberfire.workbench.events.ResourceChange;
+import org.uberfire.workbench.events.ResourceDeletedEvent;
+import org.uberfire.workbench.events.ResourceRenamedEvent;
+import org.uberfire.workbench.events.ResourceUpdatedEvent;
+
+import static org.guvnor.common.services.project.utils.ProjectResourcePaths.*;
+
+/**
+ * In-memory catalogue of the Projects at the root of each branch, i.e. a Project's name, GAV (from its POM) and
+ * root path. A branch is listed, and its Projects resolved, the first time it is queried. Thereafter only Projects
+ * whose folder or pom.xml has been added, changed or removed are resolved again, the next time the branch is queried.
+ * Changes to a Project's configuration (e.g. its security groups) cause only that Project to be resolved again.
+ * Callers are given copies of the catalogued Projects.
+ */
+@ApplicationScoped
+public class ProjectCatalogue {
+
+    /**
+     * Lists and resolves the Projects of a branch; the catalogue does not access the VFS itself.
+     */
+    public interface ProjectLoader {
+
+        /**
+         * @param branchRoot The root of the branch
+         * @return The folders at the root of the branch that could contain a Project
+         */
+        Collection<Path> listProjectFolders( final Path branchRoot );
+
+        /**
+         * @param projectFolder A folder at the root of the branch
+         * @return The Project, with its POM, or null if the folder does not contain a Project
+         */
+        Project loadProject( final Path projectFolder );
+
+        /**
+         * @param project A catalogued Project
+         * @return A copy of the Project, and of its POM, that can be changed without affecting the catalogue
+         */
+        Project copyProject( final Project project );
+
+    }
+
+    /**
+     * Selects Projects returned by a query. The Projects given are the catalogued ones; they must not be changed.
+     */
+    public interface ProjectFilter {
+
+        boolean accept( final Project project );
+
+    }
+
+    private static final Comparator<Project> BY_NAME = new Comparator<Project>() {
+        @Override
+        public int compare( final Project o1,
+                            final Project o2 ) {
+            final String name1 = o1.getProjectName() == null ? "" : o1.getProjectName();
+            final String name2 = o2.getProjectName() == null ? "" : o2.getProjectName();
+            final int result = name1.compareToIgnoreCase( name2 );
+            if ( result != 0 ) {
+                return result;
+            }
+            return o1.getIdentifier().compareTo( o2.getIdentifier() );
+        }
+    };
+
+    private final ConcurrentMap<String, Branch> branches = new ConcurrentHashMap<String, Branch>();
+
+    /**
+     * All Projects of a branch, ordered by name
+     * @param branchRoot The root of the branch
+     * @param loader Used to list and resolve Projects that are not already catalogued
+     * @return The Projects
+     */
+    public List<Project> getProjects( final Path branchRoot,
+                                      final ProjectLoader loader ) {
+        return getProjects( branchRoot,
+                            loader,
+                            null,
+                            0,
+                            0 );
+    }
+
+    /**
+     * A page of the Projects of a branch, ordered by name. The filter is only applied to as many Projects as
+     * are needed to fill the page; hence expensive checks (e.g. authorization) are not made for every Project.
+     * @param branchRoot The root of the branch
+     * @param loader Used to list and resolve Projects that are not already catalogued
+     * @param filter Selects the Projects to return. Can be null.
+     * @param offset Number of selected Projects to skip
+     * @param pageSize Maximum number of Projects to return. Zero or negative if unlimited.
+     * @return The Projects
+     */
+    public List<Project> getProjects( final Path branchRoot,
+                                      final ProjectLoader loader,
+                                      final ProjectFilter filter,
+                                      final int offset,
+                                      final int pageSize ) {
+        if ( offset < 0 ) {
+            throw new IllegalArgumentException( "offset must not be negative." );
+        }
+        final List<Project> page = new ArrayList<Project>();
+        int skipped = 0;
+        for ( Project project : getBranch( branchRoot ).getProjects( loader ) ) {
+            if ( pageSize > 0 && page.size() >= pageSize ) {
+                break;
+            }
+            if ( filter != null && !filter.accept( project ) ) {
+                continue;
+            }
+            if ( skipped < offset ) {
+                skipped++;
+                continue;
+            }
+            page.add( loader.copyProject( project ) );
+        }
+        return page;
+    }
+
+    /**
+     * Forget what is known about a Project, or all Projects of a branch
+     * @param path The Project folder, or any resource within it, or the root of a branch
+     */
+    public void invalidate( final Path path ) {
+        for ( Path folder = path; folder != null; folder = folder.getParent() ) {
+            final Branch branch = branches.get( key( folder ) );
+            if ( branch == null ) {
+                continue;
+            }
+            final int depth = folder.getNameCount();
+            if ( path.getNameCount() == depth ) {
+                branch.invalidateAll();
+            } else {
+                branch.invalidate( path.getName( depth ).toString() );
+            }
+            return;
+        }
+    }
+
+    public void invalidateAll() {
+        for ( Branch branch : branches.values() ) {
+            branch.invalidateAll();
+        }
+    }
+
+    public void onConfigGroupsChanged( @Observes @Default final ConfigGroupsChangedEvent event ) {
+        if ( event.isReloaded( ConfigType.PROJECT ) ) {
+            invalidateAll();
+            return;
+        }
+        //Project ConfigGroups are named after the Project's root
+        invalidateProjects( event.getAdded( ConfigType.PROJECT ) );
+        invalidateProjects( event.getUpdated( ConfigType.PROJECT ) );
+        invalidateProjects( event.getRemoved( ConfigType.PROJECT ) );
+    }
+
+    private void invalidateProjects( final List<ConfigGroup> configGroups ) {
+        for ( ConfigGroup configGroup : configGroups ) {
+            for ( Branch branch : branches.values() ) {
+                branch.invalidateProject( configGroup.getName() );
+            }
+        }
+    }
+
+    public void onResourceAdded( @Observes final ResourceAddedEvent event ) {
+        onResourceChange( event.getPath() );
+    }
+
+    public void onResourceUpdated( @Observes final ResourceUpdatedEvent event ) {
+        onResourceChange( event.getPath() );
+    }
+
+    public void onResourceDeleted( @Observes final ResourceDeletedEvent event ) {
+        onResourceChange( event.getPath() );
+    }
+
+    public void onResourceRenamed( @Observes final ResourceRenamedEvent event ) {
+        onResourceChange( event.getPath() );
+        onResourceChange( event.getDestinationPath() );
+    }
+
+    public void onBatchResourceChanges( @Observes final ResourceBatchChangesEvent event ) {
+        if ( event.getBatch() == null ) {
+            return;
+        }
+        for ( final Map.Entry<org.uberfire.backend.vfs.Path, Collection<ResourceChange>> entry : event.getBatch().entrySet() ) {
+            onResourceChange( entry.getKey() );
+        }
+    }
+
+    private void onResourceChange( final org.uberfire.backend.vfs.Path path ) {
+        if ( path == null ) {
+            return;
+        }
+        final Path nioPath = Paths.convert( path );
+        for ( Path folder = nioPath.getParent(); folder != null; folder = folder.getParent() ) {
+            final Branch branch = branches.get( key( folder ) );
+            if ( branch == null ) {
+                continue;
+            }
+            //Only the Project folders and their pom.xml files affect the catalogue
+            final int depth = folder.getNameCount();
+            final int nameCount = nioPath.getNameCount();
+            if ( nameCount == depth + 1 && POM_PATH.equals( path.getFileName() ) ) {
+                //Folders without a pom.xml resolve to a Project at the root of the branch
+                branch.invalidateAll();
+            } else if ( nameCount == depth + 1 || ( nameCount == depth + 2 && POM_PATH.equals( path.getFileName() ) ) ) {
+                branch.invalidate( nioPath.getName( depth ).toString() );
+            }
+            return;
+        }
+        //The resource could be the root of a branch
+        final Branch branch = branches.get( key( nioPath ) );
+        if ( branch != null ) {
+            branch.invalidateAll();
+        }
+    }
+
+    private Branch getBranch( final Path branchRoot ) {
+        final String key = key( branchRoot );
+        Branch branch = branches.get( key );
+        if ( branch == null ) {
+            final Branch newBranch = new Branch( branchRoot );
+            branch = branches.putIfAbsent( key,
+                                           newBranch );
+            if ( branch == null ) {
+                branch = newBranch;
+            }
+        }
+        return branch;
+    }
+
+    private String key( final Path path ) {
+        return path.toUri().toString();
+    }
+
+    private static class Branch {
+
+        private final Path root;
+
+        //Projects keyed by the name of their folder
+        private final Map<String, Project> projects = new ConcurrentHashMap<String, Project>();
+        private final Set<String> staleFolders = Collections.newSetFromMap( new ConcurrentHashMap<String, Boolean>() );
+        private volatile boolean loaded = false;
+        private volatile List<Project> sortedProjects = Collections.emptyList();
+
+        private Branch( final Path root ) {
+            this.root = root;
+        }
+
+        private List<Project> getProjects( final ProjectLoader loader ) {
+            if ( !loaded || !staleFolders.isEmpty() ) {
+                refresh( loader );
+            }
+            return sortedProjects;
+        }
+
+        private synchronized void refresh( final ProjectLoader loader ) {
+            boolean changed = false;
+
+            //Flags are reset before reading, so changes made whilst reading are picked up by the next query
+            if ( !loaded ) {
+                loaded = true;
+                staleFolders.clear();
+                projects.clear();
+                for ( Path folder : loader.listProjectFolders( root ) ) {
+                    final Project project = loader.loadProject( folder );
+                    if ( project != null ) {
+                        projects.put( folder.getFileName().toString(),
+                                      project );
+                    }
+                }
+                changed = true;
+            }
+
+            for ( String folderName : new ArrayList<String>( staleFolders ) ) {
+                staleFolders.remove( folderName );
+                final Project project = loader.loadProject( root.resolve( folderName ) );
+                if ( project == null ) {
+                    changed = projects.remove( folderName ) != null || changed;
+                } else {
+                    projects.put( folderName,
+                                  project );
+                    changed = true;
+                }
+            }
+
+            if ( changed ) {
+                //Different folders can resolve to the same Project
+                final Map<String, Project> distinctProjects = new HashMap<String, Project>();
+                for ( Project project : projects.values() ) {
+                    distinctProjects.put( project.getIdentifier(),
+                                          project );
+                }
+                final List<Project> sorted = new ArrayList<Project>( distinctProjects.values() );
+                Collections.sort( sorted,
+                                  BY_NAME );
+                sortedProjects = Collections.unmodifiableList( sorted );
+            }
+        }
+
+        private void invalidate( final String folderName ) {
+            staleFolders.add( folderName );
+        }
+
+        private void invalidateProject( final String identifier ) {
+            for ( Map.Entry<String, Project> entry : projects.entrySet() ) {
+                if ( entry.getValue().getIdentifier().equals( identifier ) ) {
+                    staleFolders.add( entry.getKey() );
+                }
+            }
+        }
+
+        private void invalidateAll() {
+            loaded = false;
+        }
+    }
+
+}
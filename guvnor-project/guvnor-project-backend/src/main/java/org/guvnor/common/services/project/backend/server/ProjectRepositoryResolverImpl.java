@@ -20,14 +20,21 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -45,6 +52,8 @@ import org.eclipse.aether.repository.RepositoryPolicy;
 import org.eclipse.aether.resolution.ArtifactRequest;
 import org.eclipse.aether.resolution.ArtifactResolutionException;
 import org.eclipse.aether.resolution.ArtifactResult;
+import org.guvnor.common.services.backend.cache.ConcurrentLRUCache;
+import org.guvnor.common.services.backend.executor.ParallelExecutor;
 import org.guvnor.common.services.project.backend.server.utils.POMContentHandler;
 import org.guvnor.common.services.project.model.GAV;
 import org.guvnor.common.services.project.model.MavenRepositoryMetadata;
@@ -73,12 +82,34 @@ public class ProjectRepositoryResolverImpl
 
     private static final Logger log = LoggerFactory.getLogger( ProjectRepositoryResolverImpl.class );
 
+    private static final long RESOLVER_TIMEOUT = Long.getLong( "org.guvnor.project.gav-check.timeout",
+                                                               10000 );
+    private static final long RESOLUTION_CACHE_SIZE = Long.getLong( "org.guvnor.project.gav-check.cache-size",
+                                                                    1000 );
+    private static final long RESOLUTION_CACHE_TTL = Long.getLong( "org.guvnor.project.gav-check.cache-ttl",
+                                                                   60000 );
+
     //Package protected for tests
     boolean isCheckConflictingGAVDisabled = false;
 
     private IOService ioService;
     private POMContentHandler pomContentHandler = new POMContentHandler();
 
+    //Whether a GAV resolved against a Remote Repository, keyed by GAV and Repository URL. Failed and timed out
+    //resolutions are not cached. Package protected for tests.
+    final ConcurrentLRUCache<String, Boolean> resolutionCache = new ConcurrentLRUCache<String, Boolean>( RESOLUTION_CACHE_SIZE,
+                                                                                                         new ConcurrentLRUCache.Weigher<String, Boolean>() {
+                                                                                                             @Override
+                                                                                                             public int weigh( final String key,
+                                                                                                                               final Boolean value ) {
+                                                                                                                 return 1;
+                                                                                                             }
+                                                                                                         },
+                                                                                                         RESOLUTION_CACHE_TTL );
+
+    //Checks the Remote Repositories in parallel
+    private ParallelExecutor resolvers;
+
     public ProjectRepositoryResolverImpl() {
         //WELD proxy and setup
         this.isCheckConflictingGAVDisabled = Boolean.parseBoolean( System.getProperty( ProjectRepositoryResolver.CONFLICTING_GAV_CHECK_DISABLED,
@@ -86,9 +117,11 @@ public class ProjectRepositoryResolverImpl
     }
 
     @Inject
-    public ProjectRepositoryResolverImpl( final @Named("ioStrategy") IOService ioService ) {
+    public ProjectRepositoryResolverImpl( final @Named("ioStrategy") IOService ioService,
+                                          final ParallelExecutor resolvers ) {
         this();
         this.ioService = ioService;
+        this.resolvers = resolvers;
     }
 
     @Override
@@ -318,48 +351,101 @@ public class ProjectRepositoryResolverImpl
             //Ignore - this means the Artifact could not be resolved against the given RemoteRepository
         }
 
-        //Remote Repositories
-        try {
-            for ( Map.Entry<MavenRepositorySource, Collection<RemoteRepository>> e : repositories.entrySet() ) {
-                for ( ArtifactRepository repository : e.getValue() ) {
-                    artifactRequest = new ArtifactRequest();
-                    artifactRequest.setArtifact( artifact );
-                    java.nio.file.Path tempLocalRepositoryBasePath = null;
-                    try {
-                        // Maven always tries to resolve against LocalRepository first, which is not much use when we want to check
-                        // if the Artifact is available on a RemoteRepository. Therefore substitute the default RepositorySystemSession
-                        // with one that provides a LocalRepositoryManager that always uses an empty transient LocalRepository to ensure
-                        // Maven does not resolve Artifacts locally.
-                        artifactRequest.addRepository( (RemoteRepository) repository );
-                        tempLocalRepositoryBasePath = getRepositoryPath( gav );
-                        result = aether.getSystem().resolveArtifact( new MavenRepositorySystemSessionWrapper( tempLocalRepositoryBasePath.toString(),
-                                                                                                              aether.getSession() ),
-                                                                     artifactRequest );
-
-                        if ( result != null && result.isResolved() ) {
-                            final MavenRepositoryMetadata artifactRepositoryMetaData = makeRepositoryMetaData( result.getRepository(),
-                                                                                                               e.getKey() );
-                            if ( artifactRepositoryMetaData != null ) {
-                                repositoriesResolvingArtifact.add( artifactRepositoryMetaData );
-                            }
-                        }
-
-                    } catch ( ArtifactResolutionException are ) {
-                        //Ignore - this means the Artifact could not be resolved against the given RemoteRepository
-                    } finally {
-                        tearDownMavenRepository( tempLocalRepositoryBasePath );
-                    }
+        //Remote Repositories are checked in parallel, unless the outcome for the Repository is already known
+        final List<RemoteResolution> resolutions = new ArrayList<RemoteResolution>();
+        for ( Map.Entry<MavenRepositorySource, Collection<RemoteRepository>> e : repositories.entrySet() ) {
+            for ( RemoteRepository repository : e.getValue() ) {
+                final String cacheKey = artifactName + "|" + repository.getUrl();
+                final Boolean resolved = resolutionCache.getEntry( cacheKey );
+                if ( resolved == null ) {
+                    final RemoteResolution resolution = new RemoteResolution( cacheKey,
+                                                                              repository,
+                                                                              e.getKey(),
+                                                                              makeResolver( artifact,
+                                                                                            repository,
+                                                                                            aether ) );
+                    resolutions.add( resolution );
+                    resolvers.execute( resolution.result );
+                } else if ( resolved ) {
+                    addRepositoryMetaData( repositoriesResolvingArtifact,
+                                           repository,
+                                           e.getKey() );
                 }
             }
+        }
 
-        } catch ( IOException ioe ) {
-            log.error( "Error resolving '" + gav.toString() + "' against Repositories. Returning empty Collection. ",
-                       ioe );
+        for ( RemoteResolution resolution : resolutions ) {
+            try {
+                final boolean resolved = resolution.get( RESOLVER_TIMEOUT );
+                resolutionCache.setEntry( resolution.cacheKey,
+                                          resolved );
+                if ( resolved ) {
+                    addRepositoryMetaData( repositoriesResolvingArtifact,
+                                           resolution.repository,
+                                           resolution.source );
+                }
+
+            } catch ( TimeoutException te ) {
+                resolution.result.cancel( true );
+                log.warn( "Timed out resolving '" + artifactName + "' against Repository '" + resolution.repository.getUrl() + "'." );
+
+            } catch ( ExecutionException ee ) {
+                log.error( "Error resolving '" + artifactName + "' against Repository '" + resolution.repository.getUrl() + "'.",
+                           ee.getCause() );
+
+            } catch ( InterruptedException ie ) {
+                for ( RemoteResolution r : resolutions ) {
+                    r.result.cancel( true );
+                }
+                Thread.currentThread().interrupt();
+                break;
+            }
         }
 
         return repositoriesResolvingArtifact;
     }
 
+    private Callable<Boolean> makeResolver( final Artifact artifact,
+                                            final RemoteRepository repository,
+                                            final Aether aether ) {
+        return new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws IOException {
+                final ArtifactRequest artifactRequest = new ArtifactRequest();
+                artifactRequest.setArtifact( artifact );
+                artifactRequest.addRepository( repository );
+
+                // Maven always tries to resolve against LocalRepository first, which is not much use when we want to check
+                // if the Artifact is available on a RemoteRepository. Therefore substitute the default RepositorySystemSession
+                // with one that provides a LocalRepositoryManager that never finds nor keeps anything to ensure Maven does
+                // not resolve Artifacts locally.
+                final TransientLocalRepositoryManager localRepositoryManager = new TransientLocalRepositoryManager( getScratchRepositoryPath() );
+                try {
+                    final ArtifactResult result = aether.getSystem().resolveArtifact( new MavenRepositorySystemSessionWrapper( localRepositoryManager,
+                                                                                                                               aether.getSession() ),
+                                                                                      artifactRequest );
+                    return result != null && result.isResolved();
+
+                } catch ( ArtifactResolutionException are ) {
+                    //This means the Artifact could not be resolved against the given RemoteRepository
+                    return false;
+                } finally {
+                    localRepositoryManager.clear();
+                }
+            }
+        };
+    }
+
+    private void addRepositoryMetaData( final Set<MavenRepositoryMetadata> repositoriesResolvingArtifact,
+                                        final RemoteRepository repository,
+                                        final MavenRepositorySource source ) {
+        final MavenRepositoryMetadata artifactRepositoryMetaData = makeRepositoryMetaData( repository,
+                                                                                           source );
+        if ( artifactRepositoryMetaData != null ) {
+            repositoriesResolvingArtifact.add( artifactRepositoryMetaData );
+        }
+    }
+
     private Map<MavenRepositorySource, Collection<RemoteRepository>> getRemoteRepositories() {
         final Map<MavenRepositorySource, Collection<RemoteRepository>> repositories = new HashMap<MavenRepositorySource, Collection<RemoteRepository>>();
 
@@ -445,4 +531,49 @@ public class ProjectRepositoryResolverImpl
         return remoteRepoBuilder.build();
     }
 
+    private static class RemoteResolution {
+
+        private final String cacheKey;
+        private final RemoteRepository repository;
+        private final MavenRepositorySource source;
+        private final FutureTask<Boolean> result;
+
+        //System.nanoTime() when the check started running, null while it is waiting for a thread
+        private volatile Long started;
+
+        private RemoteResolution( final String cacheKey,
+                                  final RemoteRepository repository,
+                                  final MavenRepositorySource source,
+                                  final Callable<Boolean> resolver ) {
+            this.cacheKey = cacheKey;
+            this.repository = repository;
+            this.source = source;
+            this.result = new FutureTask<Boolean>( new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    started = System.nanoTime();
+                    return resolver.call();
+                }
+            } );
+        }
+
+        //Wait for the outcome of the check. The timeout applies from when the check started running, so
+        //checks waiting for a thread behind slow checks of other Repositories are not timed out early.
+        private boolean get( final long timeout ) throws InterruptedException, ExecutionException, TimeoutException {
+            while ( true ) {
+                final Long startedAt = started;
+                final long remaining = startedAt == null ? timeout : timeout - TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - startedAt );
+                try {
+                    return result.get( Math.max( remaining,
+                                                 0 ),
+                                       TimeUnit.MILLISECONDS );
+                } catch ( TimeoutException te ) {
+                    if ( startedAt != null ) {
+                        throw te;
+                    }
+                }
+            }
+        }
+    }
+
 }
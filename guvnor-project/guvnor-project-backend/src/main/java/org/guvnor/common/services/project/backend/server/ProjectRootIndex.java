@@ -0,0 +1,297 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.project.backend.server;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+
+import org.uberfire.backend.server.util.Paths;
+import org.uberfire.java.nio.file.Path;
+import org.uberfire.workbench.events.ResourceAddedEvent;
+import org.uberfire.workbench.events.ResourceBatchChangesEvent;
+import org.uberfire.workbench.events.ResourceChange;
+import org.uberfire.workbench.events.ResourceChangeType;
+import org.uberfire.workbench.events.ResourceDeletedEvent;
+import org.uberfire.workbench.events.ResourceRenamedEvent;
+
+import static org.guvnor.common.services.project.utils.ProjectResourcePaths.*;
+
+/**
+ * In-memory index of the folders known to contain a pom.xml, i.e. Project roots. Folders are held in a trie,
+ * one per branch root, so the folders visited when walking up from a resource to its Project can be answered
+ * without accessing the VFS:
+ * - A folder indexed as a Project root has a pom.xml.
+ * - A folder within the src folder of an indexed Project root does not have a pom.xml.
+ * - Anything else is unknown and needs to be checked against the VFS.
+ * Entries are invalidated when a pom.xml is added or deleted, or when a folder is deleted or renamed.
+ * The package names of a Project root can also be held; these are invalidated whenever a resource
+ * within the Project is added, copied, deleted or renamed.
+ */
+@ApplicationScoped
+public class ProjectRootIndex {
+
+    private final ConcurrentMap<String, Node> roots = new ConcurrentHashMap<String, Node>();
+
+    /**
+     * Whether a folder contains a pom.xml.
+     * @param folder The folder
+     * @return TRUE or FALSE if known from the index, otherwise null
+     */
+    public Boolean isProjectRoot( final Path folder ) {
+        final Path root = folder.getRoot();
+        if ( root == null ) {
+            return null;
+        }
+        Node node = roots.get( key( root ) );
+        if ( node == null ) {
+            return null;
+        }
+        final int nameCount = folder.getNameCount();
+        for ( int i = 0; i < nameCount; i++ ) {
+            final String name = folder.getName( i ).toString();
+            //Projects cannot be nested within another Project's source folders
+            if ( node.projectRoot && SOURCE_FILENAME.equals( name ) ) {
+                return Boolean.FALSE;
+            }
+            node = node.children.get( name );
+            if ( node == null ) {
+                return null;
+            }
+        }
+        return node.projectRoot ? Boolean.TRUE : null;
+    }
+
+    /**
+     * Record a folder as containing a pom.xml
+     * @param folder The Project root folder
+     */
+    public void addProjectRoot( final Path folder ) {
+        final Path root = folder.getRoot();
+        if ( root == null ) {
+            return;
+        }
+        final String key = key( root );
+        Node node = roots.get( key );
+        if ( node == null ) {
+            final Node newNode = new Node();
+            node = roots.putIfAbsent( key,
+                                      newNode );
+            if ( node == null ) {
+                node = newNode;
+            }
+        }
+        final int nameCount = folder.getNameCount();
+        for ( int i = 0; i < nameCount; i++ ) {
+            final String name = folder.getName( i ).toString();
+            Node child = node.children.get( name );
+            if ( child == null ) {
+                final Node newChild = new Node();
+                child = node.children.putIfAbsent( name,
+                                                   newChild );
+                if ( child == null ) {
+                    child = newChild;
+                }
+            }
+            node = child;
+        }
+        node.projectRoot = true;
+    }
+
+    /**
+     * Forget everything known about a folder and its sub-folders
+     * @param folder The folder
+     */
+    public void invalidate( final Path folder ) {
+        final Path root = folder.getRoot();
+        if ( root == null ) {
+            return;
+        }
+        final String key = key( root );
+        final int nameCount = folder.getNameCount();
+        if ( nameCount == 0 ) {
+            roots.remove( key );
+            return;
+        }
+        Node node = roots.get( key );
+        for ( int i = 0; i < nameCount - 1 && node != null; i++ ) {
+            node = node.children.get( folder.getName( i ).toString() );
+        }
+        if ( node != null ) {
+            node.children.remove( folder.getName( nameCount - 1 ).toString() );
+        }
+    }
+
+    /**
+     * The package names (paths relative to the source folders) of a Project.
+     * @param projectRoot The Project root folder
+     * @return The package names if known, otherwise null
+     */
+    public Set<String> getPackageNames( final Path projectRoot ) {
+        final Node node = getNode( projectRoot );
+        if ( node == null || !node.projectRoot ) {
+            return null;
+        }
+        return node.packageNames;
+    }
+
+    /**
+     * Version of the structure of a Project; this changes every time its package names are invalidated.
+     * @param projectRoot The Project root folder
+     * @return The version, or -1 if the Project root is not indexed
+     */
+    public long getPackageNamesVersion( final Path projectRoot ) {
+        final Node node = getNode( projectRoot );
+        if ( node == null || !node.projectRoot ) {
+            return -1;
+        }
+        return node.packageNamesVersion;
+    }
+
+    /**
+     * Record the package names of a Project, unless the Project structure has changed since they were read.
+     * @param projectRoot The Project root folder
+     * @param packageNames The package names
+     * @param version The version returned by {@link #getPackageNamesVersion(Path)} before the package names were read
+     */
+    public void setPackageNames( final Path projectRoot,
+                                 final Set<String> packageNames,
+                                 final long version ) {
+        final Node node = getNode( projectRoot );
+        if ( node == null ) {
+            return;
+        }
+        synchronized ( node ) {
+            if ( node.projectRoot && node.packageNamesVersion == version ) {
+                node.packageNames = Collections.unmodifiableSet( new HashSet<String>( packageNames ) );
+            }
+        }
+    }
+
+    /**
+     * Forget the package names of the Projects containing a resource
+     * @param path The resource
+     */
+    public void invalidatePackageNames( final Path path ) {
+        final Path root = path.getRoot();
+        if ( root == null ) {
+            return;
+        }
+        Node node = roots.get( key( root ) );
+        final int nameCount = path.getNameCount();
+        for ( int i = 0; node != null; i++ ) {
+            if ( node.projectRoot ) {
+                synchronized ( node ) {
+                    node.packageNames = null;
+                    node.packageNamesVersion++;
+                }
+            }
+            if ( i == nameCount ) {
+                break;
+            }
+            node = node.children.get( path.getName( i ).toString() );
+        }
+    }
+
+    public void invalidateAll() {
+        roots.clear();
+    }
+
+    public void onResourceAdded( @Observes final ResourceAddedEvent event ) {
+        onResourceChange( event.getPath(),
+                          ResourceChangeType.ADD );
+    }
+
+    public void onResourceDeleted( @Observes final ResourceDeletedEvent event ) {
+        onResourceChange( event.getPath(),
+                          ResourceChangeType.DELETE );
+    }
+
+    public void onResourceRenamed( @Observes final ResourceRenamedEvent event ) {
+        onResourceChange( event.getPath(),
+                          ResourceChangeType.RENAME );
+        onResourceChange( event.getDestinationPath(),
+                          ResourceChangeType.ADD );
+    }
+
+    public void onBatchResourceChanges( @Observes final ResourceBatchChangesEvent event ) {
+        if ( event.getBatch() == null ) {
+            return;
+        }
+        for ( final Map.Entry<org.uberfire.backend.vfs.Path, Collection<ResourceChange>> entry : event.getBatch().entrySet() ) {
+            for ( final ResourceChange change : entry.getValue() ) {
+                onResourceChange( entry.getKey(),
+                                  change.getType() );
+            }
+        }
+    }
+
+    private void onResourceChange( final org.uberfire.backend.vfs.Path path,
+                                   final ResourceChangeType changeType ) {
+        if ( path == null ) {
+            return;
+        }
+        final Path nioPath = Paths.convert( path );
+        if ( POM_PATH.equals( path.getFileName() ) ) {
+            //The folder containing the pom.xml has become, or is no longer, a Project root
+            final Path folder = nioPath.getParent();
+            if ( folder != null ) {
+                invalidate( folder );
+            }
+        } else if ( changeType == ResourceChangeType.DELETE || changeType == ResourceChangeType.RENAME ) {
+            //The resource could have been a folder containing Projects
+            invalidate( nioPath );
+        }
+
+        //Packages could have been added or removed
+        if ( changeType != ResourceChangeType.UPDATE ) {
+            invalidatePackageNames( nioPath );
+        }
+    }
+
+    private Node getNode( final Path folder ) {
+        final Path root = folder.getRoot();
+        if ( root == null ) {
+            return null;
+        }
+        Node node = roots.get( key( root ) );
+        final int nameCount = folder.getNameCount();
+        for ( int i = 0; i < nameCount && node != null; i++ ) {
+            node = node.children.get( folder.getName( i ).toString() );
+        }
+        return node;
+    }
+
+    private String key( final Path root ) {
+        return root.toUri().toString();
+    }
+
+    private static class Node {
+
+        private final ConcurrentMap<String, Node> children = new ConcurrentHashMap<String, Node>();
+        private volatile boolean projectRoot = false;
+        private volatile Set<String> packageNames;
+        private volatile long packageNamesVersion = 0;
+
+    }
+
+}
@@ -33,7 +33,8 @@ import org.guvnor.structure.repositories.RepositoryService;
 import org.jboss.errai.bus.server.annotations.Service;
 
 /**
- * TODO: Improve using indexes. Avoid to iterate thorough the entire repo>project hierarchy.
+ * Searches by name ask the {@link ProjectService} for only as many matching projects as are needed, so they
+ * do not resolve every project and parse its pom.xml.
  */
 @Service
 @ApplicationScoped
@@ -58,15 +59,15 @@ public class ProjectSearchServiceImpl implements ProjectSearchService {
         for (Repository repository : repositoryService.getAllRepositories()) {
             ProjectService projectService = getProjectService();
             if (projectService != null) {
-                Set<Project> repositoryProjects = projectService.getAllProjects(repository, "master");
-                for (Project project : repositoryProjects) {
-                    String name = project.getProjectName();
-                    if (caseSensitive ? name.contains(pattern) : name.toLowerCase().contains(pattern.toLowerCase())) {
-                        results.add(project);
-                        if (maxItems > 0 && results.size() >= maxItems) {
-                            return results;
-                        }
-                    }
+                // Only as many matching projects as are still needed
+                results.addAll(projectService.getAllProjectsByName(repository,
+                                                                   "master",
+                                                                   pattern,
+                                                                   caseSensitive,
+                                                                   0,
+                                                                   maxItems > 0 ? maxItems - results.size() : 0));
+                if (maxItems > 0 && results.size() >= maxItems) {
+                    return results;
                 }
             }
         }
@@ -19,6 +19,7 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import javax.inject.Inject;
 
 import org.guvnor.common.services.backend.exceptions.ExceptionUtilities;
 import org.guvnor.common.services.backend.file.LinkedDirectoryFilter;
@@ -53,6 +54,7 @@ public abstract class ResourceResolver<T extends Project>
     protected ConfigurationService configurationService;
     protected CommentedOptionFactory commentedOptionFactory;
     protected BackwardCompatibleUtil backward;
+    protected ProjectRootIndex projectRootIndex;
 
     public ResourceResolver() {
     }
@@ -69,6 +71,11 @@ public abstract class ResourceResolver<T extends Project>
         this.backward = backward;
     }
 
+    @Inject
+    public void setProjectRootIndex( final ProjectRootIndex projectRootIndex ) {
+        this.projectRootIndex = projectRootIndex;
+    }
+
     public Package newPackage( final Package parentPackage,
                                final String packageName,
                                final boolean startBatch ) {
@@ -117,6 +124,11 @@ public abstract class ResourceResolver<T extends Project>
                 throw new PackageAlreadyExistsException( packageName );
             }
 
+            //The new package folders are not reflected in the package names held for the Project
+            if ( projectRootIndex != null ) {
+                projectRootIndex.invalidatePackageNames( Paths.convert( mainSrcPath ) );
+            }
+
             //Return new package
             final Package newPackage = resolvePackage( pkgPath );
             return newPackage;
@@ -216,7 +228,6 @@ public abstract class ResourceResolver<T extends Project>
     @Override
     public Set<Package> resolvePackages( final Project project ) {
         final Set<Package> packages = new HashSet<Package>();
-        final Set<String> packageNames = new HashSet<String>();
         if ( project == null ) {
             return packages;
         }
@@ -224,30 +235,83 @@ public abstract class ResourceResolver<T extends Project>
         //It is possible (if the project was not created within the workbench that some packages only exist in certain paths)
         final Path projectRoot = project.getRootPath();
         final org.uberfire.java.nio.file.Path nioProjectRootPath = Paths.convert( projectRoot );
-        for ( String src : SOURCE_PATHS ) {
-            final org.uberfire.java.nio.file.Path nioPackageRootSrcPath = nioProjectRootPath.resolve( src );
-            packageNames.addAll( getPackageNames( nioProjectRootPath,
-                                                  nioPackageRootSrcPath,
-                                                  true,
-                                                  true,
-                                                  true ) );
-        }
 
         //Construct Package objects for each package name
-        final java.util.Set<String> resolvedPackages = new java.util.HashSet<String>();
-        for ( String packagePathSuffix : packageNames ) {
-            for ( String src : SOURCE_PATHS ) {
-                final org.uberfire.java.nio.file.Path nioPackagePath = nioProjectRootPath.resolve( src ).resolve( packagePathSuffix );
-                if ( Files.exists( nioPackagePath ) && !resolvedPackages.contains( packagePathSuffix ) ) {
-                    packages.add( resolvePackage( Paths.convert( nioPackagePath ) ) );
-                    resolvedPackages.add( packagePathSuffix );
-                }
-            }
+        for ( String packagePathSuffix : getAllPackagePathSuffixes( nioProjectRootPath ) ) {
+            packages.add( makePackage( project,
+                                       nioProjectRootPath,
+                                       packagePathSuffix ) );
         }
 
         return packages;
     }
 
+    private Set<String> getAllPackagePathSuffixes( final org.uberfire.java.nio.file.Path nioProjectRootPath ) {
+        if ( projectRootIndex == null ) {
+            return scanPackagePathSuffixes( nioProjectRootPath );
+        }
+
+        final Set<String> packagePathSuffixes = projectRootIndex.getPackageNames( nioProjectRootPath );
+        if ( packagePathSuffixes != null ) {
+            return packagePathSuffixes;
+        }
+
+        //Make sure the Project root is indexed so the package names can be held against it
+        long version = projectRootIndex.getPackageNamesVersion( nioProjectRootPath );
+        if ( version < 0 && hasPom( nioProjectRootPath ) ) {
+            version = projectRootIndex.getPackageNamesVersion( nioProjectRootPath );
+        }
+
+        final Set<String> scannedPackagePathSuffixes = scanPackagePathSuffixes( nioProjectRootPath );
+        if ( version >= 0 ) {
+            projectRootIndex.setPackageNames( nioProjectRootPath,
+                                              scannedPackagePathSuffixes,
+                                              version );
+        }
+        return scannedPackagePathSuffixes;
+    }
+
+    //Walk each source folder once, collecting the path (relative to the source folder) of every package folder
+    private Set<String> scanPackagePathSuffixes( final org.uberfire.java.nio.file.Path nioProjectRootPath ) {
+        final Set<String> packagePathSuffixes = new HashSet<String>();
+
+        //We're only interested in Directories (and not META-INF) so set-up appropriate filters
+        final LinkedMetaInfFolderFilter metaDataFileFilter = new LinkedMetaInfFolderFilter();
+        final LinkedDotFileFilter dotFileFilter = new LinkedDotFileFilter( metaDataFileFilter );
+        final LinkedDirectoryFilter directoryFilter = new LinkedDirectoryFilter( dotFileFilter );
+
+        for ( String src : SOURCE_PATHS ) {
+            final org.uberfire.java.nio.file.Path nioSrcPath = nioProjectRootPath.resolve( src );
+            if ( Files.exists( nioSrcPath ) ) {
+                collectPackagePathSuffixes( nioSrcPath,
+                                            nioSrcPath,
+                                            directoryFilter,
+                                            packagePathSuffixes );
+            }
+        }
+        return packagePathSuffixes;
+    }
+
+    private void collectPackagePathSuffixes( final org.uberfire.java.nio.file.Path nioSrcPath,
+                                             final org.uberfire.java.nio.file.Path nioPackagePath,
+                                             final LinkedDirectoryFilter directoryFilter,
+                                             final Set<String> packagePathSuffixes ) {
+        packagePathSuffixes.add( nioSrcPath.relativize( nioPackagePath ).toString() );
+
+        final DirectoryStream<org.uberfire.java.nio.file.Path> nioChildPackagePaths = ioService.newDirectoryStream( nioPackagePath,
+                                                                                                                    directoryFilter );
+        try {
+            for ( org.uberfire.java.nio.file.Path nioChildPackagePath : nioChildPackagePaths ) {
+                collectPackagePathSuffixes( nioSrcPath,
+                                            nioChildPackagePath,
+                                            directoryFilter,
+                                            packagePathSuffixes );
+            }
+        } finally {
+            nioChildPackagePaths.close();
+        }
+    }
+
     @Override
     public Set<Package> resolvePackages( final Package pkg ) {
         final Set<Package> packages = new HashSet<Package>();
@@ -373,22 +437,28 @@ public abstract class ResourceResolver<T extends Project>
             //Check if path equals pom.xml
             final Project project = resolveProject( resource );
 
-            //It's possible that the Incremental Build attempts to act on a Project file before the project has been fully created.
-            //This should be a short-term issue that will be resolved when saving a project batches pom.xml, kmodule.xml and project.imports
-            //etc into a single git-batch. At present they are saved individually leading to multiple Incremental Build requests.
-            if ( project == null ) {
-                return false;
-            }
-
-            final org.uberfire.java.nio.file.Path path = Paths.convert( resource ).normalize();
-            final org.uberfire.java.nio.file.Path pomFilePath = Paths.convert( project.getPomXMLPath() );
-            return path.startsWith( pomFilePath );
+            return isPom( resource,
+                          project );
 
         } catch ( Exception e ) {
             throw ExceptionUtilities.handleException( e );
         }
     }
 
+    private boolean isPom( final Path resource,
+                           final Project project ) {
+        //It's possible that the Incremental Build attempts to act on a Project file before the project has been fully created.
+        //This should be a short-term issue that will be resolved when saving a project batches pom.xml, kmodule.xml and project.imports
+        //etc into a single git-batch. At present they are saved individually leading to multiple Incremental Build requests.
+        if ( project == null ) {
+            return false;
+        }
+
+        final org.uberfire.java.nio.file.Path path = Paths.convert( resource ).normalize();
+        final org.uberfire.java.nio.file.Path pomFilePath = Paths.convert( project.getPomXMLPath() );
+        return path.startsWith( pomFilePath );
+    }
+
     @Override
     public org.guvnor.common.services.project.model.Package resolvePackage( final Path resource ) {
         try {
@@ -404,7 +474,8 @@ public abstract class ResourceResolver<T extends Project>
             }
 
             //pom.xml is not inside a package
-            if ( isPom( resource ) ) {
+            if ( isPom( resource,
+                        project ) ) {
                 return null;
             }
 
@@ -417,8 +488,20 @@ public abstract class ResourceResolver<T extends Project>
     }
 
     protected boolean hasPom( final org.uberfire.java.nio.file.Path path ) {
+        //Resolving a Project walks up the folder hierarchy; answer from the index of Project roots where possible
+        if ( projectRootIndex != null ) {
+            final Boolean isProjectRoot = projectRootIndex.isProjectRoot( path );
+            if ( isProjectRoot != null ) {
+                return isProjectRoot;
+            }
+        }
+
         final org.uberfire.java.nio.file.Path pomPath = path.resolve( POM_PATH );
-        return Files.exists( pomPath );
+        final boolean hasPom = Files.exists( pomPath );
+        if ( hasPom && projectRootIndex != null ) {
+            projectRootIndex.addProjectRoot( path );
+        }
+        return hasPom;
     }
 
     protected T makeProject( final org.uberfire.java.nio.file.Path nioProjectRootPath ) {
@@ -514,6 +597,35 @@ public abstract class ResourceResolver<T extends Project>
         return pkg;
     }
 
+    //Make a Package from its path relative to the source folders, without accessing the VFS
+    private Package makePackage( final Project project,
+                                 final org.uberfire.java.nio.file.Path nioProjectRoot,
+                                 final String packagePathSuffix ) {
+        final String packageName = packagePathSuffix.replaceAll( "/",
+                                                                 "." );
+        final String displayName = getPackageDisplayName( packageName );
+        final String relativeName = packagePathSuffix.substring( packagePathSuffix.lastIndexOf( '/' ) + 1 );
+
+        return new Package( project.getRootPath(),
+                            Paths.convert( resolvePackagePath( nioProjectRoot.resolve( MAIN_SRC_PATH ),
+                                                               packagePathSuffix ) ),
+                            Paths.convert( resolvePackagePath( nioProjectRoot.resolve( TEST_SRC_PATH ),
+                                                               packagePathSuffix ) ),
+                            Paths.convert( resolvePackagePath( nioProjectRoot.resolve( MAIN_RESOURCES_PATH ),
+                                                               packagePathSuffix ) ),
+                            Paths.convert( resolvePackagePath( nioProjectRoot.resolve( TEST_RESOURCES_PATH ),
+                                                               packagePathSuffix ) ),
+                            packageName,
+                            displayName,
+                            getPackageRelativeCaption( displayName,
+                                                       relativeName ) );
+    }
+
+    private org.uberfire.java.nio.file.Path resolvePackagePath( final org.uberfire.java.nio.file.Path nioSrcPath,
+                                                                final String packagePathSuffix ) {
+        return packagePathSuffix.isEmpty() ? nioSrcPath : nioSrcPath.resolve( packagePathSuffix );
+    }
+
     private Set<String> getPackageNames( final org.uberfire.java.nio.file.Path nioProjectRootPath,
                                          final org.uberfire.java.nio.file.Path nioPackageSrcPath,
                                          final boolean includeDefault,
@@ -16,6 +16,11 @@
 
 package org.guvnor.common.services.project.backend.server;
 
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.util.UUID;
+
 import org.eclipse.aether.RepositorySystemSession;
 import org.eclipse.aether.artifact.Artifact;
 import org.eclipse.aether.metadata.Metadata;
@@ -31,52 +36,49 @@ import org.eclipse.aether.repository.RemoteRepository;
 import org.uberfire.commons.validation.PortablePreconditions;
 
 /**
- * A wrapper around the normal LocalRepositoryManager to "fool" Maven into not checking local for remote artifacts
+ * A LocalRepositoryManager to "fool" Maven into not checking local for remote artifacts. Nothing is found locally
+ * and nothing is registered. Files downloaded by Maven are written directly into a (shared) scratch directory
+ * with names unique to this instance, so that {@link #clear()} can remove them without walking a directory tree.
  */
-public class MavenLocalRepositoryManagerWrapper implements LocalRepositoryManager {
+public class TransientLocalRepositoryManager implements LocalRepositoryManager {
 
-    private final String tempLocalRepositoryBaseDir;
-    private final LocalRepositoryManager delegate;
+    private final java.nio.file.Path scratchDirectory;
+    private final LocalRepository repository;
+    private final String prefix = UUID.randomUUID().toString();
 
-    public MavenLocalRepositoryManagerWrapper( final String tempLocalRepositoryBaseDir,
-                                               final LocalRepositoryManager delegate ) {
-        this.tempLocalRepositoryBaseDir = PortablePreconditions.checkNotNull( "tempLocalRepositoryBaseDir",
-                                                                              tempLocalRepositoryBaseDir );
-        this.delegate = PortablePreconditions.checkNotNull( "delegate",
-                                                            delegate );
+    public TransientLocalRepositoryManager( final java.nio.file.Path scratchDirectory ) {
+        this.scratchDirectory = PortablePreconditions.checkNotNull( "scratchDirectory",
+                                                                    scratchDirectory );
+        this.repository = new LocalRepository( scratchDirectory.toFile() );
     }
 
     @Override
     public LocalRepository getRepository() {
-        return new LocalRepository( tempLocalRepositoryBaseDir );
+        return repository;
     }
 
     @Override
     public String getPathForLocalArtifact( final Artifact artifact ) {
-        return delegate.getPathForLocalArtifact( artifact );
+        return toFileName( artifact );
     }
 
     @Override
     public String getPathForRemoteArtifact( final Artifact artifact,
                                             final RemoteRepository repository,
                                             final String context ) {
-        return delegate.getPathForRemoteArtifact( artifact,
-                                                  repository,
-                                                  context );
+        return toFileName( artifact );
     }
 
     @Override
     public String getPathForLocalMetadata( final Metadata metadata ) {
-        return delegate.getPathForLocalMetadata( metadata );
+        return toFileName( metadata );
     }
 
     @Override
     public String getPathForRemoteMetadata( final Metadata metadata,
                                             final RemoteRepository repository,
                                             final String context ) {
-        return delegate.getPathForRemoteMetadata( metadata,
-                                                  repository,
-                                                  context );
+        return toFileName( metadata );
     }
 
     @Override
@@ -88,22 +90,59 @@ public class MavenLocalRepositoryManagerWrapper implements LocalRepositoryManage
     @Override
     public void add( final RepositorySystemSession session,
                      final LocalArtifactRegistration request ) {
-        delegate.add( session,
-                      request );
+        //Nothing is registered
     }
 
     @Override
     public LocalMetadataResult find( final RepositorySystemSession session,
                                      final LocalMetadataRequest request ) {
-        return delegate.find( session,
-                              request );
+        return new LocalMetadataResult( request );
     }
 
     @Override
     public void add( final RepositorySystemSession session,
                      final LocalMetadataRegistration request ) {
-        delegate.add( session,
-                      request );
+        //Nothing is registered
+    }
+
+    /**
+     * Delete all files written by Maven using this LocalRepositoryManager.
+     */
+    public void clear() {
+        try {
+            final DirectoryStream<java.nio.file.Path> files = Files.newDirectoryStream( scratchDirectory,
+                                                                                        prefix + "*" );
+            try {
+                for ( java.nio.file.Path file : files ) {
+                    Files.deleteIfExists( file );
+                }
+            } finally {
+                files.close();
+            }
+        } catch ( IOException ioe ) {
+            //Swallow
+        }
+    }
+
+    private String toFileName( final Artifact artifact ) {
+        final StringBuilder sb = new StringBuilder( prefix );
+        sb.append( "-" ).append( artifact.getGroupId() );
+        sb.append( "-" ).append( artifact.getArtifactId() );
+        sb.append( "-" ).append( artifact.getVersion() );
+        if ( artifact.getClassifier().length() > 0 ) {
+            sb.append( "-" ).append( artifact.getClassifier() );
+        }
+        sb.append( "." ).append( artifact.getExtension() );
+        return sb.toString();
+    }
+
+    private String toFileName( final Metadata metadata ) {
+        final StringBuilder sb = new StringBuilder( prefix );
+        sb.append( "-" ).append( metadata.getGroupId() );
+        sb.append( "-" ).append( metadata.getArtifactId() );
+        sb.append( "-" ).append( metadata.getVersion() );
+        sb.append( "-" ).append( metadata.getType() );
+        return sb.toString();
     }
 
 }
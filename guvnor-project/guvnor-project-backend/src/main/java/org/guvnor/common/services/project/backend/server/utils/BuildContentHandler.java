@@ -52,6 +52,17 @@ class BuildContentHandler {
         }
     }
 
+    /**
+     * @return true if updating the Build would not change it
+     */
+    boolean isUpToDate( final org.guvnor.common.services.project.model.Build from,
+                        final Build to ) {
+        if ( from == null || to == null ) {
+            return from == null && to == null;
+        }
+        return from.getPlugins() == null || new MavenPluginUpdater( to.getPlugins() ).isUpToDate( from.getPlugins() );
+    }
+
     private org.guvnor.common.services.project.model.Plugin fromPomModelToClientModel( final Plugin from ) {
         org.guvnor.common.services.project.model.Plugin plugin = new org.guvnor.common.services.project.model.Plugin();
 
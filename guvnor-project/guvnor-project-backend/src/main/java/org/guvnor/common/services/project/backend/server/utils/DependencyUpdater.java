@@ -13,14 +13,19 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-
 package org.guvnor.common.services.project.backend.server.utils;
 
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.guvnor.common.services.project.model.Dependency;
 
+import static org.guvnor.common.services.project.backend.server.utils.NullSafeEquals.*;
+
 class DependencyUpdater {
 
     private final List<org.apache.maven.model.Dependency> dependencies;
@@ -30,35 +35,66 @@ class DependencyUpdater {
     }
 
     void updateDependencies( final List<Dependency> dependencies ) {
-        removeAllThatDoNotExist(dependencies);
-        addTheOnesThatDoNotExist(dependencies);
-        updateTheRest(dependencies);
-    }
-
-    private void updateTheRest( final List<Dependency> dependencies ) {
+        //Where a Dependency is listed more than once, the last one wins
+        final Map<String, Dependency> dependenciesByID = new HashMap<String, Dependency>();
         for (Dependency dependency : dependencies) {
-            for (org.apache.maven.model.Dependency modelDep : this.dependencies) {
-                if (hasSameID(dependency, modelDep)) {
-                    updateDependency(dependency, modelDep);
-                }
+            final String id = toID( dependency );
+            if ( id != null ) {
+                dependenciesByID.put( id, dependency );
             }
         }
+
+        final Set<String> existingIDs = updateOrRemoveExisting( dependenciesByID );
+        addTheOnesThatDoNotExist( dependencies, dependenciesByID, existingIDs );
     }
 
-    private void addTheOnesThatDoNotExist( final List<Dependency> dependencies ) {
-        for (Dependency dependency : dependencies) {
-            if ( !depsContains( this.dependencies, dependency ) ) {
-                this.dependencies.add( fromClientModelToPom( dependency ) );
+    /**
+     * @param dependencies Dependencies the POM should have
+     * @return true if updating the POM's dependencies would not change them
+     */
+    boolean isUpToDate( final List<Dependency> dependencies ) {
+        if ( dependencies.size() != this.dependencies.size() ) {
+            return false;
+        }
+        for (int i = 0; i < dependencies.size(); i++) {
+            final Dependency dependency = dependencies.get( i );
+            final org.apache.maven.model.Dependency modelDep = this.dependencies.get( i );
+            if ( !( hasSameID( dependency, modelDep )
+                    && areEqualOrBothNull( dependency.getVersion(), modelDep.getVersion() )
+                    && areEqualOrBothNull( dependency.getScope(), modelDep.getScope() ) ) ) {
+                return false;
             }
         }
+        return true;
     }
 
-    private void removeAllThatDoNotExist( final List<Dependency> dependencies ) {
-        Iterator<org.apache.maven.model.Dependency> iterator = this.dependencies.iterator();
+    private Set<String> updateOrRemoveExisting( final Map<String, Dependency> dependenciesByID ) {
+        final Set<String> existingIDs = new HashSet<String>();
+        final Iterator<org.apache.maven.model.Dependency> iterator = this.dependencies.iterator();
         while (iterator.hasNext()) {
-            org.apache.maven.model.Dependency dependency = iterator.next();
-            if (!depsContains(dependencies, dependency)) {
+            final org.apache.maven.model.Dependency modelDep = iterator.next();
+            final String id = toID( modelDep.getGroupId(), modelDep.getArtifactId() );
+            final Dependency dependency = id == null ? null : dependenciesByID.get( id );
+            if ( dependency == null ) {
                 iterator.remove();
+            } else {
+                updateDependency( dependency, modelDep );
+                existingIDs.add( id );
+            }
+        }
+        return existingIDs;
+    }
+
+    private void addTheOnesThatDoNotExist( final List<Dependency> dependencies,
+                                           final Map<String, Dependency> dependenciesByID,
+                                           final Set<String> existingIDs ) {
+        for (Dependency dependency : dependencies) {
+            final String id = toID( dependency );
+            if ( id == null ) {
+                //Without an ID the Dependency cannot be matched, so it is always added
+                this.dependencies.add( fromClientModelToPom( dependency ) );
+            } else if ( existingIDs.add( id ) ) {
+                this.dependencies.add( fromClientModelToPom( dependenciesByID.get( id ) ) );
             }
         }
     }
@@ -79,33 +115,22 @@ class DependencyUpdater {
         return dependency;
     }
 
-    private boolean depsContains( final List<org.guvnor.common.services.project.model.Dependency> dependencies,
-                                  final org.apache.maven.model.Dependency dependency ) {
-        for (org.guvnor.common.services.project.model.Dependency modelDep : dependencies) {
-            if (hasSameID(modelDep, dependency)) {
-                return true;
-            }
-        }
-        return false;
+    private boolean hasSameID( final org.guvnor.common.services.project.model.Dependency dependency,
+                               final org.apache.maven.model.Dependency modelDep ) {
+        return areValuesEqual( dependency.getGroupId(), modelDep.getGroupId() )
+                && areValuesEqual( dependency.getArtifactId(), modelDep.getArtifactId() );
     }
 
-    private boolean depsContains( final List<org.apache.maven.model.Dependency> dependencies,
-                                  final org.guvnor.common.services.project.model.Dependency dependency ) {
-        for (org.apache.maven.model.Dependency modelDep : dependencies) {
-            if (hasSameID(dependency, modelDep)) {
-                return true;
-            }
-        }
-        return false;
+    private String toID( final Dependency dependency ) {
+        return toID( dependency.getGroupId(), dependency.getArtifactId() );
     }
 
-    private boolean hasSameID( final org.guvnor.common.services.project.model.Dependency dependency,
-                               final org.apache.maven.model.Dependency modelDep ) {
-        if ( dependency.getArtifactId() == null || dependency.getGroupId() == null ) {
-            return false;
-        } else {
-            return dependency.getArtifactId().equals( modelDep.getArtifactId() ) && dependency.getGroupId().equals( modelDep.getGroupId() );
+    static String toID( final String groupId,
+                        final String artifactId ) {
+        if ( groupId == null || artifactId == null ) {
+            return null;
         }
+        return groupId + ":" + artifactId;
     }
 
 }
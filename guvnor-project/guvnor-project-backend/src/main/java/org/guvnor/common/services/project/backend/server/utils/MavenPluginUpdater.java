@@ -16,7 +16,9 @@
 package org.guvnor.common.services.project.backend.server.utils;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.maven.model.Plugin;
 
@@ -34,25 +36,51 @@ public class MavenPluginUpdater {
 
         ArrayList<Plugin> result = new ArrayList<Plugin>();
 
+        final Map<String, Plugin> pluginsByID = getPluginsByID();
         for (org.guvnor.common.services.project.model.Plugin plugin : from) {
-            if ( plugin.getArtifactId() != null && plugin.getGroupId() != null ) {
+            final String id = DependencyUpdater.toID( plugin.getGroupId(), plugin.getArtifactId() );
+            if ( id != null ) {
+                final Plugin declared = pluginsByID.get( id );
                 result.add( update( plugin,
-                                    findPlugin( plugin.getGroupId(), plugin.getArtifactId() ) ) );
+                                    declared == null ? new Plugin() : declared ) );
             }
         }
 
         return result;
     }
 
-    private Plugin findPlugin( final String groupId,
-                               final String artifactId ) {
+    /**
+     * @param from Plugins the POM should have
+     * @return true if updating the POM's plugins would not change them
+     */
+    public boolean isUpToDate( final List<org.guvnor.common.services.project.model.Plugin> from ) {
+        if ( from.size() != pluginsDeclaredInPOM.size() ) {
+            return false;
+        }
+        for (int i = 0; i < from.size(); i++) {
+            final org.guvnor.common.services.project.model.Plugin plugin = from.get( i );
+            final Plugin declared = pluginsDeclaredInPOM.get( i );
+            if ( !( areValuesEqual( plugin.getGroupId(), declared.getGroupId() )
+                    && areValuesEqual( plugin.getArtifactId(), declared.getArtifactId() )
+                    && areEqualOrBothNull( plugin.getVersion(), declared.getVersion() )
+                    && plugin.isExtensions() == declared.isExtensions()
+                    && new DependencyUpdater( declared.getDependencies() ).isUpToDate( plugin.getDependencies() ) ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //Where a Plugin is declared more than once, the first one is used
+    private Map<String, Plugin> getPluginsByID() {
+        final Map<String, Plugin> pluginsByID = new HashMap<String, Plugin>();
         for (final Plugin plugin : pluginsDeclaredInPOM) {
-            if ( areValuesEqual( groupId, plugin.getGroupId() )
-                    && areValuesEqual( artifactId, plugin.getArtifactId() ) ) {
-                return plugin;
+            final String id = DependencyUpdater.toID( plugin.getGroupId(), plugin.getArtifactId() );
+            if ( id != null && !pluginsByID.containsKey( id ) ) {
+                pluginsByID.put( id, plugin );
             }
         }
-        return new Plugin();
+        return pluginsByID;
     }
 
     private Plugin update( final org.guvnor.common.services.project.model.Plugin from,
@@ -24,4 +24,12 @@ public class NullSafeEquals {
             return a.equals( b );
         }
     }
+
+    static boolean areEqualOrBothNull( final String a, final String b ) {
+        if ( a == null ) {
+            return b == null;
+        } else {
+            return a.equals( b );
+        }
+    }
 }
@@ -20,6 +20,7 @@ import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.List;
 import javax.enterprise.context.Dependent;
 
 import org.apache.maven.model.Build;
@@ -32,6 +33,8 @@ import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
 import org.guvnor.common.services.project.model.GAV;
 import org.guvnor.common.services.project.model.POM;
 
+import static org.guvnor.common.services.project.backend.server.utils.NullSafeEquals.*;
+
 @Dependent
 public class POMContentHandler {
 
@@ -108,13 +111,63 @@ public class POMContentHandler {
      * @param gavModel The model that is saved
      * @param originalPomAsText The original pom in text form, since the guvnor POM model does not cover all the pom.xml features.
      * @return pom.xml for saving, The original pom.xml with the fields edited in gavModel replaced.
+     * The original pom.xml itself if none of the fields have been edited.
      * @throws IOException
      */
     public String toString( final POM gavModel,
                             final String originalPomAsText ) throws IOException, XmlPullParserException {
+        final Model model = toMavenModel( originalPomAsText );
+        if ( isUpToDate( gavModel,
+                         model ) ) {
+            return originalPomAsText;
+        }
 
         return toString( gavModel,
-                         new MavenXpp3Reader().read( new StringReader( originalPomAsText ) ) );
+                         model );
+    }
+
+    //Whether toString(POM, Model) would leave the Model as it is
+    private boolean isUpToDate( final POM pom,
+                                final Model model ) {
+        return areEqualOrBothNull( pom.getName(), model.getName() )
+                && areEqualOrBothNull( pom.getDescription(), model.getDescription() )
+                && areEqualOrBothNull( pom.getModelVersion(), model.getModelVersion() )
+                && areEqualOrBothNull( pom.getGav().getGroupId(), model.getGroupId() )
+                && areEqualOrBothNull( pom.getGav().getArtifactId(), model.getArtifactId() )
+                && areEqualOrBothNull( pom.getGav().getVersion(), model.getVersion() )
+                && areEqualOrBothNull( pom.getPackaging(), model.getPackaging() )
+                && isUpToDate( pom.getParent(), model.getParent() )
+                && getModules( pom ).equals( model.getModules() )
+                && isUpToDate( pom.getRepositories(), model.getRepositories() )
+                && new DependencyUpdater( model.getDependencies() ).isUpToDate( pom.getDependencies() )
+                && new BuildContentHandler().isUpToDate( pom.getBuild(), model.getBuild() );
+    }
+
+    private boolean isUpToDate( final GAV parent,
+                                final Parent modelParent ) {
+        if ( parent == null || modelParent == null ) {
+            return parent == null && modelParent == null;
+        }
+        return areEqualOrBothNull( parent.getGroupId(), modelParent.getGroupId() )
+                && areEqualOrBothNull( parent.getArtifactId(), modelParent.getArtifactId() )
+                && areEqualOrBothNull( parent.getVersion(), modelParent.getVersion() );
+    }
+
+    private boolean isUpToDate( final List<org.guvnor.common.services.project.model.Repository> repositories,
+                                final List<Repository> modelRepositories ) {
+        if ( repositories.size() != modelRepositories.size() ) {
+            return false;
+        }
+        for (int i = 0; i < repositories.size(); i++) {
+            final org.guvnor.common.services.project.model.Repository repository = repositories.get( i );
+            final Repository modelRepository = modelRepositories.get( i );
+            if ( !( areEqualOrBothNull( repository.getId(), modelRepository.getId() )
+                    && areEqualOrBothNull( repository.getName(), modelRepository.getName() )
+                    && areEqualOrBothNull( repository.getUrl(), modelRepository.getUrl() ) ) ) {
+                return false;
+            }
+        }
+        return true;
     }
 
     private Repository fromClientModelToPom( final org.guvnor.common.services.project.model.Repository from ) {
@@ -127,8 +180,17 @@ public class POMContentHandler {
     }
 
     public POM toModel( final String pomAsString ) throws IOException, XmlPullParserException {
-        Model model = new MavenXpp3Reader().read(new StringReader(pomAsString));
+        return toModel( toMavenModel( pomAsString ) );
+    }
+
+    /**
+     * Parse the pom.xml. The Maven model can be converted into any number of independent client models.
+     */
+    public Model toMavenModel( final String pomAsString ) throws IOException, XmlPullParserException {
+        return new MavenXpp3Reader().read( new StringReader( pomAsString ) );
+    }
 
+    public POM toModel( final Model model ) {
         POM pomModel = new POM(
                 model.getName(),
                 model.getDescription(),
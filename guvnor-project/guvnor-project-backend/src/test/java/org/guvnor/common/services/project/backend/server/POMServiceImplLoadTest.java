@@ -94,6 +94,25 @@ public class POMServiceImplLoadTest {
                                   pom.getDependencies() );
     }
 
+    @Test
+    public void testLoadReturnsIndependentInstances() throws Exception {
+        final URL url = this.getClass().getResource( "/TestProject/pom.xml" );
+
+        final Path path = ioService.get( url.toURI() );
+
+        final POM pom1 = service.load( Paths.convert( path ) );
+        pom1.getGav().setVersion( "2.0" );
+        pom1.getModules().add( "module" );
+
+        final POM pom2 = service.load( Paths.convert( path ) );
+
+        assertNotSame( pom1,
+                       pom2 );
+        assertEquals( "1.0", pom2.getGav().getVersion() );
+        assertTrue( pom2.getModules().isEmpty() );
+        assertEquals( 2, pom2.getDependencies().size() );
+    }
+
     private void assertContainsDependency( String groupID,
                                            String artifactID,
                                            String scope,
@@ -0,0 +1,293 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.project.backend.server;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.guvnor.common.services.project.model.POM;
+import org.guvnor.common.services.project.model.Project;
+import org.guvnor.structure.backend.config.ConfigGroupsChangedEvent;
+import org.guvnor.structure.server.config.ConfigGroup;
+import org.guvnor.structure.server.config.ConfigType;
+import org.junit.Before;
+import org.junit.Test;
+import org.uberfire.backend.server.util.Paths;
+import org.uberfire.java.nio.file.Path;
+import org.uberfire.java.nio.fs.file.SimpleFileSystemProvider;
+
+import static org.junit.Assert.*;
+
+public class ProjectCatalogueTest {
+
+    private SimpleFileSystemProvider fileSystemProvider;
+    private ProjectCatalogue catalogue;
+    private TestProjectLoader loader;
+    private Path branchRoot;
+
+    @Before
+    public void setup() {
+        fileSystemProvider = new SimpleFileSystemProvider();
+        catalogue = new ProjectCatalogue();
+        loader = new TestProjectLoader();
+        branchRoot = path( "/repository" );
+
+        loader.folders.put( "projectC",
+                            "Project C" );
+        loader.folders.put( "projectA",
+                            "Project A" );
+        loader.folders.put( "projectB",
+                            "Project B" );
+        loader.folders.put( "notAProject",
+                            null );
+    }
+
+    @Test
+    public void testProjectsAreOrderedByName() {
+        final List<Project> projects = catalogue.getProjects( branchRoot,
+                                                              loader );
+
+        assertEquals( 3,
+                      projects.size() );
+        assertEquals( "Project A",
+                      projects.get( 0 ).getProjectName() );
+        assertEquals( "Project B",
+                      projects.get( 1 ).getProjectName() );
+        assertEquals( "Project C",
+                      projects.get( 2 ).getProjectName() );
+    }
+
+    @Test
+    public void testProjectsAreOnlyLoadedOnce() {
+        catalogue.getProjects( branchRoot,
+                               loader );
+        catalogue.getProjects( branchRoot,
+                               loader );
+
+        assertEquals( 1,
+                      loader.listCount );
+        assertEquals( 4,
+                      loader.loadCount );
+    }
+
+    @Test
+    public void testInvalidateProject() {
+        catalogue.getProjects( branchRoot,
+                               loader );
+
+        loader.folders.put( "projectB",
+                            "Project Z" );
+        catalogue.invalidate( path( "/repository/projectB/pom.xml" ) );
+
+        final List<Project> projects = catalogue.getProjects( branchRoot,
+                                                              loader );
+        assertEquals( 1,
+                      loader.listCount );
+        assertEquals( 5,
+                      loader.loadCount );
+        assertEquals( "Project Z",
+                      projects.get( 2 ).getProjectName() );
+    }
+
+    @Test
+    public void testInvalidateRemovedProject() {
+        catalogue.getProjects( branchRoot,
+                               loader );
+
+        loader.folders.remove( "projectA" );
+        catalogue.invalidate( path( "/repository/projectA" ) );
+
+        final List<Project> projects = catalogue.getProjects( branchRoot,
+                                                              loader );
+        assertEquals( 2,
+                      projects.size() );
+        assertEquals( "Project B",
+                      projects.get( 0 ).getProjectName() );
+    }
+
+    @Test
+    public void testInvalidateBranch() {
+        catalogue.getProjects( branchRoot,
+                               loader );
+
+        catalogue.invalidate( branchRoot );
+        catalogue.getProjects( branchRoot,
+                               loader );
+
+        assertEquals( 2,
+                      loader.listCount );
+    }
+
+    @Test
+    public void testPageOnlyFiltersProjectsNeeded() {
+        final List<String> filtered = new ArrayList<String>();
+        final List<Project> page = catalogue.getProjects( branchRoot,
+                                                          loader,
+                                                          new ProjectCatalogue.ProjectFilter() {
+                                                              @Override
+                                                              public boolean accept( final Project project ) {
+                                                                  filtered.add( project.getProjectName() );
+                                                                  return true;
+                                                              }
+                                                          },
+                                                          1,
+                                                          1 );
+
+        assertEquals( 1,
+                      page.size() );
+        assertEquals( "Project B",
+                      page.get( 0 ).getProjectName() );
+        assertEquals( 2,
+                      filtered.size() );
+    }
+
+    @Test
+    public void testPageOfFilteredProjects() {
+        final List<Project> page = catalogue.getProjects( branchRoot,
+                                                          loader,
+                                                          new ProjectCatalogue.ProjectFilter() {
+                                                              @Override
+                                                              public boolean accept( final Project project ) {
+                                                                  return !"Project A".equals( project.getProjectName() );
+                                                              }
+                                                          },
+                                                          0,
+                                                          0 );
+
+        assertEquals( 2,
+                      page.size() );
+        assertEquals( "Project B",
+                      page.get( 0 ).getProjectName() );
+        assertEquals( "Project C",
+                      page.get( 1 ).getProjectName() );
+    }
+
+    @Test
+    public void testCallersGetCopies() {
+        final Project project = catalogue.getProjects( branchRoot,
+                                                       loader ).get( 0 );
+        project.getGroups().add( "admin" );
+        project.getPom().setName( "changed" );
+
+        final Project cataloguedProject = catalogue.getProjects( branchRoot,
+                                                                 loader ).get( 0 );
+        assertNotSame( project,
+                       cataloguedProject );
+        assertTrue( cataloguedProject.getGroups().isEmpty() );
+        assertEquals( "Project A",
+                      cataloguedProject.getPom().getName() );
+        assertEquals( 4,
+                      loader.loadCount );
+    }
+
+    @Test
+    public void testProjectConfigChangeInvalidatesProject() {
+        catalogue.getProjects( branchRoot,
+                               loader );
+
+        final ConfigGroupsChangedEvent event = new ConfigGroupsChangedEvent();
+        event.updated( configGroup( ConfigType.PROJECT,
+                                    Paths.convert( path( "/repository/projectB" ) ).toURI() ) );
+        event.updated( configGroup( ConfigType.REPOSITORY,
+                                    "repository" ) );
+        catalogue.onConfigGroupsChanged( event );
+        catalogue.getProjects( branchRoot,
+                               loader );
+
+        assertEquals( 1,
+                      loader.listCount );
+        assertEquals( 5,
+                      loader.loadCount );
+    }
+
+    @Test
+    public void testProjectConfigReloadInvalidatesBranch() {
+        catalogue.getProjects( branchRoot,
+                               loader );
+
+        final ConfigGroupsChangedEvent event = new ConfigGroupsChangedEvent();
+        event.reloadedAll();
+        catalogue.onConfigGroupsChanged( event );
+        catalogue.getProjects( branchRoot,
+                               loader );
+
+        assertEquals( 2,
+                      loader.listCount );
+    }
+
+    private ConfigGroup configGroup( final ConfigType type,
+                                     final String name ) {
+        final ConfigGroup configGroup = new ConfigGroup();
+        configGroup.setType( type );
+        configGroup.setName( name );
+        return configGroup;
+    }
+
+    private Path path( final String path ) {
+        return fileSystemProvider.getPath( URI.create( "default://master@myRepository" + path ) );
+    }
+
+    private class TestProjectLoader implements ProjectCatalogue.ProjectLoader {
+
+        //Project names keyed by folder name; null if the folder does not contain a Project
+        private final Map<String, String> folders = new TreeMap<String, String>();
+        private int listCount = 0;
+        private int loadCount = 0;
+
+        @Override
+        public Collection<Path> listProjectFolders( final Path branchRoot ) {
+            listCount++;
+            final List<Path> projectFolders = new ArrayList<Path>();
+            for ( String folder : folders.keySet() ) {
+                projectFolders.add( branchRoot.resolve( folder ) );
+            }
+            return projectFolders;
+        }
+
+        @Override
+        public Project loadProject( final Path projectFolder ) {
+            loadCount++;
+            final String name = folders.get( projectFolder.getFileName().toString() );
+            if ( name == null ) {
+                return null;
+            }
+            final Project project = new Project( Paths.convert( projectFolder ),
+                                                 Paths.convert( projectFolder.resolve( "pom.xml" ) ),
+                                                 name );
+            project.setPom( new POM( name,
+                                     null,
+                                     null ) );
+            return project;
+        }
+
+        @Override
+        public Project copyProject( final Project project ) {
+            final Project copy = new Project( project.getRootPath(),
+                                              project.getPomXMLPath(),
+                                              project.getProjectName() );
+            copy.getGroups().addAll( project.getGroups() );
+            copy.setPom( new POM( project.getPom().getName(),
+                                  null,
+                                  null ) );
+            return copy;
+        }
+    }
+
+}
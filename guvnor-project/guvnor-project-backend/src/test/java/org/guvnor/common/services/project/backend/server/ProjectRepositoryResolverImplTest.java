@@ -19,17 +19,29 @@ package org.guvnor.common.services.project.backend.server;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.Collection;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
 
 import org.apache.maven.project.MavenProject;
+import org.guvnor.common.services.backend.executor.ParallelExecutor;
+import org.guvnor.common.services.backend.executor.ParallelExecutorManager;
 import org.guvnor.common.services.project.model.GAV;
 import org.guvnor.common.services.project.model.MavenRepositoryMetadata;
 import org.guvnor.common.services.project.model.MavenRepositorySource;
 import org.guvnor.common.services.project.model.Project;
 import org.guvnor.common.services.project.service.ProjectRepositoryResolver;
+import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -55,6 +67,8 @@ public class ProjectRepositoryResolverImplTest {
     @Mock
     private IOService ioService;
 
+    private ExecutorService executorService;
+    private ParallelExecutor resolvers;
     private ProjectRepositoryResolverImpl service;
 
     private static java.nio.file.Path m2Folder = null;
@@ -85,7 +99,17 @@ public class ProjectRepositoryResolverImplTest {
 
     @Before
     public void setup() {
-        service = new ProjectRepositoryResolverImpl( ioService );
+        executorService = Executors.newCachedThreadPool();
+        final ParallelExecutorManager executorManager = new ParallelExecutorManager();
+        executorManager.setExecutorService( executorService );
+        resolvers = new ParallelExecutor( executorManager );
+        service = new ProjectRepositoryResolverImpl( ioService,
+                                                     resolvers );
+    }
+
+    @After
+    public void teardown() {
+        executorService.shutdownNow();
     }
 
     @AfterClass
@@ -1310,7 +1334,8 @@ public class ProjectRepositoryResolverImplTest {
                                 "true" );
 
             //Re-instantiate service to pick-up System Property
-            service = new ProjectRepositoryResolverImpl( ioService );
+            service = new ProjectRepositoryResolverImpl( ioService,
+                                                         resolvers );
 
             final InputStream pomStream = new ByteArrayInputStream( pomXml.getBytes( StandardCharsets.UTF_8 ) );
             final MavenProject mavenProject = MavenProjectLoader.parseMavenPom( pomStream );
@@ -1368,7 +1393,8 @@ public class ProjectRepositoryResolverImplTest {
                                 "true" );
 
             //Re-instantiate service to pick-up System Property
-            service = new ProjectRepositoryResolverImpl( ioService );
+            service = new ProjectRepositoryResolverImpl( ioService,
+                                                         resolvers );
 
             final InputStream pomStream = new ByteArrayInputStream( pomXml.getBytes( StandardCharsets.UTF_8 ) );
             final MavenProject mavenProject = MavenProjectLoader.parseMavenPom( pomStream );
@@ -1423,7 +1449,8 @@ public class ProjectRepositoryResolverImplTest {
                                 "true" );
 
             //Re-instantiate service to pick-up System Property
-            service = new ProjectRepositoryResolverImpl( ioService );
+            service = new ProjectRepositoryResolverImpl( ioService,
+                                                         resolvers );
 
             final InputStream pomStream = new ByteArrayInputStream( pomXml.getBytes( StandardCharsets.UTF_8 ) );
             final MavenProject mavenProject = MavenProjectLoader.parseMavenPom( pomStream );
@@ -1450,6 +1477,110 @@ public class ProjectRepositoryResolverImplTest {
         }
     }
 
+    @Test
+    public void testGetRepositoriesResolvingArtifact_RemoteResolutionIsCached() throws IOException {
+        final Project project = mock( Project.class );
+        final org.uberfire.backend.vfs.Path vfsPomXmlPath = mock( org.uberfire.backend.vfs.Path.class );
+        final String oldSettingsXmlPath = System.getProperty( "kie.maven.settings.custom" );
+
+        //Stand-in for a remote Maven Repository containing every JAR requested
+        final AtomicInteger jarRequests = new AtomicInteger();
+        final HttpServer server = HttpServer.create( new InetSocketAddress( "localhost",
+                                                                            0 ),
+                                                     0 );
+        server.createContext( "/",
+                              new HttpHandler() {
+                                  @Override
+                                  public void handle( final HttpExchange exchange ) throws IOException {
+                                      final boolean isJar = exchange.getRequestURI().getPath().endsWith( ".jar" );
+                                      if ( isJar && "GET".equals( exchange.getRequestMethod() ) ) {
+                                          jarRequests.incrementAndGet();
+                                      }
+                                      final byte[] content = "content".getBytes( StandardCharsets.UTF_8 );
+                                      if ( isJar ) {
+                                          exchange.sendResponseHeaders( 200,
+                                                                        content.length );
+                                          final OutputStream os = exchange.getResponseBody();
+                                          os.write( content );
+                                          os.close();
+                                      } else {
+                                          exchange.sendResponseHeaders( 404,
+                                                                        -1 );
+                                      }
+                                      exchange.close();
+                                  }
+                              } );
+        server.start();
+
+        try {
+            final String repositoryUrl = "http://localhost:" + server.getAddress().getPort() + "/maven2/";
+            final String pomXml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                    "<project xsi:schemaLocation=\"http://maven.apache.org/POM/4.0.0 http://maven.apache.org/xsd/maven-4.0.0.xsd\" xmlns=\"http://maven.apache.org/POM/4.0.0\"\n" +
+                    "    xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">\n" +
+                    "  <modelVersion>4.0.0</modelVersion>\n" +
+                    "  <groupId>org.guvnor</groupId>\n" +
+                    "  <artifactId>test</artifactId>\n" +
+                    "  <version>0.0.23</version>\n" +
+                    "  <repositories>\n" +
+                    "    <repository>\n" +
+                    "      <id>stand-in-repo</id>\n" +
+                    "      <name>Stand-in Repository</name>\n" +
+                    "      <url>" + repositoryUrl + "</url>\n" +
+                    "    </repository>\n" +
+                    "  </repositories>\n" +
+                    "</project>";
+
+            final GAV gav = new GAV( "org.guvnor",
+                                     "test",
+                                     "0.0.23" );
+
+            when( project.getPomXMLPath() ).thenReturn( vfsPomXmlPath );
+            when( vfsPomXmlPath.toURI() ).thenReturn( "default://p0/pom.xml" );
+            when( ioService.readAllString( any( Path.class ) ) ).thenReturn( pomXml );
+
+            System.setProperty( "kie.maven.settings.custom",
+                                settingsXmlPath.toString() );
+
+            final Set<MavenRepositoryMetadata> metadata = service.getRepositoriesResolvingArtifact( gav,
+                                                                                                    project );
+            assertNotNull( metadata );
+            assertEquals( 1,
+                          metadata.size() );
+            assertContainsRepository( "stand-in-repo",
+                                      repositoryUrl,
+                                      MavenRepositorySource.PROJECT,
+                                      metadata );
+            assertEquals( 1,
+                          jarRequests.get() );
+
+            //The second check is answered from the cache
+            final Set<MavenRepositoryMetadata> metadata2 = service.getRepositoriesResolvingArtifact( gav,
+                                                                                                     project );
+            assertEquals( metadata,
+                          metadata2 );
+            assertEquals( 1,
+                          jarRequests.get() );
+
+            //Until the cached outcome is invalidated
+            service.resolutionCache.invalidateCache();
+            final Set<MavenRepositoryMetadata> metadata3 = service.getRepositoriesResolvingArtifact( gav,
+                                                                                                     project );
+            assertEquals( metadata,
+                          metadata3 );
+            assertEquals( 2,
+                          jarRequests.get() );
+
+        } finally {
+            server.stop( 0 );
+            if ( oldSettingsXmlPath != null ) {
+                System.setProperty( "kie.maven.settings.custom",
+                                    oldSettingsXmlPath );
+            } else {
+                System.clearProperty( "kie.maven.settings.custom" );
+            }
+        }
+    }
+
     private void assertContainsRepository( final String id,
                                            final String url,
                                            final MavenRepositorySource source,
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.project.backend.server;
+
+import java.net.URI;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.uberfire.java.nio.file.Path;
+import org.uberfire.java.nio.fs.file.SimpleFileSystemProvider;
+
+import static org.junit.Assert.*;
+
+public class ProjectRootIndexTest {
+
+    private SimpleFileSystemProvider fileSystemProvider;
+    private ProjectRootIndex index;
+
+    @Before
+    public void setup() {
+        fileSystemProvider = new SimpleFileSystemProvider();
+        index = new ProjectRootIndex();
+    }
+
+    @Test
+    public void testUnknownFolder() {
+        assertNull( index.isProjectRoot( path( "/repository/project1" ) ) );
+    }
+
+    @Test
+    public void testProjectRoot() {
+        index.addProjectRoot( path( "/repository/project1" ) );
+
+        assertTrue( index.isProjectRoot( path( "/repository/project1" ) ) );
+        assertNull( index.isProjectRoot( path( "/repository" ) ) );
+        assertNull( index.isProjectRoot( path( "/repository/project2" ) ) );
+        assertNull( index.isProjectRoot( path( "/repository/project1/module1" ) ) );
+    }
+
+    @Test
+    public void testSourceFoldersAreNotProjectRoots() {
+        index.addProjectRoot( path( "/repository/project1" ) );
+
+        assertFalse( index.isProjectRoot( path( "/repository/project1/src" ) ) );
+        assertFalse( index.isProjectRoot( path( "/repository/project1/src/main/java/org/guvnor" ) ) );
+        assertFalse( index.isProjectRoot( path( "/repository/project1/src/main/resources" ) ) );
+    }
+
+    @Test
+    public void testInvalidate() {
+        index.addProjectRoot( path( "/repository/project1" ) );
+        index.addProjectRoot( path( "/repository/project1/module1" ) );
+        index.addProjectRoot( path( "/repository/project2" ) );
+
+        index.invalidate( path( "/repository/project1" ) );
+
+        assertNull( index.isProjectRoot( path( "/repository/project1" ) ) );
+        assertNull( index.isProjectRoot( path( "/repository/project1/module1" ) ) );
+        assertNull( index.isProjectRoot( path( "/repository/project1/src/main/java" ) ) );
+        assertTrue( index.isProjectRoot( path( "/repository/project2" ) ) );
+    }
+
+    private Path path( final String path ) {
+        return fileSystemProvider.getPath( URI.create( "default://master@myRepository" + path ) );
+    }
+
+}
@@ -47,6 +47,12 @@ public class ProjectSearchServiceTest {
     @Mock
     ProjectService projectService;
 
+    @Mock
+    Repository repositoryA;
+
+    @Mock
+    Repository repositoryB;
+
     @Mock
     Project itemA;
 
@@ -61,9 +67,9 @@ public class ProjectSearchServiceTest {
         when(itemB.getIdentifier()).thenReturn("itemB");
         when(itemA.getProjectName()).thenReturn("Item A");
         when(itemB.getProjectName()).thenReturn("Item B");
-        when(repositoryService.getAllRepositories()).thenReturn(Arrays.asList(mock(Repository.class)));
+        when(repositoryService.getAllRepositories()).thenReturn(Arrays.asList(repositoryA, repositoryB));
         when(projectServices.get()).thenReturn(projectService);
-        when(projectService.getAllProjects(any(), anyString())).thenReturn(new HashSet() {{add(itemA); add(itemB);}});
+        when(projectService.getAllProjects(repositoryA, "master")).thenReturn(new HashSet() {{add(itemA); add(itemB);}});
         searchService = new ProjectSearchServiceImpl(repositoryService, projectServices);
     }
 
@@ -76,6 +82,9 @@ public class ProjectSearchServiceTest {
 
     @Test
     public void testSearchByAlias() throws Exception {
+        when(projectService.getAllProjectsByName(repositoryA, "master", "Item", true, 0, 10)).thenReturn(Arrays.asList(itemA));
+        when(projectService.getAllProjectsByName(repositoryB, "master", "Item", true, 0, 9)).thenReturn(Arrays.asList(itemB));
+
         Collection<Project> result = searchService.searchByName("Item", 10, true);
         assertEquals(result.size(), 2);
     }
@@ -84,17 +93,32 @@ public class ProjectSearchServiceTest {
     public void testSearchCaseSensitiveEmpty() throws Exception {
         Collection<Project> result = searchService.searchByName("item", 10, true);
         assertEquals(result.size(), 0);
+        verify(projectService).getAllProjectsByName(repositoryA, "master", "item", true, 0, 10);
     }
 
     @Test
     public void testSearchCaseUnsensitive() throws Exception {
+        when(projectService.getAllProjectsByName(repositoryA, "master", "item", false, 0, 10)).thenReturn(Arrays.asList(itemA, itemB));
+
         Collection<Project> result = searchService.searchByName("item", 10, false);
         assertEquals(result.size(), 2);
     }
 
     @Test
     public void testSearchMaxItems() throws Exception {
+        when(projectService.getAllProjectsByName(repositoryA, "master", "item", false, 0, 1)).thenReturn(Arrays.asList(itemA));
+
         Collection<Project> result = searchService.searchByName("item", 1, false);
         assertEquals(result.size(), 1);
+        verify(projectService, never()).getAllProjectsByName(eq(repositoryB), anyString(), anyString(), anyBoolean(), anyInt(), anyInt());
+    }
+
+    @Test
+    public void testSearchWithoutMaxItems() throws Exception {
+        when(projectService.getAllProjectsByName(repositoryA, "master", "item", false, 0, 0)).thenReturn(Arrays.asList(itemA));
+        when(projectService.getAllProjectsByName(repositoryB, "master", "item", false, 0, 0)).thenReturn(Arrays.asList(itemB));
+
+        Collection<Project> result = searchService.searchByName("item", 0, false);
+        assertEquals(result.size(), 2);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.project.backend.server;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.guvnor.common.services.project.model.Package;
+import org.guvnor.common.services.project.model.Project;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.uberfire.backend.server.util.Paths;
+import org.uberfire.io.IOService;
+import org.uberfire.java.nio.file.DirectoryStream;
+import org.uberfire.java.nio.file.Files;
+import org.uberfire.java.nio.file.Path;
+import org.uberfire.java.nio.fs.file.SimpleFileSystemProvider;
+import org.uberfire.rpc.SessionInfo;
+import org.uberfire.workbench.events.ResourceAddedEvent;
+import org.uberfire.workbench.events.ResourceDeletedEvent;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class ResourceResolverTest {
+
+    private File root;
+    private Path projectRootPath;
+    private Project project;
+    private IOService ioService;
+    private ProjectRootIndex projectRootIndex;
+    private ResourceResolver<Project> resolver;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setup() throws Exception {
+        root = File.createTempFile( "resolver",
+                                    "" );
+        root.delete();
+        createFile( "project/pom.xml" );
+
+        projectRootPath = new SimpleFileSystemProvider().getPath( new File( root,
+                                                                            "project" ).toURI() );
+        project = new Project( Paths.convert( projectRootPath ),
+                               Paths.convert( projectRootPath.resolve( "pom.xml" ) ),
+                               "project" );
+
+        ioService = mock( IOService.class );
+        when( ioService.newDirectoryStream( any( Path.class ),
+                                            any( DirectoryStream.Filter.class ) ) ).thenAnswer( new Answer<DirectoryStream<Path>>() {
+            @Override
+            public DirectoryStream<Path> answer( final InvocationOnMock invocation ) throws Throwable {
+                return Files.newDirectoryStream( (Path) invocation.getArguments()[ 0 ],
+                                                 (DirectoryStream.Filter<Path>) invocation.getArguments()[ 1 ] );
+            }
+        } );
+
+        projectRootIndex = new ProjectRootIndex();
+        resolver = new ResourceResolver<Project>( ioService,
+                                                  null,
+                                                  null,
+                                                  null,
+                                                  null ) {
+            @Override
+            public Project resolveProject( final org.uberfire.backend.vfs.Path resource ) {
+                return null;
+            }
+
+            @Override
+            public Package resolveDefaultPackage( final Project project ) {
+                return null;
+            }
+
+            @Override
+            public Package resolvePackage( final org.uberfire.backend.vfs.Path resource ) {
+                return null;
+            }
+
+            @Override
+            public Project simpleProjectInstance( final Path nioProjectRootPath ) {
+                return null;
+            }
+        };
+    }
+
+    @After
+    public void tearDown() {
+        delete( root );
+    }
+
+    @Test
+    public void testPackagesOfAllSourceFolders() throws Exception {
+        createFolder( "project/src/main/java/org/guvnor/model" );
+        createFolder( "project/src/main/resources/org/guvnor/rules" );
+        createFolder( "project/src/test/java/org/guvnor/tests" );
+        createFolder( "project/src/test/resources/com/data" );
+        createFolder( "project/src/main/resources/META-INF" );
+        createFolder( "project/src/main/java/.hidden" );
+
+        assertEquals( names( "",
+                             "org",
+                             "org.guvnor",
+                             "org.guvnor.model",
+                             "org.guvnor.rules",
+                             "org.guvnor.tests",
+                             "com",
+                             "com.data" ),
+                      packageNames( resolver.resolvePackages( project ) ) );
+    }
+
+    @Test
+    public void testPackageInSeveralSourceFoldersIsResolvedOnce() throws Exception {
+        createFolder( "project/src/main/java/org/guvnor" );
+        createFolder( "project/src/test/resources/org/guvnor" );
+
+        final Set<Package> packages = resolver.resolvePackages( project );
+
+        assertEquals( 3,
+                      packages.size() );
+        for ( Package pkg : packages ) {
+            if ( "org.guvnor".equals( pkg.getPackageName() ) ) {
+                assertTrue( pkg.getPackageMainSrcPath().toURI().endsWith( "src/main/java/org/guvnor" ) );
+                assertTrue( pkg.getPackageTestResourcesPath().toURI().endsWith( "src/test/resources/org/guvnor" ) );
+            }
+        }
+    }
+
+    @Test
+    public void testEmptyProject() {
+        assertTrue( resolver.resolvePackages( project ).isEmpty() );
+        assertTrue( resolver.resolvePackages( (Project) null ).isEmpty() );
+    }
+
+    @Test
+    public void testPackageNamesAreHeldUntilResourceAdded() throws Exception {
+        resolver.setProjectRootIndex( projectRootIndex );
+        createFolder( "project/src/main/java/org/guvnor" );
+
+        assertEquals( names( "",
+                             "org",
+                             "org.guvnor" ),
+                      packageNames( resolver.resolvePackages( project ) ) );
+
+        //Not yet known to the index, so the package names held are used
+        createFolder( "project/src/main/java/org/drools" );
+        assertEquals( names( "",
+                             "org",
+                             "org.guvnor" ),
+                      packageNames( resolver.resolvePackages( project ) ) );
+
+        projectRootIndex.onResourceAdded( new ResourceAddedEvent( Paths.convert( projectRootPath.resolve( "src/main/java/org/drools" ) ),
+                                                                  "message",
+                                                                  mock( SessionInfo.class ) ) );
+        assertEquals( names( "",
+                             "org",
+                             "org.guvnor",
+                             "org.drools" ),
+                      packageNames( resolver.resolvePackages( project ) ) );
+    }
+
+    @Test
+    public void testPackageNamesAreHeldUntilResourceDeleted() throws Exception {
+        resolver.setProjectRootIndex( projectRootIndex );
+        createFolder( "project/src/main/java/org/guvnor" );
+        createFolder( "project/src/main/java/org/drools" );
+        resolver.resolvePackages( project );
+
+        delete( new File( root,
+                          "project/src/main/java/org/drools" ) );
+        projectRootIndex.onResourceDeleted( new ResourceDeletedEvent( Paths.convert( projectRootPath.resolve( "src/main/java/org/drools" ) ),
+                                                                      "message",
+                                                                      mock( SessionInfo.class ) ) );
+
+        assertEquals( names( "",
+                             "org",
+                             "org.guvnor" ),
+                      packageNames( resolver.resolvePackages( project ) ) );
+    }
+
+    @Test
+    public void testSourceFoldersAreOnlyScannedOnceWhileUnchanged() throws Exception {
+        resolver.setProjectRootIndex( projectRootIndex );
+        createFolder( "project/src/main/java/org/guvnor" );
+
+        resolver.resolvePackages( project );
+        resolver.resolvePackages( project );
+
+        //One listing for each of src/main/java, org and org/guvnor
+        verify( ioService,
+                times( 3 ) ).newDirectoryStream( any( Path.class ),
+                                                 any( DirectoryStream.Filter.class ) );
+    }
+
+    private Set<String> names( final String... names ) {
+        return new HashSet<String>( Arrays.asList( names ) );
+    }
+
+    private Set<String> packageNames( final Set<Package> packages ) {
+        final Set<String> names = new HashSet<String>();
+        for ( Package pkg : packages ) {
+            names.add( pkg.getPackageName() );
+        }
+        return names;
+    }
+
+    private void createFolder( final String name ) {
+        new File( root,
+                  name ).mkdirs();
+    }
+
+    private void createFile( final String name ) throws Exception {
+        final File file = new File( root,
+                                    name );
+        file.getParentFile().mkdirs();
+        file.createNewFile();
+    }
+
+    private void delete( final File file ) {
+        final File[] children = file.listFiles();
+        if ( children != null ) {
+            for ( File child : children ) {
+                delete( child );
+            }
+        }
+        file.delete();
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.guvnor.common.services.project.backend.server;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.repository.LocalArtifactRequest;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+public class TransientLocalRepositoryManagerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Artifact artifact = new DefaultArtifact( "org.guvnor:test:1.0" );
+
+    private TransientLocalRepositoryManager manager;
+
+    @Before
+    public void setup() {
+        manager = new TransientLocalRepositoryManager( folder.getRoot().toPath() );
+    }
+
+    @Test
+    public void testArtifactsAreNeverFound() throws IOException {
+        writeFile( manager.getPathForLocalArtifact( artifact ) );
+
+        assertFalse( manager.find( null,
+                                   new LocalArtifactRequest( artifact,
+                                                             null,
+                                                             null ) ).isAvailable() );
+    }
+
+    @Test
+    public void testClearOnlyRemovesOwnFiles() throws IOException {
+        final TransientLocalRepositoryManager other = new TransientLocalRepositoryManager( folder.getRoot().toPath() );
+        final String path = manager.getPathForRemoteArtifact( artifact,
+                                                              null,
+                                                              null );
+        final String otherPath = other.getPathForRemoteArtifact( artifact,
+                                                                 null,
+                                                                 null );
+        assertFalse( path.equals( otherPath ) );
+
+        writeFile( path );
+        writeFile( path + ".lastUpdated" );
+        writeFile( otherPath );
+
+        manager.clear();
+
+        assertFalse( new File( folder.getRoot(),
+                               path ).exists() );
+        assertFalse( new File( folder.getRoot(),
+                               path + ".lastUpdated" ).exists() );
+        assertTrue( new File( folder.getRoot(),
+                              otherPath ).exists() );
+    }
+
+    private void writeFile( final String path ) throws IOException {
+        assertTrue( new File( folder.getRoot(),
+                              path ).createNewFile() );
+    }
+
+}
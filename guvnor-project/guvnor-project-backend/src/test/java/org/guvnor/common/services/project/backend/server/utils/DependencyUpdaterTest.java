@@ -94,6 +94,41 @@ public class DependencyUpdaterTest {
         assertEquals("2.0", model.getDependencies().get(0).getVersion());
     }
 
+    @Test
+    public void testDuplicatesLastOneWins() throws Exception {
+        Model model = new Model();
+        model.getDependencies().add(makeMavenDependency("group", "artifact-id", "1.0"));
+        model.getDependencies().add(makeMavenDependency("group", "removed", "1.0"));
+
+        ArrayList<Dependency> dependencies = new ArrayList<Dependency>();
+        dependencies.add(makeWorkbenchDependency("other-group", "artifact-id", "1.0"));
+        dependencies.add(makeWorkbenchDependency("group", "artifact-id", "2.0"));
+        dependencies.add(makeWorkbenchDependency("other-group", "artifact-id", "3.0"));
+        dependencies.add(makeWorkbenchDependency("group", "artifact-id", "4.0"));
+
+        new DependencyUpdater(model.getDependencies()).updateDependencies(dependencies);
+
+        assertEquals(2, model.getDependencies().size());
+        assertEquals("group", model.getDependencies().get(0).getGroupId());
+        assertEquals("4.0", model.getDependencies().get(0).getVersion());
+        assertEquals("other-group", model.getDependencies().get(1).getGroupId());
+        assertEquals("3.0", model.getDependencies().get(1).getVersion());
+    }
+
+    @Test
+    public void testIsUpToDate() throws Exception {
+        Model model = new Model();
+        model.getDependencies().add(makeMavenDependency("group", "artifact-id", "1.0"));
+
+        ArrayList<Dependency> dependencies = new ArrayList<Dependency>();
+        dependencies.add(makeWorkbenchDependency("group", "artifact-id", "1.0"));
+
+        assertTrue(new DependencyUpdater(model.getDependencies()).isUpToDate(dependencies));
+
+        dependencies.get(0).setScope("test");
+        assertFalse(new DependencyUpdater(model.getDependencies()).isUpToDate(dependencies));
+    }
+
     private org.apache.maven.model.Dependency makeMavenDependency(String group, String artifactId, String version) {
         org.apache.maven.model.Dependency dependency = new org.apache.maven.model.Dependency();
         dependency.setGroupId(group);
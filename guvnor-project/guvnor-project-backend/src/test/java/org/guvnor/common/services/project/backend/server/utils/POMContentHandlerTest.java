@@ -201,6 +201,56 @@ public class POMContentHandlerTest {
         assertEquals("1.2.3", pom.getParent().getVersion());
     }
 
+    @Test
+    public void testUnchangedPOMIsNotRewritten() throws IOException, XmlPullParserException {
+        final POMContentHandler handler = new POMContentHandler();
+        final String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<project xsi:schemaLocation=\"http://maven.apache.org/POM/4.0.0 http://maven.apache.org/xsd/maven-4.0.0.xsd\" xmlns=\"http://maven.apache.org/POM/4.0.0\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">"
+                + "<!-- Comments are lost when the pom.xml is rewritten -->"
+                + "<modelVersion>4.0.0</modelVersion>"
+                + "<groupId>org.guvnor</groupId>"
+                + "<artifactId>test</artifactId>"
+                + "<version>0.0.1</version>"
+                + "<name>name</name>"
+                + "<dependencies>"
+                + "  <dependency>"
+                + "    <groupId>junit</groupId>"
+                + "    <artifactId>junit</artifactId>"
+                + "    <version>4.12</version>"
+                + "  </dependency>"
+                + "</dependencies>"
+                + "<build>"
+                + "  <plugins>"
+                + "    <plugin>"
+                + "      <groupId>org.kie</groupId>"
+                + "      <artifactId>kie-maven-plugin</artifactId>"
+                + "      <version>1.0</version>"
+                + "      <extensions>true</extensions>"
+                + "    </plugin>"
+                + "  </plugins>"
+                + "</build>"
+                + "</project>";
+
+        assertEquals( xml,
+                      handler.toString( handler.toModel( xml ),
+                                        xml ) );
+
+        final POM pom = handler.toModel( xml );
+        pom.getDependencies().get( 0 ).setScope( "test" );
+        final String enrichedXml = handler.toString( pom,
+                                                     xml );
+
+        assertFalse( enrichedXml.contains( "Comments are lost" ) );
+        assertContainsIgnoreWhitespace( "<scope>test</scope>",
+                                        enrichedXml );
+
+        pom.getDependencies().get( 0 ).setScope( null );
+        pom.getBuild().getPlugins().get( 0 ).setVersion( "2.0" );
+        assertContainsIgnoreWhitespace( "<version>2.0</version>",
+                                        handler.toString( pom,
+                                                          xml ) );
+    }
+
     private void assertContainsIgnoreWhitespace( final String expected,
                                                  final String xml ) {
         final String cleanExpected = expected.replaceAll( "\\s+",
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.builder;
+
+/**
+ * Priority of a build request. Builds are taken from the queue in declaration order.
+ */
+public enum BuildPriority {
+
+    /**
+     * Builds triggered by a user saving, adding or deleting a resource in the workbench
+     */
+    INTERACTIVE,
+
+    /**
+     * Builds triggered by batch changes, e.g. a git push or REST request
+     */
+    BATCH
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.builder;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Queue length, wait time and run time of the builds of a single Project. Times are in milliseconds.
+ */
+public class BuildQueueMetrics {
+
+    private final AtomicInteger queueLength = new AtomicInteger();
+    private final AtomicLong executedCount = new AtomicLong();
+    private final AtomicLong totalWaitTime = new AtomicLong();
+    private final AtomicLong totalRunTime = new AtomicLong();
+    private final AtomicLong maxWaitTime = new AtomicLong();
+    private final AtomicLong maxRunTime = new AtomicLong();
+
+    void queued() {
+        queueLength.incrementAndGet();
+    }
+
+    void started( final long waitTime ) {
+        queueLength.decrementAndGet();
+        totalWaitTime.addAndGet( waitTime );
+        updateMax( maxWaitTime,
+                   waitTime );
+    }
+
+    void rejected() {
+        queueLength.decrementAndGet();
+    }
+
+    void finished( final long runTime ) {
+        executedCount.incrementAndGet();
+        totalRunTime.addAndGet( runTime );
+        updateMax( maxRunTime,
+                   runTime );
+    }
+
+    private static void updateMax( final AtomicLong max,
+                                   final long value ) {
+        long current = max.get();
+        while ( value > current && !max.compareAndSet( current,
+                                                       value ) ) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Number of builds waiting to be executed
+     */
+    public int getQueueLength() {
+        return queueLength.get();
+    }
+
+    public long getExecutedCount() {
+        return executedCount.get();
+    }
+
+    public long getTotalWaitTime() {
+        return totalWaitTime.get();
+    }
+
+    public long getTotalRunTime() {
+        return totalRunTime.get();
+    }
+
+    public long getMaxWaitTime() {
+        return maxWaitTime.get();
+    }
+
+    public long getMaxRunTime() {
+        return maxRunTime.get();
+    }
+
+    public long getAverageWaitTime() {
+        final long count = executedCount.get();
+        return count == 0 ? 0 : totalWaitTime.get() / count;
+    }
+
+    public long getAverageRunTime() {
+        final long count = executedCount.get();
+        return count == 0 ? 0 : totalRunTime.get() / count;
+    }
+
+    @Override
+    public String toString() {
+        return "BuildQueueMetrics{" +
+                "queueLength=" + getQueueLength() +
+                ", executedCount=" + getExecutedCount() +
+                ", averageWaitTime=" + getAverageWaitTime() +
+                ", maxWaitTime=" + getMaxWaitTime() +
+                ", averageRunTime=" + getAverageRunTime() +
+                ", maxRunTime=" + getMaxRunTime() +
+                '}';
+    }
+
+}
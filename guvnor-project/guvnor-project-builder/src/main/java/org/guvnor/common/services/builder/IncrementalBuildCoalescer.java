@@ -0,0 +1,355 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.builder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.guvnor.common.services.project.model.Project;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.uberfire.backend.vfs.Path;
+import org.uberfire.workbench.events.ResourceAdded;
+import org.uberfire.workbench.events.ResourceChange;
+import org.uberfire.workbench.events.ResourceChangeType;
+import org.uberfire.workbench.events.ResourceDeleted;
+import org.uberfire.workbench.events.ResourceUpdated;
+
+/**
+ * Per-project queue of pending builds. Resource changes received for a Project within the quiet period
+ * are merged into a single batch and a full build request supersedes any incremental changes still pending
+ * (or already dispatched but not yet executed) for the same Project. A steady stream of changes cannot postpone
+ * a build indefinitely; the batch is dispatched once the maximum delay since its first change has elapsed.
+ */
+public class IncrementalBuildCoalescer {
+
+    private static final Logger logger = LoggerFactory.getLogger( IncrementalBuildCoalescer.class );
+
+    /**
+     * Receiver of the coalesced builds once the quiet period has elapsed. Dispatching should not block; a build
+     * that cannot be accepted yet should be rejected with a {@link RejectedExecutionException}, and is retried later.
+     */
+    public interface BuildDispatcher {
+
+        void dispatchIncrementalBuild( final Project project,
+                                       final Map<Path, Collection<ResourceChange>> changes,
+                                       final BuildPriority priority,
+                                       final long generation );
+
+        void dispatchFullBuild( final Project project,
+                                final BuildPriority priority );
+
+    }
+
+    private final ScheduledExecutorService scheduler;
+    private final BuildDispatcher dispatcher;
+    private final long quietPeriod;
+    private final long maxDelay;
+
+    //Keyed by Project root Path as the Project's GAV (and hence equality) can change between requests
+    private final Map<Path, PendingBuild> pendingBuilds = new HashMap<Path, PendingBuild>();
+
+    //Only held for Projects with incremental builds dispatched but not yet completed
+    private final Map<Path, Generation> generations = new HashMap<Path, Generation>();
+
+    /**
+     * @param quietPeriod Period, in milliseconds, without further changes to a Project before its changes are built
+     * @param maxDelay Maximum period, in milliseconds, from the first change to a Project until its changes are built
+     */
+    public IncrementalBuildCoalescer( final ScheduledExecutorService scheduler,
+                                      final BuildDispatcher dispatcher,
+                                      final long quietPeriod,
+                                      final long maxDelay ) {
+        this.scheduler = scheduler;
+        this.dispatcher = dispatcher;
+        this.quietPeriod = quietPeriod;
+        this.maxDelay = maxDelay;
+    }
+
+    public synchronized void scheduleResourceChange( final Project project,
+                                                     final Path resource,
+                                                     final ResourceChangeType changeType,
+                                                     final BuildPriority priority ) {
+        final PendingBuild pending = getPendingBuild( project,
+                                                      priority );
+
+        //A pending full build will pick up the change anyway
+        if ( !pending.fullBuild ) {
+            final ResourceChangeType merged = merge( pending.changes.get( resource ),
+                                                     changeType );
+            if ( merged == null ) {
+                pending.changes.remove( resource );
+            } else {
+                pending.changes.put( resource,
+                                     merged );
+            }
+        }
+        reschedule( pending );
+    }
+
+    public synchronized void scheduleFullBuild( final Project project,
+                                                final BuildPriority priority ) {
+        final PendingBuild pending = getPendingBuild( project,
+                                                      priority );
+        pending.fullBuild = true;
+        pending.changes.clear();
+
+        //Invalidate incremental builds that have been dispatched but not yet executed
+        final Generation generation = generations.get( project.getRootPath() );
+        if ( generation != null ) {
+            generation.value++;
+        }
+        reschedule( pending );
+    }
+
+    /**
+     * Incremental builds dispatched with an older generation than the current one have been superseded
+     * by a subsequent full build of the same Project and need not be executed.
+     */
+    public synchronized boolean isSuperseded( final Project project,
+                                              final long generation ) {
+        return getGeneration( project ) != generation;
+    }
+
+    /**
+     * A dispatched incremental build has been executed, or skipped as superseded
+     * @param project The Project built
+     */
+    public synchronized void completed( final Project project ) {
+        final Path key = project.getRootPath();
+        final Generation generation = generations.get( key );
+        if ( generation != null && --generation.inFlight <= 0 ) {
+            generations.remove( key );
+        }
+    }
+
+    public synchronized int getPendingBuildCount() {
+        return pendingBuilds.size();
+    }
+
+    synchronized int getGenerationCount() {
+        return generations.size();
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private long getGeneration( final Project project ) {
+        final Generation generation = generations.get( project.getRootPath() );
+        return generation == null ? 0 : generation.value;
+    }
+
+    private long dispatching( final Project project ) {
+        final Path key = project.getRootPath();
+        Generation generation = generations.get( key );
+        if ( generation == null ) {
+            generation = new Generation();
+            generations.put( key,
+                             generation );
+        }
+        generation.inFlight++;
+        return generation.value;
+    }
+
+    private PendingBuild getPendingBuild( final Project project,
+                                          final BuildPriority priority ) {
+        final Path key = project.getRootPath();
+        PendingBuild pending = pendingBuilds.get( key );
+        if ( pending == null ) {
+            pending = new PendingBuild( key );
+            pendingBuilds.put( key,
+                               pending );
+        }
+        //Always build the most recently resolved Project
+        pending.project = project;
+
+        //The merged build is as urgent as the most urgent change it contains
+        if ( priority.compareTo( pending.priority ) < 0 ) {
+            pending.priority = priority;
+        }
+        return pending;
+    }
+
+    private void reschedule( final PendingBuild pending ) {
+        if ( pending.flush != null ) {
+            pending.flush.cancel( false );
+        }
+        //Wait for the quiet period, but no longer than the maximum delay since the first change
+        final long elapsed = System.currentTimeMillis() - pending.firstChangeAt;
+        final long delay = Math.min( quietPeriod,
+                                     Math.max( 0,
+                                               maxDelay - elapsed ) );
+        pending.flush = scheduler.schedule( new Runnable() {
+                                                @Override
+                                                public void run() {
+                                                    flush( pending.key );
+                                                }
+                                            },
+                                            delay,
+                                            TimeUnit.MILLISECONDS );
+    }
+
+    void flush( final Path key ) {
+        final PendingBuild pending;
+        final long generation;
+        synchronized ( this ) {
+            pending = pendingBuilds.remove( key );
+            if ( pending == null ) {
+                return;
+            }
+            if ( pending.fullBuild || pending.changes.isEmpty() ) {
+                generation = getGeneration( pending.project );
+            } else {
+                generation = dispatching( pending.project );
+            }
+        }
+
+        try {
+            if ( pending.fullBuild ) {
+                dispatcher.dispatchFullBuild( pending.project,
+                                              pending.priority );
+            } else if ( !pending.changes.isEmpty() ) {
+                dispatcher.dispatchIncrementalBuild( pending.project,
+                                                     toBatch( pending.changes ),
+                                                     pending.priority,
+                                                     generation );
+            }
+        } catch ( RejectedExecutionException ree ) {
+            logger.warn( "Build of " + key.toURI() + " deferred: " + ree.getMessage() );
+            retry( pending );
+        } catch ( Exception e ) {
+            logger.error( e.getMessage(),
+                          e );
+            if ( !pending.fullBuild ) {
+                completed( pending.project );
+            }
+        }
+    }
+
+    //Return a rejected build to the queue, merged with any changes received since it was dispatched
+    private synchronized void retry( final PendingBuild rejected ) {
+        if ( !rejected.fullBuild ) {
+            completed( rejected.project );
+        }
+        if ( scheduler.isShutdown() ) {
+            return;
+        }
+        final PendingBuild pending = pendingBuilds.get( rejected.key );
+        if ( pending == null ) {
+            //Retry after a quiet period; the maximum delay has already elapsed
+            rejected.firstChangeAt = System.currentTimeMillis() - maxDelay + quietPeriod;
+            pendingBuilds.put( rejected.key,
+                               rejected );
+            reschedule( rejected );
+            return;
+        }
+        if ( pending.priority.compareTo( rejected.priority ) > 0 ) {
+            pending.priority = rejected.priority;
+        }
+        pending.firstChangeAt = Math.min( pending.firstChangeAt,
+                                          rejected.firstChangeAt );
+        if ( rejected.fullBuild ) {
+            pending.fullBuild = true;
+        }
+        if ( pending.fullBuild ) {
+            pending.changes.clear();
+            return;
+        }
+        //The rejected changes happened first, so those received since are applied on top
+        final Map<Path, ResourceChangeType> changes = new LinkedHashMap<Path, ResourceChangeType>( rejected.changes );
+        for ( Map.Entry<Path, ResourceChangeType> e : pending.changes.entrySet() ) {
+            final ResourceChangeType merged = merge( changes.get( e.getKey() ),
+                                                     e.getValue() );
+            if ( merged == null ) {
+                changes.remove( e.getKey() );
+            } else {
+                changes.put( e.getKey(),
+                             merged );
+            }
+        }
+        pending.changes.clear();
+        pending.changes.putAll( changes );
+    }
+
+    //Combine the change already pending for a resource with a new one. Returns null if the changes cancel out.
+    static ResourceChangeType merge( final ResourceChangeType pending,
+                                     final ResourceChangeType change ) {
+        if ( pending == null ) {
+            return change;
+        }
+        switch ( change ) {
+            case ADD:
+                return pending == ResourceChangeType.DELETE ? ResourceChangeType.UPDATE : ResourceChangeType.ADD;
+            case DELETE:
+                return pending == ResourceChangeType.ADD ? null : ResourceChangeType.DELETE;
+            default:
+                return pending == ResourceChangeType.ADD ? ResourceChangeType.ADD : ResourceChangeType.UPDATE;
+        }
+    }
+
+    private static Map<Path, Collection<ResourceChange>> toBatch( final Map<Path, ResourceChangeType> changes ) {
+        final Map<Path, Collection<ResourceChange>> batch = new HashMap<Path, Collection<ResourceChange>>();
+        for ( Map.Entry<Path, ResourceChangeType> e : changes.entrySet() ) {
+            final Collection<ResourceChange> resourceChanges = new ArrayList<ResourceChange>( 1 );
+            resourceChanges.add( toResourceChange( e.getValue() ) );
+            batch.put( e.getKey(),
+                       resourceChanges );
+        }
+        return batch;
+    }
+
+    private static ResourceChange toResourceChange( final ResourceChangeType changeType ) {
+        switch ( changeType ) {
+            case ADD:
+                return new ResourceAdded( "" );
+            case DELETE:
+                return new ResourceDeleted( "" );
+            default:
+                return new ResourceUpdated( "" );
+        }
+    }
+
+    private static class PendingBuild {
+
+        private final Path key;
+        private final Map<Path, ResourceChangeType> changes = new LinkedHashMap<Path, ResourceChangeType>();
+        private Project project;
+        private BuildPriority priority = BuildPriority.BATCH;
+        private boolean fullBuild = false;
+        private ScheduledFuture<?> flush;
+        private long firstChangeAt = System.currentTimeMillis();
+
+        private PendingBuild( final Path key ) {
+            this.key = key;
+        }
+    }
+
+    private static class Generation {
+
+        private long value = 0;
+        private int inFlight = 0;
+
+    }
+
+}
@@ -15,8 +15,10 @@
 
 package org.guvnor.common.services.builder;
 
+import java.util.Collections;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import javax.ejb.Asynchronous;
@@ -31,8 +33,9 @@ import org.guvnor.common.services.project.builder.model.IncrementalBuildResults;
 import org.guvnor.common.services.project.builder.service.BuildService;
 import org.guvnor.common.services.project.model.Project;
 import org.guvnor.common.services.project.service.ProjectService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.uberfire.commons.async.DescriptiveRunnable;
-import org.uberfire.commons.async.DescriptiveThreadFactory;
 
 import static javax.ejb.TransactionAttributeType.*;
 
@@ -53,31 +56,101 @@ public class IncrementalBuilderExecutorManager {
     @Inject
     private Event<IncrementalBuildResults> incrementalBuildResultsEvent;
 
+    //Builder threads and maximum number of queued builds when the container does not provide the ExecutorService
+    private static final int BUILD_THREADS = Integer.getInteger( "org.guvnor.build.executor.threads",
+                                                                 Runtime.getRuntime().availableProcessors() );
+    private static final int BUILD_QUEUE_DEPTH = Integer.getInteger( "org.guvnor.build.executor.queue-depth",
+                                                                     1000 );
+    private static final long BUILD_SUBMIT_TIMEOUT = Long.getLong( "org.guvnor.build.executor.submit-timeout",
+                                                                   30000 );
+
+    private static final Logger logger = LoggerFactory.getLogger( IncrementalBuilderExecutorManager.class );
+
     private AtomicBoolean useExecService = new AtomicBoolean( false );
     private ExecutorService executorService = null;
+    private ProjectBuildExecutor buildExecutor = null;
+
+    //Serializes builds of a Project when these run on threads that are not from the bounded build executor
+    private final ProjectBuildSerializer buildSerializer = new ProjectBuildSerializer();
 
     @Asynchronous
     public void execute( final AsyncIncrementalBuilder incrementalBuilder ) {
-        if ( useExecService.get() ) {
-            getExecutorService().execute( new DescriptiveRunnable() {
+        doExecute( null,
+                   BuildPriority.BATCH,
+                   incrementalBuilder );
+    }
+
+    /**
+     * Execute a build for a Project. Builds for the same Project are not executed in parallel; whether executed by
+     * the container, the bounded build executor or an ExecutorService set for tests. A build requested while the
+     * Project is being built is held back until the running build completes, and held builds are taken in priority order.
+     * @param projectKey Identifier of the Project, e.g. the URI of its root Path
+     * @param priority Priority of the build
+     * @param incrementalBuilder The build
+     * @throws RejectedExecutionException if the bounded build executor is used and its queue is full. The build is
+     * not queued; the caller is not blocked waiting for space in the queue.
+     */
+    @Asynchronous
+    public void execute( final String projectKey,
+                         final BuildPriority priority,
+                         final AsyncIncrementalBuilder incrementalBuilder ) {
+        doExecute( projectKey,
+                   priority,
+                   incrementalBuilder );
+    }
+
+    private void doExecute( final String projectKey,
+                            final BuildPriority priority,
+                            final AsyncIncrementalBuilder incrementalBuilder ) {
+        final DescriptiveRunnable runnable = new DescriptiveRunnable() {
+            @Override
+            public void run() {
+                incrementalBuilder.execute( projectService,
+                                            buildService,
+                                            incrementalBuildResultsEvent,
+                                            buildResultsEvent );
+            }
+
+            @Override
+            public String getDescription() {
+                return incrementalBuilder.getDescription();
+            }
+        };
+        if ( !useExecService.get() ) {
+            //Running on a container thread
+            buildSerializer.run( projectKey,
+                                 priority,
+                                 runnable );
+
+        } else if ( executorService != null ) {
+            executorService.execute( new DescriptiveRunnable() {
                 @Override
                 public void run() {
-                    incrementalBuilder.execute( projectService,
-                                                buildService,
-                                                incrementalBuildResultsEvent,
-                                                buildResultsEvent );
+                    buildSerializer.run( projectKey,
+                                         priority,
+                                         runnable );
                 }
 
                 @Override
                 public String getDescription() {
-                    return incrementalBuilder.getDescription();
+                    return runnable.getDescription();
                 }
             } );
+
+        } else if ( projectKey == null ) {
+            try {
+                getBuildExecutor().execute( null,
+                                            priority,
+                                            runnable );
+            } catch ( RejectedExecutionException ree ) {
+                logger.error( "Unable to schedule " + incrementalBuilder.getDescription() + ": " + ree.getMessage() );
+            }
+
         } else {
-            incrementalBuilder.execute( projectService,
-                                        buildService,
-                                        incrementalBuildResultsEvent,
-                                        buildResultsEvent );
+            //Builds of a Project are requested by the coalescer's scheduler thread, that must not be blocked
+            getBuildExecutor().tryExecute( projectKey,
+                                           priority,
+                                           runnable );
         }
     }
 
@@ -87,11 +160,24 @@ public class IncrementalBuilderExecutorManager {
         this.useExecService.set( true );
     }
 
-    private ExecutorService getExecutorService() {
-        if ( executorService == null ) {
-            executorService = Executors.newCachedThreadPool( new DescriptiveThreadFactory() );
+    private synchronized ProjectBuildExecutor getBuildExecutor() {
+        if ( buildExecutor == null ) {
+            buildExecutor = new ProjectBuildExecutor( BUILD_THREADS,
+                                                      BUILD_QUEUE_DEPTH,
+                                                      BUILD_SUBMIT_TIMEOUT );
+        }
+        return buildExecutor;
+    }
+
+    /**
+     * Queue length, wait time and run time of builds keyed by Project. Empty when builds are executed by the container.
+     */
+    public Map<String, BuildQueueMetrics> getBuildQueueMetrics() {
+        final ProjectBuildExecutor executor = buildExecutor;
+        if ( executor == null ) {
+            return Collections.emptyMap();
         }
-        return executorService;
+        return executor.getMetrics();
     }
 
     public void setServices( final ProjectService projectService,
@@ -124,5 +210,16 @@ public class IncrementalBuilderExecutorManager {
                 Thread.currentThread().interrupt();
             }
         }
+        if ( buildExecutor != null ) {
+            buildExecutor.shutdown();
+            try {
+                if ( !buildExecutor.awaitTermination( 60, TimeUnit.SECONDS ) ) {
+                    buildExecutor.shutdownNow();
+                }
+            } catch ( InterruptedException ie ) {
+                buildExecutor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 }
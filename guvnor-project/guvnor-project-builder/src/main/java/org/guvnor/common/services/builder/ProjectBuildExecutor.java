@@ -0,0 +1,299 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.builder;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.uberfire.commons.async.DescriptiveRunnable;
+import org.uberfire.commons.async.DescriptiveThreadFactory;
+
+/**
+ * Bounded executor for builds. Builds of the same Project are never executed in parallel, INTERACTIVE
+ * builds are taken before BATCH builds and submission blocks (and eventually fails) once the maximum
+ * number of queued builds has been reached.
+ */
+public class ProjectBuildExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger( ProjectBuildExecutor.class );
+
+    //Key for builds not associated with a Project; these are not serialized
+    private static final String UNKEYED = "";
+
+    private final ThreadPoolExecutor workers;
+    private final Semaphore capacity;
+    private final long submitTimeout;
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final Map<String, ProjectQueue> projectQueues = new HashMap<String, ProjectQueue>();
+    private final ConcurrentMap<String, BuildQueueMetrics> metrics = new ConcurrentHashMap<String, BuildQueueMetrics>();
+
+    public ProjectBuildExecutor( final int threads,
+                                 final int maxQueueDepth,
+                                 final long submitTimeout ) {
+        this.workers = new ThreadPoolExecutor( threads,
+                                               threads,
+                                               60L,
+                                               TimeUnit.SECONDS,
+                                               new PriorityBlockingQueue<Runnable>(),
+                                               new DescriptiveThreadFactory() );
+        this.workers.allowCoreThreadTimeOut( true );
+        this.capacity = new Semaphore( maxQueueDepth,
+                                       true );
+        this.submitTimeout = submitTimeout;
+    }
+
+    /**
+     * Queue a build. Blocks for up to the submit timeout (in milliseconds) if the queue is full.
+     * @param projectKey Builds with the same key are executed one after the other. Can be null.
+     * @param priority Priority of the build
+     * @param runnable The build
+     * @throws RejectedExecutionException if the queue remained full or the executor has been shutdown
+     */
+    public void execute( final String projectKey,
+                         final BuildPriority priority,
+                         final DescriptiveRunnable runnable ) {
+        execute( projectKey,
+                 priority,
+                 runnable,
+                 submitTimeout );
+    }
+
+    /**
+     * Queue a build, without waiting if the queue is full.
+     * @param projectKey Builds with the same key are executed one after the other. Can be null.
+     * @param priority Priority of the build
+     * @param runnable The build
+     * @throws RejectedExecutionException if the queue is full or the executor has been shutdown
+     */
+    public void tryExecute( final String projectKey,
+                            final BuildPriority priority,
+                            final DescriptiveRunnable runnable ) {
+        execute( projectKey,
+                 priority,
+                 runnable,
+                 0 );
+    }
+
+    private void execute( final String projectKey,
+                          final BuildPriority priority,
+                          final DescriptiveRunnable runnable,
+                          final long timeout ) {
+        if ( workers.isShutdown() ) {
+            throw new RejectedExecutionException( "Build executor has been shutdown." );
+        }
+        final String key = projectKey == null ? UNKEYED : projectKey;
+        final BuildQueueMetrics projectMetrics = getMetrics( key );
+        projectMetrics.queued();
+
+        try {
+            if ( !capacity.tryAcquire( timeout,
+                                       TimeUnit.MILLISECONDS ) ) {
+                projectMetrics.rejected();
+                throw new RejectedExecutionException( "Build queue is full. Unable to schedule '" + runnable.getDescription() + "'." );
+            }
+        } catch ( InterruptedException ie ) {
+            projectMetrics.rejected();
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException( ie );
+        }
+
+        final BuildTask task = new BuildTask( key,
+                                              priority == null ? BuildPriority.BATCH : priority,
+                                              sequence.getAndIncrement(),
+                                              runnable,
+                                              projectMetrics );
+        if ( UNKEYED.equals( key ) ) {
+            submit( task );
+            return;
+        }
+
+        synchronized ( projectQueues ) {
+            ProjectQueue queue = projectQueues.get( key );
+            if ( queue == null ) {
+                queue = new ProjectQueue();
+                projectQueues.put( key,
+                                   queue );
+            }
+            //Hold back the build until the one already queued or running for this Project completes
+            if ( queue.active ) {
+                queue.held.add( task );
+                return;
+            }
+            queue.active = true;
+        }
+        submit( task );
+    }
+
+    private void submit( final BuildTask task ) {
+        try {
+            workers.execute( task );
+        } catch ( RejectedExecutionException ree ) {
+            task.metrics.rejected();
+            capacity.release();
+            release( task.key );
+            throw ree;
+        }
+    }
+
+    //Submit the next build held back for the Project, if any
+    private void release( final String key ) {
+        if ( UNKEYED.equals( key ) ) {
+            return;
+        }
+        final BuildTask next;
+        synchronized ( projectQueues ) {
+            final ProjectQueue queue = projectQueues.get( key );
+            if ( queue == null ) {
+                return;
+            }
+            next = queue.held.poll();
+            if ( next == null ) {
+                projectQueues.remove( key );
+                return;
+            }
+        }
+        try {
+            submit( next );
+        } catch ( RejectedExecutionException ree ) {
+            logger.warn( "Build '" + next.runnable.getDescription() + "' rejected: " + ree.getMessage() );
+        }
+    }
+
+    private BuildQueueMetrics getMetrics( final String key ) {
+        BuildQueueMetrics projectMetrics = metrics.get( key );
+        if ( projectMetrics == null ) {
+            final BuildQueueMetrics newMetrics = new BuildQueueMetrics();
+            projectMetrics = metrics.putIfAbsent( key,
+                                                  newMetrics );
+            if ( projectMetrics == null ) {
+                projectMetrics = newMetrics;
+            }
+        }
+        return projectMetrics;
+    }
+
+    /**
+     * Build metrics keyed by Project. Builds not associated with a Project are keyed by an empty String.
+     */
+    public Map<String, BuildQueueMetrics> getMetrics() {
+        return Collections.unmodifiableMap( metrics );
+    }
+
+    /**
+     * Total number of builds queued or running
+     */
+    public int getQueueDepth() {
+        return workers.getQueue().size() + workers.getActiveCount() + getHeldCount();
+    }
+
+    private int getHeldCount() {
+        int held = 0;
+        synchronized ( projectQueues ) {
+            for ( ProjectQueue queue : projectQueues.values() ) {
+                held = held + queue.held.size();
+            }
+        }
+        return held;
+    }
+
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    public void shutdownNow() {
+        workers.shutdownNow();
+    }
+
+    public boolean awaitTermination( final long timeout,
+                                     final TimeUnit unit ) throws InterruptedException {
+        return workers.awaitTermination( timeout,
+                                         unit );
+    }
+
+    private static class ProjectQueue {
+
+        private boolean active = false;
+        private final PriorityQueue<BuildTask> held = new PriorityQueue<BuildTask>();
+
+    }
+
+    private class BuildTask implements DescriptiveRunnable,
+                                       Comparable<BuildTask> {
+
+        private final String key;
+        private final BuildPriority priority;
+        private final long sequence;
+        private final DescriptiveRunnable runnable;
+        private final BuildQueueMetrics metrics;
+        private final long queuedAt = System.currentTimeMillis();
+
+        private BuildTask( final String key,
+                           final BuildPriority priority,
+                           final long sequence,
+                           final DescriptiveRunnable runnable,
+                           final BuildQueueMetrics metrics ) {
+            this.key = key;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.runnable = runnable;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void run() {
+            final long startedAt = System.currentTimeMillis();
+            metrics.started( startedAt - queuedAt );
+            try {
+                runnable.run();
+            } catch ( Exception e ) {
+                logger.error( e.getMessage(),
+                              e );
+            } finally {
+                metrics.finished( System.currentTimeMillis() - startedAt );
+                capacity.release();
+                release( key );
+            }
+        }
+
+        @Override
+        public String getDescription() {
+            return runnable.getDescription();
+        }
+
+        @Override
+        public int compareTo( final BuildTask other ) {
+            final int result = priority.compareTo( other.priority );
+            if ( result != 0 ) {
+                return result;
+            }
+            return sequence < other.sequence ? -1 : ( sequence == other.sequence ? 0 : 1 );
+        }
+    }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.builder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs builds on the calling thread, for builds executed by threads provided by the container. A build of a
+ * Project that is already being built is held back, and run by the thread building the Project once it has
+ * finished; so builds of the same Project are never executed in parallel and held builds are taken in priority order.
+ */
+public class ProjectBuildSerializer {
+
+    private static final Logger logger = LoggerFactory.getLogger( ProjectBuildSerializer.class );
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    //Builds held back for the Projects being built
+    private final Map<String, PriorityQueue<HeldBuild>> building = new HashMap<String, PriorityQueue<HeldBuild>>();
+
+    /**
+     * Run a build, or hold it back if the Project is being built by another thread
+     * @param projectKey Builds with the same key are executed one after the other. Can be null.
+     * @param priority Priority of the build
+     * @param runnable The build
+     */
+    public void run( final String projectKey,
+                     final BuildPriority priority,
+                     final Runnable runnable ) {
+        if ( projectKey == null ) {
+            runnable.run();
+            return;
+        }
+        synchronized ( building ) {
+            final PriorityQueue<HeldBuild> held = building.get( projectKey );
+            if ( held != null ) {
+                held.add( new HeldBuild( priority == null ? BuildPriority.BATCH : priority,
+                                         sequence.getAndIncrement(),
+                                         runnable ) );
+                return;
+            }
+            building.put( projectKey,
+                          new PriorityQueue<HeldBuild>() );
+        }
+
+        Runnable next = runnable;
+        try {
+            while ( next != null ) {
+                try {
+                    next.run();
+                } catch ( Exception e ) {
+                    logger.error( e.getMessage(),
+                                  e );
+                }
+                synchronized ( building ) {
+                    final HeldBuild held = building.get( projectKey ).poll();
+                    if ( held == null ) {
+                        building.remove( projectKey );
+                    }
+                    next = held == null ? null : held.runnable;
+                }
+            }
+        } finally {
+            //Do not leave the Project locked should a build fail with an Error
+            if ( next != null ) {
+                synchronized ( building ) {
+                    building.remove( projectKey );
+                }
+            }
+        }
+    }
+
+    /**
+     * Number of builds held back for the Project
+     */
+    public int getHeldCount( final String projectKey ) {
+        synchronized ( building ) {
+            final PriorityQueue<HeldBuild> held = building.get( projectKey );
+            return held == null ? 0 : held.size();
+        }
+    }
+
+    private static class HeldBuild implements Comparable<HeldBuild> {
+
+        private final BuildPriority priority;
+        private final long sequence;
+        private final Runnable runnable;
+
+        private HeldBuild( final BuildPriority priority,
+                           final long sequence,
+                           final Runnable runnable ) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.runnable = runnable;
+        }
+
+        @Override
+        public int compareTo( final HeldBuild other ) {
+            final int result = priority.compareTo( other.priority );
+            if ( result != 0 ) {
+                return result;
+            }
+            return sequence < other.sequence ? -1 : ( sequence == other.sequence ? 0 : 1 );
+        }
+    }
+
+}
@@ -15,10 +15,9 @@
  */
 package org.guvnor.common.services.builder;
 
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executors;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
@@ -36,8 +35,10 @@ import org.guvnor.common.services.shared.config.AppConfigService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.uberfire.backend.vfs.Path;
+import org.uberfire.commons.async.DescriptiveThreadFactory;
 import org.uberfire.commons.services.cdi.ApplicationStarted;
 import org.uberfire.workbench.events.ResourceChange;
+import org.uberfire.workbench.events.ResourceChangeType;
 
 /**
  * Listener for changes to project resources to handle incremental builds
@@ -47,6 +48,16 @@ public class ResourceChangeIncrementalBuilder {
 
     private static final String INCREMENTAL_BUILD_PROPERTY_NAME = "build.enable-incremental";
 
+    //Period (in milliseconds) without further changes to a Project before its pending changes are built
+    private static final String QUIET_PERIOD_PROPERTY_NAME = "build.incremental-quiet-period";
+
+    private static final long DEFAULT_QUIET_PERIOD = 500;
+
+    //Maximum period (in milliseconds) from the first pending change to a Project until its changes are built
+    private static final String MAX_DELAY_PROPERTY_NAME = "build.incremental-max-delay";
+
+    private static final long DEFAULT_MAX_DELAY = 5000;
+
     protected static final Logger logger = LoggerFactory.getLogger( ResourceChangeIncrementalBuilder.class );
 
     @Inject
@@ -60,6 +71,8 @@ public class ResourceChangeIncrementalBuilder {
 
     private IncrementalBuilderExecutorManager executorManager = null;
 
+    private IncrementalBuildCoalescer coalescer = null;
+
     protected boolean isIncrementalEnabled = false;
 
     @PostConstruct
@@ -79,6 +92,9 @@ public class ResourceChangeIncrementalBuilder {
 
     @PreDestroy
     private void destroyExecutorService() {
+        if ( coalescer != null ) {
+            coalescer.shutdown();
+        }
         if ( executorManager != null && !isEjb( executorManager, IncrementalBuilderExecutorManager.class ) ) {
             executorManager.shutdown();
         }
@@ -100,6 +116,51 @@ public class ResourceChangeIncrementalBuilder {
         return executorManager;
     }
 
+    private synchronized IncrementalBuildCoalescer getCoalescer() {
+        if ( coalescer == null ) {
+            coalescer = new IncrementalBuildCoalescer( Executors.newSingleThreadScheduledExecutor( new DescriptiveThreadFactory() ),
+                                                       new IncrementalBuildCoalescer.BuildDispatcher() {
+                                                           @Override
+                                                           public void dispatchIncrementalBuild( final Project project,
+                                                                                                 final Map<Path, Collection<ResourceChange>> changes,
+                                                                                                 final BuildPriority priority,
+                                                                                                 final long generation ) {
+                                                               executeIncrementalBuild( project,
+                                                                                        changes,
+                                                                                        priority,
+                                                                                        generation );
+                                                           }
+
+                                                           @Override
+                                                           public void dispatchFullBuild( final Project project,
+                                                                                          final BuildPriority priority ) {
+                                                               executeFullBuild( project,
+                                                                                 priority );
+                                                           }
+                                                       },
+                                                       getPeriod( QUIET_PERIOD_PROPERTY_NAME,
+                                                                  DEFAULT_QUIET_PERIOD ),
+                                                       getPeriod( MAX_DELAY_PROPERTY_NAME,
+                                                                  DEFAULT_MAX_DELAY ) );
+        }
+        return coalescer;
+    }
+
+    private long getPeriod( final String propertyName,
+                            final long defaultPeriod ) {
+        final String value = appConfigService.loadPreferences().get( propertyName );
+        if ( value == null ) {
+            return defaultPeriod;
+        }
+        try {
+            return Math.max( 0,
+                             Long.parseLong( value.trim() ) );
+        } catch ( NumberFormatException nfe ) {
+            logger.warn( "Invalid value '" + value + "' for " + propertyName + ". Using default of " + defaultPeriod + "ms." );
+            return defaultPeriod;
+        }
+    }
+
     public void addResource( final Path resource ) {
         //Do nothing if incremental builds are disabled
         if ( !isIncrementalEnabled ) {
@@ -108,44 +169,8 @@ public class ResourceChangeIncrementalBuilder {
 
         logger.info( "Incremental build request received for: " + resource.toURI() + " (added)." );
 
-        //If resource is not within a Package it cannot be used for an incremental build
-        final Package pkg = projectService.resolvePackage( resource );
-        if ( pkg == null ) {
-            return;
-        }
-
-        //Schedule an incremental build
-        getExecutor().execute( new AsyncIncrementalBuilder() {
-
-            @Override
-            public void execute( final ProjectService projectService,
-                                 final BuildService buildService,
-                                 final Event<IncrementalBuildResults> incrementalBuildResultsEvent,
-                                 final Event<BuildResults> buildResultsEvent ) {
-                try {
-                    logger.info( "Incremental build request being processed: " + resource.toURI() + " (added)." );
-                    final Project project = projectService.resolveProject( resource );
-
-                    //Fall back to a Full Build in lieu of an Incremental Build if the Project has not been previously built
-                    if ( buildService.isBuilt( project ) ) {
-                        final IncrementalBuildResults results = buildService.addPackageResource( resource );
-                        incrementalBuildResultsEvent.fire( results );
-                    } else {
-                        final BuildResults results = buildService.build( project );
-                        buildResultsEvent.fire( results );
-                    }
-
-                } catch ( Exception e ) {
-                    logger.error( e.getMessage(),
-                                  e );
-                }
-            }
-
-            @Override
-            public String getDescription() {
-                return "Incremental Build [" + resource.toURI() + " (added)]";
-            }
-        } );
+        schedulePackageResourceChange( resource,
+                                       ResourceChangeType.ADD );
     }
 
     public void deleteResource( final Path resource ) {
@@ -156,44 +181,8 @@ public class ResourceChangeIncrementalBuilder {
 
         logger.info( "Incremental build request received for: " + resource.toURI() + " (deleted)." );
 
-        //If resource is not within a Package it cannot be used for an incremental build
-        final Package pkg = projectService.resolvePackage( resource );
-        if ( pkg == null ) {
-            return;
-        }
-
-        //Schedule an incremental build
-        getExecutor().execute( new AsyncIncrementalBuilder() {
-
-            @Override
-            public void execute( final ProjectService projectService,
-                                 final BuildService buildService,
-                                 final Event<IncrementalBuildResults> incrementalBuildResultsEvent,
-                                 final Event<BuildResults> buildResultsEvent ) {
-                try {
-                    logger.info( "Incremental build request being processed: " + resource.toURI() + " (deleted)." );
-                    final Project project = projectService.resolveProject( resource );
-
-                    //Fall back to a Full Build in lieu of an Incremental Build if the Project has not been previously built
-                    if ( buildService.isBuilt( project ) ) {
-                        final IncrementalBuildResults results = buildService.deletePackageResource( resource );
-                        incrementalBuildResultsEvent.fire( results );
-                    } else {
-                        final BuildResults results = buildService.build( project );
-                        buildResultsEvent.fire( results );
-                    }
-
-                } catch ( Exception e ) {
-                    logger.error( e.getMessage(),
-                                  e );
-                }
-            }
-
-            @Override
-            public String getDescription() {
-                return "Incremental Build [" + resource.toURI() + " (deleted)]";
-            }
-        } );
+        schedulePackageResourceChange( resource,
+                                       ResourceChangeType.DELETE );
     }
 
     public void updateResource( final Path resource ) {
@@ -208,11 +197,6 @@ public class ResourceChangeIncrementalBuilder {
         if ( isProjectResourceUpdateNeeded( resource ) ) {
             scheduleProjectResourceUpdate( resource );
         } else {
-            //If resource is not within a Package it cannot be used for an incremental build
-            final Package pkg = projectService.resolvePackage( resource );
-            if ( pkg == null ) {
-                return;
-            }
             schedulePackageResourceUpdate( resource );
         }
     }
@@ -224,34 +208,75 @@ public class ResourceChangeIncrementalBuilder {
     //Schedule a re-build of a Project (changes to pom.xml or kmodule.xml require a full build)
     protected void scheduleProjectResourceUpdate( final Path resource ) {
         final Project project = projectService.resolveProject( resource );
-        getExecutor().execute( new AsyncIncrementalBuilder() {
+        if ( project == null ) {
+            return;
+        }
+        getCoalescer().scheduleFullBuild( project,
+                                          BuildPriority.INTERACTIVE );
+    }
+
+    //Schedule an incremental build for a package resource
+    protected void schedulePackageResourceUpdate( final Path resource ) {
+        schedulePackageResourceChange( resource,
+                                       ResourceChangeType.UPDATE );
+    }
+
+    private void schedulePackageResourceChange( final Path resource,
+                                                final ResourceChangeType changeType ) {
+        //If resource is not within a Package it cannot be used for an incremental build
+        final Package pkg = projectService.resolvePackage( resource );
+        if ( pkg == null ) {
+            return;
+        }
+        final Project project = projectService.resolveProject( resource );
+        if ( project == null ) {
+            return;
+        }
 
-            @Override
-            public void execute( final ProjectService projectService,
-                                 final BuildService buildService,
-                                 final Event<IncrementalBuildResults> incrementalBuildResultsEvent,
-                                 final Event<BuildResults> buildResultsEvent ) {
-                try {
-                    logger.info( "Incremental build request being processed: " + project.getRootPath() + " (updated)." );
-                    final BuildResults results = buildService.build( project );
-                    buildResultsEvent.fire( results );
+        //Changes are merged with others for the same Project received within the quiet period
+        getCoalescer().scheduleResourceChange( project,
+                                               resource,
+                                               changeType,
+                                               BuildPriority.INTERACTIVE );
+    }
 
-                } catch ( Exception e ) {
-                    logger.error( e.getMessage(),
-                                  e );
-                }
+    public void batchResourceChanges( final Map<Path, Collection<ResourceChange>> batch ) {
+        //Do nothing if incremental builds are disabled
+        if ( !isIncrementalEnabled ) {
+            return;
+        }
+
+        logger.info( "Batch incremental build request received." );
+
+        for ( Map.Entry<Path, Collection<ResourceChange>> pathCollectionEntry : batch.entrySet() ) {
+            final Path resource = pathCollectionEntry.getKey();
+
+            //If resource is not within a Package it cannot be used for an incremental build
+            final Project project = projectService.resolveProject( resource );
+            final Package pkg = projectService.resolvePackage( resource );
+            if ( project == null || pkg == null ) {
+                continue;
             }
 
-            @Override
-            public String getDescription() {
-                return "Incremental Build [" + resource.toURI() + " (updated)]";
+            //Block changes together with their respective project as Builder operates at the Project level
+            for ( final ResourceChange change : pathCollectionEntry.getValue() ) {
+                getCoalescer().scheduleResourceChange( project,
+                                                       resource,
+                                                       change.getType(),
+                                                       BuildPriority.BATCH );
+                logger.info( "- Batch content: " + resource.toURI() + " (" + change.getType().toString() + ")." );
             }
-        } );
+        }
     }
 
-    //Schedule an incremental build for a package resource
-    protected void schedulePackageResourceUpdate( final Path resource ) {
-        getExecutor().execute( new AsyncIncrementalBuilder() {
+    //Execute a (coalesced) incremental build for a Project
+    private void executeIncrementalBuild( final Project project,
+                                          final Map<Path, Collection<ResourceChange>> changes,
+                                          final BuildPriority priority,
+                                          final long generation ) {
+        getExecutor().execute( project.getRootPath().toURI(),
+                               priority,
+                               new AsyncIncrementalBuilder() {
 
             @Override
             public void execute( final ProjectService projectService,
@@ -259,12 +284,19 @@ public class ResourceChangeIncrementalBuilder {
                                  final Event<IncrementalBuildResults> incrementalBuildResultsEvent,
                                  final Event<BuildResults> buildResultsEvent ) {
                 try {
-                    logger.info( "Incremental build request being processed: " + resource.toURI() + " (updated)." );
-                    final Project project = projectService.resolveProject( resource );
+                    //A full build has been requested since this build was scheduled; that will include these changes
+                    if ( getCoalescer().isSuperseded( project,
+                                                      generation ) ) {
+                        logger.info( "Incremental build request superseded by full build: " + project.getRootPath() + "." );
+                        return;
+                    }
+
+                    logger.info( "Incremental build request being processed: " + project.getRootPath() + " (" + changes.size() + " resource(s))." );
 
                     //Fall back to a Full Build in lieu of an Incremental Build if the Project has not been previously built
                     if ( buildService.isBuilt( project ) ) {
-                        final IncrementalBuildResults results = buildService.updatePackageResource( resource );
+                        final IncrementalBuildResults results = buildService.applyBatchResourceChanges( project,
+                                                                                                        changes );
                         incrementalBuildResultsEvent.fire( results );
                     } else {
                         final BuildResults results = buildService.build( project );
@@ -274,85 +306,46 @@ public class ResourceChangeIncrementalBuilder {
                 } catch ( Exception e ) {
                     logger.error( e.getMessage(),
                                   e );
+                } finally {
+                    getCoalescer().completed( project );
                 }
             }
 
             @Override
             public String getDescription() {
-                return "Incremental Build [" + resource.toURI() + " (updated)]";
+                return "Incremental Build [" + project.getProjectName() + " (" + changes.size() + " resource(s))]";
             }
         } );
     }
 
-    public void batchResourceChanges( final Map<Path, Collection<ResourceChange>> batch ) {
-        //Do nothing if incremental builds are disabled
-        if ( !isIncrementalEnabled ) {
-            return;
-        }
+    //Execute a full build for a Project
+    private void executeFullBuild( final Project project,
+                                   final BuildPriority priority ) {
+        getExecutor().execute( project.getRootPath().toURI(),
+                               priority,
+                               new AsyncIncrementalBuilder() {
 
-        logger.info( "Batch incremental build request received." );
-
-        //Block changes together with their respective project as Builder operates at the Project level
-        final Map<Project, Map<Path, Collection<ResourceChange>>> projectBatchChanges = new HashMap<Project, Map<Path, Collection<ResourceChange>>>();
+            @Override
+            public void execute( final ProjectService projectService,
+                                 final BuildService buildService,
+                                 final Event<IncrementalBuildResults> incrementalBuildResultsEvent,
+                                 final Event<BuildResults> buildResultsEvent ) {
+                try {
+                    logger.info( "Incremental build request being processed: " + project.getRootPath() + " (updated)." );
+                    final BuildResults results = buildService.build( project );
+                    buildResultsEvent.fire( results );
 
-        for ( Map.Entry<Path, Collection<ResourceChange>> pathCollectionEntry : batch.entrySet() ) {
-            for ( final ResourceChange change : pathCollectionEntry.getValue() ) {
-                final Path resource = pathCollectionEntry.getKey();
-
-                //If resource is not within a Package it cannot be used for an incremental build
-                final Project project = projectService.resolveProject( resource );
-                final Package pkg = projectService.resolvePackage( resource );
-                if ( project != null && pkg != null ) {
-                    if ( !projectBatchChanges.containsKey( project ) ) {
-                        projectBatchChanges.put( project,
-                                                 new HashMap<Path, Collection<ResourceChange>>() );
-                    }
-                    final Map<Path, Collection<ResourceChange>> projectChanges = projectBatchChanges.get( project );
-                    if ( !projectChanges.containsKey( pathCollectionEntry.getKey() ) ) {
-                        projectChanges.put( pathCollectionEntry.getKey(), new ArrayList<ResourceChange>() );
-                    }
-                    projectChanges.get( pathCollectionEntry.getKey() ).add( change );
-                    logger.info( "- Batch content: " + pathCollectionEntry.getKey().toURI() + " (" + change.getType().toString() + ")." );
+                } catch ( Exception e ) {
+                    logger.error( e.getMessage(),
+                                  e );
                 }
             }
-        }
 
-        //Schedule an incremental build for each Project
-        for ( final Map.Entry<Project, Map<Path, Collection<ResourceChange>>> e : projectBatchChanges.entrySet() ) {
-            getExecutor().execute( new AsyncIncrementalBuilder() {
-
-                @Override
-                public void execute( final ProjectService projectService,
-                                     final BuildService buildService,
-                                     final Event<IncrementalBuildResults> incrementalBuildResultsEvent,
-                                     final Event<BuildResults> buildResultsEvent ) {
-                    try {
-                        logger.info( "Batch incremental build request being processed." );
-                        final Project project = e.getKey();
-                        final Map<Path, Collection<ResourceChange>> changes = e.getValue();
-
-                        //Fall back to a Full Build in lieu of an Incremental Build if the Project has not been previously built
-                        if ( buildService.isBuilt( project ) ) {
-                            final IncrementalBuildResults results = buildService.applyBatchResourceChanges( project,
-                                                                                                            changes );
-                            incrementalBuildResultsEvent.fire( results );
-                        } else {
-                            final BuildResults results = buildService.build( project );
-                            buildResultsEvent.fire( results );
-                        }
-
-                    } catch ( Exception e ) {
-                        logger.error( e.getMessage(),
-                                      e );
-                    }
-                }
-
-                @Override
-                public String getDescription() {
-                    return "Batch incremental build [" + e.getKey().getProjectName() + "]";
-                }
-            } );
-        }
+            @Override
+            public String getDescription() {
+                return "Incremental Build [" + project.getRootPath().toURI() + " (updated)]";
+            }
+        } );
     }
 
 }
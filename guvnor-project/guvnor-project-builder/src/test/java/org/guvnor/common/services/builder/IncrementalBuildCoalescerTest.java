@@ -0,0 +1,261 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.builder;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.guvnor.common.services.project.model.Project;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.uberfire.backend.vfs.Path;
+import org.uberfire.workbench.events.ResourceChange;
+import org.uberfire.workbench.events.ResourceChangeType;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class IncrementalBuildCoalescerTest {
+
+    private ScheduledExecutorService scheduler;
+    private IncrementalBuildCoalescer.BuildDispatcher dispatcher;
+    private IncrementalBuildCoalescer coalescer;
+
+    private Path rootPath;
+    private Project project;
+
+    @Before
+    public void setup() {
+        scheduler = mock( ScheduledExecutorService.class );
+        dispatcher = mock( IncrementalBuildCoalescer.BuildDispatcher.class );
+        coalescer = new IncrementalBuildCoalescer( scheduler,
+                                                   dispatcher,
+                                                   500,
+                                                   5000 );
+        rootPath = mock( Path.class );
+        project = new Project( rootPath,
+                               mock( Path.class ),
+                               "project" );
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testChangesAreMergedIntoSingleBatch() {
+        final Path resource1 = mock( Path.class );
+        final Path resource2 = mock( Path.class );
+
+        coalescer.scheduleResourceChange( project,
+                                          resource1,
+                                          ResourceChangeType.ADD,
+                                          BuildPriority.INTERACTIVE );
+        coalescer.scheduleResourceChange( project,
+                                          resource1,
+                                          ResourceChangeType.UPDATE,
+                                          BuildPriority.INTERACTIVE );
+        coalescer.scheduleResourceChange( project,
+                                          resource2,
+                                          ResourceChangeType.UPDATE,
+                                          BuildPriority.INTERACTIVE );
+        assertEquals( 1,
+                      coalescer.getPendingBuildCount() );
+
+        coalescer.flush( rootPath );
+
+        final ArgumentCaptor<Map> batchCaptor = ArgumentCaptor.forClass( Map.class );
+        verify( dispatcher,
+                times( 1 ) ).dispatchIncrementalBuild( eq( project ),
+                                                       batchCaptor.capture(),
+                                                       eq( BuildPriority.INTERACTIVE ),
+                                                       eq( 0L ) );
+        verify( dispatcher,
+                never() ).dispatchFullBuild( any( Project.class ),
+                                             any( BuildPriority.class ) );
+
+        final Map<Path, Collection<ResourceChange>> batch = batchCaptor.getValue();
+        assertEquals( 2,
+                      batch.size() );
+        assertEquals( ResourceChangeType.ADD,
+                      batch.get( resource1 ).iterator().next().getType() );
+        assertEquals( ResourceChangeType.UPDATE,
+                      batch.get( resource2 ).iterator().next().getType() );
+        assertEquals( 0,
+                      coalescer.getPendingBuildCount() );
+    }
+
+    @Test
+    public void testAddThenDeleteCancelsOut() {
+        final Path resource = mock( Path.class );
+
+        coalescer.scheduleResourceChange( project,
+                                          resource,
+                                          ResourceChangeType.ADD,
+                                          BuildPriority.INTERACTIVE );
+        coalescer.scheduleResourceChange( project,
+                                          resource,
+                                          ResourceChangeType.DELETE,
+                                          BuildPriority.INTERACTIVE );
+
+        coalescer.flush( rootPath );
+
+        verifyZeroInteractions( dispatcher );
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFullBuildSupersedesPendingChanges() {
+        coalescer.scheduleResourceChange( project,
+                                          mock( Path.class ),
+                                          ResourceChangeType.UPDATE,
+                                          BuildPriority.INTERACTIVE );
+        coalescer.scheduleFullBuild( project,
+                                     BuildPriority.BATCH );
+        coalescer.scheduleResourceChange( project,
+                                          mock( Path.class ),
+                                          ResourceChangeType.UPDATE,
+                                          BuildPriority.INTERACTIVE );
+
+        coalescer.flush( rootPath );
+
+        verify( dispatcher,
+                times( 1 ) ).dispatchFullBuild( eq( project ),
+                                                eq( BuildPriority.INTERACTIVE ) );
+        verify( dispatcher,
+                never() ).dispatchIncrementalBuild( any( Project.class ),
+                                                    any( Map.class ),
+                                                    any( BuildPriority.class ),
+                                                    anyLong() );
+    }
+
+    @Test
+    public void testFullBuildSupersedesDispatchedIncrementalBuild() {
+        coalescer.scheduleResourceChange( project,
+                                          mock( Path.class ),
+                                          ResourceChangeType.UPDATE,
+                                          BuildPriority.INTERACTIVE );
+        coalescer.flush( rootPath );
+        assertFalse( coalescer.isSuperseded( project,
+                                             0L ) );
+
+        coalescer.scheduleFullBuild( project,
+                                     BuildPriority.BATCH );
+        assertTrue( coalescer.isSuperseded( project,
+                                            0L ) );
+    }
+
+    @Test
+    public void testMaximumDelay() {
+        final IncrementalBuildCoalescer coalescer = new IncrementalBuildCoalescer( scheduler,
+                                                                                   dispatcher,
+                                                                                   500,
+                                                                                   0 );
+        coalescer.scheduleResourceChange( project,
+                                          mock( Path.class ),
+                                          ResourceChangeType.UPDATE,
+                                          BuildPriority.INTERACTIVE );
+        coalescer.scheduleResourceChange( project,
+                                          mock( Path.class ),
+                                          ResourceChangeType.UPDATE,
+                                          BuildPriority.INTERACTIVE );
+
+        //The maximum delay has elapsed so further changes no longer postpone the build
+        verify( scheduler,
+                times( 2 ) ).schedule( any( Runnable.class ),
+                                       eq( 0L ),
+                                       eq( TimeUnit.MILLISECONDS ) );
+    }
+
+    @Test
+    public void testGenerationsAreReleased() {
+        coalescer.scheduleFullBuild( project,
+                                     BuildPriority.BATCH );
+        coalescer.flush( rootPath );
+        assertEquals( 0,
+                      coalescer.getGenerationCount() );
+
+        coalescer.scheduleResourceChange( project,
+                                          mock( Path.class ),
+                                          ResourceChangeType.UPDATE,
+                                          BuildPriority.INTERACTIVE );
+        coalescer.flush( rootPath );
+        assertEquals( 1,
+                      coalescer.getGenerationCount() );
+
+        coalescer.completed( project );
+        assertEquals( 0,
+                      coalescer.getGenerationCount() );
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRejectedBuildIsRetried() {
+        final Path resource1 = mock( Path.class );
+        final Path resource2 = mock( Path.class );
+        doThrow( new RejectedExecutionException( "full" ) ).doNothing().when( dispatcher ).dispatchIncrementalBuild( any( Project.class ),
+                                                                                                                  any( Map.class ),
+                                                                                                                  any( BuildPriority.class ),
+                                                                                                                  anyLong() );
+        coalescer.scheduleResourceChange( project,
+                                          resource1,
+                                          ResourceChangeType.ADD,
+                                          BuildPriority.BATCH );
+        coalescer.flush( rootPath );
+
+        //The rejected build is pending again, and merged with the changes received since
+        assertEquals( 1,
+                      coalescer.getPendingBuildCount() );
+        assertEquals( 0,
+                      coalescer.getGenerationCount() );
+        coalescer.scheduleResourceChange( project,
+                                          resource2,
+                                          ResourceChangeType.UPDATE,
+                                          BuildPriority.INTERACTIVE );
+        coalescer.flush( rootPath );
+
+        final ArgumentCaptor<Map> batchCaptor = ArgumentCaptor.forClass( Map.class );
+        verify( dispatcher,
+                times( 2 ) ).dispatchIncrementalBuild( eq( project ),
+                                                       batchCaptor.capture(),
+                                                       any( BuildPriority.class ),
+                                                       anyLong() );
+        final Map<Path, Collection<ResourceChange>> batch = batchCaptor.getValue();
+        assertEquals( 2,
+                      batch.size() );
+        assertEquals( ResourceChangeType.ADD,
+                      batch.get( resource1 ).iterator().next().getType() );
+        assertEquals( 0,
+                      coalescer.getPendingBuildCount() );
+    }
+
+    @Test
+    public void testMerge() {
+        assertEquals( ResourceChangeType.UPDATE,
+                      IncrementalBuildCoalescer.merge( ResourceChangeType.DELETE,
+                                                       ResourceChangeType.ADD ) );
+        assertEquals( ResourceChangeType.DELETE,
+                      IncrementalBuildCoalescer.merge( ResourceChangeType.UPDATE,
+                                                       ResourceChangeType.DELETE ) );
+        assertEquals( ResourceChangeType.ADD,
+                      IncrementalBuildCoalescer.merge( ResourceChangeType.ADD,
+                                                       ResourceChangeType.UPDATE ) );
+        assertNull( IncrementalBuildCoalescer.merge( ResourceChangeType.ADD,
+                                                     ResourceChangeType.DELETE ) );
+    }
+
+}
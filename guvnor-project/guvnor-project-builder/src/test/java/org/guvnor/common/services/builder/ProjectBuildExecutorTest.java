@@ -0,0 +1,226 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.builder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+import org.uberfire.commons.async.DescriptiveRunnable;
+
+import static org.junit.Assert.*;
+
+public class ProjectBuildExecutorTest {
+
+    private ProjectBuildExecutor executor;
+
+    @After
+    public void tearDown() {
+        if ( executor != null ) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testInteractiveBuildsExecuteBeforeBatchBuilds() throws Exception {
+        executor = new ProjectBuildExecutor( 1,
+                                             10,
+                                             1000 );
+        final CountDownLatch blocker = new CountDownLatch( 1 );
+        final CountDownLatch done = new CountDownLatch( 4 );
+        final List<String> executed = Collections.synchronizedList( new ArrayList<String>() );
+
+        executor.execute( "p0",
+                          BuildPriority.BATCH,
+                          new Build( "p0",
+                                     executed,
+                                     blocker,
+                                     done ) );
+        executor.execute( "p1",
+                          BuildPriority.BATCH,
+                          new Build( "p1",
+                                     executed,
+                                     null,
+                                     done ) );
+        executor.execute( "p2",
+                          BuildPriority.BATCH,
+                          new Build( "p2",
+                                     executed,
+                                     null,
+                                     done ) );
+        executor.execute( "p3",
+                          BuildPriority.INTERACTIVE,
+                          new Build( "p3",
+                                     executed,
+                                     null,
+                                     done ) );
+
+        blocker.countDown();
+        assertTrue( done.await( 5,
+                                TimeUnit.SECONDS ) );
+        assertEquals( "p0",
+                      executed.get( 0 ) );
+        assertEquals( "p3",
+                      executed.get( 1 ) );
+        assertEquals( "p1",
+                      executed.get( 2 ) );
+        assertEquals( "p2",
+                      executed.get( 3 ) );
+    }
+
+    @Test
+    public void testBuildsOfSameProjectAreNotExecutedInParallel() throws Exception {
+        executor = new ProjectBuildExecutor( 4,
+                                             100,
+                                             1000 );
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch( 20 );
+
+        for ( int i = 0; i < 20; i++ ) {
+            executor.execute( "project",
+                              BuildPriority.INTERACTIVE,
+                              new DescriptiveRunnable() {
+                                  @Override
+                                  public void run() {
+                                      final int current = running.incrementAndGet();
+                                      if ( current > maxRunning.get() ) {
+                                          maxRunning.set( current );
+                                      }
+                                      try {
+                                          Thread.sleep( 5 );
+                                      } catch ( InterruptedException e ) {
+                                          Thread.currentThread().interrupt();
+                                      }
+                                      running.decrementAndGet();
+                                      done.countDown();
+                                  }
+
+                                  @Override
+                                  public String getDescription() {
+                                      return "build";
+                                  }
+                              } );
+        }
+
+        assertTrue( done.await( 10,
+                                TimeUnit.SECONDS ) );
+        assertEquals( 1,
+                      maxRunning.get() );
+    }
+
+    @Test
+    public void testQueueDepthLimit() throws Exception {
+        executor = new ProjectBuildExecutor( 1,
+                                             1,
+                                             10 );
+        final CountDownLatch blocker = new CountDownLatch( 1 );
+        executor.execute( "p1",
+                          BuildPriority.BATCH,
+                          new Build( "p1",
+                                     new ArrayList<String>(),
+                                     blocker,
+                                     new CountDownLatch( 1 ) ) );
+        try {
+            executor.execute( "p2",
+                              BuildPriority.BATCH,
+                              new Build( "p2",
+                                         new ArrayList<String>(),
+                                         null,
+                                         new CountDownLatch( 1 ) ) );
+            fail( "Expected RejectedExecutionException" );
+        } catch ( RejectedExecutionException ree ) {
+            //Expected
+        } finally {
+            blocker.countDown();
+        }
+        assertEquals( 0,
+                      executor.getMetrics().get( "p2" ).getQueueLength() );
+    }
+
+    @Test
+    public void testTryExecuteDoesNotWaitForSpace() throws Exception {
+        executor = new ProjectBuildExecutor( 1,
+                                             1,
+                                             60000 );
+        final CountDownLatch blocker = new CountDownLatch( 1 );
+        executor.execute( "p1",
+                          BuildPriority.BATCH,
+                          new Build( "p1",
+                                     new ArrayList<String>(),
+                                     blocker,
+                                     new CountDownLatch( 1 ) ) );
+        final long start = System.currentTimeMillis();
+        try {
+            executor.tryExecute( "p2",
+                                 BuildPriority.BATCH,
+                                 new Build( "p2",
+                                            new ArrayList<String>(),
+                                            null,
+                                            new CountDownLatch( 1 ) ) );
+            fail( "Expected RejectedExecutionException" );
+        } catch ( RejectedExecutionException ree ) {
+            //Expected
+        } finally {
+            blocker.countDown();
+        }
+        assertTrue( System.currentTimeMillis() - start < 60000 );
+    }
+
+    private static class Build implements DescriptiveRunnable {
+
+        private final String name;
+        private final List<String> executed;
+        private final CountDownLatch blocker;
+        private final CountDownLatch done;
+
+        private Build( final String name,
+                       final List<String> executed,
+                       final CountDownLatch blocker,
+                       final CountDownLatch done ) {
+            this.name = name;
+            this.executed = executed;
+            this.blocker = blocker;
+            this.done = done;
+        }
+
+        @Override
+        public void run() {
+            executed.add( name );
+            try {
+                if ( blocker != null ) {
+                    blocker.await( 5,
+                                   TimeUnit.SECONDS );
+                }
+            } catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            }
+            done.countDown();
+        }
+
+        @Override
+        public String getDescription() {
+            return name;
+        }
+    }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.builder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ProjectBuildSerializerTest {
+
+    private final ProjectBuildSerializer serializer = new ProjectBuildSerializer();
+
+    @Test
+    public void testBuildsOfBusyProjectAreHeldBackInPriorityOrder() throws Exception {
+        final List<String> executed = Collections.synchronizedList( new ArrayList<String>() );
+        final CountDownLatch started = new CountDownLatch( 1 );
+        final CountDownLatch blocker = new CountDownLatch( 1 );
+
+        final Thread building = new Thread( new Runnable() {
+            @Override
+            public void run() {
+                serializer.run( "project",
+                                BuildPriority.BATCH,
+                                new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        started.countDown();
+                                        await( blocker );
+                                        executed.add( "first" );
+                                    }
+                                } );
+            }
+        } );
+        building.start();
+        assertTrue( started.await( 5,
+                                   TimeUnit.SECONDS ) );
+
+        //The Project is being built so these return immediately, without running the build
+        serializer.run( "project",
+                        BuildPriority.BATCH,
+                        new Build( "batch",
+                                   executed ) );
+        serializer.run( "project",
+                        BuildPriority.INTERACTIVE,
+                        new Build( "interactive",
+                                   executed ) );
+        assertEquals( 2,
+                      serializer.getHeldCount( "project" ) );
+
+        //Other Projects are not held back
+        serializer.run( "other",
+                        BuildPriority.BATCH,
+                        new Build( "other",
+                                   executed ) );
+        assertEquals( Collections.singletonList( "other" ),
+                      executed );
+
+        blocker.countDown();
+        building.join( 5000 );
+        assertEquals( Arrays.asList( "other",
+                                     "first",
+                                     "interactive",
+                                     "batch" ),
+                      executed );
+        assertEquals( 0,
+                      serializer.getHeldCount( "project" ) );
+    }
+
+    @Test
+    public void testFailedBuildDoesNotHoldBackTheProject() {
+        final List<String> executed = new ArrayList<String>();
+        serializer.run( "project",
+                        BuildPriority.BATCH,
+                        new Runnable() {
+                            @Override
+                            public void run() {
+                                throw new RuntimeException( "failed" );
+                            }
+                        } );
+        serializer.run( "project",
+                        BuildPriority.BATCH,
+                        new Build( "next",
+                                   executed ) );
+        assertEquals( Collections.singletonList( "next" ),
+                      executed );
+    }
+
+    private static void await( final CountDownLatch latch ) {
+        try {
+            latch.await( 5,
+                         TimeUnit.SECONDS );
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class Build implements Runnable {
+
+        private final String name;
+        private final List<String> executed;
+
+        private Build( final String name,
+                       final List<String> executed ) {
+            this.name = name;
+            this.executed = executed;
+        }
+
+        @Override
+        public void run() {
+            executed.add( name );
+        }
+    }
+
+}
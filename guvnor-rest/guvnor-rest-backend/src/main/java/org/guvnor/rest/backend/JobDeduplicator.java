@@ -0,0 +1,132 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.rest.backend;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Identical jobs, those with the same key, that are queued or running at the same time are executed once.
+ * The job that completed most recently for a key is remembered for a short time, so repeated requests are
+ * also given its result rather than executing the job again.
+ */
+public class JobDeduplicator {
+
+    private final long completedJobTimeToLive;
+
+    private final Map<String, String> jobsByKey = new HashMap<String, String>();
+    private final Map<String, String> keysByJob = new HashMap<String, String>();
+
+    //Completed jobs in the order they completed, so the expired are at the head
+    private final LinkedHashMap<String, CompletedJob> completedJobsByKey = new LinkedHashMap<String, CompletedJob>();
+
+    /**
+     * @param completedJobTimeToLive Time, in milliseconds, a completed job is remembered
+     */
+    public JobDeduplicator( final long completedJobTimeToLive ) {
+        this.completedJobTimeToLive = completedJobTimeToLive;
+    }
+
+    /**
+     * Register a job, unless an identical job is queued, running or completed recently
+     * @param key Key of the job. Jobs with the same key are identical.
+     * @param jobId Identifier of the job
+     * @return The identifier of the identical job; or null if there is none and the job was registered
+     */
+    public synchronized String register( final String key,
+                                         final String jobId ) {
+        final String inFlightJobId = jobsByKey.get( key );
+        if ( inFlightJobId != null ) {
+            return inFlightJobId;
+        }
+
+        expireCompletedJobs();
+        final CompletedJob completedJob = completedJobsByKey.get( key );
+        if ( completedJob != null ) {
+            return completedJob.jobId;
+        }
+
+        jobsByKey.put( key,
+                       jobId );
+        keysByJob.put( jobId,
+                       key );
+        return null;
+    }
+
+    /**
+     * A job has completed
+     * @param jobId Identifier of the job
+     * @param remember true if the job should be remembered; false if identical jobs should be executed
+     */
+    public synchronized void completed( final String jobId,
+                                        final boolean remember ) {
+        final String key = keysByJob.remove( jobId );
+        if ( key == null ) {
+            return;
+        }
+        jobsByKey.remove( key );
+        if ( remember ) {
+            //Re-insert, so the key moves to the end of the expiry order
+            completedJobsByKey.remove( key );
+            completedJobsByKey.put( key,
+                                    new CompletedJob( jobId,
+                                                      System.currentTimeMillis() + completedJobTimeToLive ) );
+        }
+    }
+
+    /**
+     * Forget a job, for example because it has been canceled or its result removed
+     * @param jobId Identifier of the job
+     */
+    public synchronized void remove( final String jobId ) {
+        final String key = keysByJob.remove( jobId );
+        if ( key != null ) {
+            jobsByKey.remove( key );
+        }
+        final Iterator<CompletedJob> itr = completedJobsByKey.values().iterator();
+        while ( itr.hasNext() ) {
+            if ( itr.next().jobId.equals( jobId ) ) {
+                itr.remove();
+            }
+        }
+    }
+
+    private void expireCompletedJobs() {
+        final long now = System.currentTimeMillis();
+        final Iterator<CompletedJob> itr = completedJobsByKey.values().iterator();
+        while ( itr.hasNext() ) {
+            if ( itr.next().expiresAt > now ) {
+                return;
+            }
+            itr.remove();
+        }
+    }
+
+    private static class CompletedJob {
+
+        private final String jobId;
+        private final long expiresAt;
+
+        private CompletedJob( final String jobId,
+                              final long expiresAt ) {
+            this.jobId = jobId;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+}
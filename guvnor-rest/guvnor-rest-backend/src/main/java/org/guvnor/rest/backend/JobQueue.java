@@ -0,0 +1,270 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.rest.backend;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.guvnor.rest.client.JobQueueMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.uberfire.commons.async.DescriptiveRunnable;
+
+/**
+ * Bounded queue of REST jobs. Jobs are started in the order they were queued, subject to a limit on the
+ * total number of running jobs and to a limit per job type. Jobs for the same repository are executed one
+ * after the other, so a repository with many queued jobs does not hold back jobs for other repositories.
+ */
+public class JobQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger( JobQueue.class );
+
+    /**
+     * Notified of jobs the executor refused to run. The jobs are not run.
+     */
+    public interface RejectedJobHandler {
+
+        void rejected( String jobId,
+                       RejectedExecutionException e );
+    }
+
+    private final Executor workers;
+    private final RejectedJobHandler rejectedJobHandler;
+    private final int maxQueued;
+    private final int maxRunning;
+    private final Map<String, Integer> maxRunningByType;
+
+    private final LinkedList<Job> queued = new LinkedList<Job>();
+    private final Map<String, Integer> runningByType = new HashMap<String, Integer>();
+    private final Set<String> runningRepositories = new HashSet<String>();
+    private int running = 0;
+    private long rejected = 0;
+    private long canceled = 0;
+
+    /**
+     * @param workers Executor running the jobs, e.g. the container's. Jobs are only given to it once they can be started.
+     * @param rejectedJobHandler Notified of jobs the executor refused to run
+     * @param maxQueued Maximum number of jobs waiting to be started
+     * @param maxRunning Maximum number of jobs running concurrently
+     * @param maxRunningByType Maximum number of jobs of a type running concurrently. Types not present are
+     * limited by maxRunning only.
+     */
+    public JobQueue( final Executor workers,
+                     final RejectedJobHandler rejectedJobHandler,
+                     final int maxQueued,
+                     final int maxRunning,
+                     final Map<String, Integer> maxRunningByType ) {
+        this.workers = workers;
+        this.rejectedJobHandler = rejectedJobHandler;
+        this.maxQueued = maxQueued;
+        this.maxRunning = maxRunning;
+        this.maxRunningByType = new HashMap<String, Integer>( maxRunningByType );
+    }
+
+    /**
+     * Queue a job
+     * @param jobId Identifier of the job
+     * @param type Type of the job
+     * @param repository Repository the job operates on. Can be null.
+     * @param runnable The job
+     * @return true if the job was queued; false if the queue is full
+     */
+    public boolean submit( final String jobId,
+                           final String type,
+                           final String repository,
+                           final DescriptiveRunnable runnable ) {
+        synchronized ( this ) {
+            if ( queued.size() >= maxQueued ) {
+                rejected++;
+                return false;
+            }
+            queued.add( new Job( jobId,
+                                 type,
+                                 repository,
+                                 runnable ) );
+        }
+        dispatch();
+        return true;
+    }
+
+    /**
+     * Cancel a job that has not been started
+     * @param jobId Identifier of the job
+     * @return true if the job was removed from the queue; false if it is not queued
+     */
+    public synchronized boolean cancel( final String jobId ) {
+        final Iterator<Job> itr = queued.iterator();
+        while ( itr.hasNext() ) {
+            if ( itr.next().jobId.equals( jobId ) ) {
+                itr.remove();
+                canceled++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public synchronized JobQueueMetrics getMetrics() {
+        final Map<String, Integer> queuedByType = new HashMap<String, Integer>();
+        for ( Job job : queued ) {
+            increment( queuedByType,
+                       job.type );
+        }
+        final JobQueueMetrics metrics = new JobQueueMetrics();
+        metrics.setQueuedJobs( queued.size() );
+        metrics.setRunningJobs( running );
+        metrics.setMaxQueuedJobs( maxQueued );
+        metrics.setMaxRunningJobs( maxRunning );
+        metrics.setRejectedJobs( rejected );
+        metrics.setCanceledJobs( canceled );
+        metrics.setQueuedJobsByType( queuedByType );
+        metrics.setRunningJobsByType( new HashMap<String, Integer>( runningByType ) );
+        return metrics;
+    }
+
+    //Start every queued job that is within the limits, in the order they were queued
+    private void dispatch() {
+        final List<Job> startable = new ArrayList<Job>();
+        synchronized ( this ) {
+            //Repositories with an earlier job still queued; their later jobs must wait for it
+            final Set<String> heldRepositories = new HashSet<String>();
+            final Iterator<Job> itr = queued.iterator();
+            while ( itr.hasNext() && running < maxRunning ) {
+                final Job job = itr.next();
+                if ( job.repository != null
+                        && ( runningRepositories.contains( job.repository ) || heldRepositories.contains( job.repository ) ) ) {
+                    continue;
+                }
+                if ( !isWithinTypeLimit( job.type ) ) {
+                    if ( job.repository != null ) {
+                        heldRepositories.add( job.repository );
+                    }
+                    continue;
+                }
+                itr.remove();
+                started( job );
+                startable.add( job );
+            }
+        }
+
+        boolean anyRejected = false;
+        for ( Job job : startable ) {
+            try {
+                workers.execute( job );
+            } catch ( RejectedExecutionException ree ) {
+                logger.warn( "Job '" + job.jobId + "' rejected: " + ree.getMessage() );
+                synchronized ( this ) {
+                    finished( job );
+                    rejected++;
+                }
+                rejectedJobHandler.rejected( job.jobId,
+                                             ree );
+                anyRejected = true;
+            }
+        }
+
+        //Jobs held back by a rejected job can now be started
+        if ( anyRejected ) {
+            dispatch();
+        }
+    }
+
+    private boolean isWithinTypeLimit( final String type ) {
+        final Integer limit = maxRunningByType.get( type );
+        if ( limit == null ) {
+            return true;
+        }
+        final Integer count = runningByType.get( type );
+        return count == null || count < limit;
+    }
+
+    private void started( final Job job ) {
+        running++;
+        increment( runningByType,
+                   job.type );
+        if ( job.repository != null ) {
+            runningRepositories.add( job.repository );
+        }
+    }
+
+    private void finished( final Job job ) {
+        running--;
+        final Integer count = runningByType.get( job.type );
+        if ( count == null || count <= 1 ) {
+            runningByType.remove( job.type );
+        } else {
+            runningByType.put( job.type,
+                               count - 1 );
+        }
+        if ( job.repository != null ) {
+            runningRepositories.remove( job.repository );
+        }
+    }
+
+    private static void increment( final Map<String, Integer> counts,
+                                   final String key ) {
+        final Integer count = counts.get( key );
+        counts.put( key,
+                    count == null ? 1 : count + 1 );
+    }
+
+    private class Job implements DescriptiveRunnable {
+
+        private final String jobId;
+        private final String type;
+        private final String repository;
+        private final DescriptiveRunnable runnable;
+
+        private Job( final String jobId,
+                     final String type,
+                     final String repository,
+                     final DescriptiveRunnable runnable ) {
+            this.jobId = jobId;
+            this.type = type;
+            this.repository = repository;
+            this.runnable = runnable;
+        }
+
+        @Override
+        public void run() {
+            try {
+                runnable.run();
+            } catch ( Exception e ) {
+                logger.error( e.getMessage(),
+                              e );
+            } finally {
+                synchronized ( JobQueue.this ) {
+                    finished( this );
+                }
+                dispatch();
+            }
+        }
+
+        @Override
+        public String getDescription() {
+            return runnable.getDescription();
+        }
+    }
+
+}
@@ -16,10 +16,14 @@
 package org.guvnor.rest.backend;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import static org.guvnor.rest.backend.cmd.AbstractJobCommand.JOB_REQUEST_KEY;
 
+import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 
@@ -45,16 +49,21 @@ import org.guvnor.rest.client.CreateProjectRequest;
 import org.guvnor.rest.client.DeleteProjectRequest;
 import org.guvnor.rest.client.DeployProjectRequest;
 import org.guvnor.rest.client.InstallProjectRequest;
+import org.guvnor.rest.client.JobQueueMetrics;
 import org.guvnor.rest.client.JobRequest;
+import org.guvnor.rest.client.JobResult;
 import org.guvnor.rest.client.JobStatus;
 import org.guvnor.rest.client.RemoveOrganizationalUnitRequest;
 import org.guvnor.rest.client.RemoveRepositoryFromOrganizationalUnitRequest;
 import org.guvnor.rest.client.RemoveRepositoryRequest;
 import org.guvnor.rest.client.TestProjectRequest;
 import org.guvnor.rest.client.UpdateOrganizationalUnitRequest;
+import org.guvnor.structure.repositories.RepositoryService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.uberfire.commons.async.DescriptiveRunnable;
 import org.uberfire.commons.async.SimpleAsyncExecutorService;
+import org.uberfire.java.nio.base.version.VersionRecord;
 
 /**
  * Utility class observing requests for various functions of the REST service
@@ -64,18 +73,136 @@ public class JobRequestScheduler {
 
     private static final Logger logger = LoggerFactory.getLogger( JobRequestScheduler.class );
 
+    private static final int MAX_QUEUED_JOBS = Integer.getInteger( "org.guvnor.rest.jobs.max-queued",
+                                                                   1000 );
+    private static final int MAX_RUNNING_JOBS = Integer.getInteger( "org.guvnor.rest.jobs.max-running",
+                                                                    Runtime.getRuntime().availableProcessors() );
+
+    //Time, in milliseconds, the result of a maven job is given to identical requests
+    private static final long COMPLETED_JOB_TTL = Long.getLong( "org.guvnor.rest.jobs.completed-job-ttl",
+                                                                30000 );
+
+    private static final String[] MAVEN_OPERATIONS = { "compileProject", "installProject", "testProject", "deployProject" };
+
     @Inject
     private JobResultManager jobResultManager;
 
     @Inject
     private JobRequestHelper jobRequestHelper;
 
+    @Inject
+    private RepositoryService repositoryService;
+
+    private JobQueue jobQueue;
+    private JobDeduplicator jobDeduplicator;
+
+    @PostConstruct
+    public void start() {
+        //Jobs are run by the container's executor; the JobQueue limits the number of jobs running concurrently
+        final Executor workers = new Executor() {
+            @Override
+            public void execute( final Runnable job ) {
+                //The JobQueue only executes its own jobs, which are DescriptiveRunnables
+                SimpleAsyncExecutorService.getDefaultInstance().execute( (DescriptiveRunnable) job );
+            }
+        };
+        jobQueue = new JobQueue( workers,
+                                 new JobQueue.RejectedJobHandler() {
+                                     @Override
+                                     public void rejected( final String jobId,
+                                                           final RejectedExecutionException e ) {
+                                         onJobRejected( jobId,
+                                                        e );
+                                     }
+                                 },
+                                 MAX_QUEUED_JOBS,
+                                 MAX_RUNNING_JOBS,
+                                 getMaxRunningJobsByType() );
+        jobDeduplicator = new JobDeduplicator( COMPLETED_JOB_TTL );
+    }
+
+    //Maven jobs are limited to half the processors by default; others only by the total number of running jobs
+    private static Map<String, Integer> getMaxRunningJobsByType() {
+        final int defaultMaxMavenJobs = Math.max( 1,
+                                                  Runtime.getRuntime().availableProcessors() / 2 );
+        final Map<String, Integer> maxRunningJobsByType = new HashMap<String, Integer>();
+        for ( String operation : MAVEN_OPERATIONS ) {
+            maxRunningJobsByType.put( operation,
+                                      Integer.getInteger( "org.guvnor.rest.jobs.max-running." + operation,
+                                                          defaultMaxMavenJobs ) );
+        }
+        return maxRunningJobsByType;
+    }
+
+    /**
+     * Attach a request for a maven job to an identical job: one for the same project, at the same commit, that is
+     * queued, running or completed recently. If there is no such job the request is registered, so later
+     * identical requests are attached to it. The ACCEPTED result of the request must have been put before, so a
+     * request attached to this one always finds a result unless it has been removed since.
+     * @param jobRequest The request. If attached its job id is changed to that of the identical job, and the result
+     * of the request is removed.
+     * @param operation The maven operation
+     * @param repositoryName The repository of the project
+     * @param projectName The project
+     * @return true if the request was attached to an identical job; false if it should be scheduled
+     */
+    public boolean attachToIdenticalJob( final JobRequest jobRequest,
+                                         final String operation,
+                                         final String repositoryName,
+                                         final String projectName ) {
+        final String key = getJobKey( operation,
+                                      repositoryName,
+                                      projectName );
+        if ( key == null ) {
+            return false;
+        }
+
+        String jobId = jobDeduplicator.register( key,
+                                                 jobRequest.getJobId() );
+        //The result of the identical job may have been removed since it completed
+        if ( jobId != null && jobResultManager.getJob( jobId ) == null ) {
+            jobDeduplicator.remove( jobId );
+            jobId = jobDeduplicator.register( key,
+                                              jobRequest.getJobId() );
+        }
+        if ( jobId == null ) {
+            return false;
+        }
+
+        logger.debug( "Job request with id: {} attached to identical job with id: {}",
+                      jobRequest.getJobId(),
+                      jobId );
+        jobResultManager.removeJob( jobRequest.getJobId() );
+        jobRequest.setJobId( jobId );
+        return true;
+    }
+
+    //Key of a maven job, or null if the commit of the repository cannot be determined
+    private String getJobKey( final String operation,
+                              final String repositoryName,
+                              final String projectName ) {
+        try {
+            final List<VersionRecord> head = repositoryService.getRepositoryHistory( repositoryName,
+                                                                                     0,
+                                                                                     1 );
+            if ( head == null || head.isEmpty() ) {
+                return null;
+            }
+            return operation + "|" + repositoryName + "|" + projectName + "|" + head.get( 0 ).id();
+        } catch ( Exception e ) {
+            logger.warn( "Unable to read the commit of repository {}: {}",
+                         repositoryName,
+                         e.getMessage() );
+            return null;
+        }
+    }
+
     public void createOrCloneRepositoryRequest( final CreateOrCloneRepositoryRequest jobRequest ) {
         final Map<String, Object> params = getContext(jobRequest);
         params.put("Repository", jobRequest.getRepository().getName());
         params.put("Operation", "createOrCloneRepository");
 
-        scheduleJob(jobRequest, new CreateOrCloneRepositoryCmd(jobRequestHelper, jobResultManager, params));
+        scheduleJob(jobRequest, params, new CreateOrCloneRepositoryCmd(jobRequestHelper, jobResultManager, params));
     }
 
     public void removeRepositoryRequest( final RemoveRepositoryRequest jobRequest ) {
@@ -83,7 +210,7 @@ public class JobRequestScheduler {
         params.put("Repository", jobRequest.getRepositoryName());
         params.put("Operation", "removeRepository");
 
-        scheduleJob(jobRequest, new RemoveRepositoryCmd(jobRequestHelper, jobResultManager, params));
+        scheduleJob(jobRequest, params, new RemoveRepositoryCmd(jobRequestHelper, jobResultManager, params));
     }
 
     public void createProjectRequest( final CreateProjectRequest jobRequest ) {
@@ -92,7 +219,7 @@ public class JobRequestScheduler {
         params.put("Project", jobRequest.getProjectName());
         params.put("Operation", "createProject");
 
-        scheduleJob(jobRequest, new CreateProjectCmd(jobRequestHelper, jobResultManager, params));
+        scheduleJob(jobRequest, params, new CreateProjectCmd(jobRequestHelper, jobResultManager, params));
     }
 
     public void deleteProjectRequest( final DeleteProjectRequest jobRequest ) {
@@ -101,7 +228,7 @@ public class JobRequestScheduler {
         params.put("Project", jobRequest.getProjectName());
         params.put("Operation", "deleteProject");
 
-        scheduleJob(jobRequest, new DeleteProjectCmd(jobRequestHelper, jobResultManager, params));
+        scheduleJob(jobRequest, params, new DeleteProjectCmd(jobRequestHelper, jobResultManager, params));
     }
 
     public void compileProjectRequest( final CompileProjectRequest jobRequest ) {
@@ -110,7 +237,7 @@ public class JobRequestScheduler {
         params.put("Project", jobRequest.getProjectName());
         params.put("Operation", "compileProject");
 
-        scheduleJob(jobRequest, new CompileProjectCmd(jobRequestHelper, jobResultManager, params));
+        scheduleJob(jobRequest, params, new CompileProjectCmd(jobRequestHelper, jobResultManager, params));
     }
 
     public void installProjectRequest( final InstallProjectRequest jobRequest ) {
@@ -119,7 +246,7 @@ public class JobRequestScheduler {
         params.put("Project", jobRequest.getProjectName());
         params.put("Operation", "installProject");
 
-        scheduleJob(jobRequest, new InstallProjectCmd(jobRequestHelper, jobResultManager, params));
+        scheduleJob(jobRequest, params, new InstallProjectCmd(jobRequestHelper, jobResultManager, params));
     }
 
     public void testProjectRequest( final TestProjectRequest jobRequest ) {
@@ -128,7 +255,7 @@ public class JobRequestScheduler {
         params.put("Project", jobRequest.getProjectName());
         params.put("Operation", "testProject");
 
-        scheduleJob(jobRequest, new TestProjectCmd(jobRequestHelper, jobResultManager, params));
+        scheduleJob(jobRequest, params, new TestProjectCmd(jobRequestHelper, jobResultManager, params));
     }
 
     public void deployProjectRequest( final DeployProjectRequest jobRequest ) {
@@ -137,21 +264,21 @@ public class JobRequestScheduler {
         params.put("Project", jobRequest.getProjectName());
         params.put("Operation", "deployProject");
 
-        scheduleJob(jobRequest, new DeployProjectCmd(jobRequestHelper, jobResultManager, params));
+        scheduleJob(jobRequest, params, new DeployProjectCmd(jobRequestHelper, jobResultManager, params));
     }
 
     public void createOrganizationalUnitRequest( final CreateOrganizationalUnitRequest jobRequest ) {
         final Map<String, Object> params = getContext(jobRequest);
         params.put("Operation", "createOrgUnit");
 
-        scheduleJob(jobRequest, new CreateOrgUnitCmd(jobRequestHelper, jobResultManager, params));
+        scheduleJob(jobRequest, params, new CreateOrgUnitCmd(jobRequestHelper, jobResultManager, params));
     }
 
     public void updateOrganizationalUnitRequest( final UpdateOrganizationalUnitRequest jobRequest ) {
         final Map<String, Object> params = getContext(jobRequest);
         params.put("Operation", "updateOrgUnit");
 
-        scheduleJob(jobRequest, new UpdateOrgUnitCmd(jobRequestHelper, jobResultManager, params));
+        scheduleJob(jobRequest, params, new UpdateOrgUnitCmd(jobRequestHelper, jobResultManager, params));
     }
 
     public void addRepositoryToOrganizationalUnitRequest( final AddRepositoryToOrganizationalUnitRequest jobRequest ) {
@@ -159,7 +286,7 @@ public class JobRequestScheduler {
         params.put("Repository", jobRequest.getRepositoryName());
         params.put("Operation", "addRepositoryToOrgUnit");
 
-        scheduleJob(jobRequest, new AddRepositoryToOrgUnitCmd(jobRequestHelper, jobResultManager, params));
+        scheduleJob(jobRequest, params, new AddRepositoryToOrgUnitCmd(jobRequestHelper, jobResultManager, params));
     }
 
     public void removeRepositoryFromOrganizationalUnitRequest( final RemoveRepositoryFromOrganizationalUnitRequest jobRequest ) {
@@ -167,14 +294,14 @@ public class JobRequestScheduler {
         params.put("Repository", jobRequest.getRepositoryName());
         params.put("Operation", "removeRepositoryFromOrgUnit");
 
-        scheduleJob(jobRequest, new RemoveRepositoryFromOrgUnitCmd(jobRequestHelper, jobResultManager, params));
+        scheduleJob(jobRequest, params, new RemoveRepositoryFromOrgUnitCmd(jobRequestHelper, jobResultManager, params));
     }
 
     public void removeOrganizationalUnitRequest( final RemoveOrganizationalUnitRequest jobRequest ) {
         final Map<String, Object> params = getContext(jobRequest);
         params.put("Operation", "removeOrgUnit");
 
-        scheduleJob(jobRequest, new RemoveOrgUnitCmd(jobRequestHelper, jobResultManager, params));
+        scheduleJob(jobRequest, params, new RemoveOrgUnitCmd(jobRequestHelper, jobResultManager, params));
     }
         
     protected Map<String, Object> getContext(JobRequest jobRequest) {
@@ -185,11 +312,74 @@ public class JobRequestScheduler {
         return params;
     }
 
-    private void scheduleJob(final JobRequest jobRequest, final AbstractJobCommand command){
+    /**
+     * Cancel a job that has not been started
+     * @param jobId Identifier of the job
+     * @return true if the job was canceled; false if it has been started, or does not exist
+     */
+    public boolean cancelJob( final String jobId ) {
+        jobDeduplicator.remove( jobId );
+        return jobQueue.cancel( jobId );
+    }
+
+    public JobQueueMetrics getMetrics() {
+        return jobQueue.getMetrics();
+    }
+
+    private void scheduleJob(final JobRequest jobRequest, final Map<String, Object> params, final AbstractJobCommand command){
         jobRequest.setStatus(JobStatus.APPROVED);
         logger.debug("Scheduling job request with id: {} and command class: {}",
                 jobRequest.getJobId(), command.getClass().getName() );
-        SimpleAsyncExecutorService.getDefaultInstance().execute(command);
+        if ( !jobQueue.submit( jobRequest.getJobId(),
+                               (String) params.get( "Operation" ),
+                               (String) params.get( "Repository" ),
+                               new DescriptiveRunnable() {
+                                   @Override
+                                   public void run() {
+                                       try {
+                                           command.run();
+                                       } finally {
+                                           onJobCompleted( jobRequest.getJobId() );
+                                       }
+                                   }
+
+                                   @Override
+                                   public String getDescription() {
+                                       return command.getDescription();
+                                   }
+                               } ) ) {
+            jobDeduplicator.remove( jobRequest.getJobId() );
+            logger.warn( "Job request with id: {} denied, as the job queue is full.",
+                         jobRequest.getJobId() );
+            jobRequest.setStatus( JobStatus.DENIED );
+            final JobResult result = new JobResult();
+            result.setJobId( jobRequest.getJobId() );
+            result.setStatus( JobStatus.DENIED );
+            result.setResult( "Too many jobs are queued. Please try again later." );
+            result.setLastModified( System.currentTimeMillis() );
+            jobResultManager.putJob( result );
+        }
+    }
+
+    //A job accepted by the queue that could not be started, e.g. as the server is stopping, is failed
+    private void onJobRejected( final String jobId,
+                                final RejectedExecutionException e ) {
+        jobDeduplicator.remove( jobId );
+        final JobResult result = new JobResult();
+        result.setJobId( jobId );
+        result.setStatus( JobStatus.SERVER_ERROR );
+        result.setResult( "Request failed because the job could not be started: " + e.getMessage() );
+        result.setLastModified( System.currentTimeMillis() );
+        jobResultManager.putJob( result );
+    }
+
+    //Only results that would be the same if the job was executed again are given to identical requests
+    private void onJobCompleted( final String jobId ) {
+        final JobResult result = jobResultManager.getJob( jobId );
+        final boolean remember = result != null
+                && ( JobStatus.SUCCESS.equals( result.getStatus() ) || JobStatus.FAIL.equals( result.getStatus() ) );
+        jobDeduplicator.completed( jobId,
+                                   remember );
     }
 
 }
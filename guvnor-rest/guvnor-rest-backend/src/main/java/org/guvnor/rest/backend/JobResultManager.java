@@ -15,35 +15,62 @@
 
 package org.guvnor.rest.backend;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
 
 import org.guvnor.rest.client.JobResult;
+import org.guvnor.rest.client.JobStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Results of REST jobs. The most recent results are held in memory, and each is also written to a file so
+ * results survive a restart. Jobs that had not completed when the server stopped are reported as failed.
+ */
 @ApplicationScoped
 public class JobResultManager {
 
     private static final Logger logger = LoggerFactory.getLogger(JobResultManager.class);
     private static AtomicInteger created = new AtomicInteger(0);
 
-    private static class Cache extends LinkedHashMap<String, JobResult> {
+    private static final String RESULT_FILE_EXTENSION = ".job";
+
+    //Number of locks serializing the writes of results; results of jobs with different locks are written concurrently
+    private static final int WRITE_LOCKS = 64;
+
+    private class Cache extends LinkedHashMap<String, JobResult> {
 
         private int maxSize = 1000;
 
+        //Job whose result was evicted by the last put; its file is deleted once the cache is no longer locked
+        private String evicted;
+
         public Cache(int maxSize) {
             this.maxSize = maxSize;
         }
 
         @Override
         protected boolean removeEldestEntry(Map.Entry<String, JobResult> stringFutureEntry) {
-            return size() > maxSize;
+            if (size() > maxSize) {
+                evicted = stringFutureEntry.getKey();
+                return true;
+            }
+            return false;
         }
 
         public void setMaxSize(int maxSize) {
@@ -51,17 +78,38 @@ public class JobResultManager {
         }
     }
 
+    private Cache cache = null;
     private Map<String, JobResult> jobs = null;
 
     private int maxCacheSize = 10000;
 
+    private File resultsDir;
+
+    private final Object[] writeLocks = new Object[WRITE_LOCKS];
+
+    public JobResultManager() {
+        for (int i = 0; i < writeLocks.length; i++) {
+            writeLocks[i] = new Object();
+        }
+    }
+
     @PostConstruct
     public void start() {
         if (!created.compareAndSet(0, 1)) {
             throw new IllegalStateException("Only 1 JobResultManager instance is allowed per container!");
         }
-        Cache cache = new Cache(maxCacheSize);
+        init(new File(System.getProperty("org.guvnor.rest.jobs.dir", ".jobs")));
+    }
+
+    void init(final File resultsDir) {
+        this.resultsDir = resultsDir;
+        cache = new Cache(maxCacheSize);
         jobs = Collections.synchronizedMap(cache);
+        if (!resultsDir.isDirectory() && !resultsDir.mkdirs()) {
+            logger.error("Unable to create directory {}. Job results will not be kept after a restart.", resultsDir.getAbsolutePath());
+            return;
+        }
+        loadResults();
     }
 
     public JobResult getJob(String jobId) {
@@ -69,11 +117,176 @@ public class JobResultManager {
     }
 
     public void putJob(JobResult job) {
-        jobs.put(job.getJobId(), job);
+        final String evicted;
+        //The results of a job are written in the order they were put; the cache is only locked to update it
+        synchronized (getWriteLock(job.getJobId())) {
+            evicted = cache(job);
+            writeResult(job);
+        }
+        deleteEvicted(evicted);
     }
 
     public JobResult removeJob(String jobId) {
-        return jobs.remove(jobId);
+        synchronized (getWriteLock(jobId)) {
+            final JobResult job = jobs.remove(jobId);
+            if (job != null) {
+                deleteResult(jobId);
+            }
+            return job;
+        }
+    }
+
+    //Put a result in the cache, returning the job whose result was evicted, if any
+    private String cache(final JobResult job) {
+        synchronized (jobs) {
+            cache.evicted = null;
+            jobs.put(job.getJobId(), job);
+            return cache.evicted;
+        }
+    }
+
+    private void deleteEvicted(final String jobId) {
+        if (jobId == null) {
+            return;
+        }
+        synchronized (getWriteLock(jobId)) {
+            //The job's result may have been put again since it was evicted
+            if (!jobs.containsKey(jobId)) {
+                deleteResult(jobId);
+            }
+        }
+    }
+
+    private Object getWriteLock(final String jobId) {
+        return writeLocks[(jobId.hashCode() & Integer.MAX_VALUE) % writeLocks.length];
+    }
+
+    //Load the most recent results, oldest first so the cache evicts the oldest
+    private void loadResults() {
+        final File[] files = resultsDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        final List<File> resultFiles = new ArrayList<File>();
+        for (File file : files) {
+            if (file.getName().endsWith(RESULT_FILE_EXTENSION)) {
+                resultFiles.add(file);
+            }
+        }
+        Collections.sort(resultFiles, new Comparator<File>() {
+            @Override
+            public int compare(final File f1, final File f2) {
+                final long m1 = f1.lastModified();
+                final long m2 = f2.lastModified();
+                return m1 < m2 ? -1 : (m1 == m2 ? 0 : 1);
+            }
+        });
+
+        for (File file : resultFiles) {
+            final JobResult job = readResult(file);
+            if (job == null) {
+                file.delete();
+                continue;
+            }
+            if (JobStatus.ACCEPTED.equals(job.getStatus()) || JobStatus.APPROVED.equals(job.getStatus())) {
+                job.setStatus(JobStatus.SERVER_ERROR);
+                job.setResult("Request failed because the server was stopped before it completed.");
+                job.setLastModified(System.currentTimeMillis());
+                putJob(job);
+            } else {
+                deleteEvicted(cache(job));
+            }
+        }
+        logger.debug("Loaded {} job results from {}", jobs.size(), resultsDir.getAbsolutePath());
+    }
+
+    private JobResult readResult(final File file) {
+        final Properties properties = new Properties();
+        try {
+            final InputStream is = new FileInputStream(file);
+            try {
+                properties.load(is);
+            } finally {
+                is.close();
+            }
+            final JobResult job = new JobResult();
+            job.setJobId(properties.getProperty("jobId"));
+            job.setStatus(JobStatus.valueOf(properties.getProperty("status")));
+            job.setResult(properties.getProperty("result"));
+            final String lastModified = properties.getProperty("lastModified");
+            if (lastModified != null) {
+                job.setLastModified(Long.parseLong(lastModified));
+            }
+            final String detailedResultSize = properties.getProperty("detailedResult");
+            if (detailedResultSize != null) {
+                final List<String> detailedResult = new ArrayList<String>();
+                for (int i = 0; i < Integer.parseInt(detailedResultSize); i++) {
+                    detailedResult.add(properties.getProperty("detailedResult." + i));
+                }
+                job.setDetailedResult(detailedResult);
+            }
+            return job.getJobId() == null ? null : job;
+        } catch (Exception e) {
+            logger.warn("Unable to read job result {}: {}", file.getAbsolutePath(), e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeResult(final JobResult job) {
+        if (resultsDir == null || !resultsDir.isDirectory()) {
+            return;
+        }
+        final Properties properties = new Properties();
+        properties.setProperty("jobId", job.getJobId());
+        if (job.getStatus() != null) {
+            properties.setProperty("status", job.getStatus().name());
+        }
+        if (job.getResult() != null) {
+            properties.setProperty("result", job.getResult());
+        }
+        if (job.getLastModified() != null) {
+            properties.setProperty("lastModified", job.getLastModified().toString());
+        }
+        final List<String> detailedResult = job.getDetailedResult();
+        if (detailedResult != null) {
+            properties.setProperty("detailedResult", String.valueOf(detailedResult.size()));
+            for (int i = 0; i < detailedResult.size(); i++) {
+                if (detailedResult.get(i) != null) {
+                    properties.setProperty("detailedResult." + i, detailedResult.get(i));
+                }
+            }
+        }
+
+        //Write to a temporary file first, so a partially written result never replaces a complete one
+        final File file = getResultFile(job.getJobId());
+        final File tmp = new File(resultsDir, file.getName() + ".tmp");
+        try {
+            final OutputStream os = new FileOutputStream(tmp);
+            try {
+                properties.store(os, null);
+            } finally {
+                os.close();
+            }
+            if (!tmp.renameTo(file)) {
+                file.delete();
+                if (!tmp.renameTo(file)) {
+                    logger.warn("Unable to write job result {}", file.getAbsolutePath());
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Unable to write job result {}: {}", file.getAbsolutePath(), e.getMessage());
+        }
+    }
+
+    private void deleteResult(final String jobId) {
+        if (resultsDir != null) {
+            getResultFile(jobId).delete();
+        }
+    }
+
+    private File getResultFile(final String jobId) {
+        //Job identifiers are generated by ProjectResource, however guard against path separators
+        return new File(resultsDir, jobId.replaceAll("[^A-Za-z0-9._-]", "_") + RESULT_FILE_EXTENSION);
     }
 
-}
\ No newline at end of file
+}
@@ -52,6 +52,7 @@ import org.guvnor.rest.client.CreateProjectRequest;
 import org.guvnor.rest.client.DeleteProjectRequest;
 import org.guvnor.rest.client.DeployProjectRequest;
 import org.guvnor.rest.client.InstallProjectRequest;
+import org.guvnor.rest.client.JobQueueMetrics;
 import org.guvnor.rest.client.JobRequest;
 import org.guvnor.rest.client.JobResult;
 import org.guvnor.rest.client.JobStatus;
@@ -140,6 +141,11 @@ public class ProjectResource {
     public JobResult removeJob( @PathParam("jobId") String jobId ) {
         logger.debug( "-----removeJob--- , jobId: {}", jobId );
 
+        //A job that has not been started is canceled
+        if ( jobRequestObserver.cancelJob( jobId ) ) {
+            logger.debug( "-----removeJob--- , canceled jobId: {}", jobId );
+        }
+
         JobResult job = jobManager.removeJob( jobId );
 
         if ( job == null ) {
@@ -154,7 +160,15 @@ public class ProjectResource {
         return job;
     }
 
-    //TODO: Stop or cancel a job
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/jobs/metrics")
+    @RolesAllowed({REST_ROLE, REST_PROJECT_ROLE})
+    public JobQueueMetrics getJobQueueMetrics() {
+        logger.debug( "-----getJobQueueMetrics--- " );
+
+        return jobRequestObserver.getMetrics();
+    }
 
     @GET
     @Produces(MediaType.APPLICATION_JSON)
@@ -334,9 +348,16 @@ public class ProjectResource {
         jobRequest.setRepositoryName( repositoryName );
         jobRequest.setProjectName( projectName );
 
+        //The result is put before the request is registered, so identical requests attached to it find a result
         addAcceptedJobResult( id );
 
-        jobRequestObserver.compileProjectRequest( jobRequest );
+        //Identical requests, for example retries by automated pipelines, are given the job already scheduled
+        if ( !jobRequestObserver.attachToIdenticalJob( jobRequest,
+                                                       "compileProject",
+                                                       repositoryName,
+                                                       projectName ) ) {
+            jobRequestObserver.compileProjectRequest( jobRequest );
+        }
 
         return createAcceptedStatusResponse( jobRequest );
     }
@@ -358,9 +379,15 @@ public class ProjectResource {
         jobRequest.setRepositoryName( repositoryName );
         jobRequest.setProjectName( projectName );
 
+        //The result is put before the request is registered, so identical requests attached to it find a result
         addAcceptedJobResult( id );
 
-        jobRequestObserver.installProjectRequest( jobRequest );
+        if ( !jobRequestObserver.attachToIdenticalJob( jobRequest,
+                                                       "installProject",
+                                                       repositoryName,
+                                                       projectName ) ) {
+            jobRequestObserver.installProjectRequest( jobRequest );
+        }
 
         return createAcceptedStatusResponse( jobRequest );
     }
@@ -383,9 +410,15 @@ public class ProjectResource {
         jobRequest.setRepositoryName( repositoryName );
         jobRequest.setProjectName( projectName );
 
+        //The result is put before the request is registered, so identical requests attached to it find a result
         addAcceptedJobResult( id );
 
-        jobRequestObserver.testProjectRequest( jobRequest );
+        if ( !jobRequestObserver.attachToIdenticalJob( jobRequest,
+                                                       "testProject",
+                                                       repositoryName,
+                                                       projectName ) ) {
+            jobRequestObserver.testProjectRequest( jobRequest );
+        }
 
         return createAcceptedStatusResponse( jobRequest );
     }
@@ -407,9 +440,15 @@ public class ProjectResource {
         jobRequest.setRepositoryName( repositoryName );
         jobRequest.setProjectName( projectName );
 
+        //The result is put before the request is registered, so identical requests attached to it find a result
         addAcceptedJobResult( id );
 
-        jobRequestObserver.deployProjectRequest( jobRequest );
+        if ( !jobRequestObserver.attachToIdenticalJob( jobRequest,
+                                                       "deployProject",
+                                                       repositoryName,
+                                                       projectName ) ) {
+            jobRequestObserver.deployProjectRequest( jobRequest );
+        }
 
         return createAcceptedStatusResponse( jobRequest );
     }
@@ -619,6 +658,10 @@ public class ProjectResource {
     private static Variant defaultVariant = Variant.mediaTypes( MediaType.APPLICATION_JSON_TYPE ).add().build().get( 0 );
 
     private Response createAcceptedStatusResponse( JobRequest jobRequest ) {
+        //The job was not queued as too many jobs are waiting
+        if ( JobStatus.DENIED.equals( jobRequest.getStatus() ) ) {
+            return Response.status( Status.SERVICE_UNAVAILABLE ).entity( jobRequest ).variant( defaultVariant ).build();
+        }
         return Response.status( Status.ACCEPTED ).entity( jobRequest ).variant( defaultVariant ).build();
     }
 
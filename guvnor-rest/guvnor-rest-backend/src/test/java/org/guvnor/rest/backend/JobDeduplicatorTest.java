@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.rest.backend;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class JobDeduplicatorTest {
+
+    @Test
+    public void testIdenticalJobsInFlight() {
+        final JobDeduplicator deduplicator = new JobDeduplicator( 60000 );
+
+        assertNull( deduplicator.register( "compile|repo|project|commit1",
+                                           "1" ) );
+        assertEquals( "1",
+                      deduplicator.register( "compile|repo|project|commit1",
+                                             "2" ) );
+        assertNull( deduplicator.register( "compile|repo|project|commit2",
+                                           "3" ) );
+    }
+
+    @Test
+    public void testCompletedJobIsRemembered() {
+        final JobDeduplicator deduplicator = new JobDeduplicator( 60000 );
+        deduplicator.register( "compile|repo|project|commit1",
+                               "1" );
+        deduplicator.completed( "1",
+                                true );
+
+        assertEquals( "1",
+                      deduplicator.register( "compile|repo|project|commit1",
+                                             "2" ) );
+    }
+
+    @Test
+    public void testCompletedJobExpires() {
+        final JobDeduplicator deduplicator = new JobDeduplicator( -1 );
+        deduplicator.register( "compile|repo|project|commit1",
+                               "1" );
+        deduplicator.completed( "1",
+                                true );
+
+        assertNull( deduplicator.register( "compile|repo|project|commit1",
+                                           "2" ) );
+    }
+
+    @Test
+    public void testFailedJobIsNotRemembered() {
+        final JobDeduplicator deduplicator = new JobDeduplicator( 60000 );
+        deduplicator.register( "compile|repo|project|commit1",
+                               "1" );
+        deduplicator.completed( "1",
+                                false );
+
+        assertNull( deduplicator.register( "compile|repo|project|commit1",
+                                           "2" ) );
+    }
+
+    @Test
+    public void testRemovedJobIsForgotten() {
+        final JobDeduplicator deduplicator = new JobDeduplicator( 60000 );
+        deduplicator.register( "compile|repo|project|commit1",
+                               "1" );
+        deduplicator.remove( "1" );
+
+        assertNull( deduplicator.register( "compile|repo|project|commit1",
+                                           "2" ) );
+    }
+
+}
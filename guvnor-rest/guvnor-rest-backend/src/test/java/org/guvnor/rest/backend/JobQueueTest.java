@@ -0,0 +1,243 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.rest.backend;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.guvnor.rest.client.JobQueueMetrics;
+import org.junit.Before;
+import org.junit.Test;
+import org.uberfire.commons.async.DescriptiveRunnable;
+
+import static org.junit.Assert.*;
+
+public class JobQueueTest {
+
+    //Jobs are only run when the test runs them, so the test controls which are running
+    private final LinkedList<Runnable> started = new LinkedList<Runnable>();
+    private final List<String> executed = new ArrayList<String>();
+    private final List<String> rejected = new ArrayList<String>();
+
+    //Number of jobs the executor is to refuse
+    private int jobsToReject = 0;
+
+    private JobQueue queue;
+
+    @Before
+    public void setup() {
+        queue = new JobQueue( new Executor() {
+                                  @Override
+                                  public void execute( final Runnable command ) {
+                                      if ( jobsToReject > 0 ) {
+                                          jobsToReject--;
+                                          throw new RejectedExecutionException( "rejected" );
+                                      }
+                                      started.add( command );
+                                  }
+                              },
+                              new JobQueue.RejectedJobHandler() {
+                                  @Override
+                                  public void rejected( final String jobId,
+                                                        final RejectedExecutionException e ) {
+                                      JobQueueTest.this.rejected.add( jobId );
+                                  }
+                              },
+                              3,
+                              2,
+                              Collections.singletonMap( "installProject",
+                                                        1 ) );
+    }
+
+    @Test
+    public void testTypeLimit() {
+        assertTrue( queue.submit( "1",
+                                  "installProject",
+                                  "repo1",
+                                  new Job( "1" ) ) );
+        assertTrue( queue.submit( "2",
+                                  "installProject",
+                                  "repo2",
+                                  new Job( "2" ) ) );
+        assertTrue( queue.submit( "3",
+                                  "createProject",
+                                  "repo3",
+                                  new Job( "3" ) ) );
+
+        assertEquals( 2,
+                      started.size() );
+        final JobQueueMetrics metrics = queue.getMetrics();
+        assertEquals( 1,
+                      metrics.getQueuedJobs() );
+        assertEquals( 2,
+                      metrics.getRunningJobs() );
+        assertEquals( Integer.valueOf( 1 ),
+                      metrics.getQueuedJobsByType().get( "installProject" ) );
+
+        runNext();
+        runNext();
+        runNext();
+        assertEquals( "1",
+                      executed.get( 0 ) );
+        assertEquals( "3",
+                      executed.get( 1 ) );
+        assertEquals( "2",
+                      executed.get( 2 ) );
+    }
+
+    @Test
+    public void testJobsForRepositoryRunInOrder() {
+        queue.submit( "1",
+                      "compileProject",
+                      "repo1",
+                      new Job( "1" ) );
+        queue.submit( "2",
+                      "compileProject",
+                      "repo1",
+                      new Job( "2" ) );
+        queue.submit( "3",
+                      "compileProject",
+                      "repo2",
+                      new Job( "3" ) );
+
+        //The second job for repo1 waits for the first, but does not hold back the job for repo2
+        assertEquals( 2,
+                      started.size() );
+        runNext();
+        runNext();
+        runNext();
+        assertEquals( "1",
+                      executed.get( 0 ) );
+        assertEquals( "3",
+                      executed.get( 1 ) );
+        assertEquals( "2",
+                      executed.get( 2 ) );
+    }
+
+    @Test
+    public void testQueueIsBounded() {
+        //One job is running and three are queued
+        for ( int i = 0; i < 4; i++ ) {
+            assertTrue( queue.submit( String.valueOf( i ),
+                                      "compileProject",
+                                      "repo1",
+                                      new Job( String.valueOf( i ) ) ) );
+        }
+        assertFalse( queue.submit( "4",
+                                   "compileProject",
+                                   "repo1",
+                                   new Job( "4" ) ) );
+        assertEquals( 1,
+                      queue.getMetrics().getRejectedJobs() );
+    }
+
+    @Test
+    public void testCancel() {
+        queue.submit( "1",
+                      "compileProject",
+                      "repo1",
+                      new Job( "1" ) );
+        queue.submit( "2",
+                      "compileProject",
+                      "repo1",
+                      new Job( "2" ) );
+
+        assertFalse( queue.cancel( "1" ) );
+        assertTrue( queue.cancel( "2" ) );
+
+        runNext();
+        assertTrue( started.isEmpty() );
+        assertEquals( Collections.singletonList( "1" ),
+                      executed );
+        assertEquals( 0,
+                      queue.getMetrics().getQueuedJobs() );
+    }
+
+    @Test
+    public void testRejectedJobIsReported() {
+        jobsToReject = 1;
+        queue.submit( "1",
+                      "compileProject",
+                      "repo1",
+                      new Job( "1" ) );
+
+        assertEquals( Collections.singletonList( "1" ),
+                      rejected );
+        assertTrue( executed.isEmpty() );
+        final JobQueueMetrics metrics = queue.getMetrics();
+        assertEquals( 1,
+                      metrics.getRejectedJobs() );
+        assertEquals( 0,
+                      metrics.getRunningJobs() );
+    }
+
+    @Test
+    public void testJobHeldBackByRejectedJobIsStarted() {
+        queue.submit( "1",
+                      "compileProject",
+                      "repo1",
+                      new Job( "1" ) );
+        queue.submit( "2",
+                      "compileProject",
+                      "repo1",
+                      new Job( "2" ) );
+        queue.submit( "3",
+                      "compileProject",
+                      "repo1",
+                      new Job( "3" ) );
+
+        //Once the first job finishes the second is started, and held back the third, but is rejected
+        jobsToReject = 1;
+        runNext();
+
+        assertEquals( Collections.singletonList( "2" ),
+                      rejected );
+        runNext();
+        assertTrue( started.isEmpty() );
+        assertEquals( Arrays.asList( "1",
+                                     "3" ),
+                      executed );
+    }
+
+    private void runNext() {
+        started.removeFirst().run();
+    }
+
+    private class Job implements DescriptiveRunnable {
+
+        private final String jobId;
+
+        private Job( final String jobId ) {
+            this.jobId = jobId;
+        }
+
+        @Override
+        public void run() {
+            executed.add( jobId );
+        }
+
+        @Override
+        public String getDescription() {
+            return jobId;
+        }
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.rest.backend;
+
+import java.util.Collections;
+
+import org.guvnor.rest.client.CompileProjectRequest;
+import org.guvnor.rest.client.JobResult;
+import org.guvnor.rest.client.JobStatus;
+import org.guvnor.structure.repositories.RepositoryService;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.uberfire.java.nio.base.version.VersionRecord;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+@RunWith( MockitoJUnitRunner.class )
+public class JobRequestSchedulerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Mock
+    private RepositoryService repositoryService;
+
+    @Mock
+    private JobRequestHelper jobRequestHelper;
+
+    @Spy
+    private JobResultManager jobResultManager = new JobResultManager();
+
+    @InjectMocks
+    private JobRequestScheduler scheduler;
+
+    @Before
+    public void setUp() throws Exception {
+        jobResultManager.init( folder.getRoot() );
+        scheduler.start();
+        setHead( "commit1" );
+    }
+
+    @Test
+    public void testIdenticalRequestIsAttached() {
+        assertFalse( attach( request( "1" ) ) );
+
+        final CompileProjectRequest identical = request( "2" );
+        assertTrue( attach( identical ) );
+
+        assertEquals( "1",
+                      identical.getJobId() );
+        //The result of the attached request is not kept
+        assertNull( jobResultManager.getJob( "2" ) );
+        assertEquals( JobStatus.ACCEPTED,
+                      jobResultManager.getJob( "1" ).getStatus() );
+    }
+
+    @Test
+    public void testRequestForAnotherCommitIsNotAttached() {
+        assertFalse( attach( request( "1" ) ) );
+        setHead( "commit2" );
+
+        assertFalse( attach( request( "2" ) ) );
+    }
+
+    @Test
+    public void testRequestIsNotAttachedToJobWhoseResultWasRemoved() {
+        assertFalse( attach( request( "1" ) ) );
+        jobResultManager.removeJob( "1" );
+
+        final CompileProjectRequest request = request( "2" );
+        assertFalse( attach( request ) );
+        assertEquals( "2",
+                      request.getJobId() );
+
+        //The request registered in place of the removed job is attached to
+        final CompileProjectRequest identical = request( "3" );
+        assertTrue( attach( identical ) );
+        assertEquals( "2",
+                      identical.getJobId() );
+    }
+
+    private boolean attach( final CompileProjectRequest request ) {
+        return scheduler.attachToIdenticalJob( request,
+                                               "compileProject",
+                                               "repository",
+                                               "project" );
+    }
+
+    //A request, with its ACCEPTED result put as ProjectResource does
+    private CompileProjectRequest request( final String jobId ) {
+        final CompileProjectRequest request = new CompileProjectRequest();
+        request.setJobId( jobId );
+        request.setStatus( JobStatus.ACCEPTED );
+        final JobResult result = new JobResult();
+        result.setJobId( jobId );
+        result.setStatus( JobStatus.ACCEPTED );
+        jobResultManager.putJob( result );
+        return request;
+    }
+
+    private void setHead( final String commit ) {
+        final VersionRecord head = mock( VersionRecord.class );
+        when( head.id() ).thenReturn( commit );
+        when( repositoryService.getRepositoryHistory( "repository",
+                                                      0,
+                                                      1 ) ).thenReturn( Collections.singletonList( head ) );
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.rest.backend;
+
+import java.util.Arrays;
+
+import org.guvnor.rest.client.JobResult;
+import org.guvnor.rest.client.JobStatus;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+public class JobResultManagerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testResultsAreRestored() throws Exception {
+        final JobResultManager manager = new JobResultManager();
+        manager.init( folder.getRoot() );
+        manager.putJob( result( "1",
+                                JobStatus.SUCCESS ) );
+        final JobResult failed = result( "2",
+                                         JobStatus.FAIL );
+        failed.setDetailedResult( Arrays.asList( "error 1",
+                                                 "error 2" ) );
+        manager.putJob( failed );
+        manager.putJob( result( "3",
+                                JobStatus.SUCCESS ) );
+        manager.removeJob( "3" );
+
+        final JobResultManager restored = new JobResultManager();
+        restored.init( folder.getRoot() );
+
+        assertEquals( JobStatus.SUCCESS,
+                      restored.getJob( "1" ).getStatus() );
+        assertEquals( "result",
+                      restored.getJob( "1" ).getResult() );
+        assertEquals( Arrays.asList( "error 1",
+                                     "error 2" ),
+                      restored.getJob( "2" ).getDetailedResult() );
+        assertNull( restored.getJob( "3" ) );
+    }
+
+    @Test
+    public void testIncompleteJobsAreFailedOnRestore() throws Exception {
+        final JobResultManager manager = new JobResultManager();
+        manager.init( folder.getRoot() );
+        manager.putJob( result( "1",
+                                JobStatus.APPROVED ) );
+
+        final JobResultManager restored = new JobResultManager();
+        restored.init( folder.getRoot() );
+
+        assertEquals( JobStatus.SERVER_ERROR,
+                      restored.getJob( "1" ).getStatus() );
+    }
+
+    private JobResult result( final String jobId,
+                              final JobStatus status ) {
+        final JobResult result = new JobResult();
+        result.setJobId( jobId );
+        result.setStatus( status );
+        result.setResult( "result" );
+        result.setLastModified( System.currentTimeMillis() );
+        return result;
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.rest.client;
+
+import java.io.Serializable;
+import java.util.Map;
+
+import org.jboss.errai.common.client.api.annotations.Portable;
+
+/**
+ * Depth of the queue of jobs waiting to be executed, and the number of jobs running
+ */
+@Portable
+public class JobQueueMetrics implements Serializable {
+
+    private int queuedJobs;
+    private int runningJobs;
+    private int maxQueuedJobs;
+    private int maxRunningJobs;
+    private long rejectedJobs;
+    private long canceledJobs;
+    private Map<String, Integer> queuedJobsByType;
+    private Map<String, Integer> runningJobsByType;
+
+    public int getQueuedJobs() {
+        return queuedJobs;
+    }
+
+    public void setQueuedJobs( int queuedJobs ) {
+        this.queuedJobs = queuedJobs;
+    }
+
+    public int getRunningJobs() {
+        return runningJobs;
+    }
+
+    public void setRunningJobs( int runningJobs ) {
+        this.runningJobs = runningJobs;
+    }
+
+    public int getMaxQueuedJobs() {
+        return maxQueuedJobs;
+    }
+
+    public void setMaxQueuedJobs( int maxQueuedJobs ) {
+        this.maxQueuedJobs = maxQueuedJobs;
+    }
+
+    public int getMaxRunningJobs() {
+        return maxRunningJobs;
+    }
+
+    public void setMaxRunningJobs( int maxRunningJobs ) {
+        this.maxRunningJobs = maxRunningJobs;
+    }
+
+    public long getRejectedJobs() {
+        return rejectedJobs;
+    }
+
+    public void setRejectedJobs( long rejectedJobs ) {
+        this.rejectedJobs = rejectedJobs;
+    }
+
+    public long getCanceledJobs() {
+        return canceledJobs;
+    }
+
+    public void setCanceledJobs( long canceledJobs ) {
+        this.canceledJobs = canceledJobs;
+    }
+
+    public Map<String, Integer> getQueuedJobsByType() {
+        return queuedJobsByType;
+    }
+
+    public void setQueuedJobsByType( Map<String, Integer> queuedJobsByType ) {
+        this.queuedJobsByType = queuedJobsByType;
+    }
+
+    public Map<String, Integer> getRunningJobsByType() {
+        return runningJobsByType;
+    }
+
+    public void setRunningJobsByType( Map<String, Integer> runningJobsByType ) {
+        this.runningJobsByType = runningJobsByType;
+    }
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.backend.cache;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.uberfire.commons.validation.PortablePreconditions;
+
+/**
+ * A thread-safe LRU cache. Entries are spread over independently locked segments, each evicting its
+ * least recently used entries once its share of the maximum weight is exceeded; hence eviction order
+ * is only approximately LRU across the whole cache. Entries can optionally expire a fixed time after
+ * they were set.
+ */
+public class ConcurrentLRUCache<K, V> implements Cache<K, V> {
+
+    /**
+     * Calculates the weight of a cache entry. Weights are calculated when an entry is set.
+     */
+    public interface Weigher<K, V> {
+
+        int weigh( final K key,
+                   final V value );
+
+    }
+
+    private static final Weigher<Object, Object> ENTRY_COUNT_WEIGHER = new Weigher<Object, Object>() {
+        @Override
+        public int weigh( final Object key,
+                          final Object value ) {
+            return 1;
+        }
+    };
+
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    //Minimum weight per segment. Caches smaller than twice this have a single segment, so they hold
+    //their maximum number of entries and evict strictly in LRU order
+    private static final int MIN_SEGMENT_WEIGHT = 64;
+
+    private final Segment<K, V>[] segments;
+    private final int segmentMask;
+    private final Weigher<? super K, ? super V> weigher;
+    private final long timeToLive;
+    private final CacheStats stats = new CacheStats();
+
+    /**
+     * Cache bounded by number of entries.
+     * @param maxEntries Maximum number of entries
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentLRUCache( final long maxEntries ) {
+        this( maxEntries,
+              (Weigher<? super K, ? super V>) ENTRY_COUNT_WEIGHER,
+              0 );
+    }
+
+    /**
+     * Cache bounded by the total weight of its entries.
+     * @param maxWeight Maximum total weight
+     * @param weigher Calculates the weight of each entry
+     * @param timeToLive Time in milliseconds after which an entry expires. Zero if entries do not expire.
+     */
+    public ConcurrentLRUCache( final long maxWeight,
+                               final Weigher<? super K, ? super V> weigher,
+                               final long timeToLive ) {
+        this( maxWeight,
+              weigher,
+              timeToLive,
+              DEFAULT_CONCURRENCY_LEVEL );
+    }
+
+    /**
+     * Cache bounded by the total weight of its entries.
+     * @param maxWeight Maximum total weight
+     * @param weigher Calculates the weight of each entry
+     * @param timeToLive Time in milliseconds after which an entry expires. Zero if entries do not expire.
+     * @param concurrencyLevel Estimated number of concurrently accessing threads
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentLRUCache( final long maxWeight,
+                               final Weigher<? super K, ? super V> weigher,
+                               final long timeToLive,
+                               final int concurrencyLevel ) {
+        PortablePreconditions.checkNotNull( "weigher",
+                                            weigher );
+        if ( maxWeight <= 0 ) {
+            throw new IllegalArgumentException( "maxWeight must be greater than zero." );
+        }
+        if ( timeToLive < 0 ) {
+            throw new IllegalArgumentException( "timeToLive must not be negative." );
+        }
+        this.weigher = weigher;
+        this.timeToLive = timeToLive;
+
+        int segmentCount = 1;
+        while ( segmentCount < concurrencyLevel && ( segmentCount << 1 ) * MIN_SEGMENT_WEIGHT <= maxWeight ) {
+            segmentCount = segmentCount << 1;
+        }
+        this.segmentMask = segmentCount - 1;
+        this.segments = new Segment[ segmentCount ];
+        final long segmentWeight = maxWeight / segmentCount;
+        final long remainder = maxWeight % segmentCount;
+        for ( int i = 0; i < segmentCount; i++ ) {
+            segments[ i ] = new Segment<K, V>( segmentWeight + ( i < remainder ? 1 : 0 ),
+                                               stats );
+        }
+    }
+
+    @Override
+    public V getEntry( final K key ) {
+        PortablePreconditions.checkNotNull( "key",
+                                            key );
+        return segmentFor( key ).get( key,
+                                      now() );
+    }
+
+    @Override
+    public void setEntry( final K key,
+                          final V value ) {
+        PortablePreconditions.checkNotNull( "key",
+                                            key );
+        PortablePreconditions.checkNotNull( "value",
+                                            value );
+        final int weight = weigher.weigh( key,
+                                          value );
+        if ( weight < 0 ) {
+            throw new IllegalArgumentException( "weight must not be negative." );
+        }
+        segmentFor( key ).put( key,
+                               value,
+                               weight,
+                               timeToLive == 0 ? Long.MAX_VALUE : now() + timeToLive );
+    }
+
+    @Override
+    public void invalidateCache() {
+        for ( Segment<K, V> segment : segments ) {
+            segment.clear();
+        }
+    }
+
+    @Override
+    public void invalidateCache( final K key ) {
+        PortablePreconditions.checkNotNull( "key",
+                                            key );
+        segmentFor( key ).remove( key );
+    }
+
+    /**
+     * @return A snapshot of the keys currently held, including any that have expired but not yet been removed
+     */
+    public Set<K> getKeys() {
+        final Set<K> keys = new HashSet<K>();
+        for ( Segment<K, V> segment : segments ) {
+            segment.collectKeys( keys );
+        }
+        return keys;
+    }
+
+    public long size() {
+        long size = 0;
+        for ( Segment<K, V> segment : segments ) {
+            size = size + segment.size();
+        }
+        return size;
+    }
+
+    public long getWeight() {
+        long weight = 0;
+        for ( Segment<K, V> segment : segments ) {
+            weight = weight + segment.weight;
+        }
+        return weight;
+    }
+
+    public CacheStats getStats() {
+        return stats;
+    }
+
+    protected long now() {
+        return System.currentTimeMillis();
+    }
+
+    private Segment<K, V> segmentFor( final K key ) {
+        //Spread the hash so keys with poor hashCode() implementations do not all end up in one segment
+        int h = key.hashCode();
+        h ^= ( h >>> 20 ) ^ ( h >>> 12 );
+        h ^= ( h >>> 7 ) ^ ( h >>> 4 );
+        return segments[ h & segmentMask ];
+    }
+
+    private static class Node<V> {
+
+        private final V value;
+        private final int weight;
+        private final long expiresAt;
+
+        private Node( final V value,
+                      final int weight,
+                      final long expiresAt ) {
+            this.value = value;
+            this.weight = weight;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static class Segment<K, V> extends ReentrantLock {
+
+        private final long maxWeight;
+        private final CacheStats stats;
+        private final LinkedHashMap<K, Node<V>> entries = new LinkedHashMap<K, Node<V>>( 16,
+                                                                                      0.75f,
+                                                                                      true );
+        private volatile long weight = 0;
+
+        private Segment( final long maxWeight,
+                         final CacheStats stats ) {
+            this.maxWeight = maxWeight;
+            this.stats = stats;
+        }
+
+        private V get( final K key,
+                       final long now ) {
+            lock();
+            try {
+                final Node<V> node = entries.get( key );
+                if ( node == null ) {
+                    stats.recordMiss();
+                    return null;
+                }
+                if ( node.expiresAt <= now ) {
+                    entries.remove( key );
+                    weight = weight - node.weight;
+                    stats.recordExpiration();
+                    stats.recordMiss();
+                    return null;
+                }
+                stats.recordHit();
+                return node.value;
+            } finally {
+                unlock();
+            }
+        }
+
+        private void put( final K key,
+                          final V value,
+                          final int entryWeight,
+                          final long expiresAt ) {
+            lock();
+            try {
+                final Node<V> old = entries.put( key,
+                                                 new Node<V>( value,
+                                                              entryWeight,
+                                                              expiresAt ) );
+                long newWeight = weight + entryWeight - ( old == null ? 0 : old.weight );
+
+                //Evict least recently used entries until the segment is within its bounds
+                final Iterator<Node<V>> itr = entries.values().iterator();
+                while ( newWeight > maxWeight && itr.hasNext() ) {
+                    final Node<V> eldest = itr.next();
+                    itr.remove();
+                    newWeight = newWeight - eldest.weight;
+                    stats.recordEviction();
+                }
+                weight = newWeight;
+            } finally {
+                unlock();
+            }
+        }
+
+        private void remove( final K key ) {
+            lock();
+            try {
+                final Node<V> old = entries.remove( key );
+                if ( old != null ) {
+                    weight = weight - old.weight;
+                }
+            } finally {
+                unlock();
+            }
+        }
+
+        private void clear() {
+            lock();
+            try {
+                entries.clear();
+                weight = 0;
+            } finally {
+                unlock();
+            }
+        }
+
+        private int size() {
+            lock();
+            try {
+                return entries.size();
+            } finally {
+                unlock();
+            }
+        }
+
+        private void collectKeys( final Set<K> keys ) {
+            lock();
+            try {
+                keys.addAll( entries.keySet() );
+            } finally {
+                unlock();
+            }
+        }
+    }
+
+}
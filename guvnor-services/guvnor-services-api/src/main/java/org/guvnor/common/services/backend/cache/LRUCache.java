@@ -15,65 +15,66 @@
  */
 package org.guvnor.common.services.backend.cache;
 
-import java.util.Collections;
-import java.util.LinkedHashMap;
-import java.util.Map;
 import java.util.Set;
 
-import org.uberfire.commons.validation.PortablePreconditions;
-
 /**
- * A simple LRU cache keyed on Paths
+ * A simple LRU cache keyed on Paths. The maximum number of entries defaults to 20 and can be
+ * changed with the "org.guvnor.cache.lru.max-entries" System Property.
  */
 public abstract class LRUCache<Path, V> implements Cache<Path, V> {
 
-    private static final int MAX_ENTRIES = 20;
+    private static final int MAX_ENTRIES = Integer.getInteger( "org.guvnor.cache.lru.max-entries",
+                                                               20 );
 
-    private Map<Path, V> cache;
+    private final ConcurrentLRUCache<Path, V> cache;
 
     public LRUCache() {
-        cache = new LinkedHashMap<Path, V>( MAX_ENTRIES + 1,
-                                            0.75f,
-                                            true ) {
-            public boolean removeEldestEntry( Map.Entry eldest ) {
-                return size() > MAX_ENTRIES;
-            }
-        };
-        cache = (Map) Collections.synchronizedMap( cache );
+        this( MAX_ENTRIES );
+    }
+
+    public LRUCache( final int maxEntries ) {
+        cache = new ConcurrentLRUCache<Path, V>( maxEntries );
+    }
+
+    public LRUCache( final long maxWeight,
+                     final ConcurrentLRUCache.Weigher<? super Path, ? super V> weigher,
+                     final long timeToLive ) {
+        cache = new ConcurrentLRUCache<Path, V>( maxWeight,
+                                                 weigher,
+                                                 timeToLive );
     }
 
     @Override
     public V getEntry( final Path path ) {
-        PortablePreconditions.checkNotNull( "path",
-                                            path );
-        return cache.get( path );
+        return cache.getEntry( path );
     }
 
     @Override
     public void setEntry( final Path path,
                           final V value ) {
-        PortablePreconditions.checkNotNull( "path",
-                                            path );
-        PortablePreconditions.checkNotNull( "value",
-                                            value );
-        cache.put( path,
-                   value );
+        cache.setEntry( path,
+                        value );
     }
 
     @Override
     public void invalidateCache() {
-        this.cache.clear();
+        cache.invalidateCache();
     }
 
     @Override
     public void invalidateCache( final Path path ) {
-        PortablePreconditions.checkNotNull( "path",
-                                            path );
-        this.cache.remove( path );
+        cache.invalidateCache( path );
     }
 
+    /**
+     * @return A snapshot of the keys currently held
+     */
     public Set<Path> getKeys() {
-        return cache.keySet();
+        return cache.getKeys();
+    }
+
+    public CacheStats getStats() {
+        return cache.getStats();
     }
 
 }
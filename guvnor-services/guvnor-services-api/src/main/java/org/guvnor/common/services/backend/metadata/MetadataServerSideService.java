@@ -16,7 +16,10 @@
 
 package org.guvnor.common.services.backend.metadata;
 
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import org.guvnor.common.services.shared.metadata.MetadataService;
 import org.guvnor.common.services.shared.metadata.model.Metadata;
@@ -27,6 +30,17 @@ public interface MetadataServerSideService
 
     Metadata getMetadata(final Path resource);
 
+    /**
+     * Load the Metadata of several resources in parallel, returning each as soon as it has been loaded
+     * @param resources The resources
+     * @param maxVersions Maximum number of versions, the most recent, included in each Metadata; negative for all.
+     * When 0 the history of the resources is not read, and the Metadata derived from it is not set.
+     * @return The resources and their Metadata, in the order loading completes. next() blocks until the
+     * Metadata of another resource has been loaded, and throws if it could not be.
+     */
+    Iterator<Map.Entry<Path, Metadata>> getMetadata(final Collection<Path> resources,
+                                                    final int maxVersions);
+
     List<String> getTags(final Path resource);
 
 }
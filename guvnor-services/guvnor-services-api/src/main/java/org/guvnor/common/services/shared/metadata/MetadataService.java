@@ -31,6 +31,16 @@ public interface MetadataService {
 
     Metadata getMetadata( final Path resource );
 
+    /**
+     * Load the Metadata of several resources in parallel
+     * @param resources The resources
+     * @param maxVersions Maximum number of versions, the most recent, included in each Metadata; negative for all.
+     * When 0 the history of the resources is not read, and the Metadata derived from it is not set.
+     * @return The Metadata, in the order of the resources
+     */
+    List<Metadata> getMetadata( final List<Path> resources,
+                                final int maxVersions );
+
     List<String> getTags( final Path resource );
 
     Map<String, Object> configAttrs( final Map<String, Object> attrs,
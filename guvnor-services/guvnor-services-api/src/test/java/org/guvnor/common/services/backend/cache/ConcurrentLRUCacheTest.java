@@ -0,0 +1,154 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.backend.cache;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentLRUCacheTest {
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted() {
+        //A single segment for caches this small, so eviction is strictly LRU
+        final ConcurrentLRUCache<String, String> cache = new ConcurrentLRUCache<String, String>( 3 );
+        cache.setEntry( "a",
+                        "A" );
+        cache.setEntry( "b",
+                        "B" );
+        cache.setEntry( "c",
+                        "C" );
+        assertEquals( "A",
+                      cache.getEntry( "a" ) );
+
+        cache.setEntry( "d",
+                        "D" );
+
+        assertEquals( 3,
+                      cache.size() );
+        assertNull( cache.getEntry( "b" ) );
+        assertEquals( "A",
+                      cache.getEntry( "a" ) );
+        assertEquals( "C",
+                      cache.getEntry( "c" ) );
+        assertEquals( "D",
+                      cache.getEntry( "d" ) );
+        assertEquals( 1,
+                      cache.getStats().getEvictionCount() );
+        assertEquals( 4,
+                      cache.getStats().getHitCount() );
+        assertEquals( 1,
+                      cache.getStats().getMissCount() );
+    }
+
+    @Test
+    public void testSmallCacheHoldsMaximumEntries() {
+        final ConcurrentLRUCache<Integer, Integer> cache = new ConcurrentLRUCache<Integer, Integer>( 20 );
+        for ( int i = 0; i < 20; i++ ) {
+            cache.setEntry( i,
+                            i );
+        }
+        assertEquals( 20,
+                      cache.size() );
+        assertEquals( 0,
+                      cache.getStats().getEvictionCount() );
+
+        cache.setEntry( 20,
+                        20 );
+        assertEquals( 20,
+                      cache.size() );
+        assertNull( cache.getEntry( 0 ) );
+    }
+
+    @Test
+    public void testWeightBound() {
+        final ConcurrentLRUCache<String, String> cache = new ConcurrentLRUCache<String, String>( 10,
+                                                                                                new ConcurrentLRUCache.Weigher<String, String>() {
+                                                                                                    @Override
+                                                                                                    public int weigh( final String key,
+                                                                                                                      final String value ) {
+                                                                                                        return value.length();
+                                                                                                    }
+                                                                                                },
+                                                                                                0 );
+        cache.setEntry( "a",
+                        "1234" );
+        cache.setEntry( "b",
+                        "1234" );
+        assertEquals( 8,
+                      cache.getWeight() );
+
+        cache.setEntry( "c",
+                        "1234" );
+        assertEquals( 8,
+                      cache.getWeight() );
+        assertNull( cache.getEntry( "a" ) );
+
+        cache.invalidateCache( "b" );
+        assertEquals( 4,
+                      cache.getWeight() );
+    }
+
+    @Test
+    public void testTimeToLive() {
+        final long[] now = new long[]{ 1000 };
+        final ConcurrentLRUCache<String, String> cache = new ConcurrentLRUCache<String, String>( 10,
+                                                                                                new ConcurrentLRUCache.Weigher<String, String>() {
+                                                                                                    @Override
+                                                                                                    public int weigh( final String key,
+                                                                                                                      final String value ) {
+                                                                                                        return 1;
+                                                                                                    }
+                                                                                                },
+                                                                                                100 ) {
+            @Override
+            protected long now() {
+                return now[ 0 ];
+            }
+        };
+        cache.setEntry( "a",
+                        "A" );
+        now[ 0 ] = 1099;
+        assertEquals( "A",
+                      cache.getEntry( "a" ) );
+
+        now[ 0 ] = 1100;
+        assertNull( cache.getEntry( "a" ) );
+        assertEquals( 1,
+                      cache.getStats().getExpirationCount() );
+        assertEquals( 0,
+                      cache.size() );
+    }
+
+    @Test
+    public void testInvalidateCache() {
+        final ConcurrentLRUCache<Integer, Integer> cache = new ConcurrentLRUCache<Integer, Integer>( 1000 );
+        for ( int i = 0; i < 100; i++ ) {
+            cache.setEntry( i,
+                            i );
+        }
+        assertEquals( 100,
+                      cache.getKeys().size() );
+
+        cache.invalidateCache();
+
+        assertEquals( 0,
+                      cache.size() );
+        assertEquals( 0,
+                      cache.getWeight() );
+    }
+
+}
@@ -15,10 +15,10 @@
 
 package org.guvnor.common.services.backend.archive;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.zip.Deflater;
 import javax.inject.Inject;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -27,9 +27,17 @@ import javax.servlet.http.HttpServletResponse;
 import org.guvnor.common.services.shared.file.upload.FileManagerFields;
 import org.uberfire.server.BaseFilteredServlet;
 
+/**
+ * Streams a zip of a file or folder. The zip is written to the response as it is created (using chunked transfer
+ * encoding, as its length is not known upfront) so memory use does not depend on the size of the archive.
+ * The compression level can be set with the "org.guvnor.archive.compression-level" system property.
+ */
 public class ArchiveServlet
         extends BaseFilteredServlet {
 
+    private static final int COMPRESSION_LEVEL = Integer.getInteger( "org.guvnor.archive.compression-level",
+                                                                     Deflater.DEFAULT_COMPRESSION );
+
     @Inject
     private Archiver archiver;
 
@@ -52,16 +60,13 @@ public class ArchiveServlet
                 if ( downLoadFileName.endsWith( "/" ) ) downLoadFileName = downLoadFileName.substring( 0, downLoadFileName.length() - 1 );
                 downLoadFileName.replaceAll( "/", "_" );
 
-                final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-
-                archiver.archive( outputStream, uri );
-
                 response.setContentType( "application/zip" );
                 response.setHeader( "Content-Disposition",
                         "attachment; filename=" + downLoadFileName + ".zip" );
 
-                response.setContentLength( outputStream.size() );
-                response.getOutputStream().write( outputStream.toByteArray() );
+                archiver.archive( response.getOutputStream(),
+                                  uri,
+                                  COMPRESSION_LEVEL );
                 response.getOutputStream().flush();
             } else {
                 response.sendError( HttpServletResponse.SC_BAD_REQUEST );
@@ -15,10 +15,11 @@
  */
 package org.guvnor.common.services.backend.archive;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -30,10 +31,6 @@ import org.uberfire.java.nio.file.Path;
 
 public class Archiver {
 
-    private Path originalPath;
-
-    private ZipWriter zipWriter;
-
     private IOService ioService;
 
     public Archiver() {
@@ -44,44 +41,70 @@ public class Archiver {
         this.ioService = ioService;
     }
 
-    public void archive( final ByteArrayOutputStream outputStream,
+    public void archive( final OutputStream outputStream,
                          final String uri ) throws IOException, URISyntaxException {
-
-        init(outputStream, uri);
-        zip();
+        archive( outputStream,
+                 uri,
+                 Deflater.DEFAULT_COMPRESSION );
     }
 
-    private void zip() throws IOException {
-        if (Files.isDirectory(originalPath)) {
-            addPath(Files.newDirectoryStream(originalPath));
+    /**
+     * Zip a file or folder. The zip is written to the stream as it is created, so it is never held in memory.
+     * The stream is not closed.
+     * @param outputStream Stream the zip is written to
+     * @param uri The file or folder
+     * @param compressionLevel Compression level for files that are not already compressed
+     */
+    public void archive( final OutputStream outputStream,
+                         final String uri,
+                         final int compressionLevel ) throws IOException, URISyntaxException {
+        final Path originalPath = ioService.get( new URI( uri ) );
+        final ZipWriter zipWriter = new ZipWriter( outputStream,
+                                                   compressionLevel );
+        if ( Files.isDirectory( originalPath ) ) {
+            addPath( zipWriter,
+                     originalPath,
+                     originalPath );
         } else {
-            addFile(originalPath);
+            addFile( zipWriter,
+                     originalPath,
+                     originalPath );
         }
-        zipWriter.close();
+        //The stream belongs to the caller
+        zipWriter.finish();
     }
 
-    private void init( final ByteArrayOutputStream outputStream,
-                       final String uri ) throws URISyntaxException {
-        this.originalPath = ioService.get(new URI(uri));
-        this.zipWriter = new ZipWriter( outputStream );
-    }
-
-    private void addPath(DirectoryStream<Path> directoryStream) throws IOException {
-        for (Path subPath : directoryStream) {
-            if (Files.isDirectory(subPath)) {
-                addPath(Files.newDirectoryStream(subPath));
-            } else {
-                addFile(subPath);
+    private void addPath( final ZipWriter zipWriter,
+                          final Path originalPath,
+                          final Path path ) throws IOException {
+        final DirectoryStream<Path> directoryStream = Files.newDirectoryStream( path );
+        try {
+            for ( Path subPath : directoryStream ) {
+                if ( Files.isDirectory( subPath ) ) {
+                    addPath( zipWriter,
+                             originalPath,
+                             subPath );
+                } else {
+                    addFile( zipWriter,
+                             originalPath,
+                             subPath );
+                }
             }
+        } finally {
+            directoryStream.close();
         }
     }
 
-    private void addFile( final Path subPath ) throws IOException {
-        zipWriter.addFile( getZipEntry( subPath ),
+    private void addFile( final ZipWriter zipWriter,
+                          final Path originalPath,
+                          final Path subPath ) throws IOException {
+        zipWriter.addFile( getZipEntry( originalPath,
+                                        subPath ),
                            ioService.newInputStream( subPath ) );
     }
 
-    private ZipEntry getZipEntry( final Path subPath ) {
+    private ZipEntry getZipEntry( final Path originalPath,
+                                  final Path subPath ) {
         return new ZipEntry(FileNameResolver.resolve(subPath.toUri().getPath(), originalPath.toUri().getPath()));
     }
 
@@ -15,41 +15,105 @@
  */
 package org.guvnor.common.services.backend.archive;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
+/**
+ * Writes entries straight to the underlying stream; only a fixed size buffer is held in memory.
+ */
 public class ZipWriter {
 
-    private ZipOutputStream outputStream;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    //Files that are already compressed gain little from compressing them again
+    private static final Set<String> COMPRESSED_EXTENSIONS = new HashSet<String>( Arrays.asList( "zip",
+                                                                                                   "jar",
+                                                                                                   "war",
+                                                                                                   "ear",
+                                                                                                   "kjar",
+                                                                                                   "gz",
+                                                                                                   "tgz",
+                                                                                                   "bz2",
+                                                                                                   "7z",
+                                                                                                   "png",
+                                                                                                   "jpg",
+                                                                                                   "jpeg",
+                                                                                                   "gif",
+                                                                                                   "docx",
+                                                                                                   "xlsx",
+                                                                                                   "pptx",
+                                                                                                   "pdf" ) );
+
+    private final ZipOutputStream outputStream;
+    private final int compressionLevel;
+    private final byte[] buffer = new byte[ BUFFER_SIZE ];
 
     public ZipWriter( final OutputStream outputStream ) {
-        this.outputStream = new ZipOutputStream( new BufferedOutputStream( outputStream ) );
+        this( outputStream,
+              Deflater.DEFAULT_COMPRESSION );
+    }
+
+    /**
+     * @param outputStream Stream the zip is written to
+     * @param compressionLevel Compression level for files that are not already compressed, between
+     * {@link Deflater#NO_COMPRESSION} and {@link Deflater#BEST_COMPRESSION}, or {@link Deflater#DEFAULT_COMPRESSION}
+     */
+    public ZipWriter( final OutputStream outputStream,
+                      final int compressionLevel ) {
+        if ( compressionLevel != Deflater.DEFAULT_COMPRESSION
+                && ( compressionLevel < Deflater.NO_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION ) ) {
+            throw new IllegalArgumentException( "Invalid compression level: " + compressionLevel );
+        }
+        this.outputStream = new ZipOutputStream( new BufferedOutputStream( outputStream,
+                                                                           BUFFER_SIZE ) );
+        this.compressionLevel = compressionLevel;
     }
 
     public void addFile( final ZipEntry zipEntry,
                          final InputStream inputStream ) throws IOException {
-        final int BUFFER = 2048;
-        byte data[] = new byte[BUFFER];
-
-        BufferedInputStream origin = new BufferedInputStream( inputStream, BUFFER );
-
-        outputStream.putNextEntry( zipEntry );
-        int count;
-        while ((count = origin.read( data, 0, BUFFER )) != -1) {
-            outputStream.write( data, 0, count );
+        try {
+            //Entries are deflated without compression, rather than stored, so their size and CRC are not needed upfront
+            outputStream.setLevel( isCompressed( zipEntry.getName() ) ? Deflater.NO_COMPRESSION : compressionLevel );
+            outputStream.putNextEntry( zipEntry );
+            int count;
+            while ( ( count = inputStream.read( buffer ) ) != -1 ) {
+                outputStream.write( buffer,
+                                    0,
+                                    count );
+            }
+            outputStream.closeEntry();
+        } finally {
+            inputStream.close();
         }
+    }
 
+    /**
+     * Complete the zip without closing the underlying stream
+     */
+    public void finish() throws IOException {
+        outputStream.finish();
         outputStream.flush();
-        origin.close();
     }
 
     public void close() throws IOException {
         outputStream.close();
     }
 
+    static boolean isCompressed( final String fileName ) {
+        final int index = fileName.lastIndexOf( '.' );
+        if ( index < 0 || fileName.lastIndexOf( '/' ) > index ) {
+            return false;
+        }
+        return COMPRESSED_EXTENSIONS.contains( fileName.substring( index + 1 ).toLowerCase( Locale.ENGLISH ) );
+    }
+
 }
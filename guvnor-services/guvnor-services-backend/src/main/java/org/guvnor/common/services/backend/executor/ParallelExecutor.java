@@ -0,0 +1,126 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.guvnor.common.services.backend.executor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.naming.InitialContext;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.uberfire.commons.async.DescriptiveThreadFactory;
+
+/**
+ * Executor shared by services that split their work into tasks run in parallel, e.g. loading the Metadata of
+ * several Paths. Tasks are run by the container, falling back to a bounded pool when the container does not
+ * provide the executor. Tasks executed from within another task are run on the calling thread, so a task
+ * waiting for the tasks it executed cannot exhaust the executor.
+ */
+@ApplicationScoped
+public class ParallelExecutor implements Executor {
+
+    private static final Logger LOG = LoggerFactory.getLogger( ParallelExecutor.class );
+
+    //Number of threads when the container does not provide the executor
+    private static final int EXECUTOR_THREADS = Integer.getInteger( "org.guvnor.parallel.executor.threads",
+                                                                    Runtime.getRuntime().availableProcessors() );
+
+    private static final ThreadLocal<Boolean> RUNNING_TASK = new ThreadLocal<Boolean>();
+
+    private final boolean USE_EXECUTOR_SAFE_MODE = Boolean.parseBoolean( System.getProperty( "org.uberfire.async.executor.safemode", "false" ) );
+
+    private ParallelExecutorManager executorManager = null;
+    private boolean ownsExecutorManager = false;
+
+    public ParallelExecutor() {
+    }
+
+    //Public so we can set the ParallelExecutorManager for tests not within guvnor
+    public ParallelExecutor( final ParallelExecutorManager executorManager ) {
+        this.executorManager = executorManager;
+    }
+
+    @Override
+    public void execute( final Runnable task ) {
+        if ( Boolean.TRUE.equals( RUNNING_TASK.get() ) ) {
+            task.run();
+            return;
+        }
+        getExecutorManager().execute( new Runnable() {
+            @Override
+            public void run() {
+                RUNNING_TASK.set( Boolean.TRUE );
+                try {
+                    task.run();
+                } finally {
+                    RUNNING_TASK.remove();
+                }
+            }
+        } );
+    }
+
+    private synchronized ParallelExecutorManager getExecutorManager() {
+        if ( executorManager == null ) {
+            ParallelExecutorManager _executorManager = null;
+
+            //Unless overridden, delegate instantiation of the ExecutorService to the container
+            //See https://issues.jboss.org/browse/UF-244 and https://issues.jboss.org/browse/WFLY-4198
+            if ( !USE_EXECUTOR_SAFE_MODE ) {
+                try {
+                    _executorManager = InitialContext.doLookup( "java:module/ParallelExecutorManager" );
+                } catch ( final Exception e ) {
+                    LOG.warn( "Unable to instantiate EJB Asynchronous Bean. Falling back to bounded parallel executor.",
+                              e );
+                }
+            } else {
+                LOG.info( "Use of bounded parallel executor has been requested; overriding container provisioning." );
+            }
+
+            if ( _executorManager == null ) {
+                final ThreadPoolExecutor executor = new ThreadPoolExecutor( EXECUTOR_THREADS,
+                                                                            EXECUTOR_THREADS,
+                                                                            60L,
+                                                                            TimeUnit.SECONDS,
+                                                                            new LinkedBlockingQueue<Runnable>(),
+                                                                            new DescriptiveThreadFactory() );
+                executor.allowCoreThreadTimeOut( true );
+                executorManager = new ParallelExecutorManager();
+                executorManager.setExecutorService( executor );
+                ownsExecutorManager = true;
+            } else {
+                executorManager = _executorManager;
+            }
+        }
+
+        return executorManager;
+    }
+
+    @PreDestroy
+    public synchronized void destroy() {
+        //The container shuts down its own executor
+        if ( ownsExecutorManager ) {
+            executorManager.shutdown();
+            executorManager = null;
+            ownsExecutorManager = false;
+        }
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.guvnor.common.services.backend.executor;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.ejb.Asynchronous;
+import javax.ejb.Lock;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.TransactionAttribute;
+
+import static javax.ejb.LockType.*;
+import static javax.ejb.TransactionAttributeType.*;
+
+/**
+ * Runs tasks on the container's asynchronous executor. Tasks are only run on the ExecutorService
+ * set with {@link #setExecutorService(ExecutorService)} when the bean is not managed by the container.
+ */
+@Singleton
+@Startup
+@Lock(READ)
+@TransactionAttribute(NOT_SUPPORTED)
+public class ParallelExecutorManager {
+
+    private AtomicBoolean useExecService = new AtomicBoolean( false );
+    private ExecutorService executorService = null;
+
+    @Asynchronous
+    public void execute( final Runnable task ) {
+        if ( useExecService.get() ) {
+            executorService.execute( task );
+        } else {
+            task.run();
+        }
+    }
+
+    //Public so we can set the ExecutorService outside of the container and for tests
+    public void setExecutorService( final ExecutorService executorService ) {
+        this.executorService = executorService;
+        this.useExecService.set( true );
+    }
+
+    public void shutdown() {
+        if ( useExecService.get() && executorService != null ) {
+            executorService.shutdown(); // Disable new tasks from being submitted
+            try {
+                // Wait a while for existing tasks to terminate
+                if ( !executorService.awaitTermination( 60, TimeUnit.SECONDS ) ) {
+                    executorService.shutdownNow(); // Cancel currently executing tasks
+                    // Wait a while for tasks to respond to being cancelled
+                    if ( !executorService.awaitTermination( 60, TimeUnit.SECONDS ) ) {
+                        System.err.println( "Pool did not terminate" );
+                    }
+                }
+            } catch ( InterruptedException ie ) {
+                // (Re-)Cancel if current thread also interrupted
+                executorService.shutdownNow();
+                // Preserve interrupt status
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -25,6 +25,15 @@ import org.uberfire.java.nio.file.Path;
  */
 public interface FileDiscoveryService {
 
+    /**
+     * Receives files as they are discovered
+     */
+    interface DiscoveredFileVisitor {
+
+        void visitFile( final Path path );
+
+    }
+
     /**
      * Discover files
      * @param pathToSearch The root Path to search. Sub-folders are not included.
@@ -45,4 +54,26 @@ public interface FileDiscoveryService {
     Collection<Path> discoverFiles( final Path pathToSearch,
                                     final DirectoryStream.Filter<org.uberfire.java.nio.file.Path> filter );
 
+    /**
+     * Discover files, passing each to a visitor as soon as it is found rather than collecting them
+     * @param pathToSearch The root Path to search.
+     * @param filter A filter to restrict the matched files.
+     * @param recursive True is sub-folders are to be scanned
+     * @param visitor Receives the matched files, in the order they are found
+     */
+    void discoverFiles( final Path pathToSearch,
+                        final DirectoryStream.Filter<org.uberfire.java.nio.file.Path> filter,
+                        final boolean recursive,
+                        final DiscoveredFileVisitor visitor );
+
+    /**
+     * Discover files in a Path and all its sub-folders, scanning sub-folders in parallel. Intended for large trees.
+     * @param pathToSearch The root Path to search.
+     * @param filter A filter to restrict the matched files. This is called concurrently.
+     * @param visitor Receives the matched files, in no particular order. This is called concurrently.
+     */
+    void discoverFilesInParallel( final Path pathToSearch,
+                                  final DirectoryStream.Filter<org.uberfire.java.nio.file.Path> filter,
+                                  final DiscoveredFileVisitor visitor );
+
 }
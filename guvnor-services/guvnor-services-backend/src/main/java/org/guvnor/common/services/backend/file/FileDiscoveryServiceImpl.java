@@ -15,69 +15,222 @@
 
 package org.guvnor.common.services.backend.file;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 
+import org.uberfire.commons.validation.PortablePreconditions;
 import org.uberfire.java.nio.file.DirectoryStream;
 import org.uberfire.java.nio.file.Files;
+import org.uberfire.java.nio.file.NoSuchFileException;
 import org.uberfire.java.nio.file.Path;
-import org.uberfire.commons.validation.PortablePreconditions;
+import org.uberfire.java.nio.file.attribute.BasicFileAttributes;
 
 /**
- * Default implementation of FileDiscoveryService
+ * Default implementation of FileDiscoveryService. Folders are walked iteratively, the attributes of each
+ * entry are read once and every DirectoryStream is closed.
  */
 @ApplicationScoped
 public class FileDiscoveryServiceImpl implements FileDiscoveryService {
 
+    private volatile ForkJoinPool forkJoinPool;
+
     @Override
     public Collection<Path> discoverFiles( final Path pathToSearch,
                                            final DirectoryStream.Filter<org.uberfire.java.nio.file.Path> filter,
                                            final boolean recursive ) {
+        final List<Path> discoveredFiles = new ArrayList<Path>();
+        discoverFiles( pathToSearch,
+                       filter,
+                       recursive,
+                       new DiscoveredFileVisitor() {
+                           @Override
+                           public void visitFile( final Path path ) {
+                               discoveredFiles.add( path );
+                           }
+                       } );
+        return discoveredFiles;
+    }
+
+    @Override
+    public Collection<Path> discoverFiles( final Path pathToSearch,
+                                           final DirectoryStream.Filter<org.uberfire.java.nio.file.Path> filter ) {
+        return discoverFiles( pathToSearch,
+                              filter,
+                              false );
+    }
+
+    @Override
+    public void discoverFiles( final Path pathToSearch,
+                               final DirectoryStream.Filter<org.uberfire.java.nio.file.Path> filter,
+                               final boolean recursive,
+                               final DiscoveredFileVisitor visitor ) {
         PortablePreconditions.checkNotNull( "pathToSearch",
                                             pathToSearch );
         PortablePreconditions.checkNotNull( "filter",
                                             filter );
+        PortablePreconditions.checkNotNull( "visitor",
+                                            visitor );
 
-        final List<Path> discoveredFiles = new ArrayList<Path>();
+        if ( !isDirectory( pathToSearch,
+                           filter,
+                           visitor ) ) {
+            return;
+        }
+
+        //Depth-first, visiting entries in the same order as a recursive walk; one DirectoryStream is open per level
+        final Deque<DirectoryStream<Path>> streams = new ArrayDeque<DirectoryStream<Path>>();
+        final Deque<Iterator<Path>> iterators = new ArrayDeque<Iterator<Path>>();
+        try {
+            final DirectoryStream<Path> rootStream = Files.newDirectoryStream( pathToSearch );
+            streams.push( rootStream );
+            iterators.push( rootStream.iterator() );
+            while ( !iterators.isEmpty() ) {
+                final Iterator<Path> iterator = iterators.peek();
+                if ( !iterator.hasNext() ) {
+                    iterators.pop();
+                    streams.pop().close();
+                    continue;
+                }
+                final Path path = iterator.next();
+                final BasicFileAttributes attributes = readAttributes( path );
+                if ( attributes == null ) {
+                    continue;
+                }
+                if ( attributes.isRegularFile() ) {
+                    if ( filter.accept( path ) ) {
+                        visitor.visitFile( path );
+                    }
+                } else if ( recursive && attributes.isDirectory() ) {
+                    final DirectoryStream<Path> stream = Files.newDirectoryStream( path );
+                    streams.push( stream );
+                    iterators.push( stream.iterator() );
+                }
+            }
+        } finally {
+            while ( !streams.isEmpty() ) {
+                streams.pop().close();
+            }
+        }
+    }
 
-        //The pathToSearch could be a file, and of the type we need
-        if ( Files.isRegularFile( pathToSearch ) ) {
+    @Override
+    public void discoverFilesInParallel( final Path pathToSearch,
+                                         final DirectoryStream.Filter<org.uberfire.java.nio.file.Path> filter,
+                                         final DiscoveredFileVisitor visitor ) {
+        PortablePreconditions.checkNotNull( "pathToSearch",
+                                            pathToSearch );
+        PortablePreconditions.checkNotNull( "filter",
+                                            filter );
+        PortablePreconditions.checkNotNull( "visitor",
+                                            visitor );
+
+        if ( !isDirectory( pathToSearch,
+                           filter,
+                           visitor ) ) {
+            return;
+        }
+
+        getForkJoinPool().invoke( new DiscoverFolderAction( pathToSearch,
+                                                            filter,
+                                                            visitor ) );
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        final ForkJoinPool pool = forkJoinPool;
+        if ( pool != null ) {
+            pool.shutdown();
+        }
+    }
+
+    //The pathToSearch could be a file, and of the type we need
+    private boolean isDirectory( final Path pathToSearch,
+                                 final DirectoryStream.Filter<org.uberfire.java.nio.file.Path> filter,
+                                 final DiscoveredFileVisitor visitor ) {
+        final BasicFileAttributes attributes = readAttributes( pathToSearch );
+        if ( attributes == null ) {
+            return false;
+        }
+        if ( attributes.isRegularFile() ) {
             if ( filter.accept( pathToSearch ) ) {
-                discoveredFiles.add( pathToSearch );
-                return discoveredFiles;
+                visitor.visitFile( pathToSearch );
             }
+            return false;
         }
+        return attributes.isDirectory();
+    }
 
-        //This check should never match, but it's included as a safe-guard
-        if ( !Files.isDirectory( pathToSearch ) ) {
-            return discoveredFiles;
+    private static BasicFileAttributes readAttributes( final Path path ) {
+        try {
+            return Files.readAttributes( path,
+                                         BasicFileAttributes.class );
+        } catch ( NoSuchFileException e ) {
+            //The entry has been removed since the folder was listed
+            return null;
         }
+    }
 
-        //Path represents a Folder, so check and recursively add it's content, if applicable
-        final DirectoryStream<Path> paths = Files.newDirectoryStream( pathToSearch );
-        for ( final Path path : paths ) {
-            if ( Files.isRegularFile( path ) ) {
-                if ( filter.accept( path ) ) {
-                    discoveredFiles.add( path );
+    private ForkJoinPool getForkJoinPool() {
+        ForkJoinPool pool = forkJoinPool;
+        if ( pool == null ) {
+            synchronized ( this ) {
+                pool = forkJoinPool;
+                if ( pool == null ) {
+                    pool = new ForkJoinPool();
+                    forkJoinPool = pool;
                 }
-            } else if ( recursive && Files.isDirectory( path ) ) {
-                discoveredFiles.addAll( discoverFiles( path,
-                                                       filter,
-                                                       recursive ) );
             }
         }
-
-        return discoveredFiles;
+        return pool;
     }
 
-    @Override
-    public Collection<Path> discoverFiles( final Path pathToSearch,
-                                           final DirectoryStream.Filter<org.uberfire.java.nio.file.Path> filter ) {
-        return discoverFiles( pathToSearch,
-                              filter,
-                              false );
+    private static class DiscoverFolderAction extends RecursiveAction {
+
+        private final Path folder;
+        private final DirectoryStream.Filter<org.uberfire.java.nio.file.Path> filter;
+        private final DiscoveredFileVisitor visitor;
+
+        private DiscoverFolderAction( final Path folder,
+                                      final DirectoryStream.Filter<org.uberfire.java.nio.file.Path> filter,
+                                      final DiscoveredFileVisitor visitor ) {
+            this.folder = folder;
+            this.filter = filter;
+            this.visitor = visitor;
+        }
+
+        @Override
+        protected void compute() {
+            final List<DiscoverFolderAction> subFolderActions = new ArrayList<DiscoverFolderAction>();
+            final DirectoryStream<Path> paths = Files.newDirectoryStream( folder );
+            try {
+                for ( final Path path : paths ) {
+                    final BasicFileAttributes attributes = readAttributes( path );
+                    if ( attributes == null ) {
+                        continue;
+                    }
+                    if ( attributes.isRegularFile() ) {
+                        if ( filter.accept( path ) ) {
+                            visitor.visitFile( path );
+                        }
+                    } else if ( attributes.isDirectory() ) {
+                        subFolderActions.add( new DiscoverFolderAction( path,
+                                                                        filter,
+                                                                        visitor ) );
+                    }
+                }
+            } finally {
+                paths.close();
+            }
+            invokeAll( subFolderActions );
+        }
     }
 
 }
@@ -22,16 +22,17 @@ import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
-import java.util.Iterator;
-import java.util.List;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.fileupload.FileItem;
-import org.apache.commons.fileupload.FileItemFactory;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.FileUploadException;
 import org.apache.commons.fileupload.disk.DiskFileItemFactory;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
+import org.apache.commons.fileupload.util.Streams;
 import org.apache.commons.io.IOUtils;
 import org.guvnor.common.services.shared.file.upload.FileManagerFields;
 import org.guvnor.common.services.shared.file.upload.FileOperation;
@@ -53,6 +54,12 @@ public abstract class AbstractFileServlet extends BaseFilteredServlet {
 
     private static final long serialVersionUID = 510l;
 
+    //Maximum size, in bytes, of an uploaded file and of a whole upload request; -1 for no limit
+    private final long maxFileSize = Long.getLong( "org.guvnor.upload.max-file-size",
+                                                   -1 );
+    private final long maxRequestSize = Long.getLong( "org.guvnor.upload.max-request-size",
+                                                      -1 );
+
     /**
      * Load resource
      * @param path
@@ -108,118 +115,161 @@ public abstract class AbstractFileServlet extends BaseFilteredServlet {
     protected void doPost( final HttpServletRequest request,
                            final HttpServletResponse response ) throws ServletException, IOException {
         response.setContentType( "text/html" );
-        final FormData item = getFormData( request );
 
-        if ( item.getFile() != null ) {
-            response.getWriter().write( processUpload( item,
-                                                       request,
-                                                       response ) );
-            return;
-        }
+        //See https://code.google.com/p/google-web-toolkit/issues/detail?id=4682
+        request.setCharacterEncoding( "UTF-8" );
 
-        response.getWriter().write( "NO-SCRIPT-DATA" );
+        response.getWriter().write( processUpload( request,
+                                                   response ) );
     }
 
     /**
-     * Get the form data from the inbound request.
+     * Read the inbound request and upload its file. The request is streamed: if the form fields identifying the
+     * target precede the file it is written to the target as it is received, otherwise it is buffered until the
+     * remaining form fields have been read.
      */
-    @SuppressWarnings("rawtypes")
-    private FormData getFormData( final HttpServletRequest request ) throws IOException {
-        final FileItemFactory factory = new DiskFileItemFactory();
-        final ServletFileUpload upload = new ServletFileUpload( factory );
-        upload.setHeaderEncoding( "UTF-8" );
-
-        //See https://code.google.com/p/google-web-toolkit/issues/detail?id=4682
-        request.setCharacterEncoding( "UTF-8" );
-
+    private String processUpload( final HttpServletRequest request,
+                                  final HttpServletResponse response ) throws IOException {
         final FormData data = new FormData();
         try {
-            final List items = upload.parseRequest( request );
-            final Iterator it = items.iterator();
-
-            FileOperation operation = null;
-            String fileName = null;
-            String contextPath = null;
-            String fullPath = null;
-
-            while ( it.hasNext() ) {
-                final FileItem item = (FileItem) it.next();
-                if ( !item.isFormField() ) {
-                    data.setFile( item );
-                } else if ( item.getFieldName().equals( FileManagerFields.FORM_FIELD_PATH ) ) {
-                    contextPath = item.getString( "UTF-8" );
-                    log.debug( "path:" + contextPath );
-                } else if ( item.getFieldName().equals( FileManagerFields.FORM_FIELD_NAME ) ) {
-                    fileName = item.getString( "UTF-8" );
-                    log.debug( "name:" + fileName );
-                } else if ( item.getFieldName().equals( FileManagerFields.FORM_FIELD_FULL_PATH ) ) {
-                    fullPath = item.getString( "UTF-8" );
-                    log.debug( "full path:" + fullPath );
-                } else if ( item.getFieldName().equals( FileManagerFields.FORM_FIELD_OPERATION ) ) {
-                    operation = FileOperation.valueOf( item.getString( "UTF-8" ) );
-                    log.debug( "operation:" + operation );
+            String result = null;
+            try {
+                final FileItemIterator items = newServletFileUpload().getItemIterator( request );
+                while ( items.hasNext() ) {
+                    final FileItemStream item = items.next();
+                    if ( item.isFormField() ) {
+                        readFormField( item,
+                                       data );
+
+                    } else if ( result == null && data.getFile() == null ) {
+                        // If the file it doesn't exist.
+                        if ( "".equals( item.getName() ) ) {
+                            throw new IOException( "No file selected." );
+                        }
+                        if ( data.hasTarget() ) {
+                            resolveTargetPath( data );
+                            result = uploadFile( data,
+                                                 item.openStream(),
+                                                 request,
+                                                 response );
+                        } else {
+                            data.setFile( bufferFile( item ) );
+                        }
+                    }
+                }
+                if ( result != null ) {
+                    return result;
                 }
-            }
 
-            if ( operation == null ) {
-                throw new IllegalArgumentException( "FORM_FIELD_OPERATION is null. Cannot process upload." );
+                resolveTargetPath( data );
+
+            } catch ( FileUploadException e ) {
+                throw new org.uberfire.java.nio.IOException( e.getMessage() );
+            } catch ( URISyntaxException e ) {
+                throw new org.uberfire.java.nio.IOException( e.getMessage() );
+            } catch ( IllegalArgumentException e ) {
+                throw new org.uberfire.java.nio.IOException( e.getMessage() );
             }
 
-            org.uberfire.java.nio.file.Path path;
-            switch ( operation ) {
-                case CREATE:
-                    if ( fileName == null ) {
-                        throw new IllegalArgumentException( "FORM_FIELD_NAME is null. Cannot process upload." );
-                    }
-                    if ( contextPath == null ) {
-                        throw new IllegalArgumentException( "FORM_FIELD_PATH is null. Cannot process upload." );
-                    }
-                    data.setOperation( operation );
-                    data.setTargetPath( convertPath( fileName,
-                                                     contextPath ) );
-                    break;
-                case UPDATE:
-                    if ( fullPath == null ) {
-                        throw new IllegalArgumentException( "FORM_FIELD_FULL_PATH is null. Cannot process upload." );
-                    }
-                    data.setOperation( operation );
-                    data.setTargetPath( convertPath( fullPath ) );
+            if ( data.getFile() == null ) {
+                return "NO-SCRIPT-DATA";
             }
 
-            return data;
+            return uploadFile( data,
+                               data.getFile().getInputStream(),
+                               request,
+                               response );
 
-        } catch ( Exception e ) {
-            throw new org.uberfire.java.nio.IOException( e.getMessage() );
+        } finally {
+            //The buffered file is removed whether or not the upload succeeded
+            if ( data.getFile() != null ) {
+                data.getFile().delete();
+            }
         }
     }
 
-    private String processUpload( final FormData item,
-                                  final HttpServletRequest request,
-                                  final HttpServletResponse response ) throws IOException {
+    private ServletFileUpload newServletFileUpload() {
+        final ServletFileUpload upload = new ServletFileUpload();
+        upload.setHeaderEncoding( "UTF-8" );
+        upload.setFileSizeMax( maxFileSize );
+        upload.setSizeMax( maxRequestSize );
+        return upload;
+    }
 
-        // If the file it doesn't exist.
-        if ( "".equals( item.getFile().getName() ) ) {
-            throw new IOException( "No file selected." );
+    private void readFormField( final FileItemStream item,
+                                final FormData data ) throws IOException {
+        final String fieldName = item.getFieldName();
+        if ( fieldName.equals( FileManagerFields.FORM_FIELD_PATH ) ) {
+            data.setContextPath( Streams.asString( item.openStream(),
+                                                   "UTF-8" ) );
+            log.debug( "path:" + data.getContextPath() );
+        } else if ( fieldName.equals( FileManagerFields.FORM_FIELD_NAME ) ) {
+            data.setFileName( Streams.asString( item.openStream(),
+                                                "UTF-8" ) );
+            log.debug( "name:" + data.getFileName() );
+        } else if ( fieldName.equals( FileManagerFields.FORM_FIELD_FULL_PATH ) ) {
+            data.setFullPath( Streams.asString( item.openStream(),
+                                                "UTF-8" ) );
+            log.debug( "full path:" + data.getFullPath() );
+        } else if ( fieldName.equals( FileManagerFields.FORM_FIELD_OPERATION ) ) {
+            data.setOperation( FileOperation.valueOf( Streams.asString( item.openStream(),
+                                                                        "UTF-8" ) ) );
+            log.debug( "operation:" + data.getOperation() );
         }
+    }
 
-        final String processResult = uploadFile( item,
-                                                 request,
-                                                 response );
+    private FileItem bufferFile( final FileItemStream item ) throws IOException {
+        final FileItem file = new DiskFileItemFactory().createItem( item.getFieldName(),
+                                                                    item.getContentType(),
+                                                                    false,
+                                                                    item.getName() );
+        try {
+            Streams.copy( item.openStream(),
+                          file.getOutputStream(),
+                          true );
+        } catch ( IOException e ) {
+            file.delete();
+            throw e;
+        }
+        return file;
+    }
+
+    private void resolveTargetPath( final FormData data ) throws URISyntaxException {
+        final FileOperation operation = data.getOperation();
+        if ( operation == null ) {
+            throw new IllegalArgumentException( "FORM_FIELD_OPERATION is null. Cannot process upload." );
+        }
 
-        return processResult;
+        switch ( operation ) {
+            case CREATE:
+                if ( data.getFileName() == null ) {
+                    throw new IllegalArgumentException( "FORM_FIELD_NAME is null. Cannot process upload." );
+                }
+                if ( data.getContextPath() == null ) {
+                    throw new IllegalArgumentException( "FORM_FIELD_PATH is null. Cannot process upload." );
+                }
+                data.setTargetPath( convertPath( data.getFileName(),
+                                                 data.getContextPath() ) );
+                break;
+            case UPDATE:
+                if ( data.getFullPath() == null ) {
+                    throw new IllegalArgumentException( "FORM_FIELD_FULL_PATH is null. Cannot process upload." );
+                }
+                data.setTargetPath( convertPath( data.getFullPath() ) );
+        }
     }
 
     private String uploadFile( final FormData item,
+                               final InputStream fileData,
                                final HttpServletRequest request,
                                final HttpServletResponse response ) throws IOException {
-        final InputStream fileData = item.getFile().getInputStream();
         final org.uberfire.backend.vfs.Path targetPath = item.getTargetPath();
 
-        if ( !validateAccess( Paths.convert( targetPath ), response ) ) {
-            return "FAIL";
-        }
-
         try {
+            if ( !validateAccess( Paths.convert( targetPath ), response ) ) {
+                return "FAIL";
+            }
+
             switch ( item.getOperation() ) {
                 case CREATE:
                     doCreate( targetPath,
@@ -234,7 +284,7 @@ public abstract class AbstractFileServlet extends BaseFilteredServlet {
                               "Uploaded " + getTimestamp() );
             }
         } finally {
-            item.getFile().getInputStream().close();
+            fileData.close();
         }
 
         return "OK";
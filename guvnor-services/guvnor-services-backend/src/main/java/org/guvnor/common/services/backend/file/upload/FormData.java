@@ -26,6 +26,10 @@ public class FormData {
     private FileOperation operation;
     private Path targetPath;
 
+    private String fileName;
+    private String contextPath;
+    private String fullPath;
+
     public FileItem getFile() {
         return file;
     }
@@ -50,4 +54,44 @@ public class FormData {
         this.targetPath = targetPath;
     }
 
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName( final String fileName ) {
+        this.fileName = fileName;
+    }
+
+    public String getContextPath() {
+        return contextPath;
+    }
+
+    public void setContextPath( final String contextPath ) {
+        this.contextPath = contextPath;
+    }
+
+    public String getFullPath() {
+        return fullPath;
+    }
+
+    public void setFullPath( final String fullPath ) {
+        this.fullPath = fullPath;
+    }
+
+    /**
+     * @return true if the form fields needed to identify the target of the upload have been read
+     */
+    public boolean hasTarget() {
+        if ( operation == null ) {
+            return false;
+        }
+        switch ( operation ) {
+            case CREATE:
+                return fileName != null && contextPath != null;
+            case UPDATE:
+                return fullPath != null;
+        }
+        return false;
+    }
+
 }
@@ -29,10 +29,10 @@ import org.uberfire.backend.vfs.PathFactory;
 import org.uberfire.backend.vfs.impl.LockInfo;
 import org.uberfire.ext.editor.commons.version.impl.PortableVersionRecord;
 import org.uberfire.io.IOService;
+import org.uberfire.io.attribute.DublinCoreAttributes;
 import org.uberfire.io.attribute.DublinCoreView;
 import org.uberfire.java.nio.base.version.VersionAttributeView;
 import org.uberfire.java.nio.base.version.VersionAttributes;
-import org.uberfire.java.nio.base.version.VersionHistory;
 import org.uberfire.java.nio.base.version.VersionRecord;
 import org.uberfire.java.nio.file.NoSuchFileException;
 import org.uberfire.java.nio.file.Path;
@@ -49,6 +49,7 @@ public class MetadataCreator {
     private final VersionAttributeView versionAttributeView;
     private final IOService configIOService;
     private final SessionInfo sessionInfo;
+    private final int maxVersions;
 
     public MetadataCreator( Path path,
                             IOService configIOService,
@@ -57,42 +58,79 @@ public class MetadataCreator {
                             DiscussionView discussionView,
                             OtherMetaView otherMetaView,
                             VersionAttributeView versionAttributeView ) {
+        this( path,
+              configIOService,
+              sessionInfo,
+              dublinCoreView,
+              discussionView,
+              otherMetaView,
+              versionAttributeView,
+              -1 );
+    }
+
+    /**
+     * @param versionAttributeView View of the history of the path. Can be null if maxVersions is 0.
+     * @param maxVersions Maximum number of versions, the most recent, included in the Metadata; negative for all.
+     * When 0 the history is not read, so the creator, last contributor, check-in comment and dates are not set.
+     */
+    public MetadataCreator( Path path,
+                            IOService configIOService,
+                            SessionInfo sessionInfo,
+                            DublinCoreView dublinCoreView,
+                            DiscussionView discussionView,
+                            OtherMetaView otherMetaView,
+                            VersionAttributeView versionAttributeView,
+                            int maxVersions ) {
         this.path = checkNotNull( "path", path );
         this.configIOService = checkNotNull( "configIOService", configIOService );
         this.sessionInfo = checkNotNull( "sessionInfo", sessionInfo );
         this.dublinCoreView = checkNotNull( "dublinCoreView", dublinCoreView );
         this.discussView = checkNotNull( "discussionView", discussionView );
         this.otherMetaView = checkNotNull( "otherMetaView", otherMetaView );
-        this.versionAttributeView = checkNotNull( "versionAttributeView", versionAttributeView );
+        this.versionAttributeView = maxVersions == 0 ? versionAttributeView : checkNotNull( "versionAttributeView", versionAttributeView );
+        this.maxVersions = maxVersions;
     }
 
     public Metadata create() {
-        return MetadataBuilder.newMetadata()
+        //Each view is read once; reading the VersionAttributeView walks the history of the path
+        final DublinCoreAttributes dublinCoreAttributes = dublinCoreView.readAttributes();
+        final MetadataBuilder builder = MetadataBuilder.newMetadata()
                 .withPath( Paths.convert( path ) )
                 .withRealPath( Paths.convert( path.toRealPath() ) )
-                .withCheckinComment( getCheckinComment() )
-                .withLastContributor( getLastContributor() )
-                .withCreator( getCreator() )
-                .withLastModified( getLastModified() )
-                .withDateCreated( getDateCreated() )
-                .withSubject( getSubject() )
-                .withType( getType() )
-                .withExternalRelation( getExternalRelation() )
-                .withExternalSource( getExternalSource() )
-                .withDescription( getDescription() )
+                .withSubject( first( dublinCoreAttributes.subjects() ) )
+                .withType( first( dublinCoreAttributes.types() ) )
+                .withExternalRelation( first( dublinCoreAttributes.relations() ) )
+                .withExternalSource( first( dublinCoreAttributes.sources() ) )
+                .withDescription( first( dublinCoreAttributes.descriptions() ) )
                 .withTags( getTags() )
                 .withDiscussion( getDiscussion() )
-                .withLockInfo( retrieveLockInfo( Paths.convert( path ) ) )
-                .withVersion( getVersion() )
+                .withLockInfo( retrieveLockInfo( Paths.convert( path ) ) );
+
+        if ( maxVersions == 0 ) {
+            return builder.build();
+        }
+
+        final VersionAttributes versionAttributes = versionAttributeView.readAttributes();
+        final List<VersionRecord> records = versionAttributes.history().records();
+        return builder
+                .withCheckinComment( getCheckinComment( records ) )
+                .withLastContributor( getLastContributor( records ) )
+                .withCreator( getCreator( records ) )
+                .withLastModified( new Date( versionAttributes.lastModifiedTime().toMillis() ) )
+                .withDateCreated( new Date( versionAttributes.creationTime().toMillis() ) )
+                .withVersion( getVersion( records ) )
                 .build();
     }
 
-    private ArrayList<VersionRecord> getVersion() {
-        return new ArrayList<VersionRecord>( versionAttributeView.readAttributes().history().records().size() ) {{
-            for ( final VersionRecord record : versionAttributeView.readAttributes().history().records() ) {
-                add( new PortableVersionRecord( record.id(), record.author(), record.email(), record.comment(), record.date(), record.uri() ) );
-            }
-        }};
+    private ArrayList<VersionRecord> getVersion( final List<VersionRecord> records ) {
+        final int first = maxVersions < 0 ? 0 : Math.max( 0,
+                                                          records.size() - maxVersions );
+        final ArrayList<VersionRecord> version = new ArrayList<VersionRecord>( records.size() - first );
+        for ( final VersionRecord record : records.subList( first,
+                                                            records.size() ) ) {
+            version.add( new PortableVersionRecord( record.id(), record.author(), record.email(), record.comment(), record.date(), record.uri() ) );
+        }
+        return version;
     }
 
     private List<DiscussionRecord> getDiscussion() {
@@ -103,56 +141,29 @@ public class MetadataCreator {
         return otherMetaView.readAttributes().tags();
     }
 
-    private String getDescription() {
-        return dublinCoreView.readAttributes().descriptions().size() > 0 ? dublinCoreView.readAttributes().descriptions().get( 0 ) : null;
-    }
-
-    private String getExternalSource() {
-        return dublinCoreView.readAttributes().sources().size() > 0 ? dublinCoreView.readAttributes().sources().get( 0 ) : null;
+    private static String first( final List<String> values ) {
+        return values.size() > 0 ? values.get( 0 ) : null;
     }
 
-    private String getExternalRelation() {
-        return dublinCoreView.readAttributes().relations().size() > 0 ? dublinCoreView.readAttributes().relations().get( 0 ) : null;
-    }
-
-    private String getType() {
-        return dublinCoreView.readAttributes().types().size() > 0 ? dublinCoreView.readAttributes().types().get( 0 ) : null;
-    }
-
-    private String getSubject() {
-        return dublinCoreView.readAttributes().subjects().size() > 0 ? dublinCoreView.readAttributes().subjects().get( 0 ) : null;
-    }
-
-    private Date getDateCreated() {
-        return new Date( versionAttributeView.readAttributes().creationTime().toMillis() );
-    }
-
-    private Date getLastModified() {
-        return new Date( versionAttributeView.readAttributes().lastModifiedTime().toMillis() );
-    }
-
-    private String getCreator() {
-        if ( versionAttributeView.readAttributes().history().records().size() > 0 ) {
-            return versionAttributeView.readAttributes().history().records().get( 0 ).author();
+    private String getCreator( final List<VersionRecord> records ) {
+        if ( records.size() > 0 ) {
+            return records.get( 0 ).author();
         } else {
             return null;
         }
     }
 
-    private String getLastContributor() {
-        if ( versionAttributeView.readAttributes().history().records().size() > 0 ) {
-            return versionAttributeView.readAttributes().history().records().get( versionAttributeView.readAttributes().history().records().size() - 1 ).author();
+    private String getLastContributor( final List<VersionRecord> records ) {
+        if ( records.size() > 0 ) {
+            return records.get( records.size() - 1 ).author();
         } else {
             return null;
         }
     }
 
-    private String getCheckinComment() {
-        VersionAttributes versionAttributes = versionAttributeView.readAttributes();
-        VersionHistory history = versionAttributes.history();
-        List<VersionRecord> records = history.records();
+    private String getCheckinComment( final List<VersionRecord> records ) {
         if ( records.size() > 0 ) {
-            return versionAttributeView.readAttributes().history().records().get( versionAttributeView.readAttributes().history().records().size() - 1 ).comment();
+            return records.get( records.size() - 1 ).comment();
         } else {
             return null;
         }
@@ -16,16 +16,26 @@
 
 package org.guvnor.common.services.backend.metadata;
 
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import javax.inject.Named;
 
 import org.guvnor.common.services.backend.exceptions.ExceptionUtilities;
+import org.guvnor.common.services.backend.executor.ParallelExecutor;
 import org.guvnor.common.services.backend.metadata.attribute.DiscussionAttributes;
 import org.guvnor.common.services.backend.metadata.attribute.DiscussionAttributesUtil;
 import org.guvnor.common.services.backend.metadata.attribute.DiscussionView;
@@ -57,6 +67,9 @@ public class MetadataServiceImpl
 
     private IOService ioService;
 
+    //Loads the Metadata of several paths in parallel
+    private ParallelExecutor metadataLoader;
+
     @Inject
     @Named("configIO")
     private IOService configIOService;
@@ -68,8 +81,10 @@ public class MetadataServiceImpl
     }
 
     @Inject
-    public MetadataServiceImpl( @Named("ioStrategy") IOService ioService ) {
+    public MetadataServiceImpl( @Named("ioStrategy") IOService ioService,
+                                ParallelExecutor metadataLoader ) {
         this.ioService = ioService;
+        this.metadataLoader = metadataLoader;
     }
 
     @Override
@@ -79,15 +94,104 @@ public class MetadataServiceImpl
 
     @Override
     public Metadata getMetadata( org.uberfire.java.nio.file.Path path ) {
+        return loadMetadata( path,
+                             -1 );
+    }
+
+    @Override
+    public List<Metadata> getMetadata( final List<Path> resources,
+                                       final int maxVersions ) {
+        checkNotNull( "resources",
+                      resources );
+        final List<org.uberfire.java.nio.file.Path> paths = new ArrayList<org.uberfire.java.nio.file.Path>( resources.size() );
+        for ( Path resource : resources ) {
+            paths.add( Paths.convert( resource ) );
+        }
+
+        final Map<org.uberfire.java.nio.file.Path, Metadata> loaded = new HashMap<org.uberfire.java.nio.file.Path, Metadata>();
+        final Iterator<Map.Entry<org.uberfire.java.nio.file.Path, Metadata>> itr = getMetadata( paths,
+                                                                                               maxVersions );
+        while ( itr.hasNext() ) {
+            final Map.Entry<org.uberfire.java.nio.file.Path, Metadata> e = itr.next();
+            loaded.put( e.getKey(),
+                        e.getValue() );
+        }
+
+        final List<Metadata> metadata = new ArrayList<Metadata>( paths.size() );
+        for ( org.uberfire.java.nio.file.Path path : paths ) {
+            metadata.add( loaded.get( path ) );
+        }
+        return metadata;
+    }
+
+    @Override
+    public Iterator<Map.Entry<org.uberfire.java.nio.file.Path, Metadata>> getMetadata( final Collection<org.uberfire.java.nio.file.Path> resources,
+                                                                                      final int maxVersions ) {
+        checkNotNull( "resources",
+                      resources );
+        final CompletionService<Map.Entry<org.uberfire.java.nio.file.Path, Metadata>> loader = new ExecutorCompletionService<Map.Entry<org.uberfire.java.nio.file.Path, Metadata>>( metadataLoader );
+        for ( final org.uberfire.java.nio.file.Path resource : resources ) {
+            loader.submit( new Callable<Map.Entry<org.uberfire.java.nio.file.Path, Metadata>>() {
+                @Override
+                public Map.Entry<org.uberfire.java.nio.file.Path, Metadata> call() throws Exception {
+                    return new AbstractMap.SimpleImmutableEntry<org.uberfire.java.nio.file.Path, Metadata>( resource,
+                                                                                                             loadMetadata( resource,
+                                                                                                                           maxVersions ) );
+                }
+            } );
+        }
+
+        final int count = resources.size();
+        return new Iterator<Map.Entry<org.uberfire.java.nio.file.Path, Metadata>>() {
+
+            private int returned = 0;
+
+            @Override
+            public boolean hasNext() {
+                return returned < count;
+            }
+
+            @Override
+            public Map.Entry<org.uberfire.java.nio.file.Path, Metadata> next() {
+                if ( !hasNext() ) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    final Future<Map.Entry<org.uberfire.java.nio.file.Path, Metadata>> loaded = loader.take();
+                    returned++;
+                    return loaded.get();
+                } catch ( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                    throw ExceptionUtilities.handleException( e );
+                } catch ( ExecutionException e ) {
+                    //loadMetadata has already converted the cause to a portable exception
+                    if ( e.getCause() instanceof RuntimeException ) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    throw ExceptionUtilities.handleException( e );
+                }
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
 
+    private Metadata loadMetadata( final org.uberfire.java.nio.file.Path path,
+                                   final int maxVersions ) {
         try {
+            //The history of the path is only read when versions are required
+            final VersionAttributeView versionAttributeView = maxVersions == 0 ? null : ioService.getFileAttributeView( path, VersionAttributeView.class );
             return new MetadataCreator( path,
                                         configIOService,
                                         sessionInfo,
                                         ioService.getFileAttributeView( path, DublinCoreView.class ),
                                         ioService.getFileAttributeView( path, DiscussionView.class ),
                                         ioService.getFileAttributeView( path, OtherMetaView.class ),
-                                        ioService.getFileAttributeView( path, VersionAttributeView.class ) ).create();
+                                        versionAttributeView,
+                                        maxVersions ).create();
 
         } catch ( Exception e ) {
             throw ExceptionUtilities.handleException( e );
@@ -15,27 +15,37 @@
  */
 package org.guvnor.common.services.backend.migration;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.event.Observes;
-import javax.enterprise.inject.Instance;
 import javax.inject.Inject;
 
 import org.guvnor.common.services.project.model.Project;
 import org.guvnor.common.services.project.security.ProjectAction;
-import org.guvnor.common.services.project.service.ProjectService;
 import org.guvnor.structure.organizationalunit.OrganizationalUnit;
 import org.guvnor.structure.organizationalunit.OrganizationalUnitService;
 import org.guvnor.structure.repositories.Repository;
 import org.guvnor.structure.repositories.RepositoryService;
 import org.guvnor.structure.security.OrganizationalUnitAction;
 import org.guvnor.structure.security.RepositoryAction;
+import org.guvnor.structure.server.config.ConfigGroup;
+import org.guvnor.structure.server.config.ConfigItem;
+import org.guvnor.structure.server.config.ConfigType;
+import org.guvnor.structure.server.config.ConfigurationFactory;
+import org.guvnor.structure.server.config.ConfigurationService;
 import org.jboss.errai.security.shared.api.Group;
 import org.jboss.errai.security.shared.api.GroupImpl;
 import org.uberfire.backend.authz.AuthorizationPolicyStorage;
 import org.uberfire.backend.events.AuthorizationPolicyDeployedEvent;
+import org.uberfire.backend.vfs.Path;
+import org.uberfire.security.ResourceRef;
 import org.uberfire.security.authz.AuthorizationPolicy;
 import org.uberfire.security.authz.Permission;
 import org.uberfire.security.authz.PermissionCollection;
@@ -55,13 +65,22 @@ import org.uberfire.security.authz.PermissionManager;
  *
  * <p>The migration procedure is carried out when an {@link AuthorizationPolicyDeployedEvent} is received, which means
  * the application is starting up and deploying the authorization policy for the first time.</p>
+ *
+ * <p>The groups of the projects are read from the project configuration entries, so the projects are never loaded.
+ * Once the policy is saved every repository migrated is marked as such in its configuration, and is skipped by any
+ * later migration.</p>
  */
 @ApplicationScoped
 public class ACLMigrationTool {
 
+    public static final String ACL_MIGRATED = "security:acl-migrated";
+
+    private static final String MASTER_BRANCH = "master";
+
     private OrganizationalUnitService organizationalUnitService;
     private RepositoryService repositoryService;
-    private Instance<ProjectService<?>> projectServices;
+    private ConfigurationService configurationService;
+    private ConfigurationFactory configurationFactory;
     private PermissionManager permissionManager;
     private AuthorizationPolicyStorage authorizationPolicyStorage;
     private Map<String,Group> groupMap = new HashMap<>();
@@ -69,12 +88,14 @@ public class ACLMigrationTool {
     @Inject
     public ACLMigrationTool(OrganizationalUnitService organizationalUnitService,
                             RepositoryService repositoryService,
-                            Instance<ProjectService<?>> projectServices,
+                            ConfigurationService configurationService,
+                            ConfigurationFactory configurationFactory,
                             PermissionManager permissionManager,
                             AuthorizationPolicyStorage authorizationPolicyStorage) {
         this.organizationalUnitService = organizationalUnitService;
         this.repositoryService = repositoryService;
-        this.projectServices = projectServices;
+        this.configurationService = configurationService;
+        this.configurationFactory = configurationFactory;
         this.permissionManager = permissionManager;
         this.authorizationPolicyStorage = authorizationPolicyStorage;
     }
@@ -82,8 +103,11 @@ public class ACLMigrationTool {
     public void onDeploy(@Observes AuthorizationPolicyDeployedEvent event) {
         AuthorizationPolicy policy = event.getPolicy();
         migrateOrgUnits(policy);
-        migrateRepositories(policy);
+        Collection<ConfigGroup> migrated = migrateRepositories(policy);
         authorizationPolicyStorage.savePolicy(policy);
+
+        //Only mark the repositories once their permissions are persisted, so an interrupted migration is repeated
+        markAsMigrated(migrated);
     }
 
     private Group getGroup(String groupName) {
@@ -95,47 +119,115 @@ public class ACLMigrationTool {
         return group;
     }
 
+    private void addPermission(AuthorizationPolicy policy, Permission p, Collection<String> groupNames) {
+        for (String groupName : groupNames) {
+            Group group = getGroup(groupName);
+            PermissionCollection pc = policy.getPermissions(group);
+            pc.add(p);
+        }
+    }
+
     public void migrateOrgUnits(AuthorizationPolicy policy) {
         Collection<OrganizationalUnit> itemList = organizationalUnitService.getAllOrganizationalUnits();
         for (OrganizationalUnit item : itemList) {
             Permission p = permissionManager.createPermission(item, OrganizationalUnitAction.READ, true);
-            for (String groupName : item.getGroups()) {
-                Group group = getGroup(groupName);
-                PermissionCollection pc = policy.getPermissions(group);
-                pc.add(p);
-            }
+            addPermission(policy, p, item.getGroups());
         }
     }
 
-    public void migrateRepositories(AuthorizationPolicy policy) {
+    /**
+     * Create the permissions of the repositories not yet migrated, and of their projects
+     * @return The configuration of the repositories migrated
+     */
+    public Collection<ConfigGroup> migrateRepositories(AuthorizationPolicy policy) {
+        Map<String,ConfigGroup> repositoryConfigs = getConfigsByName(ConfigType.REPOSITORY);
+        NavigableMap<String,ConfigGroup> projectConfigs = null;
+        List<ConfigGroup> migrated = new ArrayList<>();
+
         Collection<Repository> itemList = repositoryService.getAllRepositories();
         for (Repository item : itemList) {
+            ConfigGroup repositoryConfig = repositoryConfigs.get(item.getAlias());
+            if (isMigrated(repositoryConfig)) {
+                continue;
+            }
             Permission p = permissionManager.createPermission(item, RepositoryAction.READ, true);
-            for (String groupName : item.getGroups()) {
-                Group group = getGroup(groupName);
-                PermissionCollection pc = policy.getPermissions(group);
-                pc.add(p);
+            addPermission(policy, p, item.getGroups());
+
+            //Read the project configuration only if there is a repository to migrate
+            if (projectConfigs == null) {
+                projectConfigs = new TreeMap<>(getConfigsByName(ConfigType.PROJECT));
+            }
+            migrateProjects(policy, item, projectConfigs);
+
+            if (repositoryConfig != null) {
+                migrated.add(repositoryConfig);
+            }
+        }
+        return migrated;
+    }
+
+    public void migrateProjects(AuthorizationPolicy policy, Repository repository, NavigableMap<String,ConfigGroup> projectConfigs) {
+        Path root = repository.getBranchRoot(MASTER_BRANCH);
+        if (root == null) {
+            return;
+        }
+        //The configuration of a project is named after the URI of its root, so those in the branch share its prefix
+        String prefix = root.toURI().endsWith("/") ? root.toURI() : root.toURI() + "/";
+        Map<String,ConfigGroup> itemMap = projectConfigs.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+        for (ConfigGroup item : itemMap.values()) {
+            List<String> groupNames = getGroups(item);
+            if (!groupNames.isEmpty()) {
+                ResourceRef project = new ResourceRef(item.getName(), Project.RESOURCE_TYPE);
+                Permission p = permissionManager.createPermission(project, ProjectAction.READ, true);
+                addPermission(policy, p, groupNames);
+            }
+        }
+    }
+
+    public void markAsMigrated(Collection<ConfigGroup> repositoryConfigs) {
+        if (repositoryConfigs.isEmpty()) {
+            return;
+        }
+        configurationService.startBatch();
+        try {
+            for (ConfigGroup repositoryConfig : repositoryConfigs) {
+                repositoryConfig.setConfigItem(configurationFactory.newConfigItem(ACL_MIGRATED, true));
+                configurationService.updateConfiguration(repositoryConfig);
             }
-            migrateProjects(policy, item);
+        } finally {
+            configurationService.endBatch();
         }
     }
 
-    public void migrateProjects(AuthorizationPolicy policy, Repository repository) {
-        ProjectService projectService = getProjectService();
-        if (projectService != null) {
-            Collection<Project> itemList = projectService.getAllProjects(repository, "master");
-            for (Project item : itemList) {
-                Permission p = permissionManager.createPermission(item, ProjectAction.READ, true);
-                for (String groupName : item.getGroups()) {
-                    Group group = getGroup(groupName);
-                    PermissionCollection pc = policy.getPermissions(group);
-                    pc.add(p);
-                }
+    private boolean isMigrated(ConfigGroup repositoryConfig) {
+        if (repositoryConfig == null) {
+            return false;
+        }
+        ConfigItem<Boolean> item = repositoryConfig.getConfigItem(ACL_MIGRATED);
+        return item != null && Boolean.TRUE.equals(item.getValue());
+    }
+
+    private Map<String,ConfigGroup> getConfigsByName(ConfigType type) {
+        Map<String,ConfigGroup> configMap = new HashMap<>();
+        Collection<ConfigGroup> configs = configurationService.getConfiguration(type);
+        if (configs != null) {
+            for (ConfigGroup config : configs) {
+                configMap.put(config.getName(), config);
             }
         }
+        return configMap;
     }
 
-    public ProjectService getProjectService() {
-        return projectServices.get();
+    @SuppressWarnings("unchecked")
+    private List<String> getGroups(ConfigGroup projectConfig) {
+        //Older versions stored the groups as roles
+        ConfigItem<List<String>> groups = projectConfig.getConfigItem("security:groups");
+        if (groups == null) {
+            groups = projectConfig.getConfigItem("security:roles");
+        }
+        if (groups == null || groups.getValue() == null) {
+            return Collections.emptyList();
+        }
+        return groups.getValue();
     }
 }
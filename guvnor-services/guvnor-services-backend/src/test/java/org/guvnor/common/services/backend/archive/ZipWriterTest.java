@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.guvnor.common.services.backend.archive;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ZipWriterTest {
+
+    @Test
+    public void testEntriesAreWritten() throws Exception {
+        final byte[] text = new byte[ 200000 ];
+        Arrays.fill( text,
+                     (byte) 'a' );
+        final byte[] image = new byte[ 1000 ];
+
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final ZipWriter zipWriter = new ZipWriter( outputStream,
+                                                   Deflater.BEST_SPEED );
+        zipWriter.addFile( new ZipEntry( "folder/file.txt" ),
+                           new ByteArrayInputStream( text ) );
+        zipWriter.addFile( new ZipEntry( "folder/image.png" ),
+                           new ByteArrayInputStream( image ) );
+        zipWriter.finish();
+
+        final ZipInputStream zipInputStream = new ZipInputStream( new ByteArrayInputStream( outputStream.toByteArray() ) );
+        assertEquals( "folder/file.txt",
+                      zipInputStream.getNextEntry().getName() );
+        assertArrayEquals( text,
+                           read( zipInputStream ) );
+        assertEquals( "folder/image.png",
+                      zipInputStream.getNextEntry().getName() );
+        assertArrayEquals( image,
+                           read( zipInputStream ) );
+        assertNull( zipInputStream.getNextEntry() );
+
+        //The text compresses well, the image is only stored
+        assertTrue( outputStream.size() < text.length / 10 + image.length );
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCompressionLevel() {
+        new ZipWriter( new ByteArrayOutputStream(),
+                       10 );
+    }
+
+    @Test
+    public void testIsCompressed() {
+        assertTrue( ZipWriter.isCompressed( "project/lib/library.jar" ) );
+        assertTrue( ZipWriter.isCompressed( "images/Picture.PNG" ) );
+        assertFalse( ZipWriter.isCompressed( "project/src/main/resources/rules.drl" ) );
+        assertFalse( ZipWriter.isCompressed( "project.jar/README" ) );
+        assertFalse( ZipWriter.isCompressed( "README" ) );
+    }
+
+    private byte[] read( final ZipInputStream zipInputStream ) throws Exception {
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[ 1024 ];
+        int count;
+        while ( ( count = zipInputStream.read( buffer ) ) != -1 ) {
+            content.write( buffer,
+                           0,
+                           count );
+        }
+        return content.toByteArray();
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.guvnor.common.services.backend.executor;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ParallelExecutorTest {
+
+    private ExecutorService executorService;
+    private ParallelExecutor executor;
+
+    @Before
+    public void setup() {
+        //A single thread, so a task waiting for the task it executed would never complete if both were queued
+        executorService = Executors.newSingleThreadExecutor();
+        final ParallelExecutorManager executorManager = new ParallelExecutorManager();
+        executorManager.setExecutorService( executorService );
+        executor = new ParallelExecutor( executorManager );
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testTaskRunsOnExecutorService() throws Exception {
+        final FutureTask<Thread> task = new FutureTask<Thread>( new CurrentThread() );
+        executor.execute( task );
+
+        assertNotSame( Thread.currentThread(),
+                       task.get( 10,
+                                 TimeUnit.SECONDS ) );
+    }
+
+    @Test
+    public void testTaskExecutedByTaskRunsOnCallingThread() throws Exception {
+        final FutureTask<Boolean> task = new FutureTask<Boolean>( new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                final FutureTask<Thread> nested = new FutureTask<Thread>( new CurrentThread() );
+                executor.execute( nested );
+                return nested.get( 10,
+                                   TimeUnit.SECONDS ) == Thread.currentThread();
+            }
+        } );
+        executor.execute( task );
+
+        assertTrue( task.get( 10,
+                              TimeUnit.SECONDS ) );
+    }
+
+    private static class CurrentThread implements Callable<Thread> {
+
+        @Override
+        public Thread call() {
+            return Thread.currentThread();
+        }
+    }
+
+}
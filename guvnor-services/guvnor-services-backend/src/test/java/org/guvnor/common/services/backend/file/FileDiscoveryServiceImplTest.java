@@ -0,0 +1,142 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.guvnor.common.services.backend.file;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.uberfire.java.nio.file.Path;
+import org.uberfire.java.nio.fs.file.SimpleFileSystemProvider;
+
+import static org.junit.Assert.*;
+
+public class FileDiscoveryServiceImplTest {
+
+    private File root;
+    private Path rootPath;
+    private FileDiscoveryServiceImpl service;
+
+    @Before
+    public void setup() throws Exception {
+        root = File.createTempFile( "discovery",
+                                    "" );
+        root.delete();
+        createFile( "a.drl" );
+        createFile( "b.txt" );
+        createFile( "folder1/c.drl" );
+        createFile( "folder1/folder2/d.drl" );
+        createFile( "folder3/e.txt" );
+
+        rootPath = new SimpleFileSystemProvider().getPath( root.toURI() );
+        service = new FileDiscoveryServiceImpl();
+    }
+
+    @After
+    public void tearDown() {
+        service.shutdown();
+        delete( root );
+    }
+
+    @Test
+    public void testDiscoverFiles() {
+        final Collection<Path> files = service.discoverFiles( rootPath,
+                                                              new FileExtensionFilter( ".drl" ) );
+
+        assertEquals( names( "a.drl" ),
+                      names( files ) );
+    }
+
+    @Test
+    public void testDiscoverFilesRecursively() {
+        final Collection<Path> files = service.discoverFiles( rootPath,
+                                                              new FileExtensionFilter( ".drl" ),
+                                                              true );
+
+        assertEquals( names( "a.drl",
+                             "c.drl",
+                             "d.drl" ),
+                      names( files ) );
+    }
+
+    @Test
+    public void testDiscoverFile() {
+        final Collection<Path> files = service.discoverFiles( rootPath.resolve( "a.drl" ),
+                                                              new FileExtensionFilter( ".drl" ),
+                                                              true );
+
+        assertEquals( names( "a.drl" ),
+                      names( files ) );
+    }
+
+    @Test
+    public void testDiscoverFilesInParallel() {
+        final Set<Path> files = Collections.newSetFromMap( new ConcurrentHashMap<Path, Boolean>() );
+        service.discoverFilesInParallel( rootPath,
+                                         new FileExtensionFilter( ".txt" ),
+                                         new FileDiscoveryService.DiscoveredFileVisitor() {
+                                             @Override
+                                             public void visitFile( final Path path ) {
+                                                 files.add( path );
+                                             }
+                                         } );
+
+        assertEquals( names( "b.txt",
+                             "e.txt" ),
+                      names( files ) );
+    }
+
+    private void createFile( final String name ) throws Exception {
+        final File file = new File( root,
+                                    name );
+        file.getParentFile().mkdirs();
+        file.createNewFile();
+    }
+
+    private void delete( final File file ) {
+        final File[] children = file.listFiles();
+        if ( children != null ) {
+            for ( File child : children ) {
+                delete( child );
+            }
+        }
+        file.delete();
+    }
+
+    private Set<String> names( final String... names ) {
+        final Set<String> result = new HashSet<String>();
+        for ( String name : names ) {
+            result.add( name );
+        }
+        return result;
+    }
+
+    private Set<String> names( final Collection<Path> paths ) {
+        final Set<String> result = new HashSet<String>();
+        for ( Path path : paths ) {
+            result.add( path.getFileName().toString() );
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.guvnor.common.services.backend.file.upload;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.IOUtils;
+import org.guvnor.common.services.shared.file.upload.FileManagerFields;
+import org.guvnor.common.services.shared.file.upload.FileOperation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.uberfire.backend.server.util.Paths;
+import org.uberfire.backend.vfs.Path;
+import org.uberfire.java.nio.fs.file.SimpleFileSystemProvider;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class AbstractFileServletTest {
+
+    private static final String BOUNDARY = "----boundary";
+
+    //Larger than the size up to which DiskFileItemFactory holds uploads in memory
+    private static final byte[] CONTENT = new byte[ 20000 ];
+
+    private File root;
+    private org.uberfire.java.nio.file.Path rootPath;
+    private Map<String, byte[]> created;
+    private Map<String, byte[]> updated;
+    private HttpServletResponse response;
+    private StringWriter responseContent;
+
+    static {
+        Arrays.fill( CONTENT,
+                     (byte) 'x' );
+    }
+
+    @Before
+    public void setup() throws Exception {
+        root = File.createTempFile( "upload",
+                                    "" );
+        root.delete();
+        root.mkdirs();
+        rootPath = new SimpleFileSystemProvider().getPath( root.toURI() );
+        created = new HashMap<String, byte[]>();
+        updated = new HashMap<String, byte[]>();
+
+        responseContent = new StringWriter();
+        response = mock( HttpServletResponse.class );
+        when( response.getWriter() ).thenReturn( new PrintWriter( responseContent ) );
+    }
+
+    @After
+    public void tearDown() {
+        root.delete();
+    }
+
+    @Test
+    public void testFieldsBeforeFile() throws Exception {
+        final int temporaryFiles = countTemporaryFiles();
+
+        newServlet().doPost( request( field( FileManagerFields.FORM_FIELD_OPERATION,
+                                             FileOperation.CREATE.name() ),
+                                      field( FileManagerFields.FORM_FIELD_PATH,
+                                             "folder" ),
+                                      field( FileManagerFields.FORM_FIELD_NAME,
+                                             "file.txt" ),
+                                      file( "file.txt",
+                                            CONTENT ) ),
+                             response );
+
+        assertEquals( "OK",
+                      responseContent.toString() );
+        assertArrayEquals( CONTENT,
+                           created.get( "file.txt" ) );
+        //The file was written to its target as it was received, rather than buffered
+        assertEquals( temporaryFiles,
+                      countTemporaryFiles() );
+    }
+
+    @Test
+    public void testFieldsAfterFile() throws Exception {
+        final int temporaryFiles = countTemporaryFiles();
+
+        newServlet().doPost( request( file( "file.txt",
+                                            CONTENT ),
+                                      field( FileManagerFields.FORM_FIELD_OPERATION,
+                                             FileOperation.UPDATE.name() ),
+                                      field( FileManagerFields.FORM_FIELD_FULL_PATH,
+                                             "file.txt" ) ),
+                             response );
+
+        assertEquals( "OK",
+                      responseContent.toString() );
+        assertArrayEquals( CONTENT,
+                           updated.get( "file.txt" ) );
+        assertEquals( temporaryFiles,
+                      countTemporaryFiles() );
+    }
+
+    @Test
+    public void testFileSizeLimitExceeded() throws Exception {
+        final int temporaryFiles = countTemporaryFiles();
+        final AbstractFileServlet servlet;
+        System.setProperty( "org.guvnor.upload.max-file-size",
+                            "1000" );
+        try {
+            servlet = newServlet();
+        } finally {
+            System.clearProperty( "org.guvnor.upload.max-file-size" );
+        }
+
+        try {
+            servlet.doPost( request( file( "file.txt",
+                                           CONTENT ),
+                                     field( FileManagerFields.FORM_FIELD_OPERATION,
+                                            FileOperation.UPDATE.name() ),
+                                     field( FileManagerFields.FORM_FIELD_FULL_PATH,
+                                            "file.txt" ) ),
+                            response );
+            fail( "The file is larger than allowed" );
+        } catch ( IOException | org.uberfire.java.nio.IOException e ) {
+            //Expected
+        }
+
+        assertTrue( updated.isEmpty() );
+        assertEquals( temporaryFiles,
+                      countTemporaryFiles() );
+    }
+
+    @Test
+    public void testTemporaryFileRemovedOnFailure() throws Exception {
+        final int temporaryFiles = countTemporaryFiles();
+
+        try {
+            //The operation is missing, so the target of the buffered file cannot be resolved
+            newServlet().doPost( request( file( "file.txt",
+                                                CONTENT ),
+                                          field( FileManagerFields.FORM_FIELD_FULL_PATH,
+                                                 "file.txt" ) ),
+                                 response );
+            fail( "The operation is missing" );
+        } catch ( org.uberfire.java.nio.IOException e ) {
+            //Expected
+        }
+
+        assertTrue( updated.isEmpty() );
+        assertEquals( temporaryFiles,
+                      countTemporaryFiles() );
+    }
+
+    private AbstractFileServlet newServlet() {
+        return new AbstractFileServlet() {
+            @Override
+            protected InputStream doLoad( final Path path,
+                                          final HttpServletRequest request ) {
+                return null;
+            }
+
+            @Override
+            protected void doCreate( final Path path,
+                                     final InputStream data,
+                                     final HttpServletRequest request,
+                                     final String comment ) {
+                created.put( path.getFileName(),
+                             read( data ) );
+            }
+
+            @Override
+            protected void doUpdate( final Path path,
+                                     final InputStream data,
+                                     final HttpServletRequest request,
+                                     final String comment ) {
+                updated.put( path.getFileName(),
+                             read( data ) );
+            }
+
+            @Override
+            protected Path convertPath( final String fileName,
+                                        final String contextPath ) {
+                return Paths.convert( rootPath.resolve( fileName ) );
+            }
+
+            @Override
+            protected Path convertPath( final String fullPath ) {
+                return Paths.convert( rootPath.resolve( fullPath ) );
+            }
+
+            @Override
+            protected boolean validateAccess( final org.uberfire.java.nio.file.Path path,
+                                              final HttpServletResponse response ) {
+                return true;
+            }
+        };
+    }
+
+    private static byte[] read( final InputStream data ) {
+        try {
+            return IOUtils.toByteArray( data );
+        } catch ( IOException e ) {
+            throw new RuntimeException( e );
+        }
+    }
+
+    private static int countTemporaryFiles() {
+        final String[] names = new File( System.getProperty( "java.io.tmpdir" ) ).list();
+        int count = 0;
+        for ( String name : names ) {
+            if ( name.startsWith( "upload_" ) && name.endsWith( ".tmp" ) ) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static byte[] field( final String name,
+                                 final String value ) throws IOException {
+        return part( "name=\"" + name + "\"",
+                     value.getBytes( "UTF-8" ) );
+    }
+
+    private static byte[] file( final String fileName,
+                                final byte[] content ) throws IOException {
+        return part( "name=\"file\"; filename=\"" + fileName + "\"\r\nContent-Type: application/octet-stream",
+                     content );
+    }
+
+    private static byte[] part( final String disposition,
+                                final byte[] content ) throws IOException {
+        final ByteArrayOutputStream part = new ByteArrayOutputStream();
+        part.write( ( "--" + BOUNDARY + "\r\nContent-Disposition: form-data; " + disposition + "\r\n\r\n" ).getBytes( "UTF-8" ) );
+        part.write( content );
+        part.write( "\r\n".getBytes( "UTF-8" ) );
+        return part.toByteArray();
+    }
+
+    private static HttpServletRequest request( final byte[]... parts ) throws IOException {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for ( byte[] part : parts ) {
+            body.write( part );
+        }
+        body.write( ( "--" + BOUNDARY + "--\r\n" ).getBytes( "UTF-8" ) );
+        final ByteArrayInputStream input = new ByteArrayInputStream( body.toByteArray() );
+
+        final HttpServletRequest request = mock( HttpServletRequest.class );
+        when( request.getMethod() ).thenReturn( "POST" );
+        when( request.getContentType() ).thenReturn( "multipart/form-data; boundary=" + BOUNDARY );
+        when( request.getContentLength() ).thenReturn( body.size() );
+        when( request.getInputStream() ).thenReturn( new ServletInputStream() {
+            @Override
+            public int read() throws IOException {
+                return input.read();
+            }
+
+            @Override
+            public int read( final byte[] b,
+                             final int off,
+                             final int len ) throws IOException {
+                return input.read( b,
+                                   off,
+                                   len );
+            }
+
+            @Override
+            public boolean isFinished() {
+                return input.available() == 0;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setReadListener( final ReadListener readListener ) {
+            }
+        } );
+        return request;
+    }
+
+}
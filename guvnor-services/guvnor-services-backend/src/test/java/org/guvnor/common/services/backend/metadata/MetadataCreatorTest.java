@@ -109,6 +109,44 @@ public class MetadataCreatorTest {
         assertNotNull( metadata.getVersion() );
     }
 
+    @Test
+    public void testLatestVersions() throws Exception {
+        versionRecords.add( createVersionRecord() );
+        versionRecords.add( createVersionRecord() );
+
+        final Metadata metadata = new MetadataCreator( mainFilePath,
+                                                       configIOService,
+                                                       sessionInfo,
+                                                       dcoreView,
+                                                       discussView,
+                                                       otherMetaView,
+                                                       versionAttributeView,
+                                                       2 ).create();
+
+        assertEquals( 2,
+                      metadata.getVersion().size() );
+        assertEquals( "admin",
+                      metadata.getCreator() );
+        verify( versionAttributeView,
+                times( 1 ) ).readAttributes();
+    }
+
+    @Test
+    public void testWithoutVersions() throws Exception {
+        final Metadata metadata = new MetadataCreator( mainFilePath,
+                                                       configIOService,
+                                                       sessionInfo,
+                                                       dcoreView,
+                                                       discussView,
+                                                       otherMetaView,
+                                                       null,
+                                                       0 ).create();
+
+        assertNotNull( metadata.getTags() );
+        assertTrue( metadata.getVersion().isEmpty() );
+        assertNull( metadata.getCreator() );
+    }
+
     @Test
     //See https://issues.jboss.org/browse/GUVNOR-2399
     public void testConcurrency() throws Throwable {
@@ -16,17 +16,40 @@
 package org.guvnor.common.services.backend.metadata;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
-
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.guvnor.common.services.backend.executor.ParallelExecutor;
+import org.guvnor.common.services.backend.executor.ParallelExecutorManager;
+import org.guvnor.common.services.backend.metadata.attribute.DiscussionAttributes;
+import org.guvnor.common.services.backend.metadata.attribute.DiscussionView;
+import org.guvnor.common.services.backend.metadata.attribute.OtherMetaAttributes;
 import org.guvnor.common.services.backend.metadata.attribute.OtherMetaView;
+import org.guvnor.common.services.shared.metadata.model.Metadata;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import org.uberfire.backend.server.util.Paths;
 import org.uberfire.io.IOService;
+import org.uberfire.io.attribute.DublinCoreAttributes;
+import org.uberfire.io.attribute.DublinCoreView;
 import org.uberfire.java.nio.file.Path;
 import org.uberfire.java.nio.fs.file.SimpleFileSystemProvider;
+import org.uberfire.rpc.SessionInfo;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
@@ -39,10 +62,23 @@ public class MetadataServiceImplTest {
     @Mock
     private IOService ioService;
 
+    @Mock
+    private IOService configIOService;
+
+    @Mock
+    private SessionInfo sessionInfo;
+
     @Mock
     private OtherMetaView otherMetaView;
 
+    @Mock
+    private DublinCoreView dublinCoreView;
+
+    @Mock
+    private DiscussionView discussionView;
+
     private Path path;
+    private ExecutorService executorService;
     private MetadataServerSideService service;
 
     @Before
@@ -54,7 +90,22 @@ public class MetadataServiceImplTest {
 
         path = fileSystemProvider.getPath( this.getClass().getResource( "myfile.file" ).toURI() );
 
-        service = new MetadataServiceImpl( ioService );
+        //Enough threads to load the Metadata of all the paths of a test at the same time
+        executorService = Executors.newFixedThreadPool( 3 );
+        final ParallelExecutorManager executorManager = new ParallelExecutorManager();
+        executorManager.setExecutorService( executorService );
+
+        service = new MetadataServiceImpl( ioService,
+                                           new ParallelExecutor( executorManager ) );
+        setField( "configIOService",
+                  configIOService );
+        setField( "sessionInfo",
+                  sessionInfo );
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
     }
 
     @Test
@@ -100,4 +151,100 @@ public class MetadataServiceImplTest {
                       tags.size() );
     }
 
+    @Test
+    public void testGetMetadataOfSeveralPathsInParallel() {
+        final List<Path> paths = Arrays.asList( path,
+                                                path.getParent(),
+                                                path.getParent().getParent() );
+        //Each load waits for the others to start, so the loads only complete when run in parallel
+        final CountDownLatch loading = new CountDownLatch( paths.size() );
+        mockViews( new Answer<DublinCoreAttributes>() {
+            @Override
+            public DublinCoreAttributes answer( final InvocationOnMock invocation ) throws Throwable {
+                loading.countDown();
+                if ( !loading.await( 10,
+                                     TimeUnit.SECONDS ) ) {
+                    throw new IllegalStateException( "The Metadata is not loaded in parallel" );
+                }
+                return mock( DublinCoreAttributes.class );
+            }
+        } );
+
+        final Set<Path> loaded = new HashSet<Path>();
+        final Iterator<Map.Entry<Path, Metadata>> itr = service.getMetadata( paths,
+                                                                              0 );
+        while ( itr.hasNext() ) {
+            final Map.Entry<Path, Metadata> e = itr.next();
+            assertEquals( Paths.convert( e.getKey() ),
+                          e.getValue().getPath() );
+            assertTrue( loaded.add( e.getKey() ) );
+        }
+
+        assertEquals( new HashSet<Path>( paths ),
+                      loaded );
+        try {
+            itr.next();
+            fail( "All the Metadata has been returned" );
+        } catch ( NoSuchElementException e ) {
+            //Expected
+        }
+    }
+
+    @Test
+    public void testGetMetadataOfSeveralPathsWhenLoadFails() {
+        final Path failing = path.getParent();
+        final List<Path> paths = Arrays.asList( path,
+                                                failing,
+                                                path.getParent().getParent() );
+        mockViews( new Answer<DublinCoreAttributes>() {
+            @Override
+            public DublinCoreAttributes answer( final InvocationOnMock invocation ) throws Throwable {
+                return mock( DublinCoreAttributes.class );
+            }
+        } );
+        when( ioService.getFileAttributeView( failing,
+                                              DublinCoreView.class ) ).thenThrow( new RuntimeException( "Load failed" ) );
+
+        //The failure is thrown in place of the Metadata of the failing path, the Metadata of the others is returned
+        final Set<Path> loaded = new HashSet<Path>();
+        int failures = 0;
+        final Iterator<Map.Entry<Path, Metadata>> itr = service.getMetadata( paths,
+                                                                              0 );
+        while ( itr.hasNext() ) {
+            try {
+                loaded.add( itr.next().getKey() );
+            } catch ( RuntimeException e ) {
+                assertEquals( "Load failed",
+                              e.getMessage() );
+                failures++;
+            }
+        }
+
+        assertEquals( 1,
+                      failures );
+        assertEquals( new HashSet<Path>( Arrays.asList( path,
+                                                        path.getParent().getParent() ) ),
+                      loaded );
+    }
+
+    private void mockViews( final Answer<DublinCoreAttributes> dublinCoreAttributes ) {
+        when( dublinCoreView.readAttributes() ).thenAnswer( dublinCoreAttributes );
+        when( discussionView.readAttributes() ).thenReturn( mock( DiscussionAttributes.class ) );
+        when( otherMetaView.readAttributes() ).thenReturn( mock( OtherMetaAttributes.class ) );
+        when( ioService.getFileAttributeView( any( Path.class ),
+                                              eq( DublinCoreView.class ) ) ).thenReturn( dublinCoreView );
+        when( ioService.getFileAttributeView( any( Path.class ),
+                                              eq( DiscussionView.class ) ) ).thenReturn( discussionView );
+        when( ioService.getFileAttributeView( any( Path.class ),
+                                              eq( OtherMetaView.class ) ) ).thenReturn( otherMetaView );
+    }
+
+    private void setField( final String name,
+                           final Object value ) throws Exception {
+        final java.lang.reflect.Field field = MetadataServiceImpl.class.getDeclaredField( name );
+        field.setAccessible( true );
+        field.set( service,
+                   value );
+    }
+
 }
\ No newline at end of file
@@ -15,16 +15,20 @@
  */
 package org.guvnor.common.services.backend.migration;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
-import javax.enterprise.inject.Instance;
-
-import org.guvnor.common.services.project.model.Project;
-import org.guvnor.common.services.project.service.ProjectService;
 import org.guvnor.structure.organizationalunit.OrganizationalUnit;
 import org.guvnor.structure.organizationalunit.OrganizationalUnitService;
 import org.guvnor.structure.repositories.Repository;
 import org.guvnor.structure.repositories.RepositoryService;
+import org.guvnor.structure.server.config.ConfigGroup;
+import org.guvnor.structure.server.config.ConfigItem;
+import org.guvnor.structure.server.config.ConfigType;
+import org.guvnor.structure.server.config.ConfigurationFactory;
+import org.guvnor.structure.server.config.ConfigurationService;
 import org.jboss.errai.security.shared.api.GroupImpl;
 import org.junit.Before;
 import org.junit.Test;
@@ -32,9 +36,12 @@ import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
 import org.uberfire.backend.authz.AuthorizationPolicyStorage;
 import org.uberfire.backend.events.AuthorizationPolicyDeployedEvent;
+import org.uberfire.backend.vfs.Path;
 import org.uberfire.security.authz.AuthorizationPolicy;
 import org.uberfire.security.authz.AuthorizationResult;
 import org.uberfire.security.authz.Permission;
@@ -58,7 +65,10 @@ public class ACLMigrationToolTest {
     RepositoryService repositoryService;
 
     @Mock
-    ProjectService projectService;
+    ConfigurationService configurationService;
+
+    @Mock
+    ConfigurationFactory configurationFactory;
 
     @Mock
     OrganizationalUnit orgUnit1;
@@ -67,7 +77,7 @@ public class ACLMigrationToolTest {
     Repository repo1;
 
     @Mock
-    Project project1;
+    Path repo1Root;
 
     @Spy
     @InjectMocks
@@ -75,17 +85,16 @@ public class ACLMigrationToolTest {
 
     PermissionManager permissionManager;
     AuthorizationPolicy authorizationPolicy;
+    ConfigGroup repo1Config;
 
     @Before
     public void setUp() {
         permissionManager = new DefaultPermissionManager();
         authorizationPolicy = permissionManager.newAuthorizationPolicy().build();
-        migrationTool = spy(new ACLMigrationTool(organizationalUnitService, repositoryService, mock(Instance.class), permissionManager, policyStorage));
+        migrationTool = spy(new ACLMigrationTool(organizationalUnitService, repositoryService, configurationService, configurationFactory, permissionManager, policyStorage));
 
-        when(migrationTool.getProjectService()).thenReturn(projectService);
         when(organizationalUnitService.getAllOrganizationalUnits()).thenReturn(Collections.singleton(orgUnit1));
         when(repositoryService.getAllRepositories()).thenReturn(Collections.singleton(repo1));
-        when(projectService.getAllProjects(repo1, "master")).thenReturn(Collections.singleton(project1));
 
         when(orgUnit1.getIdentifier()).thenReturn("orgUnit1");
         when(orgUnit1.getResourceType()).thenReturn(OrganizationalUnit.RESOURCE_TYPE);
@@ -94,10 +103,38 @@ public class ACLMigrationToolTest {
         when(repo1.getIdentifier()).thenReturn("repo1");
         when(repo1.getResourceType()).thenReturn(Repository.RESOURCE_TYPE);
         when(repo1.getGroups()).thenReturn(Collections.singleton("group1"));
+        when(repo1.getAlias()).thenReturn("repo1");
+        when(repo1.getBranchRoot("master")).thenReturn(repo1Root);
+        when(repo1Root.toURI()).thenReturn("default://master@repo1/");
+
+        repo1Config = configGroup("repo1");
+        when(configurationService.getConfiguration(ConfigType.REPOSITORY)).thenReturn(Collections.singletonList(repo1Config));
+        when(configurationService.getConfiguration(ConfigType.PROJECT)).thenReturn(Arrays.asList(projectConfig("default://master@repo1/project1", "group2"),
+                                                                                                  projectConfig("default://master@repo10/project2", "group3")));
+        when(configurationFactory.newConfigItem(anyString(), anyBoolean())).thenAnswer(new Answer<ConfigItem<Boolean>>() {
+            @Override
+            public ConfigItem<Boolean> answer(InvocationOnMock invocation) throws Throwable {
+                ConfigItem<Boolean> item = new ConfigItem<>();
+                item.setName((String) invocation.getArguments()[0]);
+                item.setValue((Boolean) invocation.getArguments()[1]);
+                return item;
+            }
+        });
+    }
 
-        when(project1.getIdentifier()).thenReturn("project1");
-        when(project1.getResourceType()).thenReturn(Project.RESOURCE_TYPE);
-        when(project1.getGroups()).thenReturn(Collections.singleton("group2"));
+    private ConfigGroup configGroup(String name) {
+        ConfigGroup group = new ConfigGroup();
+        group.setName(name);
+        return group;
+    }
+
+    private ConfigGroup projectConfig(String name, String groupName) {
+        ConfigGroup group = configGroup(name);
+        ConfigItem<List<String>> groups = new ConfigItem<>();
+        groups.setName("security:groups");
+        groups.setValue(new ArrayList<>(Collections.singletonList(groupName)));
+        group.addConfigItem(groups);
+        return group;
     }
 
     @Test
@@ -127,8 +164,25 @@ public class ACLMigrationToolTest {
         assertNotNull(pc2);
         assertEquals(pc2.collection().size(), 1);
 
-        Permission p3 = pc2.get("project.read.project1");
+        Permission p3 = pc2.get("project.read.default://master@repo1/project1");
         assertNotNull(p3);
         assertEquals(p3.getResult(), AuthorizationResult.ACCESS_GRANTED);
+
+        assertEquals(repo1Config.getConfigItem(ACLMigrationTool.ACL_MIGRATED).getValue(), Boolean.TRUE);
+        verify(configurationService).updateConfiguration(repo1Config);
+    }
+
+    @Test
+    public void migratedRepositoryIsSkippedTest() {
+        migrationTool.onDeploy(new AuthorizationPolicyDeployedEvent(authorizationPolicy));
+
+        AuthorizationPolicy nextPolicy = permissionManager.newAuthorizationPolicy().build();
+        migrationTool.onDeploy(new AuthorizationPolicyDeployedEvent(nextPolicy));
+
+        //Only the organizational unit is migrated again
+        assertEquals(nextPolicy.getGroups().size(), 1);
+        assertNull(nextPolicy.getPermissions(new GroupImpl("group1")).get("repository.read.repo1"));
+        verify(configurationService, times(1)).getConfiguration(ConfigType.PROJECT);
+        verify(configurationService, times(1)).updateConfiguration(repo1Config);
     }
 }
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.structure.backend.config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.guvnor.structure.server.config.ConfigGroup;
+import org.guvnor.structure.server.config.ConfigType;
+
+/**
+ * Server-side event describing the ConfigGroups that changed in the system repository as a result of
+ * changes made by another node of a cluster. Where the individual changes of a ConfigType could not be
+ * determined the ConfigType is flagged as reloaded and observers should reload all ConfigGroups of that type.
+ */
+public class ConfigGroupsChangedEvent {
+
+    private final Map<ConfigType, List<ConfigGroup>> added = new EnumMap<ConfigType, List<ConfigGroup>>( ConfigType.class );
+    private final Map<ConfigType, List<ConfigGroup>> updated = new EnumMap<ConfigType, List<ConfigGroup>>( ConfigType.class );
+    private final Map<ConfigType, List<ConfigGroup>> removed = new EnumMap<ConfigType, List<ConfigGroup>>( ConfigType.class );
+    private final Set<ConfigType> reloaded = EnumSet.noneOf( ConfigType.class );
+
+    public void added( final ConfigGroup configGroup ) {
+        add( added,
+             configGroup );
+    }
+
+    public void updated( final ConfigGroup configGroup ) {
+        add( updated,
+             configGroup );
+    }
+
+    public void removed( final ConfigGroup configGroup ) {
+        add( removed,
+             configGroup );
+    }
+
+    public void reloaded( final ConfigType type ) {
+        reloaded.add( type );
+    }
+
+    public void reloadedAll() {
+        reloaded.addAll( EnumSet.allOf( ConfigType.class ) );
+    }
+
+    public List<ConfigGroup> getAdded( final ConfigType type ) {
+        return get( added,
+                    type );
+    }
+
+    public List<ConfigGroup> getUpdated( final ConfigType type ) {
+        return get( updated,
+                    type );
+    }
+
+    public List<ConfigGroup> getRemoved( final ConfigType type ) {
+        return get( removed,
+                    type );
+    }
+
+    /**
+     * @param type The ConfigType
+     * @return true if all ConfigGroups of the type need to be reloaded, as the individual changes are unknown
+     */
+    public boolean isReloaded( final ConfigType type ) {
+        return reloaded.contains( type );
+    }
+
+    /**
+     * @param type The ConfigType
+     * @return true if any ConfigGroup of the type has changed
+     */
+    public boolean hasChanges( final ConfigType type ) {
+        return isReloaded( type ) || added.containsKey( type ) || updated.containsKey( type ) || removed.containsKey( type );
+    }
+
+    public boolean isEmpty() {
+        return reloaded.isEmpty() && added.isEmpty() && updated.isEmpty() && removed.isEmpty();
+    }
+
+    private void add( final Map<ConfigType, List<ConfigGroup>> changes,
+                      final ConfigGroup configGroup ) {
+        List<ConfigGroup> configGroups = changes.get( configGroup.getType() );
+        if ( configGroups == null ) {
+            configGroups = new ArrayList<ConfigGroup>();
+            changes.put( configGroup.getType(),
+                         configGroups );
+        }
+        configGroups.add( configGroup );
+    }
+
+    private List<ConfigGroup> get( final Map<ConfigType, List<ConfigGroup>> changes,
+                                   final ConfigType type ) {
+        final List<ConfigGroup> configGroups = changes.get( type );
+        if ( configGroups == null ) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList( configGroups );
+    }
+
+}
@@ -16,8 +16,10 @@
 package org.guvnor.structure.backend.config;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -27,6 +29,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
@@ -84,10 +87,14 @@ public class ConfigurationServiceImpl implements ConfigurationService,
     @Inject
     private User identity;
 
-    //Cache of ConfigGroups to avoid reloading them from file
-    private final Map<ConfigType, List<ConfigGroup>> configuration = new ConcurrentHashMap<ConfigType, List<ConfigGroup>>();
+    //Cache of ConfigGroups to avoid reloading them from file. Changes are patched in, file by file.
+    private final Map<ConfigType, CachedConfigGroups> configuration = new ConcurrentHashMap<ConfigType, CachedConfigGroups>();
     private AtomicLong localLastModifiedValue = new AtomicLong( -1 );
 
+    //Names of the files changed in the system repository since the cache was last brought up to date
+    private final Set<String> changedFileNames = Collections.newSetFromMap( new ConcurrentHashMap<String, Boolean>() );
+    private final AtomicBoolean unknownChanges = new AtomicBoolean( false );
+
     @Inject
     @Named("configIO")
     private IOService ioService;
@@ -101,6 +108,14 @@ public class ConfigurationServiceImpl implements ConfigurationService,
     private Event<SystemRepositoryChangedEvent> orgUnitChangedEvent;
     @Inject
     private Event<SystemRepositoryChangedEvent> changedEvent;
+    @Inject
+    @Repository
+    private Event<ConfigGroupsChangedEvent> repoConfigChangedEvent;
+    @Inject
+    @OrgUnit
+    private Event<ConfigGroupsChangedEvent> orgUnitConfigChangedEvent;
+    @Inject
+    private Event<ConfigGroupsChangedEvent> configChangedEvent;
 
     private final ExecutorService executorService = Executors.newSingleThreadExecutor();
 
@@ -194,34 +209,47 @@ public class ConfigurationServiceImpl implements ConfigurationService,
 
     @Override
     public List<ConfigGroup> getConfiguration( final ConfigType type ) {
-        if ( configuration.containsKey( type ) ) {
-            return configuration.get( type );
-        }
-        final List<ConfigGroup> configGroups = new ArrayList<ConfigGroup>();
-        final DirectoryStream<Path> foundConfigs = ioService.newDirectoryStream( ioService.get( systemRepository.getUri() ),
-                                                                                 new DirectoryStream.Filter<Path>() {
-                                                                                     @Override
-                                                                                     public boolean accept( final Path entry ) throws IOException {
-                                                                                         if ( !Files.isDirectory( entry ) &&
-                                                                                                 !entry.getFileName().toString().startsWith( "." ) &&
-                                                                                                 entry.getFileName().toString().endsWith( type.getExt() ) ) {
-                                                                                             return true;
+        final CachedConfigGroups cached = configuration.get( type );
+        if ( cached != null ) {
+            return cached.getConfigGroups();
+        }
+        synchronized ( configuration ) {
+            if ( configuration.containsKey( type ) ) {
+                return configuration.get( type ).getConfigGroups();
+            }
+            final CachedConfigGroups configGroups = new CachedConfigGroups();
+            final DirectoryStream<Path> foundConfigs = ioService.newDirectoryStream( ioService.get( systemRepository.getUri() ),
+                                                                                     new DirectoryStream.Filter<Path>() {
+                                                                                         @Override
+                                                                                         public boolean accept( final Path entry ) throws IOException {
+                                                                                             if ( !Files.isDirectory( entry ) &&
+                                                                                                     !entry.getFileName().toString().startsWith( "." ) &&
+                                                                                                     entry.getFileName().toString().endsWith( type.getExt() ) ) {
+                                                                                                 return true;
+                                                                                             }
+                                                                                             return false;
                                                                                          }
-                                                                                         return false;
                                                                                      }
-                                                                                 }
-                                                                               );
-        //Only load and cache if a file was found!
-        final Iterator<Path> it = foundConfigs.iterator();
-        if ( it.hasNext() ) {
-            while ( it.hasNext() ) {
-                final String content = ioService.readAllString( it.next() );
-                final ConfigGroup configGroup = marshaller.unmarshall( content );
-                configGroups.add( configGroup );
+                                                                                   );
+            try {
+                final Iterator<Path> it = foundConfigs.iterator();
+                while ( it.hasNext() ) {
+                    final Path path = it.next();
+                    final String content = ioService.readAllString( path );
+                    configGroups.put( path.getFileName().toString(),
+                                      content,
+                                      marshaller.unmarshall( content ) );
+                }
+            } finally {
+                foundConfigs.close();
+            }
+            //Only cache if a file was found!
+            if ( !configGroups.isEmpty() ) {
+                configuration.put( type,
+                                   configGroups );
             }
-            configuration.put( type, configGroups );
+            return configGroups.getConfigGroups();
         }
-        return configGroups;
     }
 
     @Override
@@ -236,9 +264,10 @@ public class ConfigurationServiceImpl implements ConfigurationService,
 
         final CommentedOption commentedOption = new CommentedOption( getIdentityName(),
                                                                      "Created config " + filePath.getFileName() );
+        final String content = marshaller.marshall( configGroup );
         try {
             ioService.startBatch( filePath.getFileSystem() );
-            ioService.write( filePath, marshaller.marshall( configGroup ), commentedOption );
+            ioService.write( filePath, content, commentedOption );
 
             updateLastModified();
         } catch ( Exception ex ) {
@@ -246,8 +275,10 @@ public class ConfigurationServiceImpl implements ConfigurationService,
         } finally {
             ioService.endBatch();
         }
-        //Invalidate cache if a new item has been created; otherwise cached value is stale
-        configuration.remove( configGroup.getType() );
+        //Add the new item to the cache; otherwise cached value is stale
+        cache( filePath.getFileName().toString(),
+               content,
+               configGroup );
 
         return true;
     }
@@ -260,9 +291,10 @@ public class ConfigurationServiceImpl implements ConfigurationService,
 
         final CommentedOption commentedOption = new CommentedOption( getIdentityName(),
                                                                      "Updated config " + filePath.getFileName() );
+        final String content = marshaller.marshall( configGroup );
         try {
             ioService.startBatch( filePath.getFileSystem() );
-            ioService.write( filePath, marshaller.marshall( configGroup ), commentedOption );
+            ioService.write( filePath, content, commentedOption );
 
             updateLastModified();
         } catch ( Exception ex ) {
@@ -270,8 +302,10 @@ public class ConfigurationServiceImpl implements ConfigurationService,
         } finally {
             ioService.endBatch();
         }
-        //Invalidate cache if a new item has been created; otherwise cached value is stale
-        configuration.remove( configGroup.getType() );
+        //Replace the item in the cache; otherwise cached value is stale
+        cache( filePath.getFileName().toString(),
+               content,
+               configGroup );
 
         return true;
     }
@@ -279,11 +313,13 @@ public class ConfigurationServiceImpl implements ConfigurationService,
     @Override
     public boolean removeConfiguration( final ConfigGroup configGroup ) {
 
-        //Invalidate cache if an item has been removed; otherwise cached value is stale
-        configuration.remove( configGroup.getType() );
         String filename = configGroup.getName().replaceAll( INVALID_FILENAME_CHARS, "_" );
         final Path filePath = ioService.get( systemRepository.getUri() ).resolve( filename + configGroup.getType().getExt() );
 
+        //Remove the item from the cache; otherwise cached value is stale
+        uncache( configGroup.getType(),
+                 filePath.getFileName().toString() );
+
         // avoid duplicated writes to not cause cyclic cluster sync
         if ( !ioService.exists( filePath ) ) {
             return true;
@@ -329,10 +365,164 @@ public class ConfigurationServiceImpl implements ConfigurationService,
     }
 
     @Override
-    public void callback( long value ) {
+    public ConfigGroupsChangedEvent callback( long value ) {
         localLastModifiedValue.set( value );
-        // invalidate cached values as system repo has changed
-        configuration.clear();
+        final ConfigGroupsChangedEvent changes = new ConfigGroupsChangedEvent();
+
+        synchronized ( configuration ) {
+            // changes the watch service could not attribute to files invalidate all cached values
+            if ( unknownChanges.getAndSet( false ) ) {
+                changedFileNames.clear();
+                configuration.clear();
+                changes.reloadedAll();
+                return changes;
+            }
+
+            // otherwise only the changed files are read again
+            final List<String> fileNames = new ArrayList<String>( changedFileNames );
+            changedFileNames.removeAll( fileNames );
+            final Path root = ioService.get( systemRepository.getUri() );
+            for ( final String fileName : fileNames ) {
+                final ConfigType type = getConfigType( fileName );
+                if ( type == null ) {
+                    continue;
+                }
+                final CachedConfigGroups cached = configuration.get( type );
+                if ( cached == null ) {
+                    // nothing is known about the previous ConfigGroups of this type
+                    changes.reloaded( type );
+                    continue;
+                }
+                final CachedConfigGroup previous = cached.get( fileName );
+                final Path filePath = root.resolve( fileName );
+                if ( !ioService.exists( filePath ) ) {
+                    if ( previous != null ) {
+                        cached.remove( fileName );
+                        changes.removed( previous.configGroup );
+                    }
+                    continue;
+                }
+                final String content = ioService.readAllString( filePath );
+                if ( previous != null && previous.content.equals( content ) ) {
+                    continue;
+                }
+                final ConfigGroup configGroup = marshaller.unmarshall( content );
+                cached.put( fileName,
+                            content,
+                            configGroup );
+                if ( previous == null ) {
+                    changes.added( configGroup );
+                } else {
+                    changes.updated( configGroup );
+                }
+            }
+        }
+
+        return changes;
+    }
+
+    /**
+     * Records a file of the system repository changed by another node; it is read again by the next callback
+     */
+    void onFileChanged( final String fileName ) {
+        changedFileNames.add( fileName );
+    }
+
+    /**
+     * Records changes to the system repository that could not be attributed to files; all ConfigGroups are
+     * read again when next needed
+     */
+    void onUnknownChanges() {
+        unknownChanges.set( true );
+    }
+
+    private void cache( final String fileName,
+                        final String content,
+                        final ConfigGroup configGroup ) {
+        synchronized ( configuration ) {
+            final CachedConfigGroups cached = configuration.get( configGroup.getType() );
+            if ( cached != null ) {
+                cached.put( fileName,
+                            content,
+                            configGroup );
+            }
+        }
+    }
+
+    private void uncache( final ConfigType type,
+                          final String fileName ) {
+        synchronized ( configuration ) {
+            final CachedConfigGroups cached = configuration.get( type );
+            if ( cached != null ) {
+                cached.remove( fileName );
+            }
+        }
+    }
+
+    private ConfigType getConfigType( final String fileName ) {
+        if ( fileName.startsWith( "." ) ) {
+            return null;
+        }
+        for ( final ConfigType type : ConfigType.values() ) {
+            if ( fileName.endsWith( type.getExt() ) ) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    private static class CachedConfigGroup {
+
+        private final String content;
+        private final ConfigGroup configGroup;
+
+        private CachedConfigGroup( final String content,
+                                   final ConfigGroup configGroup ) {
+            this.content = content;
+            this.configGroup = configGroup;
+        }
+    }
+
+    private static class CachedConfigGroups {
+
+        //ConfigGroups keyed by file name, in the order their files were found
+        private final Map<String, CachedConfigGroup> configGroups = new LinkedHashMap<String, CachedConfigGroup>();
+        private volatile List<ConfigGroup> snapshot = Collections.emptyList();
+
+        private List<ConfigGroup> getConfigGroups() {
+            return snapshot;
+        }
+
+        private CachedConfigGroup get( final String fileName ) {
+            return configGroups.get( fileName );
+        }
+
+        private boolean isEmpty() {
+            return configGroups.isEmpty();
+        }
+
+        private void put( final String fileName,
+                          final String content,
+                          final ConfigGroup configGroup ) {
+            configGroups.put( fileName,
+                              new CachedConfigGroup( content,
+                                                     configGroup ) );
+            updateSnapshot();
+        }
+
+        private void remove( final String fileName ) {
+            if ( configGroups.remove( fileName ) != null ) {
+                updateSnapshot();
+            }
+        }
+
+        private void updateSnapshot() {
+            final List<ConfigGroup> groups = new ArrayList<ConfigGroup>( configGroups.size() );
+            for ( final CachedConfigGroup cached : configGroups.values() ) {
+                groups.add( cached.configGroup );
+            }
+            snapshot = groups;
+        }
     }
 
     private class CheckConfigurationUpdates implements AsyncConfigWatchService {
@@ -364,26 +554,31 @@ public class ConfigurationServiceImpl implements ConfigurationService,
 
                     boolean markerFileModified = false;
                     for ( final WatchEvent<?> event : events ) {
+                        if ( !( event.context() instanceof WatchContext ) ) {
+                            onUnknownChanges();
+                            continue;
+                        }
                         final WatchContext context = (WatchContext) event.context();
+                        recordChangedFile( context.getPath() );
+                        recordChangedFile( context.getOldPath() );
+                        if ( markerFileModified ) {
+                            continue;
+                        }
                         if ( event.kind().equals( StandardWatchEventKind.ENTRY_MODIFY ) ) {
                             if ( context.getOldPath().getFileName().toString().equals( LAST_MODIFIED_MARKER_FILE ) ) {
                                 markerFileModified = true;
-                                break;
                             }
                         } else if ( event.kind().equals( StandardWatchEventKind.ENTRY_CREATE ) ) {
                             if ( context.getPath().getFileName().toString().equals( LAST_MODIFIED_MARKER_FILE ) ) {
                                 markerFileModified = true;
-                                break;
                             }
                         } else if ( event.kind().equals( StandardWatchEventKind.ENTRY_RENAME ) ) {
                             if ( context.getOldPath().getFileName().toString().equals( LAST_MODIFIED_MARKER_FILE ) ) {
                                 markerFileModified = true;
-                                break;
                             }
                         } else if ( event.kind().equals( StandardWatchEventKind.ENTRY_DELETE ) ) {
                             if ( context.getOldPath().getFileName().toString().equals( LAST_MODIFIED_MARKER_FILE ) ) {
                                 markerFileModified = true;
-                                break;
                             }
                         }
                     }
@@ -401,6 +596,12 @@ public class ConfigurationServiceImpl implements ConfigurationService,
             }
         }
 
+        private void recordChangedFile( final Path path ) {
+            if ( path != null && path.getFileName() != null ) {
+                onFileChanged( path.getFileName().toString() );
+            }
+        }
+
         @Override
         public String getDescription() {
             return "Config File Watch Service";
@@ -417,7 +618,8 @@ public class ConfigurationServiceImpl implements ConfigurationService,
 
             if ( _executor == null ) {
                 _executor = new ConfigServiceWatchServiceExecutorImpl();
-                ( (ConfigServiceWatchServiceExecutorImpl) _executor ).setConfig( systemRepository, ioService, repoChangedEvent, orgUnitChangedEvent, changedEvent );
+                ( (ConfigServiceWatchServiceExecutorImpl) _executor ).setConfig( systemRepository, ioService, repoChangedEvent, orgUnitChangedEvent, changedEvent,
+                                                                                repoConfigChangedEvent, orgUnitConfigChangedEvent, configChangedEvent );
             }
             executor = _executor;
         }
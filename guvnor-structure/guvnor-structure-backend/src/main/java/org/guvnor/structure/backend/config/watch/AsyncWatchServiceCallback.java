@@ -15,8 +15,15 @@
 
 package org.guvnor.structure.backend.config.watch;
 
+import org.guvnor.structure.backend.config.ConfigGroupsChangedEvent;
+
 public interface AsyncWatchServiceCallback {
 
-    public void callback( long value );
+    /**
+     * Brings the cached configuration up to date with the system repository
+     * @param value The last modified value of the system repository
+     * @return The ConfigGroups that changed
+     */
+    public ConfigGroupsChangedEvent callback( long value );
 
 }
@@ -22,6 +22,7 @@ import javax.enterprise.event.Event;
 import javax.inject.Inject;
 import javax.inject.Named;
 
+import org.guvnor.structure.backend.config.ConfigGroupsChangedEvent;
 import org.guvnor.structure.backend.config.ConfigurationServiceImpl;
 import org.guvnor.structure.backend.config.OrgUnit;
 import org.guvnor.structure.backend.config.Repository;
@@ -54,17 +55,31 @@ public class ConfigServiceWatchServiceExecutorImpl implements ConfigServiceWatch
     private Event<SystemRepositoryChangedEvent> orgUnitChangedEvent;
     @Inject
     private Event<SystemRepositoryChangedEvent> changedEvent;
+    @Inject
+    @Repository
+    private Event<ConfigGroupsChangedEvent> repoConfigChangedEvent;
+    @Inject
+    @OrgUnit
+    private Event<ConfigGroupsChangedEvent> orgUnitConfigChangedEvent;
+    @Inject
+    private Event<ConfigGroupsChangedEvent> configChangedEvent;
 
     public void setConfig( final org.guvnor.structure.repositories.Repository systemRepository,
                            final IOService ioService,
                            final Event<SystemRepositoryChangedEvent> repoChangedEvent,
                            final Event<SystemRepositoryChangedEvent> orgUnitChangedEvent,
-                           final Event<SystemRepositoryChangedEvent> changedEvent ) {
+                           final Event<SystemRepositoryChangedEvent> changedEvent,
+                           final Event<ConfigGroupsChangedEvent> repoConfigChangedEvent,
+                           final Event<ConfigGroupsChangedEvent> orgUnitConfigChangedEvent,
+                           final Event<ConfigGroupsChangedEvent> configChangedEvent ) {
         this.systemRepository = systemRepository;
         this.ioService = ioService;
         this.repoChangedEvent = repoChangedEvent;
         this.orgUnitChangedEvent = orgUnitChangedEvent;
         this.changedEvent = changedEvent;
+        this.repoConfigChangedEvent = repoConfigChangedEvent;
+        this.orgUnitConfigChangedEvent = orgUnitConfigChangedEvent;
+        this.configChangedEvent = configChangedEvent;
     }
 
     @Override
@@ -73,7 +88,13 @@ public class ConfigServiceWatchServiceExecutorImpl implements ConfigServiceWatch
                          final AsyncWatchServiceCallback callback ) {
         final long currentValue = getLastModified();
         if ( currentValue > localLastModifiedValue ) {
-            callback.callback( currentValue );
+            final ConfigGroupsChangedEvent configGroupsChanged = callback.callback( currentValue );
+            if ( !configGroupsChanged.isEmpty() ) {
+                // server-side caches are patched with the individual changes; repositories first, then org units
+                repoConfigChangedEvent.fire( configGroupsChanged );
+                orgUnitConfigChangedEvent.fire( configGroupsChanged );
+                configChangedEvent.fire( configGroupsChanged );
+            }
             // notify first repository
             repoChangedEvent.fire( new SystemRepositoryChangedEvent() );
             // then org unit
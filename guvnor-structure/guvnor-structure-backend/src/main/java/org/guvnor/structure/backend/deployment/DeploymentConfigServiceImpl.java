@@ -26,11 +26,12 @@ import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.event.Event;
 import javax.enterprise.event.Observes;
+import javax.enterprise.inject.Default;
 import javax.inject.Inject;
 
 import org.guvnor.structure.backend.config.Added;
+import org.guvnor.structure.backend.config.ConfigGroupsChangedEvent;
 import org.guvnor.structure.backend.config.Removed;
-import org.guvnor.structure.config.SystemRepositoryChangedEvent;
 import org.guvnor.structure.deployment.DeploymentConfig;
 import org.guvnor.structure.deployment.DeploymentConfigService;
 import org.guvnor.structure.server.config.ConfigGroup;
@@ -105,7 +106,14 @@ public class DeploymentConfigServiceImpl implements DeploymentConfigService {
         return Collections.unmodifiableCollection( registeredDeployments.values() );
     }
 
-    public void updateRegisteredDeployments( @Observes SystemRepositoryChangedEvent changedEvent ) {
+    /**
+     * The event is fired once for each of the @Repository, @OrgUnit and default qualifiers; only the default one
+     * is observed, and only changes to deployments are processed.
+     */
+    public void updateRegisteredDeployments( @Observes @Default ConfigGroupsChangedEvent changedEvent ) {
+        if ( !changedEvent.hasChanges( ConfigType.DEPLOYMENT ) ) {
+            return;
+        }
         logger.debug( "Received deployment changed event, processing..." );
         Collection<ConfigGroup> deployments = configurationService.getConfiguration( ConfigType.DEPLOYMENT );
         if ( deployments != null ) {
@@ -27,8 +27,8 @@ import javax.enterprise.event.Observes;
 import javax.inject.Inject;
 
 import org.guvnor.structure.backend.backcompat.BackwardCompatibleUtil;
+import org.guvnor.structure.backend.config.ConfigGroupsChangedEvent;
 import org.guvnor.structure.backend.config.OrgUnit;
-import org.guvnor.structure.config.SystemRepositoryChangedEvent;
 import org.guvnor.structure.organizationalunit.NewOrganizationalUnitEvent;
 import org.guvnor.structure.organizationalunit.OrganizationalUnit;
 import org.guvnor.structure.organizationalunit.OrganizationalUnitService;
@@ -79,7 +79,8 @@ public class OrganizationalUnitServiceImpl implements OrganizationalUnitService
     @Inject
     private Event<UpdatedOrganizationalUnitEvent> updatedOrganizationalUnitEvent;
 
-    Map<String, OrganizationalUnit> registeredOrganizationalUnits = new HashMap<String, OrganizationalUnit>();
+    //Immutable snapshot of the registered OrganizationalUnits; changes are published by replacing the snapshot
+    private volatile Registry registry = new Registry( new HashMap<String, OrganizationalUnit>() );
 
     @Inject
     private AuthorizationManager authorizationManager;
@@ -88,7 +89,8 @@ public class OrganizationalUnitServiceImpl implements OrganizationalUnitService
     private SessionInfo sessionInfo;
 
     @PostConstruct
-    public void loadOrganizationalUnits() {
+    public synchronized void loadOrganizationalUnits() {
+        final Map<String, OrganizationalUnit> organizationalUnits = new HashMap<String, OrganizationalUnit>();
         Collection<ConfigGroup> groups = configurationService.getConfiguration( ConfigType.ORGANIZATIONAL_UNIT );
         if ( groups != null ) {
             for ( ConfigGroup groupConfig : groups ) {
@@ -101,26 +103,27 @@ public class OrganizationalUnitServiceImpl implements OrganizationalUnitService
                 }
 
                 OrganizationalUnit ou = organizationalUnitFactory.newOrganizationalUnit( groupConfig );
-                registeredOrganizationalUnits.put( ou.getName(),
-                                                   ou );
+                organizationalUnits.put( ou.getName(),
+                                         ou );
             }
         }
+        registry = new Registry( organizationalUnits );
     }
 
     @Override
     public OrganizationalUnit getOrganizationalUnit( final String name ) {
-        return registeredOrganizationalUnits.get( name );
+        return registry.organizationalUnitsByName.get( name );
     }
 
     @Override
     public Collection<OrganizationalUnit> getAllOrganizationalUnits() {
-        return new ArrayList<>( registeredOrganizationalUnits.values() );
+        return new ArrayList<>( registry.organizationalUnitsByName.values() );
     }
 
     @Override
     public Collection<OrganizationalUnit> getOrganizationalUnits() {
         ArrayList result = new ArrayList<>();
-        for (OrganizationalUnit ou : registeredOrganizationalUnits.values()) {
+        for (OrganizationalUnit ou : registry.organizationalUnitsByName.values()) {
             if (authorizationManager.authorize(ou, sessionInfo.getIdentity())) {
                 result.add(ou);
             }
@@ -151,8 +154,7 @@ public class OrganizationalUnitServiceImpl implements OrganizationalUnitService
             configurationService.addConfiguration( groupConfig );
 
             newOrganizationalUnit = organizationalUnitFactory.newOrganizationalUnit( groupConfig );
-            registeredOrganizationalUnits.put( newOrganizationalUnit.getName(),
-                                               newOrganizationalUnit );
+            registerOrganizationalUnit( newOrganizationalUnit );
 
             return newOrganizationalUnit;
         } finally {
@@ -186,8 +188,7 @@ public class OrganizationalUnitServiceImpl implements OrganizationalUnitService
             configurationService.addConfiguration( groupConfig );
 
             newOrganizationalUnit = organizationalUnitFactory.newOrganizationalUnit( groupConfig );
-            registeredOrganizationalUnits.put( newOrganizationalUnit.getName(),
-                                               newOrganizationalUnit );
+            registerOrganizationalUnit( newOrganizationalUnit );
 
             return newOrganizationalUnit;
         } finally {
@@ -227,8 +228,7 @@ public class OrganizationalUnitServiceImpl implements OrganizationalUnitService
                 configurationService.updateConfiguration( thisGroupConfig );
 
                 updatedOrganizationalUnit = organizationalUnitFactory.newOrganizationalUnit( thisGroupConfig );
-                registeredOrganizationalUnits.put( updatedOrganizationalUnit.getName(),
-                                                   updatedOrganizationalUnit );
+                registerOrganizationalUnit( updatedOrganizationalUnit );
 
                 return updatedOrganizationalUnit;
             } finally {
@@ -257,8 +257,7 @@ public class OrganizationalUnitServiceImpl implements OrganizationalUnitService
                 configurationService.updateConfiguration( thisGroupConfig );
 
                 final OrganizationalUnit updatedOrganizationalUnit = organizationalUnitFactory.newOrganizationalUnit( thisGroupConfig );
-                registeredOrganizationalUnits.put( updatedOrganizationalUnit.getName(),
-                                                   updatedOrganizationalUnit );
+                registerOrganizationalUnit( updatedOrganizationalUnit );
 
             } finally {
                 configurationService.endBatch();
@@ -284,8 +283,7 @@ public class OrganizationalUnitServiceImpl implements OrganizationalUnitService
                 configurationService.updateConfiguration( thisGroupConfig );
 
                 final OrganizationalUnit updatedOrganizationalUnit = organizationalUnitFactory.newOrganizationalUnit( thisGroupConfig );
-                registeredOrganizationalUnits.put( updatedOrganizationalUnit.getName(),
-                                                   updatedOrganizationalUnit );
+                registerOrganizationalUnit( updatedOrganizationalUnit );
 
             } finally {
                 configurationService.endBatch();
@@ -312,8 +310,7 @@ public class OrganizationalUnitServiceImpl implements OrganizationalUnitService
                 configurationService.updateConfiguration( thisGroupConfig );
 
                 updatedOrganizationalUnit = organizationalUnitFactory.newOrganizationalUnit( thisGroupConfig );
-                registeredOrganizationalUnits.put( updatedOrganizationalUnit.getName(),
-                                                   updatedOrganizationalUnit );
+                registerOrganizationalUnit( updatedOrganizationalUnit );
 
             } finally {
                 configurationService.endBatch();
@@ -342,8 +339,7 @@ public class OrganizationalUnitServiceImpl implements OrganizationalUnitService
                 configurationService.updateConfiguration( thisGroupConfig );
 
                 updatedOrganizationalUnit = organizationalUnitFactory.newOrganizationalUnit( thisGroupConfig );
-                registeredOrganizationalUnits.put( updatedOrganizationalUnit.getName(),
-                                                   updatedOrganizationalUnit );
+                registerOrganizationalUnit( updatedOrganizationalUnit );
 
             } finally {
                 configurationService.endBatch();
@@ -377,7 +373,7 @@ public class OrganizationalUnitServiceImpl implements OrganizationalUnitService
             try {
                 configurationService.startBatch();
                 configurationService.removeConfiguration( thisGroupConfig );
-                ou = registeredOrganizationalUnits.remove( groupName );
+                ou = unregisterOrganizationalUnit( groupName );
             } finally {
                 configurationService.endBatch();
                 if ( ou != null ) {
@@ -390,10 +386,12 @@ public class OrganizationalUnitServiceImpl implements OrganizationalUnitService
 
     @Override
     public OrganizationalUnit getParentOrganizationalUnit( final Repository repository ) {
-        for ( OrganizationalUnit organizationalUnit : registeredOrganizationalUnits.values() ) {
-            if ( organizationalUnit.getRepositories() != null &&
-                    organizationalUnit.getRepositories().contains( repository ) ) {
-                return organizationalUnit;
+        final List<OrganizationalUnit> candidates = registry.organizationalUnitsByRepositoryAlias.get( repository.getAlias() );
+        if ( candidates != null ) {
+            for ( OrganizationalUnit organizationalUnit : candidates ) {
+                if ( organizationalUnit.getRepositories().contains( repository ) ) {
+                    return organizationalUnit;
+                }
             }
         }
         return null;
@@ -415,17 +413,48 @@ public class OrganizationalUnitServiceImpl implements OrganizationalUnitService
         return false;
     }
 
-    public void updateRegisteredOU( @Observes @OrgUnit SystemRepositoryChangedEvent changedEvent ) {
-        registeredOrganizationalUnits.clear();
-        loadOrganizationalUnits();
+    public void updateRegisteredOU( @Observes @OrgUnit ConfigGroupsChangedEvent changedEvent ) {
+        // org units hold the repositories they contain, so are all refreshed if any repository changed
+        if ( changedEvent.isReloaded( ConfigType.ORGANIZATIONAL_UNIT ) || changedEvent.hasChanges( ConfigType.REPOSITORY ) ) {
+            loadOrganizationalUnits();
+            return;
+        }
+
+        synchronized ( this ) {
+            final Map<String, OrganizationalUnit> organizationalUnits = new HashMap<String, OrganizationalUnit>( registry.organizationalUnitsByName );
+            for ( ConfigGroup groupConfig : changedEvent.getRemoved( ConfigType.ORGANIZATIONAL_UNIT ) ) {
+                organizationalUnits.remove( groupConfig.getName() );
+            }
+            final List<ConfigGroup> changedGroups = new ArrayList<ConfigGroup>( changedEvent.getAdded( ConfigType.ORGANIZATIONAL_UNIT ) );
+            changedGroups.addAll( changedEvent.getUpdated( ConfigType.ORGANIZATIONAL_UNIT ) );
+            for ( ConfigGroup groupConfig : changedGroups ) {
+                OrganizationalUnit ou = organizationalUnitFactory.newOrganizationalUnit( groupConfig );
+                organizationalUnits.put( ou.getName(),
+                                         ou );
+            }
+            registry = new Registry( organizationalUnits );
+        }
     }
 
     // refresh org unit in case repository changed otherwise it will have outdated information
     public void updateRegisteredOUonRepoChange( @Observes RepositoryEnvironmentUpdatedEvent changedEvent ) {
-        registeredOrganizationalUnits.clear();
         loadOrganizationalUnits();
     }
 
+    synchronized void registerOrganizationalUnit( final OrganizationalUnit organizationalUnit ) {
+        final Map<String, OrganizationalUnit> organizationalUnits = new HashMap<String, OrganizationalUnit>( registry.organizationalUnitsByName );
+        organizationalUnits.put( organizationalUnit.getName(),
+                                 organizationalUnit );
+        registry = new Registry( organizationalUnits );
+    }
+
+    synchronized OrganizationalUnit unregisterOrganizationalUnit( final String name ) {
+        final Map<String, OrganizationalUnit> organizationalUnits = new HashMap<String, OrganizationalUnit>( registry.organizationalUnitsByName );
+        final OrganizationalUnit removed = organizationalUnits.remove( name );
+        registry = new Registry( organizationalUnits );
+        return removed;
+    }
+
     protected String getUserInfo( SessionInfo sessionInfo ) {
 
         try {
@@ -434,4 +463,31 @@ public class OrganizationalUnitServiceImpl implements OrganizationalUnitService
             return "system";
         }
     }
+
+    /**
+     * Indexes of the registered OrganizationalUnits, by name and by the aliases of the repositories they contain.
+     */
+    private static class Registry {
+
+        private final Map<String, OrganizationalUnit> organizationalUnitsByName;
+        private final Map<String, List<OrganizationalUnit>> organizationalUnitsByRepositoryAlias = new HashMap<String, List<OrganizationalUnit>>();
+
+        private Registry( final Map<String, OrganizationalUnit> organizationalUnitsByName ) {
+            this.organizationalUnitsByName = organizationalUnitsByName;
+            for ( OrganizationalUnit organizationalUnit : organizationalUnitsByName.values() ) {
+                if ( organizationalUnit.getRepositories() == null ) {
+                    continue;
+                }
+                for ( Repository repository : organizationalUnit.getRepositories() ) {
+                    List<OrganizationalUnit> organizationalUnits = organizationalUnitsByRepositoryAlias.get( repository.getAlias() );
+                    if ( organizationalUnits == null ) {
+                        organizationalUnits = new ArrayList<OrganizationalUnit>( 1 );
+                        organizationalUnitsByRepositoryAlias.put( repository.getAlias(),
+                                                                  organizationalUnits );
+                    }
+                    organizationalUnits.add( organizationalUnit );
+                }
+            }
+        }
+    }
 }
@@ -26,7 +26,7 @@ import javax.enterprise.event.Observes;
 import javax.inject.Inject;
 import javax.inject.Named;
 
-import org.guvnor.structure.config.SystemRepositoryChangedEvent;
+import org.guvnor.structure.backend.config.ConfigGroupsChangedEvent;
 import org.guvnor.structure.repositories.NewBranchEvent;
 import org.guvnor.structure.repositories.Repository;
 import org.guvnor.structure.repositories.impl.git.GitRepository;
@@ -41,6 +41,8 @@ import static org.uberfire.backend.server.util.Paths.*;
 
 /**
  * Cache for configured repositories.
+ * Lookups read an immutable snapshot of the repositories; changes are made to a copy that then replaces
+ * the snapshot, so readers never block or see a partially applied change.
  */
 @ApplicationScoped
 public class ConfiguredRepositories {
@@ -49,8 +51,7 @@ public class ConfiguredRepositories {
     private RepositoryFactory    repositoryFactory;
     private Repository           systemRepository;
 
-    private Map<String, Repository> repositoriesByAlias      = new HashMap<>();
-    private Map<Path, Repository>   repositoriesByBranchRoot = new HashMap<>();
+    private volatile Registry registry = new Registry();
 
     public ConfiguredRepositories() {
     }
@@ -66,19 +67,20 @@ public class ConfiguredRepositories {
 
     @SuppressWarnings( "unchecked" )
     @PostConstruct
-    public void loadRepositories() {
-        repositoriesByAlias.clear();
-        repositoriesByBranchRoot.clear();
+    public synchronized void loadRepositories() {
+        final Registry loaded = new Registry();
 
         final List<ConfigGroup> repoConfigs = configurationService.getConfiguration( REPOSITORY );
         if ( !(repoConfigs == null || repoConfigs.isEmpty()) ) {
             for ( final ConfigGroup configGroup : repoConfigs ) {
                 final Repository repository = repositoryFactory.newRepository( configGroup );
 
-                add( repository );
+                loaded.add( repository );
 
             }
         }
+
+        registry = loaded;
     }
 
     /**
@@ -87,7 +89,7 @@ public class ConfiguredRepositories {
      * @return Repository that has a random branch as a root, usually master if master exists.
      */
     public Repository getRepositoryByRepositoryAlias( final String alias ) {
-        return repositoriesByAlias.get( alias );
+        return registry.repositoriesByAlias.get( alias );
     }
 
     /**
@@ -104,13 +106,7 @@ public class ConfiguredRepositories {
             return systemRepository;
         }
 
-        for ( final Repository repository : repositoriesByAlias.values() ) {
-            if ( convert( repository.getRoot() ).getFileSystem().equals( fs ) ) {
-                return repository;
-            }
-        }
-
-        return null;
+        return registry.getRepositoriesByFileSystem().get( fs );
     }
 
     /**
@@ -118,79 +114,146 @@ public class ConfiguredRepositories {
      * @return Repository root branch is still the default, usually master.
      */
     public Repository getRepositoryByRootPath( final Path root ) {
-        return repositoriesByBranchRoot.get( root );
+        return registry.repositoriesByBranchRoot.get( root );
     }
 
     /**
      * @return Does not include system repository.
      */
     public List<Repository> getAllConfiguredRepositories() {
-        return new ArrayList<>( repositoriesByAlias.values() );
+        return new ArrayList<>( registry.repositoriesByAlias.values() );
     }
 
     public boolean containsAlias( final String alias ) {
-        return repositoriesByAlias.containsKey( alias ) || SystemRepository.SYSTEM_REPO.getAlias().equals( alias );
+        return registry.repositoriesByAlias.containsKey( alias ) || SystemRepository.SYSTEM_REPO.getAlias().equals( alias );
     }
 
-    public void add( final Repository repository ) {
-        repositoriesByAlias.put( repository.getAlias(),
-                                 repository );
-
-        if ( repository instanceof GitRepository &&
-                repository.getBranches() != null ) {
-            for ( String branch : repository.getBranches() ) {
-                repositoriesByBranchRoot.put( repository.getBranchRoot( branch ),
-                                              repository );
-            }
-        } else {
-            repositoriesByBranchRoot.put( repository.getRoot(),
-                                          repository );
-        }
+    public synchronized void add( final Repository repository ) {
+        final Registry updated = registry.copy();
+        updated.add( repository );
+        registry = updated;
     }
 
     public void update( final Repository updatedRepo ) {
         add( updatedRepo );
     }
 
-    public Repository remove( final String alias ) {
-
-        final Repository removed = repositoriesByAlias.remove( alias );
-
-        removeFromRootByAlias( alias );
+    public synchronized Repository remove( final String alias ) {
+        final Registry updated = registry.copy();
+        final Repository removed = updated.remove( alias );
+        registry = updated;
 
         return removed;
     }
 
-    private void removeFromRootByAlias( final String alias ) {
-        for ( Path path : findFromRootMapByAlias( alias ) ) {
-            repositoriesByBranchRoot.remove( path );
+    public synchronized void onNewBranch( final @Observes NewBranchEvent changedEvent ) {
+
+        final Repository repository = getRepositoryByRepositoryAlias( changedEvent.getRepositoryAlias() );
+        if ( repository instanceof GitRepository ) {
+            (( GitRepository ) repository).addBranch( changedEvent.getBranchName(),
+                                                      changedEvent.getBranchPath() );
+            final Registry updated = registry.copy();
+            updated.repositoriesByBranchRoot.put( changedEvent.getBranchPath(), repository );
+            registry = updated;
         }
     }
 
-    private List<Path> findFromRootMapByAlias( final String alias ) {
-        List<Path> result = new ArrayList<>();
-        for ( Path path : repositoriesByBranchRoot.keySet() ) {
-            if ( repositoriesByBranchRoot.get( path ).getAlias().equals( alias ) ) {
-                result.add( path );
-            }
+    public synchronized void flush( final @Observes @org.guvnor.structure.backend.config.Repository ConfigGroupsChangedEvent changedEvent ) {
+        if ( changedEvent.isReloaded( REPOSITORY ) ) {
+            loadRepositories();
+            return;
+        }
+
+        //Only the repositories whose configuration changed are created again; all changes are published at once
+        final Registry updated = registry.copy();
+        for ( final ConfigGroup configGroup : changedEvent.getRemoved( REPOSITORY ) ) {
+            updated.remove( configGroup.getName() );
         }
-        return result;
+        for ( final ConfigGroup configGroup : changedEvent.getAdded( REPOSITORY ) ) {
+            updated.add( repositoryFactory.newRepository( configGroup ) );
+        }
+        for ( final ConfigGroup configGroup : changedEvent.getUpdated( REPOSITORY ) ) {
+            final Repository repository = repositoryFactory.newRepository( configGroup );
+            //Branches could have been removed
+            updated.remove( repository.getAlias() );
+            updated.add( repository );
+        }
+        registry = updated;
     }
 
-    public void onNewBranch( final @Observes NewBranchEvent changedEvent ) {
+    /**
+     * Indexes of the configured repositories. A Registry is only changed before it is published.
+     */
+    private static class Registry {
 
-        if ( repositoriesByAlias.containsKey( changedEvent.getRepositoryAlias() ) ) {
+        private final Map<String, Repository> repositoriesByAlias;
+        private final Map<Path, Repository>   repositoriesByBranchRoot;
 
-            final Repository repository = getRepositoryByRepositoryAlias( changedEvent.getRepositoryAlias() );
-            if ( repository instanceof GitRepository ) {
-                (( GitRepository ) repository).addBranch( changedEvent.getBranchName(),
-                                                          changedEvent.getBranchPath() );
-                repositoriesByBranchRoot.put( changedEvent.getBranchPath(), repository );
+        //Built on first use, as resolving a repository's file system requires its root to be converted
+        private volatile Map<FileSystem, Repository> repositoriesByFileSystem;
+
+        private Registry() {
+            this( new HashMap<String, Repository>(),
+                  new HashMap<Path, Repository>() );
+        }
+
+        private Registry( final Map<String, Repository> repositoriesByAlias,
+                          final Map<Path, Repository> repositoriesByBranchRoot ) {
+            this.repositoriesByAlias = repositoriesByAlias;
+            this.repositoriesByBranchRoot = repositoriesByBranchRoot;
+        }
+
+        private Registry copy() {
+            return new Registry( new HashMap<>( repositoriesByAlias ),
+                                 new HashMap<>( repositoriesByBranchRoot ) );
+        }
+
+        private void add( final Repository repository ) {
+            repositoriesByAlias.put( repository.getAlias(),
+                                     repository );
+
+            if ( repository instanceof GitRepository &&
+                    repository.getBranches() != null ) {
+                for ( String branch : repository.getBranches() ) {
+                    repositoriesByBranchRoot.put( repository.getBranchRoot( branch ),
+                                                  repository );
+                }
+            } else {
+                repositoriesByBranchRoot.put( repository.getRoot(),
+                                              repository );
             }
         }
-    }
 
-    public void flush( final @Observes @org.guvnor.structure.backend.config.Repository SystemRepositoryChangedEvent changedEvent ) {
-        loadRepositories();
+        private Repository remove( final String alias ) {
+            final Repository removed = repositoriesByAlias.remove( alias );
+
+            final List<Path> roots = new ArrayList<>();
+            for ( Map.Entry<Path, Repository> entry : repositoriesByBranchRoot.entrySet() ) {
+                if ( entry.getValue().getAlias().equals( alias ) ) {
+                    roots.add( entry.getKey() );
+                }
+            }
+            for ( Path root : roots ) {
+                repositoriesByBranchRoot.remove( root );
+            }
+
+            return removed;
+        }
+
+        private Map<FileSystem, Repository> getRepositoriesByFileSystem() {
+            Map<FileSystem, Repository> byFileSystem = repositoriesByFileSystem;
+            if ( byFileSystem == null ) {
+                byFileSystem = new HashMap<>();
+                for ( final Repository repository : repositoriesByAlias.values() ) {
+                    final FileSystem fs = convert( repository.getRoot() ).getFileSystem();
+                    if ( !byFileSystem.containsKey( fs ) ) {
+                        byFileSystem.put( fs,
+                                          repository );
+                    }
+                }
+                repositoriesByFileSystem = byFileSystem;
+            }
+            return byFileSystem;
+        }
     }
 }
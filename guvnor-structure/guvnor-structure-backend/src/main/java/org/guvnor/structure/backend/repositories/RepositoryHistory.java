@@ -0,0 +1,233 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.structure.backend.repositories;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.guvnor.common.services.backend.cache.ConcurrentLRUCache;
+import org.guvnor.structure.repositories.Repository;
+import org.guvnor.structure.repositories.RepositoryRemovedEvent;
+import org.uberfire.io.IOService;
+import org.uberfire.java.nio.base.version.VersionAttributeView;
+import org.uberfire.java.nio.base.version.VersionRecord;
+import org.uberfire.java.nio.file.Path;
+import org.uberfire.workbench.events.ResourceAddedEvent;
+import org.uberfire.workbench.events.ResourceBatchChangesEvent;
+import org.uberfire.workbench.events.ResourceChange;
+import org.uberfire.workbench.events.ResourceCopiedEvent;
+import org.uberfire.workbench.events.ResourceDeletedEvent;
+import org.uberfire.workbench.events.ResourceRenamedEvent;
+import org.uberfire.workbench.events.ResourceUpdatedEvent;
+
+import static org.uberfire.backend.server.util.Paths.*;
+
+/**
+ * Cache of the commit history of repositories. The VFS can only provide the complete history of a repository,
+ * so it is read once and pages are served from the cached history until the repository changes. Only the most
+ * recent records of each repository are cached; so the history of a large repository cannot evict all others,
+ * and older pages of it are read from the VFS. Entries are invalidated when resources on the cached branch are
+ * changed and, to pick up changes made without such events (e.g. pushed to the git daemon or made by another
+ * node of a cluster), expire after a configurable time.
+ */
+@ApplicationScoped
+public class RepositoryHistory {
+
+    //Maximum total number of history records cached, across all repositories
+    private static final long DEFAULT_MAX_SIZE = 100000;
+
+    //Maximum number of the most recent history records cached for each repository
+    private static final int DEFAULT_MAX_RECORDS = 1000;
+
+    //Time, in milliseconds, after which a cached history is read again
+    private static final long DEFAULT_TIME_TO_LIVE = 60000;
+
+    private IOService ioService;
+    private ConfiguredRepositories configuredRepositories;
+
+    private final int maxRecords = Integer.getInteger( "org.guvnor.repository.history-cache.max-records",
+                                                       DEFAULT_MAX_RECORDS );
+    private final ConcurrentLRUCache<String, CachedHistory> cache = newHistoryCache();
+
+    public RepositoryHistory() {
+    }
+
+    @Inject
+    public RepositoryHistory( final @Named("ioStrategy") IOService ioService,
+                              final ConfiguredRepositories configuredRepositories ) {
+        this.ioService = ioService;
+        this.configuredRepositories = configuredRepositories;
+    }
+
+    /**
+     * The most recent commits of a repository
+     * @param alias The alias of the repository
+     * @param root The root of the branch
+     * @param count The number of records needed, or negative if the complete history is needed
+     * @return The history records, newest first; at least count records, if the history has as many.
+     * The list must not be modified.
+     */
+    public List<VersionRecord> getHistory( final String alias,
+                                           final Path root,
+                                           final int count ) {
+        final String rootUri = root.toUri().toString();
+        final CachedHistory cached = cache.getEntry( alias );
+        if ( cached != null && cached.rootUri.equals( rootUri ) && cached.covers( count ) ) {
+            return cached.records;
+        }
+
+        final VersionAttributeView versionAttributeView = ioService.getFileAttributeView( root,
+                                                                                          VersionAttributeView.class );
+        final List<VersionRecord> records = newestFirst( versionAttributeView.readAttributes().history().records() );
+        final CachedHistory history = new CachedHistory( rootUri,
+                                                         records.size() <= maxRecords ? records : records.subList( 0,
+                                                                                                                   maxRecords ),
+                                                         records.size() <= maxRecords );
+        cache.setEntry( alias,
+                        history );
+        if ( history.covers( count ) ) {
+            return history.records;
+        }
+        return Collections.unmodifiableList( records );
+    }
+
+    public void invalidate( final String alias ) {
+        cache.invalidateCache( alias );
+    }
+
+    /**
+     * Forget the history of a repository, if it was read from the branch
+     * @param alias The alias of the repository
+     * @param rootUri The URI of the root of the branch that changed
+     */
+    void invalidate( final String alias,
+                     final String rootUri ) {
+        final CachedHistory cached = cache.getEntry( alias );
+        if ( cached != null && cached.rootUri.equals( rootUri ) ) {
+            invalidate( alias );
+        }
+    }
+
+    public void onResourceAdded( @Observes final ResourceAddedEvent event ) {
+        onResourceChange( event.getPath() );
+    }
+
+    public void onResourceUpdated( @Observes final ResourceUpdatedEvent event ) {
+        onResourceChange( event.getPath() );
+    }
+
+    public void onResourceDeleted( @Observes final ResourceDeletedEvent event ) {
+        onResourceChange( event.getPath() );
+    }
+
+    public void onResourceCopied( @Observes final ResourceCopiedEvent event ) {
+        onResourceChange( event.getDestinationPath() );
+    }
+
+    public void onResourceRenamed( @Observes final ResourceRenamedEvent event ) {
+        onResourceChange( event.getPath() );
+    }
+
+    public void onBatchResourceChanges( @Observes final ResourceBatchChangesEvent event ) {
+        if ( event.getBatch() == null ) {
+            return;
+        }
+        for ( final Map.Entry<org.uberfire.backend.vfs.Path, Collection<ResourceChange>> entry : event.getBatch().entrySet() ) {
+            onResourceChange( entry.getKey() );
+        }
+    }
+
+    public void onRepositoryRemoved( @Observes final RepositoryRemovedEvent event ) {
+        if ( event.getRepository() != null ) {
+            invalidate( event.getRepository().getAlias() );
+        }
+    }
+
+    private ConcurrentLRUCache<String, CachedHistory> newHistoryCache() {
+        return new ConcurrentLRUCache<String, CachedHistory>( Long.getLong( "org.guvnor.repository.history-cache.max-size",
+                                                                            DEFAULT_MAX_SIZE ),
+                                                              new ConcurrentLRUCache.Weigher<String, CachedHistory>() {
+                                                                  @Override
+                                                                  public int weigh( final String key,
+                                                                                    final CachedHistory value ) {
+                                                                      return value.records.size() + 1;
+                                                                  }
+                                                              },
+                                                              Long.getLong( "org.guvnor.repository.history-cache.ttl",
+                                                                            DEFAULT_TIME_TO_LIVE ),
+                                                              //A single segment, so the records of a repository can use the whole cache
+                                                              1 );
+    }
+
+    private void onResourceChange( final org.uberfire.backend.vfs.Path path ) {
+        if ( path == null ) {
+            return;
+        }
+        final Path nioPath = convert( path );
+        final Repository repository = configuredRepositories.getRepositoryByRepositoryFileSystem( nioPath.getFileSystem() );
+        if ( repository != null ) {
+            //Changes to other branches do not move the head of the branch whose history is cached
+            invalidate( repository.getAlias(),
+                        nioPath.getRoot().toUri().toString() );
+        }
+    }
+
+    private static List<VersionRecord> newestFirst( final List<VersionRecord> records ) {
+        return new AbstractList<VersionRecord>() {
+            @Override
+            public VersionRecord get( final int index ) {
+                return records.get( records.size() - 1 - index );
+            }
+
+            @Override
+            public int size() {
+                return records.size();
+            }
+        };
+    }
+
+    private static class CachedHistory {
+
+        private final String rootUri;
+
+        //The most recent records, newest first
+        private final List<VersionRecord> records;
+
+        //Whether the records are the complete history
+        private final boolean complete;
+
+        private CachedHistory( final String rootUri,
+                               final List<VersionRecord> records,
+                               final boolean complete ) {
+            this.rootUri = rootUri;
+            this.records = Collections.unmodifiableList( new ArrayList<VersionRecord>( records ) );
+            this.complete = complete;
+        }
+
+        private boolean covers( final int count ) {
+            return complete || ( count >= 0 && count <= records.size() );
+        }
+    }
+
+}
@@ -50,7 +50,6 @@ import org.uberfire.backend.server.util.TextUtil;
 import org.uberfire.backend.vfs.Path;
 import org.uberfire.ext.editor.commons.version.impl.PortableVersionRecord;
 import org.uberfire.io.IOService;
-import org.uberfire.java.nio.base.version.VersionAttributeView;
 import org.uberfire.java.nio.base.version.VersionRecord;
 import org.uberfire.rpc.SessionInfo;
 import org.uberfire.security.authz.AuthorizationManager;
@@ -95,6 +94,9 @@ public class RepositoryServiceImpl implements RepositoryService {
     @Inject
     private ConfiguredRepositories configuredRepositories;
 
+    @Inject
+    private RepositoryHistory repositoryHistory;
+
     @Inject
     private AuthorizationManager authorizationManager;
 
@@ -149,8 +151,10 @@ public class RepositoryServiceImpl implements RepositoryService {
             return Collections.EMPTY_LIST;
         }
 
-        final VersionAttributeView versionAttributeView = ioService.getFileAttributeView( convert( repo.getRoot() ), VersionAttributeView.class );
-        final List<VersionRecord> records = versionAttributeView.readAttributes().history().records();
+        //Records are newest first; only as many are needed as the page ends with
+        final List<VersionRecord> records = repositoryHistory.getHistory( alias,
+                                                                          convert( repo.getRoot() ),
+                                                                          endIndex );
 
         if ( startIndex < 0 ) {
             startIndex = 0;
@@ -162,10 +166,9 @@ public class RepositoryServiceImpl implements RepositoryService {
             return Collections.emptyList();
         }
 
-        Collections.reverse( records );
-
         final List<VersionRecord> result = new ArrayList<VersionRecord>( endIndex - startIndex );
-        for ( VersionRecord record : records.subList( startIndex, endIndex ) ) {
+        for ( int i = startIndex; i < endIndex; i++ ) {
+            final VersionRecord record = records.get( i );
             result.add( new PortableVersionRecord( record.id(), record.author(), record.email(), record.comment(), record.date(), record.uri() ) );
         }
 
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.structure.backend.config;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.guvnor.structure.repositories.Repository;
+import org.guvnor.structure.server.config.ConfigGroup;
+import org.guvnor.structure.server.config.ConfigType;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import org.uberfire.io.IOService;
+import org.uberfire.java.nio.file.DirectoryStream;
+import org.uberfire.java.nio.file.Path;
+import org.uberfire.java.nio.fs.file.SimpleFileSystemProvider;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ConfigurationServiceImplTest {
+
+    @Mock
+    private Repository systemRepository;
+
+    @Mock
+    private ConfigGroupMarshaller marshaller;
+
+    @Mock
+    private IOService ioService;
+
+    @InjectMocks
+    private ConfigurationServiceImpl configurationService;
+
+    private Path root;
+
+    //Content of the files of the system repository, keyed by file name
+    private final Map<String, String> files = new LinkedHashMap<String, String>();
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        root = new SimpleFileSystemProvider().getPath( new File( System.getProperty( "java.io.tmpdir" ),
+                                                                 "system" ).toURI() );
+        when( systemRepository.getUri() ).thenReturn( "system" );
+        when( ioService.get( "system" ) ).thenReturn( root );
+        when( ioService.newDirectoryStream( any( Path.class ),
+                                            any( DirectoryStream.Filter.class ) ) ).thenAnswer( new Answer<DirectoryStream<Path>>() {
+            @Override
+            public DirectoryStream<Path> answer( final InvocationOnMock invocation ) {
+                final DirectoryStream.Filter<Path> filter = (DirectoryStream.Filter<Path>) invocation.getArguments()[ 1 ];
+                final List<Path> paths = new ArrayList<Path>();
+                for ( String fileName : files.keySet() ) {
+                    if ( filter.accept( root.resolve( fileName ) ) ) {
+                        paths.add( root.resolve( fileName ) );
+                    }
+                }
+                final DirectoryStream<Path> stream = mock( DirectoryStream.class );
+                when( stream.iterator() ).thenReturn( paths.iterator() );
+                return stream;
+            }
+        } );
+        when( ioService.exists( any( Path.class ) ) ).thenAnswer( new Answer<Boolean>() {
+            @Override
+            public Boolean answer( final InvocationOnMock invocation ) {
+                return files.containsKey( fileName( invocation ) );
+            }
+        } );
+        when( ioService.readAllString( any( Path.class ) ) ).thenAnswer( new Answer<String>() {
+            @Override
+            public String answer( final InvocationOnMock invocation ) {
+                return files.get( fileName( invocation ) );
+            }
+        } );
+        //The content of each file is the name of its ConfigGroup
+        when( marshaller.unmarshall( anyString() ) ).thenAnswer( new Answer<ConfigGroup>() {
+            @Override
+            public ConfigGroup answer( final InvocationOnMock invocation ) {
+                final ConfigGroup configGroup = new ConfigGroup();
+                configGroup.setType( ConfigType.REPOSITORY );
+                configGroup.setName( (String) invocation.getArguments()[ 0 ] );
+                return configGroup;
+            }
+        } );
+
+        files.put( "repo1.repository",
+                   "repo1" );
+        files.put( "repo2.repository",
+                   "repo2" );
+        files.put( "ou1.organizationalunit",
+                   "ou1" );
+    }
+
+    @Test
+    public void testOnlyChangedFilesAreReadAgain() {
+        assertEquals( names( "repo1",
+                             "repo2" ),
+                      names( configurationService.getConfiguration( ConfigType.REPOSITORY ) ) );
+
+        files.put( "repo1.repository",
+                   "repo1-updated" );
+        files.remove( "repo2.repository" );
+        files.put( "repo3.repository",
+                   "repo3" );
+        configurationService.onFileChanged( "repo1.repository" );
+        configurationService.onFileChanged( "repo2.repository" );
+        configurationService.onFileChanged( "repo3.repository" );
+        configurationService.onFileChanged( "ou1.organizationalunit" );
+
+        final ConfigGroupsChangedEvent changes = configurationService.callback( 1L );
+
+        assertFalse( changes.isReloaded( ConfigType.REPOSITORY ) );
+        assertEquals( names( "repo1-updated" ),
+                      names( changes.getUpdated( ConfigType.REPOSITORY ) ) );
+        assertEquals( names( "repo2" ),
+                      names( changes.getRemoved( ConfigType.REPOSITORY ) ) );
+        assertEquals( names( "repo3" ),
+                      names( changes.getAdded( ConfigType.REPOSITORY ) ) );
+        //Nothing is known about organizational units, as they have not been read yet
+        assertTrue( changes.isReloaded( ConfigType.ORGANIZATIONAL_UNIT ) );
+        assertEquals( names( "repo1-updated",
+                             "repo3" ),
+                      names( configurationService.getConfiguration( ConfigType.REPOSITORY ) ) );
+        verify( ioService,
+                times( 1 ) ).newDirectoryStream( any( Path.class ),
+                                                 any( DirectoryStream.Filter.class ) );
+    }
+
+    @Test
+    public void testUnchangedContentIsNotReported() {
+        configurationService.getConfiguration( ConfigType.REPOSITORY );
+        configurationService.onFileChanged( "repo1.repository" );
+
+        final ConfigGroupsChangedEvent changes = configurationService.callback( 1L );
+
+        assertTrue( changes.isEmpty() );
+        verify( marshaller,
+                times( 2 ) ).unmarshall( anyString() );
+    }
+
+    @Test
+    public void testUnknownChangesReloadEverything() {
+        configurationService.getConfiguration( ConfigType.REPOSITORY );
+        configurationService.onFileChanged( "repo1.repository" );
+        configurationService.onUnknownChanges();
+        files.put( "repo2.repository",
+                   "repo2-updated" );
+
+        final ConfigGroupsChangedEvent changes = configurationService.callback( 1L );
+
+        for ( ConfigType type : ConfigType.values() ) {
+            assertTrue( changes.isReloaded( type ) );
+        }
+        assertEquals( names( "repo1",
+                             "repo2-updated" ),
+                      names( configurationService.getConfiguration( ConfigType.REPOSITORY ) ) );
+        verify( ioService,
+                times( 2 ) ).newDirectoryStream( any( Path.class ),
+                                                 any( DirectoryStream.Filter.class ) );
+
+        //The changes recorded before were covered by the reload
+        assertTrue( configurationService.callback( 2L ).isEmpty() );
+    }
+
+    @Test
+    public void testChangesMadeWhilstReadingAreKept() {
+        configurationService.getConfiguration( ConfigType.REPOSITORY );
+        files.put( "repo1.repository",
+                   "repo1-updated" );
+        configurationService.onFileChanged( "repo1.repository" );
+
+        //Another node changes the file again, once it has been read
+        when( ioService.readAllString( root.resolve( "repo1.repository" ) ) ).thenAnswer( new Answer<String>() {
+            @Override
+            public String answer( final InvocationOnMock invocation ) {
+                final String content = files.get( "repo1.repository" );
+                if ( content.equals( "repo1-updated" ) ) {
+                    files.put( "repo1.repository",
+                               "repo1-updated-again" );
+                    configurationService.onFileChanged( "repo1.repository" );
+                }
+                return content;
+            }
+        } );
+
+        assertEquals( names( "repo1-updated" ),
+                      names( configurationService.callback( 1L ).getUpdated( ConfigType.REPOSITORY ) ) );
+        assertEquals( names( "repo1-updated-again" ),
+                      names( configurationService.callback( 2L ).getUpdated( ConfigType.REPOSITORY ) ) );
+        assertTrue( configurationService.callback( 3L ).isEmpty() );
+    }
+
+    private String fileName( final InvocationOnMock invocation ) {
+        return ( (Path) invocation.getArguments()[ 0 ] ).getFileName().toString();
+    }
+
+    private List<String> names( final String... names ) {
+        final List<String> result = new ArrayList<String>();
+        for ( String name : names ) {
+            result.add( name );
+        }
+        return result;
+    }
+
+    private List<String> names( final List<ConfigGroup> configGroups ) {
+        final List<String> result = new ArrayList<String>();
+        for ( ConfigGroup configGroup : configGroups ) {
+            result.add( configGroup.getName() );
+        }
+        return result;
+    }
+
+}
@@ -27,6 +27,8 @@ import org.guvnor.structure.organizationalunit.RemoveOrganizationalUnitEvent;
 import org.guvnor.structure.organizationalunit.RepoAddedToOrganizationalUnitEvent;
 import org.guvnor.structure.organizationalunit.RepoRemovedFromOrganizationalUnitEvent;
 import org.guvnor.structure.organizationalunit.UpdatedOrganizationalUnitEvent;
+import org.guvnor.structure.organizationalunit.impl.OrganizationalUnitImpl;
+import org.guvnor.structure.repositories.impl.git.GitRepository;
 import org.guvnor.structure.server.config.ConfigurationFactory;
 import org.guvnor.structure.server.config.ConfigurationService;
 import org.guvnor.structure.server.organizationalunit.OrganizationalUnitFactory;
@@ -85,7 +87,9 @@ public class OrganizationalUnitServiceTest {
 
     @Before
     public void setUp() throws Exception {
-        organizationalUnitService.registeredOrganizationalUnits.put("A", mock(OrganizationalUnit.class));
+        final OrganizationalUnit organizationalUnit = mock(OrganizationalUnit.class);
+        when(organizationalUnit.getName()).thenReturn("A");
+        organizationalUnitService.registerOrganizationalUnit(organizationalUnit);
         when(authorizationManager.authorize(any(Resource.class), any(User.class))).thenReturn(false);
     }
 
@@ -100,4 +104,19 @@ public class OrganizationalUnitServiceTest {
         Collection<OrganizationalUnit> orgUnits = organizationalUnitService.getOrganizationalUnits();
         assertEquals(orgUnits.size(), 0);
     }
+
+    @Test
+    public void testParentOrgUnit() throws Exception {
+        final GitRepository repository = new GitRepository("repo");
+        final OrganizationalUnitImpl organizationalUnit = new OrganizationalUnitImpl("B", "owner", "groupId");
+        organizationalUnit.getRepositories().add(repository);
+        organizationalUnitService.registerOrganizationalUnit(organizationalUnit);
+
+        assertSame(organizationalUnit, organizationalUnitService.getParentOrganizationalUnit(repository));
+        assertNull(organizationalUnitService.getParentOrganizationalUnit(new GitRepository("other")));
+
+        organizationalUnitService.unregisterOrganizationalUnit("B");
+        assertNull(organizationalUnitService.getParentOrganizationalUnit(repository));
+        assertEquals(1, organizationalUnitService.getAllOrganizationalUnits().size());
+    }
 }
\ No newline at end of file
@@ -19,6 +19,7 @@ package org.guvnor.structure.backend.repositories;
 import java.util.ArrayList;
 import java.util.HashMap;
 
+import org.guvnor.structure.backend.config.ConfigGroupsChangedEvent;
 import org.guvnor.structure.repositories.NewBranchEvent;
 import org.guvnor.structure.repositories.Repository;
 import org.guvnor.structure.repositories.impl.git.GitRepository;
@@ -68,6 +69,8 @@ public class ConfiguredRepositoriesTest {
     private ConfigGroup addRepository( final String alias,
                                        final String... branches ) {
         final ConfigGroup configGroup = new ConfigGroup();
+        configGroup.setName( alias );
+        configGroup.setType( REPOSITORY );
         final GitRepository repository = new GitRepository( alias );
 
         final HashMap<String, Path> branchMap = new HashMap<>();
@@ -150,4 +153,45 @@ public class ConfiguredRepositoriesTest {
 
     }
 
+    @Test
+    public void testFlushOnlyCreatesChangedRepositories() throws Exception {
+        final Repository single = configuredRepositories.getRepositoryByRepositoryAlias( "single" );
+        final Path oldDevRoot = configuredRepositories.getRepositoryByRepositoryAlias( "multibranch" ).getBranchRoot( "dev" );
+
+        final ConfigGroupsChangedEvent changedEvent = new ConfigGroupsChangedEvent();
+        changedEvent.added( addRepository( "added", "master" ) );
+        changedEvent.updated( addRepository( "multibranch", "master", "dev" ) );
+        configuredRepositories.flush( changedEvent );
+
+        assertEquals( 3, configuredRepositories.getAllConfiguredRepositories().size() );
+        assertSame( single, configuredRepositories.getRepositoryByRepositoryAlias( "single" ) );
+        assertEquals( 2, configuredRepositories.getRepositoryByRepositoryAlias( "multibranch" ).getBranches().size() );
+        assertNull( configuredRepositories.getRepositoryByRootPath( oldDevRoot ) );
+        verify( configurationService, times( 1 ) ).getConfiguration( REPOSITORY );
+    }
+
+    @Test
+    public void testFlushRemovedRepository() throws Exception {
+        final ConfigGroup removed = new ConfigGroup();
+        removed.setName( "single" );
+        removed.setType( REPOSITORY );
+
+        final ConfigGroupsChangedEvent changedEvent = new ConfigGroupsChangedEvent();
+        changedEvent.removed( removed );
+        configuredRepositories.flush( changedEvent );
+
+        assertFalse( configuredRepositories.containsAlias( "single" ) );
+        assertTrue( configuredRepositories.containsAlias( "multibranch" ) );
+    }
+
+    @Test
+    public void testFlushReloaded() throws Exception {
+        final ConfigGroupsChangedEvent changedEvent = new ConfigGroupsChangedEvent();
+        changedEvent.reloaded( REPOSITORY );
+        configuredRepositories.flush( changedEvent );
+
+        verify( configurationService, times( 2 ) ).getConfiguration( REPOSITORY );
+        assertEquals( 2, configuredRepositories.getAllConfiguredRepositories().size() );
+    }
+
 }
\ No newline at end of file
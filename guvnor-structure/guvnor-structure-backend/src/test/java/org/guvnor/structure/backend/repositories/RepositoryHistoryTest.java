@@ -0,0 +1,135 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.structure.backend.repositories;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.uberfire.io.IOService;
+import org.uberfire.java.nio.base.version.VersionAttributeView;
+import org.uberfire.java.nio.base.version.VersionAttributes;
+import org.uberfire.java.nio.base.version.VersionHistory;
+import org.uberfire.java.nio.base.version.VersionRecord;
+import org.uberfire.java.nio.file.Path;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+@RunWith( MockitoJUnitRunner.class )
+public class RepositoryHistoryTest {
+
+    private static final String MASTER = "default://master@repo/";
+
+    @Mock
+    IOService ioService;
+
+    @Mock
+    ConfiguredRepositories configuredRepositories;
+
+    @Mock
+    Path root;
+
+    @Mock
+    VersionAttributeView versionAttributeView;
+
+    @Mock
+    VersionAttributes versionAttributes;
+
+    @Mock
+    VersionHistory versionHistory;
+
+    private List<VersionRecord> records;
+
+    private RepositoryHistory repositoryHistory;
+
+    @Before
+    public void setUp() throws Exception {
+        records = new ArrayList<>();
+        records.add( mock( VersionRecord.class ) );
+        records.add( mock( VersionRecord.class ) );
+
+        when( root.toUri() ).thenReturn( URI.create( MASTER ) );
+        when( ioService.getFileAttributeView( root, VersionAttributeView.class ) ).thenReturn( versionAttributeView );
+        when( versionAttributeView.readAttributes() ).thenReturn( versionAttributes );
+        when( versionAttributes.history() ).thenReturn( versionHistory );
+        when( versionHistory.records() ).thenReturn( records );
+
+        repositoryHistory = new RepositoryHistory( ioService,
+                                                   configuredRepositories );
+    }
+
+    @Test
+    public void testHistoryIsReadOnce() throws Exception {
+        assertEquals( 2, repositoryHistory.getHistory( "repo", root, -1 ).size() );
+        assertEquals( 2, repositoryHistory.getHistory( "repo", root, 10 ).size() );
+
+        verify( versionAttributeView, times( 1 ) ).readAttributes();
+    }
+
+    @Test
+    public void testHistoryIsNewestFirst() throws Exception {
+        final List<VersionRecord> history = repositoryHistory.getHistory( "repo", root, -1 );
+
+        assertSame( records.get( 1 ), history.get( 0 ) );
+        assertSame( records.get( 0 ), history.get( 1 ) );
+    }
+
+    @Test
+    public void testOnlyRecentRecordsOfLargeHistoryAreCached() throws Exception {
+        for ( int i = 0; i < 2000; i++ ) {
+            records.add( mock( VersionRecord.class ) );
+        }
+
+        assertEquals( 1000, repositoryHistory.getHistory( "repo", root, 10 ).size() );
+        assertSame( records.get( records.size() - 1 ), repositoryHistory.getHistory( "repo", root, 1000 ).get( 0 ) );
+        verify( versionAttributeView, times( 1 ) ).readAttributes();
+
+        //Older pages, and the complete history, are read again
+        assertEquals( 2002, repositoryHistory.getHistory( "repo", root, 1010 ).size() );
+        assertEquals( 2002, repositoryHistory.getHistory( "repo", root, -1 ).size() );
+        verify( versionAttributeView, times( 3 ) ).readAttributes();
+    }
+
+    @Test
+    public void testChangeOfCachedBranchInvalidatesHistory() throws Exception {
+        repositoryHistory.getHistory( "repo", root, -1 );
+        repositoryHistory.invalidate( "repo", MASTER );
+        repositoryHistory.getHistory( "repo", root, -1 );
+
+        verify( versionAttributeView, times( 2 ) ).readAttributes();
+    }
+
+    @Test
+    public void testChangeOfOtherBranchKeepsHistory() throws Exception {
+        repositoryHistory.getHistory( "repo", root, -1 );
+        repositoryHistory.invalidate( "repo", "default://dev@repo/" );
+        repositoryHistory.getHistory( "repo", root, -1 );
+
+        verify( versionAttributeView, times( 1 ) ).readAttributes();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testHistoryCannotBeModified() throws Exception {
+        repositoryHistory.getHistory( "repo", root, -1 ).clear();
+    }
+
+}